@@ -0,0 +1,244 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.entur.netex.gtfs.export.DefaultGtfsExporter;
+import org.entur.netex.gtfs.export.loader.DefaultNetexDatasetLoader;
+import org.entur.netex.gtfs.export.loader.NetexDatasetLoader;
+import org.entur.netex.gtfs.export.model.GtfsShape;
+import org.entur.netex.gtfs.export.producer.DefaultShapeProducer;
+import org.entur.netex.gtfs.export.producer.ShapeProducer;
+import org.entur.netex.gtfs.export.repository.DefaultGtfsRepository;
+import org.entur.netex.gtfs.export.repository.DefaultNetexDatasetRepository;
+import org.entur.netex.gtfs.export.repository.GtfsDatasetRepository;
+import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.entur.netex.gtfs.export.stop.DefaultStopAreaRepository;
+import org.entur.netex.gtfs.export.stop.StopAreaRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rutebanken.netex.model.JourneyPattern;
+
+/**
+ * Throughput of the main steps of the NeTEx to GTFS conversion on the bundled test datasets.
+ * Each benchmark measures one step only: the steps it depends on are run in a setup method.
+ * Since a conversion step can be run only once on a given dataset, the benchmarks that modify the GTFS dataset use
+ * a fresh exporter for each invocation. This is acceptable as a single invocation takes several milliseconds.
+ * The allocation rate per operation is reported by running the benchmarks with the GC profiler, which is the default
+ * in the benchmark Maven profile.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConversionPipelineBenchmark {
+
+  private static final String STOP_AREA_DATASET = "/RailStations_latest.zip";
+
+  @Param({ "rb_flb", "rb_sjv", "rb_vyg" })
+  private String dataset;
+
+  private String codespace;
+  private byte[] netexArchive;
+  private StopAreaRepository stopAreaRepository;
+  private NetexDatasetLoader netexDatasetLoader;
+  private NetexDatasetRepository netexDatasetRepository;
+  private List<JourneyPattern> journeyPatterns;
+  private GtfsDatasetRepository convertedGtfsDatasetRepository;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    codespace = dataset.substring("rb_".length()).toUpperCase(Locale.ROOT);
+    try (
+      InputStream netexTimetableDataset = getResource(
+        "/" + dataset + "-aggregated-netex.zip"
+      )
+    ) {
+      netexArchive = netexTimetableDataset.readAllBytes();
+    }
+    DefaultStopAreaRepository defaultStopAreaRepository =
+      new DefaultStopAreaRepository();
+    try (InputStream stopAreaDataset = getResource(STOP_AREA_DATASET)) {
+      defaultStopAreaRepository.loadStopAreas(stopAreaDataset);
+    }
+    stopAreaRepository = defaultStopAreaRepository;
+    netexDatasetLoader = new DefaultNetexDatasetLoader();
+
+    netexDatasetRepository = loadNetex();
+    journeyPatterns = new ArrayList<>();
+    netexDatasetRepository
+      .getLines()
+      .stream()
+      .flatMap(line -> netexDatasetRepository.getRoutesByLine(line).stream())
+      .flatMap(route ->
+        netexDatasetRepository.getJourneyPatternsByRoute(route).stream()
+      )
+      .forEach(journeyPatterns::add);
+
+    convertedGtfsDatasetRepository = new DefaultGtfsRepository();
+    new DefaultGtfsExporter(
+      codespace,
+      stopAreaRepository,
+      convertedGtfsDatasetRepository,
+      false
+    )
+      .convertTimetablesToGtfs(
+        new ByteArrayInputStream(netexArchive),
+        OutputStream.nullOutputStream()
+      );
+  }
+
+  @Benchmark
+  public NetexDatasetRepository load() {
+    return loadNetex();
+  }
+
+  @Benchmark
+  public void convertRoutes(StopsConverted stopsConverted) {
+    stopsConverted.exporter.convertRoutes();
+  }
+
+  @Benchmark
+  public void convertServices(RoutesConverted routesConverted) {
+    routesConverted.exporter.convertServices();
+  }
+
+  @Benchmark
+  public void produceShapes(Blackhole blackhole) {
+    ShapeProducer shapeProducer = new DefaultShapeProducer(
+      netexDatasetRepository,
+      new DefaultGtfsRepository()
+    );
+    for (JourneyPattern journeyPattern : journeyPatterns) {
+      GtfsShape gtfsShape = shapeProducer.produce(journeyPattern);
+      blackhole.consume(gtfsShape);
+    }
+  }
+
+  @Benchmark
+  public void serialize() {
+    convertedGtfsDatasetRepository.writeGtfs(OutputStream.nullOutputStream());
+  }
+
+  private NetexDatasetRepository loadNetex() {
+    NetexDatasetRepository repository = new DefaultNetexDatasetRepository();
+    netexDatasetLoader.load(new ByteArrayInputStream(netexArchive), repository);
+    return repository;
+  }
+
+  private static InputStream getResource(String name) {
+    InputStream resource =
+      ConversionPipelineBenchmark.class.getResourceAsStream(name);
+    if (resource == null) {
+      throw new IllegalStateException("Missing benchmark dataset " + name);
+    }
+    return resource;
+  }
+
+  /**
+   * An exporter on which the NeTEx dataset is loaded and the stops are converted.
+   */
+  @State(Scope.Thread)
+  public static class StopsConverted {
+
+    PipelineExporter exporter;
+
+    @Setup(Level.Invocation)
+    public void setUp(ConversionPipelineBenchmark benchmark) {
+      exporter = benchmark.createExporter();
+      exporter.convertStops();
+    }
+  }
+
+  /**
+   * An exporter on which the NeTEx dataset is loaded and the stops and routes are converted.
+   */
+  @State(Scope.Thread)
+  public static class RoutesConverted {
+
+    PipelineExporter exporter;
+
+    @Setup(Level.Invocation)
+    public void setUp(ConversionPipelineBenchmark benchmark) {
+      exporter = benchmark.createExporter();
+      exporter.convertStops();
+      exporter.convertRoutes();
+    }
+  }
+
+  private PipelineExporter createExporter() {
+    PipelineExporter exporter = new PipelineExporter(
+      codespace,
+      stopAreaRepository
+    );
+    exporter.loadNetex(netexDatasetLoader, netexArchive);
+    return exporter;
+  }
+
+  /**
+   * Exporter giving access to the individual conversion steps.
+   */
+  static class PipelineExporter extends DefaultGtfsExporter {
+
+    PipelineExporter(String codespace, StopAreaRepository stopAreaRepository) {
+      super(codespace, stopAreaRepository, new DefaultGtfsRepository(), false);
+    }
+
+    void loadNetex(NetexDatasetLoader netexDatasetLoader, byte[] netexArchive) {
+      netexDatasetLoader.load(
+        new ByteArrayInputStream(netexArchive),
+        getNetexDatasetRepository()
+      );
+    }
+
+    void convertStops() {
+      convertStops(true);
+    }
+
+    @Override
+    protected void convertRoutes() {
+      super.convertRoutes();
+    }
+
+    @Override
+    protected void convertServices() {
+      super.convertServices();
+    }
+  }
+}
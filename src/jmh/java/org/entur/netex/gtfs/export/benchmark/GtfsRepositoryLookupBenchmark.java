@@ -0,0 +1,103 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.entur.netex.gtfs.export.repository.DefaultGtfsRepository;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.Trip;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compare the stop and trip lookups of {@link DefaultGtfsRepository}, served by its own indexes,
+ * with the equivalent lookups through the OneBusAway DAO.
+ * Each invocation looks up every saved stop and trip once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GtfsRepositoryLookupBenchmark {
+
+  private static final String AGENCY_ID = "DEFAULT";
+
+  @Param({ "1000", "50000" })
+  private int size;
+
+  private DefaultGtfsRepository gtfsRepository;
+  private GtfsRelationalDaoImpl gtfsDao;
+  private String[] stopIds;
+  private String[] tripIds;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    gtfsRepository = new DefaultGtfsRepository();
+    gtfsDao = new GtfsRelationalDaoImpl();
+    stopIds = new String[size];
+    tripIds = new String[size];
+    for (int i = 0; i < size; i++) {
+      stopIds[i] = "NSR:Quay:" + i;
+      tripIds[i] = "ENT:ServiceJourney:" + i;
+      Stop stop = new Stop();
+      stop.setId(new AgencyAndId(AGENCY_ID, stopIds[i]));
+      Trip trip = new Trip();
+      trip.setId(new AgencyAndId(AGENCY_ID, tripIds[i]));
+      gtfsRepository.saveEntity(stop);
+      gtfsRepository.saveEntity(trip);
+      gtfsDao.saveEntity(stop);
+      gtfsDao.saveEntity(trip);
+    }
+  }
+
+  @Benchmark
+  public void repositoryLookup(Blackhole blackhole) {
+    for (int i = 0; i < size; i++) {
+      blackhole.consume(gtfsRepository.getStopById(stopIds[i]));
+      blackhole.consume(gtfsRepository.findTripById(tripIds[i]));
+    }
+  }
+
+  @Benchmark
+  public void daoLookup(Blackhole blackhole) {
+    for (int i = 0; i < size; i++) {
+      blackhole.consume(
+        gtfsDao.getStopForId(new AgencyAndId(AGENCY_ID, stopIds[i]))
+      );
+      blackhole.consume(
+        gtfsDao.getTripForId(new AgencyAndId(AGENCY_ID, tripIds[i]))
+      );
+    }
+  }
+}
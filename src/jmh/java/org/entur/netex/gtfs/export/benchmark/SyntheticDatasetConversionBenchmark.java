@@ -0,0 +1,81 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.entur.netex.gtfs.export.DefaultGtfsExporter;
+import org.entur.netex.gtfs.export.generator.SyntheticNetexDatasetGenerator;
+import org.entur.netex.gtfs.export.stop.DefaultStopAreaRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Duration of a complete conversion, from the NeTEx archive to the GTFS archive, on synthetic datasets of increasing
+ * size. Comparing the scores across scale factors reveals the parts of the conversion that do not scale linearly.
+ * The loading of the stop dataset is not measured.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class SyntheticDatasetConversionBenchmark {
+
+  @Param({ "1", "10", "100" })
+  private int scaleFactor;
+
+  private byte[] netexArchive;
+  private DefaultStopAreaRepository stopAreaRepository;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    SyntheticNetexDatasetGenerator generator =
+      new SyntheticNetexDatasetGenerator(scaleFactor);
+    netexArchive = generator.generateTimetableDataset();
+    stopAreaRepository = new DefaultStopAreaRepository();
+    stopAreaRepository.loadStopAreas(
+      new ByteArrayInputStream(generator.generateStopDataset())
+    );
+  }
+
+  @Benchmark
+  public void convert() {
+    new DefaultGtfsExporter(
+      SyntheticNetexDatasetGenerator.CODESPACE,
+      stopAreaRepository
+    )
+      .convertTimetablesToGtfs(
+        new ByteArrayInputStream(netexArchive),
+        OutputStream.nullOutputStream()
+      );
+  }
+}
@@ -18,18 +18,47 @@
 
 package org.entur.netex.gtfs.export;
 
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import org.entur.netex.gtfs.export.exception.GtfsExportException;
+import org.entur.netex.gtfs.export.exception.GtfsSerializationException;
 import org.entur.netex.gtfs.export.loader.DefaultNetexDatasetLoader;
 import org.entur.netex.gtfs.export.loader.NetexDatasetLoader;
 import org.entur.netex.gtfs.export.model.GtfsService;
 import org.entur.netex.gtfs.export.model.GtfsShape;
 import org.entur.netex.gtfs.export.model.ServiceCalendarPeriod;
+import org.entur.netex.gtfs.export.monitoring.GtfsEntityType;
+import org.entur.netex.gtfs.export.monitoring.GtfsExportListener;
+import org.entur.netex.gtfs.export.monitoring.GtfsExportPhase;
 import org.entur.netex.gtfs.export.producer.AgencyProducer;
 import org.entur.netex.gtfs.export.producer.DefaultAgencyProducer;
 import org.entur.netex.gtfs.export.producer.DefaultGtfsServiceRepository;
@@ -56,13 +85,22 @@ import org.entur.netex.gtfs.export.repository.DefaultNetexDatasetRepository;
 import org.entur.netex.gtfs.export.repository.GtfsDatasetRepository;
 import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
 import org.entur.netex.gtfs.export.stop.StopAreaRepository;
+import org.entur.netex.gtfs.export.util.CalendarEncodingPlanner;
+import org.entur.netex.gtfs.export.util.DayTypeCache;
 import org.entur.netex.gtfs.export.util.DestinationDisplayUtil;
+import org.entur.netex.gtfs.export.util.ExecutorUtil;
+import org.entur.netex.gtfs.export.util.GtfsStopCache;
+import org.entur.netex.gtfs.export.util.HeadSignCache;
 import org.entur.netex.gtfs.export.util.ServiceAlterationChecker;
+import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.FeedInfo;
 import org.onebusaway.gtfs.model.Route;
 import org.onebusaway.gtfs.model.ServiceCalendar;
+import org.onebusaway.gtfs.model.ServiceCalendarDate;
+import org.onebusaway.gtfs.model.Stop;
 import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Transfer;
 import org.onebusaway.gtfs.model.Trip;
 import org.rutebanken.netex.model.DestinationDisplay;
 import org.rutebanken.netex.model.JourneyPattern;
@@ -70,6 +108,7 @@ import org.rutebanken.netex.model.Line;
 import org.rutebanken.netex.model.Quay;
 import org.rutebanken.netex.model.ServiceJourney;
 import org.rutebanken.netex.model.ServiceJourneyInterchange;
+import org.rutebanken.netex.model.StopPlace;
 import org.rutebanken.netex.model.StopPointInJourneyPattern;
 import org.rutebanken.netex.model.TimetabledPassingTime;
 import org.slf4j.Logger;
@@ -81,6 +120,16 @@ public class DefaultGtfsExporter implements GtfsExporter {
     DefaultGtfsExporter.class
   );
 
+  /**
+   * Number of quays or stop places converted by a single task in a parallel stop conversion.
+   */
+  private static final int STOP_CONVERSION_BATCH_SIZE = 1000;
+
+  /**
+   * Number of entities saved between two samples of the heap usage, when an export listener is set.
+   */
+  private static final int HEAP_SAMPLING_INTERVAL = 1024;
+
   private final String codespace;
 
   private final NetexDatasetRepository netexDatasetRepository;
@@ -99,6 +148,15 @@ public class DefaultGtfsExporter implements GtfsExporter {
   private ServiceCalendarProducer serviceCalendarProducer;
   private StopProducer stopProducer;
   private NetexDatasetLoader netexDatasetLoader;
+  private Executor routeConversionExecutor;
+  private int maxLinesInFlight;
+  private Executor stopConversionExecutor;
+  private boolean compressServiceCalendars;
+  private GtfsExportListener exportListener = GtfsExportListener.NONE;
+  private final long[] entityCounts = new long[GtfsEntityType.values().length];
+  private List<MemoryPoolMXBean> heapPools = List.of();
+  private long peakHeapUsage;
+  private int entitiesSinceHeapSample;
   private final ServiceAlterationChecker serviceAlterationChecker;
 
   /**
@@ -130,23 +188,52 @@ public class DefaultGtfsExporter implements GtfsExporter {
     StopAreaRepository stopAreaRepository,
     boolean generateStaySeatedTransfer
   ) {
-    this.codespace = codespace;
+    this(
+      codespace,
+      stopAreaRepository,
+      new DefaultGtfsRepository(),
+      generateStaySeatedTransfer
+    );
+  }
 
-    this.netexDatasetLoader = new DefaultNetexDatasetLoader();
+  /**
+   * Create a GTFS exporter that builds the GTFS dataset in the given repository.
+   * This can be used for example with a {@link org.entur.netex.gtfs.export.repository.StreamingGtfsRepository} to
+   * reduce memory usage when exporting large datasets.
+   *
+   * @param codespace                  the codespace of the exported dataset.
+   * @param stopAreaRepository         the stop area repository.
+   * @param gtfsDatasetRepository      the repository in which the GTFS entities are saved.
+   * @param generateStaySeatedTransfer true if stay-seated transfers should be exported.
+   */
+  public DefaultGtfsExporter(
+    String codespace,
+    StopAreaRepository stopAreaRepository,
+    GtfsDatasetRepository gtfsDatasetRepository,
+    boolean generateStaySeatedTransfer
+  ) {
+    this.codespace = codespace;
 
     this.stopAreaRepository = stopAreaRepository;
-    this.gtfsDatasetRepository = new DefaultGtfsRepository();
+    this.gtfsDatasetRepository = gtfsDatasetRepository;
     this.netexDatasetRepository = new DefaultNetexDatasetRepository();
+    DayTypeCache dayTypeCache = new DayTypeCache(netexDatasetRepository);
     this.gtfsServiceRepository =
-      new DefaultGtfsServiceRepository(codespace, netexDatasetRepository);
+      new DefaultGtfsServiceRepository(codespace, dayTypeCache);
     this.serviceAlterationChecker =
       new ServiceAlterationChecker(netexDatasetRepository);
 
+    GtfsStopCache gtfsStopCache = new GtfsStopCache(
+      netexDatasetRepository,
+      gtfsDatasetRepository
+    );
+
     this.transferProducer =
       new DefaultTransferProducer(
         netexDatasetRepository,
         gtfsDatasetRepository,
-        generateStaySeatedTransfer
+        generateStaySeatedTransfer,
+        gtfsStopCache
       );
 
     this.agencyProducer = new DefaultAgencyProducer(netexDatasetRepository);
@@ -154,17 +241,17 @@ public class DefaultGtfsExporter implements GtfsExporter {
       new DefaultRouteProducer(netexDatasetRepository, gtfsDatasetRepository);
     this.shapeProducer =
       new DefaultShapeProducer(netexDatasetRepository, gtfsDatasetRepository);
+    HeadSignCache headSignCache = new HeadSignCache(netexDatasetRepository);
     this.tripProducer =
       new DefaultTripProducer(
         netexDatasetRepository,
         gtfsDatasetRepository,
-        gtfsServiceRepository
+        gtfsServiceRepository,
+        headSignCache,
+        dayTypeCache
       );
     this.stopTimeProducer =
-      new DefaultStopTimeProducer(
-        netexDatasetRepository,
-        gtfsDatasetRepository
-      );
+      new DefaultStopTimeProducer(headSignCache, gtfsStopCache);
     this.serviceCalendarDateProducer =
       new DefaultServiceCalendarDateProducer(gtfsDatasetRepository);
     this.serviceCalendarProducer =
@@ -177,34 +264,130 @@ public class DefaultGtfsExporter implements GtfsExporter {
   public InputStream convertTimetablesToGtfs(
     InputStream netexTimetableDataset
   ) {
+    return closeOnFailure(() -> {
+      checkCodespace();
+      runPhase(GtfsExportPhase.LOADING, () -> loadNetex(netexTimetableDataset));
+      convertNetexToGtfs();
+      return writeGtfs();
+    });
+  }
+
+  @Override
+  public void convertTimetablesToGtfs(
+    InputStream netexTimetableDataset,
+    OutputStream gtfsArchive
+  ) {
+    closeOnFailure(() -> {
+      checkCodespace();
+      runPhase(GtfsExportPhase.LOADING, () -> loadNetex(netexTimetableDataset));
+      convertNetexToGtfs();
+      writeGtfs(gtfsArchive);
+    });
+  }
+
+  @Override
+  public void convertTimetablesToGtfs(
+    Path netexTimetableDataset,
+    Path gtfsArchive
+  ) {
+    closeOnFailure(() -> {
+      checkCodespace();
+      runPhase(GtfsExportPhase.LOADING, () -> loadNetex(netexTimetableDataset));
+      convertNetexToGtfs();
+      try (
+        OutputStream gtfs = new BufferedOutputStream(
+          Files.newOutputStream(gtfsArchive)
+        )
+      ) {
+        writeGtfs(gtfs);
+      } catch (IOException e) {
+        throw new GtfsSerializationException(
+          "Error while writing the GTFS dataset " + gtfsArchive,
+          e
+        );
+      }
+    });
+  }
+
+  @Override
+  public InputStream convertStopsToGtfs() {
+    return closeOnFailure(() -> {
+      runPhase(GtfsExportPhase.STOPS, () -> convertStops(false));
+      addFeedInfo();
+      return writeGtfs();
+    });
+  }
+
+  @Override
+  public void convertStopsToGtfs(OutputStream gtfsArchive) {
+    closeOnFailure(() -> {
+      runPhase(GtfsExportPhase.STOPS, () -> convertStops(false));
+      addFeedInfo();
+      writeGtfs(gtfsArchive);
+    });
+  }
+
+  private InputStream writeGtfs() {
+    exportListener.entitiesConverted(getEntityCounts());
+    return runPhase(
+      GtfsExportPhase.SERIALIZATION,
+      () -> gtfsDatasetRepository.writeGtfs(this::gtfsFileWritten)
+    );
+  }
+
+  private void writeGtfs(OutputStream gtfsArchive) {
+    exportListener.entitiesConverted(getEntityCounts());
+    runPhase(
+      GtfsExportPhase.SERIALIZATION,
+      () -> gtfsDatasetRepository.writeGtfs(gtfsArchive, this::gtfsFileWritten)
+    );
+  }
+
+  private void gtfsFileWritten(String fileName, long size) {
+    sampleHeapUsage();
+    exportListener.gtfsFileWritten(fileName, size);
+  }
+
+  private void checkCodespace() {
     if (codespace == null) {
       throw new IllegalStateException(
         "Missing required codespace for timetable data export"
       );
     }
-    loadNetex(netexTimetableDataset);
-    convertNetexToGtfs();
-    return gtfsDatasetRepository.writeGtfs();
   }
 
-  @Override
-  public InputStream convertStopsToGtfs() {
-    convertStops(false);
-    addFeedInfo();
-    return gtfsDatasetRepository.writeGtfs();
+  private void loadNetex(InputStream netexTimetableDataset) {
+    LOGGER.info(
+      "Importing NeTEx Timetable dataset for codespace {}",
+      codespace
+    );
+    getNetexDatasetLoader()
+      .load(netexTimetableDataset, netexDatasetRepository);
+    LOGGER.info("Imported NeTEx Timetable dataset for codespace {}", codespace);
   }
 
-  private void loadNetex(InputStream netexTimetableDataset) {
+  private void loadNetex(Path netexTimetableDataset) {
     LOGGER.info(
       "Importing NeTEx Timetable dataset for codespace {}",
       codespace
     );
-    netexDatasetLoader.load(netexTimetableDataset, netexDatasetRepository);
+    getNetexDatasetLoader()
+      .load(netexTimetableDataset, netexDatasetRepository);
     LOGGER.info("Imported NeTEx Timetable dataset for codespace {}", codespace);
   }
 
   private void convertNetexToGtfs() {
     LOGGER.info("Converting NeTEx to GTFS for codespace {}", codespace);
+    runPhase(GtfsExportPhase.AGENCIES, this::convertAgencies);
+    runPhase(GtfsExportPhase.STOPS, () -> convertStops(true));
+    runPhase(GtfsExportPhase.ROUTES, this::convertRoutes);
+    runPhase(GtfsExportPhase.SERVICES, this::convertServices);
+    runPhase(GtfsExportPhase.TRANSFERS, this::convertTransfers);
+    addFeedInfo();
+    LOGGER.info("Converted NeTEx to GTFS for codespace {}", codespace);
+  }
+
+  private void convertAgencies() {
     // create agencies only for authorities that are effectively referenced from a NeTex line
     netexDatasetRepository
       .getLines()
@@ -213,14 +396,7 @@ public class DefaultGtfsExporter implements GtfsExporter {
       .distinct()
       .map(netexDatasetRepository::getAuthorityById)
       .map(agencyProducer::produce)
-      .forEach(gtfsDatasetRepository::saveEntity);
-
-    convertStops(true);
-    convertRoutes();
-    convertServices();
-    convertTransfers();
-    addFeedInfo();
-    LOGGER.info("Converted NeTEx to GTFS for codespace {}", codespace);
+      .forEach(this::saveEntity);
   }
 
   protected void addFeedInfo() {
@@ -233,71 +409,174 @@ public class DefaultGtfsExporter implements GtfsExporter {
   }
 
   protected void convertRoutes() {
-    for (Line netexLine : netexDatasetRepository.getLines()) {
-      Route gtfsRoute = routeProducer.produce(netexLine);
-      gtfsDatasetRepository.saveEntity(gtfsRoute);
-      for (org.rutebanken.netex.model.Route netexRoute : netexDatasetRepository.getRoutesByLine(
-        netexLine
-      )) {
-        for (JourneyPattern journeyPattern : netexDatasetRepository.getJourneyPatternsByRoute(
-          netexRoute
-        )) {
-          GtfsShape gtfsShape = shapeProducer.produce(journeyPattern);
-          AgencyAndId shapeId = null;
-          if (gtfsShape != null && !gtfsShape.getShapePoints().isEmpty()) {
-            gtfsShape
-              .getShapePoints()
-              .forEach(gtfsDatasetRepository::saveEntity);
-            shapeId = new AgencyAndId();
-            shapeId.setAgencyId(
-              gtfsDatasetRepository.getDefaultAgency().getId()
-            );
-            shapeId.setId(gtfsShape.getId());
-          }
+    shapeProducer.initialize();
+    // shapes shared by several journey patterns are saved only once
+    Set<String> savedShapeIds = new HashSet<>();
+    if (routeConversionExecutor == null) {
+      for (Line netexLine : netexDatasetRepository.getLines()) {
+        convertLine(
+          netexLine,
+          entity -> saveConvertedEntity(entity, savedShapeIds)
+        );
+      }
+    } else {
+      convertLinesInParallel(savedShapeIds);
+    }
+  }
 
-          DestinationDisplay initialDestinationDisplay =
-            DestinationDisplayUtil.getInitialDestinationDisplay(
-              journeyPattern,
-              netexDatasetRepository
-            );
+  /**
+   * Convert the lines concurrently on the route conversion executor.
+   * The entities produced for each line are buffered and saved from the calling thread, line by line, in the same
+   * order as in the sequential conversion. The GTFS dataset is therefore identical in both modes.
+   * At most a fixed number of lines are in flight, that is converted or being converted but not yet saved. When the
+   * limit is reached, the oldest line is saved before the next one is submitted. This bounds the number of buffered
+   * entities, which would otherwise grow with the size of the dataset.
+   */
+  private void convertLinesInParallel(Set<String> savedShapeIds) {
+    Deque<CompletableFuture<List<Object>>> convertedLines = new ArrayDeque<>();
+    try {
+      for (Line netexLine : netexDatasetRepository.getLines()) {
+        if (convertedLines.size() == maxLinesInFlight) {
+          saveConvertedLine(convertedLines.removeFirst(), savedShapeIds);
+        }
+        convertedLines.addLast(
+          CompletableFuture.supplyAsync(
+            () -> {
+              List<Object> entities = new ArrayList<>();
+              convertLine(netexLine, entities::add);
+              return entities;
+            },
+            routeConversionExecutor
+          )
+        );
+      }
+      while (!convertedLines.isEmpty()) {
+        saveConvertedLine(convertedLines.removeFirst(), savedShapeIds);
+      }
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new GtfsExportException(
+        "Error while converting routes",
+        e.getCause()
+      );
+    } finally {
+      convertedLines.forEach(convertedLine -> convertedLine.cancel(false));
+    }
+  }
 
-          for (ServiceJourney serviceJourney : netexDatasetRepository.getServiceJourneysByJourneyPattern(
+  private void saveConvertedLine(
+    CompletableFuture<List<Object>> convertedLine,
+    Set<String> savedShapeIds
+  ) {
+    convertedLine
+      .join()
+      .forEach(entity -> saveConvertedEntity(entity, savedShapeIds));
+  }
+
+  /**
+   * Convert a NeTEx line into a GTFS route with its shapes, trips and stop times.
+   * @param netexLine the NeTEx line.
+   * @param entitySink the consumer of the produced entities, in production order. Shapes are passed as
+   *                   {@link GtfsShape}.
+   */
+  private void convertLine(Line netexLine, Consumer<Object> entitySink) {
+    Route gtfsRoute = routeProducer.produce(netexLine);
+    entitySink.accept(gtfsRoute);
+    for (org.rutebanken.netex.model.Route netexRoute : netexDatasetRepository.getRoutesByLine(
+      netexLine
+    )) {
+      for (JourneyPattern journeyPattern : netexDatasetRepository.getJourneyPatternsByRoute(
+        netexRoute
+      )) {
+        Collection<ServiceJourney> serviceJourneys =
+          netexDatasetRepository.getServiceJourneysByJourneyPattern(
             journeyPattern
-          )) {
-            Trip trip = tripProducer.produce(
-              serviceJourney,
-              netexRoute,
-              gtfsRoute,
-              shapeId,
-              initialDestinationDisplay
-            );
-            if (trip != null) {
-              gtfsDatasetRepository.saveEntity(trip);
-              // the head sign set on a given stop depends on the one set on the previous stop
-              // i.e. it must be repeated from one stop to the next unless there is an explicit change.
-              String currentHeadSign = null;
-              for (TimetabledPassingTime timetabledPassingTime : serviceJourney
-                .getPassingTimes()
-                .getTimetabledPassingTime()) {
-                StopTime stopTime = stopTimeProducer.produce(
-                  timetabledPassingTime,
-                  journeyPattern,
-                  trip,
-                  gtfsShape,
-                  currentHeadSign
-                );
-                gtfsDatasetRepository.saveEntity(stopTime);
-                currentHeadSign = stopTime.getStopHeadsign();
-              }
+          );
+        JourneyPatternConversionEvent shapeEvent =
+          new JourneyPatternConversionEvent();
+        shapeEvent.begin();
+        GtfsShape gtfsShape = shapeProducer.produce(journeyPattern);
+        shapeEvent.complete(
+          journeyPattern.getId(),
+          JourneyPatternConversionEvent.STEP_SHAPE,
+          serviceJourneys.size()
+        );
+        AgencyAndId shapeId = null;
+        if (gtfsShape != null && gtfsShape.getShapePointCount() > 0) {
+          entitySink.accept(gtfsShape);
+          shapeId = new AgencyAndId();
+          shapeId.setAgencyId(gtfsDatasetRepository.getDefaultAgency().getId());
+          shapeId.setId(gtfsShape.getId());
+        }
+
+        DestinationDisplay initialDestinationDisplay =
+          DestinationDisplayUtil.getInitialDestinationDisplay(
+            journeyPattern,
+            netexDatasetRepository
+          );
+
+        JourneyPatternConversionEvent stopTimesEvent =
+          new JourneyPatternConversionEvent();
+        stopTimesEvent.begin();
+        for (ServiceJourney serviceJourney : serviceJourneys) {
+          Trip trip = tripProducer.produce(
+            serviceJourney,
+            netexRoute,
+            gtfsRoute,
+            shapeId,
+            initialDestinationDisplay
+          );
+          if (trip != null) {
+            entitySink.accept(trip);
+            // the head sign set on a given stop depends on the one set on the previous stop
+            // i.e. it must be repeated from one stop to the next unless there is an explicit change.
+            String currentHeadSign = null;
+            for (TimetabledPassingTime timetabledPassingTime : serviceJourney
+              .getPassingTimes()
+              .getTimetabledPassingTime()) {
+              StopTime stopTime = stopTimeProducer.produce(
+                timetabledPassingTime,
+                journeyPattern,
+                trip,
+                gtfsShape,
+                currentHeadSign
+              );
+              entitySink.accept(stopTime);
+              currentHeadSign = stopTime.getStopHeadsign();
             }
           }
         }
+        stopTimesEvent.complete(
+          journeyPattern.getId(),
+          JourneyPatternConversionEvent.STEP_STOP_TIMES,
+          serviceJourneys.size()
+        );
+      }
+    }
+  }
+
+  private void saveConvertedEntity(Object entity, Set<String> savedShapeIds) {
+    if (entity instanceof GtfsShape gtfsShape) {
+      if (savedShapeIds.add(gtfsShape.getId())) {
+        gtfsDatasetRepository.saveShape(gtfsShape);
+        countEntities(
+          GtfsEntityType.SHAPE_POINT,
+          gtfsShape.getShapePointCount()
+        );
       }
+    } else {
+      saveEntity(entity);
     }
   }
 
   protected void convertServices() {
-    for (GtfsService gtfsService : gtfsServiceRepository.getAllServices()) {
+    for (GtfsService service : gtfsServiceRepository.getAllServices()) {
+      GtfsService gtfsService = compressServiceCalendars
+        ? CalendarEncodingPlanner.encode(service)
+        : service;
+      countEntities(GtfsEntityType.SERVICE, 1);
       ServiceCalendarPeriod serviceCalendarPeriod =
         gtfsService.getServiceCalendarPeriod();
       if (serviceCalendarPeriod != null) {
@@ -307,10 +586,10 @@ public class DefaultGtfsExporter implements GtfsExporter {
           serviceCalendarPeriod.getEndDate(),
           serviceCalendarPeriod.getDaysOfWeek()
         );
-        gtfsDatasetRepository.saveEntity(serviceCalendar);
+        saveEntity(serviceCalendar);
       }
       for (LocalDateTime includedDate : gtfsService.getIncludedDates()) {
-        gtfsDatasetRepository.saveEntity(
+        saveEntity(
           serviceCalendarDateProducer.produce(
             gtfsService.getId(),
             includedDate,
@@ -319,7 +598,7 @@ public class DefaultGtfsExporter implements GtfsExporter {
         );
       }
       for (LocalDateTime excludedDate : gtfsService.getExcludedDates()) {
-        gtfsDatasetRepository.saveEntity(
+        saveEntity(
           serviceCalendarDateProducer.produce(
             gtfsService.getId(),
             excludedDate,
@@ -337,7 +616,7 @@ public class DefaultGtfsExporter implements GtfsExporter {
       .filter(this::isValidServiceJourneyInterchange)
       .map(transferProducer::produce)
       .filter(Objects::nonNull)
-      .forEach(gtfsDatasetRepository::saveEntity);
+      .forEach(this::saveEntity);
   }
 
   protected void convertStops(boolean exportOnlyUsedStops) {
@@ -347,31 +626,23 @@ public class DefaultGtfsExporter implements GtfsExporter {
       // Retrieve all quays referenced by valid ServiceJourneys
       // This excludes quays referenced by cancelled or replaced service journeys
       // and quays referenced only as route points or in dead runs
+      List<String> journeyPatternIds = netexDatasetRepository
+        .getServiceJourneys()
+        .stream()
+        .filter(Predicate.not(serviceAlterationChecker::isReplacedOrCancelled))
+        .map(serviceJourney ->
+          serviceJourney.getJourneyPatternRef().getValue().getRef()
+        )
+        .distinct()
+        .toList();
       allQuaysId =
-        netexDatasetRepository
-          .getServiceJourneys()
+        mapStopConversion(
+          journeyPatternIds,
+          this::getScheduledStopPointIds,
+          "Error while retrieving the quays used by the journey patterns"
+        )
           .stream()
-          .filter(
-            Predicate.not(serviceAlterationChecker::isReplacedOrCancelled)
-          )
-          .map(serviceJourney ->
-            serviceJourney.getJourneyPatternRef().getValue().getRef()
-          )
-          .distinct()
-          .map(netexDatasetRepository::getJourneyPatternById)
-          .map(journeyPattern ->
-            journeyPattern
-              .getPointsInSequence()
-              .getPointInJourneyPatternOrStopPointInJourneyPatternOrTimingPointInJourneyPattern()
-          )
           .flatMap(Collection::stream)
-          .map(stopPointInJourneyPattern ->
-            (
-              (StopPointInJourneyPattern) stopPointInJourneyPattern
-            ).getScheduledStopPointRef()
-              .getValue()
-              .getRef()
-          )
           .distinct()
           .filter(Predicate.not(this::isFlexibleScheduledStopPoint))
           .map(netexDatasetRepository::getQuayIdByScheduledStopPointId)
@@ -386,19 +657,231 @@ public class DefaultGtfsExporter implements GtfsExporter {
     }
 
     // Persist the quays
-    allQuaysId
-      .stream()
-      .map(stopAreaRepository::getQuayById)
-      .map(stopProducer::produceStopFromQuay)
-      .forEach(gtfsDatasetRepository::saveEntity);
+    mapStopConversion(
+      List.copyOf(allQuaysId),
+      quayId ->
+        stopProducer.produceStopFromQuay(
+          stopAreaRepository.getQuayById(quayId)
+        ),
+      "Error while converting quays"
+    )
+      .forEach(this::saveEntity);
 
     // Retrieve and persist all the stop places that contain the quays
-    allQuaysId
+    List<StopPlace> stopPlaces = allQuaysId
       .stream()
       .map(stopAreaRepository::getStopPlaceByQuayId)
       .distinct()
-      .map(stopProducer::produceStopFromStopPlace)
-      .forEach(gtfsDatasetRepository::saveEntity);
+      .toList();
+    mapStopConversion(
+      stopPlaces,
+      stopProducer::produceStopFromStopPlace,
+      "Error while converting stop places"
+    )
+      .forEach(this::saveEntity);
+  }
+
+  /**
+   * Save an entity in the GTFS dataset repository and count it for the export listener.
+   */
+  private void saveEntity(Object entity) {
+    gtfsDatasetRepository.saveEntity(entity);
+    GtfsEntityType entityType = getEntityType(entity);
+    if (entityType != null) {
+      countEntities(entityType, 1);
+    }
+    if (++entitiesSinceHeapSample == HEAP_SAMPLING_INTERVAL) {
+      entitiesSinceHeapSample = 0;
+      sampleHeapUsage();
+    }
+  }
+
+  private static GtfsEntityType getEntityType(Object entity) {
+    if (entity instanceof StopTime) {
+      return GtfsEntityType.STOP_TIME;
+    }
+    if (entity instanceof Trip) {
+      return GtfsEntityType.TRIP;
+    }
+    if (entity instanceof ServiceCalendarDate) {
+      return GtfsEntityType.CALENDAR_DATE;
+    }
+    if (entity instanceof Stop) {
+      return GtfsEntityType.STOP;
+    }
+    if (entity instanceof Route) {
+      return GtfsEntityType.ROUTE;
+    }
+    if (entity instanceof ServiceCalendar) {
+      return GtfsEntityType.CALENDAR;
+    }
+    if (entity instanceof Transfer) {
+      return GtfsEntityType.TRANSFER;
+    }
+    if (entity instanceof Agency) {
+      return GtfsEntityType.AGENCY;
+    }
+    return null;
+  }
+
+  private void countEntities(GtfsEntityType entityType, long count) {
+    entityCounts[entityType.ordinal()] += count;
+  }
+
+  private Map<GtfsEntityType, Long> getEntityCounts() {
+    Map<GtfsEntityType, Long> counts = new EnumMap<>(GtfsEntityType.class);
+    for (GtfsEntityType entityType : GtfsEntityType.values()) {
+      counts.put(entityType, entityCounts[entityType.ordinal()]);
+    }
+    return Collections.unmodifiableMap(counts);
+  }
+
+  private void runPhase(GtfsExportPhase phase, Runnable action) {
+    runPhase(
+      phase,
+      () -> {
+        action.run();
+        return null;
+      }
+    );
+  }
+
+  /**
+   * Run a phase of the export, report its duration and peak heap usage to the export listener and emit a flight
+   * recorder event.
+   * The heap usage is sampled at the start and at the end of the phase, every {@link #HEAP_SAMPLING_INTERVAL} saved
+   * entities and after each file written to the GTFS archive. The peak usage counters of the memory pools are
+   * JVM-wide, so they are not reset: this would affect the readings of concurrent exports.
+   * The heap is not sampled if no listener is set.
+   */
+  private <T> T runPhase(GtfsExportPhase phase, Supplier<T> action) {
+    boolean monitored = exportListener != GtfsExportListener.NONE;
+    if (monitored) {
+      heapPools = getHeapMemoryPools();
+      peakHeapUsage = 0;
+      sampleHeapUsage();
+    }
+    ExportPhaseEvent event = new ExportPhaseEvent();
+    event.begin();
+    long start = System.nanoTime();
+    try {
+      T result = action.get();
+      event.complete(codespace, phase);
+      if (monitored) {
+        Duration duration = Duration.ofNanos(System.nanoTime() - start);
+        sampleHeapUsage();
+        exportListener.phaseCompleted(phase, duration, peakHeapUsage);
+      }
+      return result;
+    } finally {
+      heapPools = List.of();
+    }
+  }
+
+  /**
+   * Update the peak heap usage of the current phase with the current usage of the heap memory pools.
+   * This does nothing outside of a monitored phase.
+   */
+  private void sampleHeapUsage() {
+    long heapUsage = 0;
+    for (MemoryPoolMXBean heapPool : heapPools) {
+      heapUsage += heapPool.getUsage().getUsed();
+    }
+    peakHeapUsage = Math.max(peakHeapUsage, heapUsage);
+  }
+
+  private void closeOnFailure(Runnable export) {
+    closeOnFailure(() -> {
+      export.run();
+      return null;
+    });
+  }
+
+  /**
+   * Run an export and close the GTFS dataset repository if the export fails, so that the resources it holds, for
+   * example the spool files of a {@link org.entur.netex.gtfs.export.repository.StreamingGtfsRepository}, are released.
+   * When the export succeeds, these resources are released by the serialization of the GTFS archive.
+   */
+  private <T> T closeOnFailure(Supplier<T> export) {
+    try {
+      return export.get();
+    } catch (RuntimeException e) {
+      if (gtfsDatasetRepository instanceof Closeable closeable) {
+        try {
+          closeable.close();
+        } catch (IOException closeException) {
+          e.addSuppressed(closeException);
+        }
+      }
+      throw e;
+    }
+  }
+
+  private static List<MemoryPoolMXBean> getHeapMemoryPools() {
+    return ManagementFactory
+      .getMemoryPoolMXBeans()
+      .stream()
+      .filter(memoryPool -> memoryPool.getType() == MemoryType.HEAP)
+      .filter(MemoryPoolMXBean::isValid)
+      .toList();
+  }
+
+  private List<String> getScheduledStopPointIds(String journeyPatternId) {
+    return netexDatasetRepository
+      .getJourneyPatternById(journeyPatternId)
+      .getPointsInSequence()
+      .getPointInJourneyPatternOrStopPointInJourneyPatternOrTimingPointInJourneyPattern()
+      .stream()
+      .map(stopPointInJourneyPattern ->
+        (
+          (StopPointInJourneyPattern) stopPointInJourneyPattern
+        ).getScheduledStopPointRef()
+          .getValue()
+          .getRef()
+      )
+      .toList();
+  }
+
+  /**
+   * Apply a stop conversion step to a list of elements and return the results in the same order.
+   * The elements are processed in batches on the stop conversion executor if it is set, sequentially otherwise.
+   * In both cases the results, and therefore the GTFS dataset, are identical.
+   */
+  private <T, R> List<R> mapStopConversion(
+    List<T> elements,
+    Function<T, R> mapper,
+    String errorMessage
+  ) {
+    if (stopConversionExecutor == null) {
+      return elements.stream().map(mapper).toList();
+    }
+    List<CompletableFuture<List<R>>> convertedBatches = new ArrayList<>();
+    for (int i = 0; i < elements.size(); i += STOP_CONVERSION_BATCH_SIZE) {
+      List<T> batch = elements.subList(
+        i,
+        Math.min(i + STOP_CONVERSION_BATCH_SIZE, elements.size())
+      );
+      convertedBatches.add(
+        CompletableFuture.supplyAsync(
+          () -> batch.stream().map(mapper).toList(),
+          stopConversionExecutor
+        )
+      );
+    }
+    try {
+      List<R> results = new ArrayList<>(elements.size());
+      for (CompletableFuture<List<R>> convertedBatch : convertedBatches) {
+        results.addAll(convertedBatch.join());
+      }
+      return results;
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new GtfsExportException(errorMessage, e.getCause());
+    } finally {
+      convertedBatches.forEach(convertedBatch -> convertedBatch.cancel(false));
+    }
   }
 
   /**
@@ -455,6 +938,18 @@ public class DefaultGtfsExporter implements GtfsExporter {
     return false;
   }
 
+  /**
+   * Return the NeTEx dataset loader used by the current conversion.
+   * The default loader is created on first use, so that no NeTEx parser is built for an exporter that is given a
+   * shared loader.
+   */
+  private NetexDatasetLoader getNetexDatasetLoader() {
+    if (netexDatasetLoader == null) {
+      netexDatasetLoader = new DefaultNetexDatasetLoader();
+    }
+    return netexDatasetLoader;
+  }
+
   protected final String getCodespace() {
     return codespace;
   }
@@ -524,4 +1019,84 @@ public class DefaultGtfsExporter implements GtfsExporter {
   protected final void setStopProducer(StopProducer stopProducer) {
     this.stopProducer = stopProducer;
   }
+
+  /**
+   * Convert the NeTEx lines concurrently on the given executor, with twice as many lines in flight as the executor
+   * runs concurrently.
+   * The parallelism of the executor is determined by {@link ExecutorUtil#getParallelism(Executor)}.
+   * @param routeConversionExecutor the executor, or null for converting the lines sequentially (default).
+   * @see #setRouteConversionExecutor(Executor, int)
+   */
+  protected final void setRouteConversionExecutor(
+    Executor routeConversionExecutor
+  ) {
+    setRouteConversionExecutor(
+      routeConversionExecutor,
+      2 * ExecutorUtil.getParallelism(routeConversionExecutor)
+    );
+  }
+
+  /**
+   * Convert the NeTEx lines concurrently on the given executor.
+   * The producers, the GTFS service repository, the GTFS dataset repository and the stop area repository must then be
+   * thread-safe, which is the case for the default implementations.
+   * {@link org.entur.netex.gtfs.export.stop.DefaultStopAreaRepository} serializes the calls to its quay and stop place
+   * fetchers, which therefore do not need to be thread-safe.
+   * The entities produced for a line are buffered until all the previous lines are saved. Bounding the number of lines
+   * in flight bounds the memory used by these buffers.
+   * The executor is not shut down by the exporter.
+   * @param routeConversionExecutor the executor, or null for converting the lines sequentially (default).
+   * @param maxLinesInFlight        the maximum number of lines converted or being converted but not yet saved.
+   */
+  protected final void setRouteConversionExecutor(
+    Executor routeConversionExecutor,
+    int maxLinesInFlight
+  ) {
+    if (maxLinesInFlight < 1) {
+      throw new IllegalArgumentException(
+        "The maximum number of lines in flight must be positive"
+      );
+    }
+    this.routeConversionExecutor = routeConversionExecutor;
+    this.maxLinesInFlight = maxLinesInFlight;
+  }
+
+  /**
+   * Convert the quays and stop places concurrently on the given executor, and look up the quays used by the
+   * journey patterns concurrently.
+   * The stop producer and the stop area repository must then be thread-safe, which is the case for the default
+   * implementations. {@link org.entur.netex.gtfs.export.stop.DefaultStopAreaRepository} serializes the calls to its
+   * quay and stop place fetchers, which therefore do not need to be thread-safe.
+   * The stops are saved in the same order as in a sequential conversion, so the GTFS dataset is identical.
+   * The executor is not shut down by the exporter.
+   * @param stopConversionExecutor the executor, or null for converting the stops sequentially (default).
+   */
+  protected final void setStopConversionExecutor(
+    Executor stopConversionExecutor
+  ) {
+    this.stopConversionExecutor = stopConversionExecutor;
+  }
+
+  /**
+   * Report the progress of the export to the given listener: duration and peak heap usage of each phase, number of
+   * converted entities by type and size of each file in the GTFS archive.
+   * @param exportListener the listener, or {@link GtfsExportListener#NONE} for no reporting (default).
+   * @see GtfsExportPhase
+   */
+  protected final void setExportListener(GtfsExportListener exportListener) {
+    this.exportListener = Objects.requireNonNull(exportListener);
+  }
+
+  /**
+   * Encode the services defined by a list of dates as a weekly pattern in calendar.txt plus the minimal list of
+   * exceptions in calendar_dates.txt, whenever this produces fewer rows.
+   * @param compressServiceCalendars true for compressing the service calendars, false for listing every date in
+   *                                 calendar_dates.txt (default).
+   * @see CalendarEncodingPlanner
+   */
+  protected final void setCompressServiceCalendars(
+    boolean compressServiceCalendars
+  ) {
+    this.compressServiceCalendars = compressServiceCalendars;
+  }
 }
@@ -0,0 +1,154 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+import org.entur.netex.gtfs.export.loader.NetexDatasetLoader;
+import org.entur.netex.gtfs.export.loader.SharedNetexDatasetLoader;
+import org.entur.netex.gtfs.export.repository.DefaultGtfsRepository;
+import org.entur.netex.gtfs.export.repository.GtfsDatasetRepository;
+import org.entur.netex.gtfs.export.stop.StopAreaRepository;
+import org.entur.netex.gtfs.export.stop.StopAreaRepositoryFactory;
+
+/**
+ * A GTFS exporter factory that creates {@link DefaultGtfsExporter} instances sharing their NeTEx dataset loader.
+ * Building a NeTEx parser is costly compared to the conversion of a small dataset. By default all the exporters share a
+ * {@link SharedNetexDatasetLoader}, which unmarshals the documents with a single JAXB context and can be used by
+ * concurrent conversions. Another thread-safe loader, such as
+ * {@link org.entur.netex.gtfs.export.loader.ParallelNetexDatasetLoader}, can be set with
+ * {@link #setNetexDatasetLoader(NetexDatasetLoader)}.
+ * Each exporter is given a new GTFS dataset repository and the current stop area repository, so that a refresh of a
+ * {@link StopAreaRepositoryFactory} applies to the next conversion.
+ * The producers and the conversion options are customized by overriding
+ * {@link #newGtfsExporter(String, StopAreaRepository, GtfsDatasetRepository, boolean)}.
+ * The factory is thread-safe.
+ */
+public class DefaultGtfsExporterFactory implements GtfsExporterFactory {
+
+  private final Supplier<StopAreaRepository> stopAreaRepositorySupplier;
+  private final boolean generateStaySeatedTransfer;
+
+  private volatile NetexDatasetLoader netexDatasetLoader;
+  private volatile Supplier<GtfsDatasetRepository> gtfsDatasetRepositorySupplier;
+
+  /**
+   * @param stopAreaRepository the stop area repository shared by all exporters.
+   * @param generateStaySeatedTransfer true if stay-seated transfers should be exported.
+   */
+  public DefaultGtfsExporterFactory(
+    StopAreaRepository stopAreaRepository,
+    boolean generateStaySeatedTransfer
+  ) {
+    this(() -> stopAreaRepository, generateStaySeatedTransfer);
+  }
+
+  /**
+   * @param stopAreaRepositoryFactory the factory providing the stop area repository to each new exporter.
+   * @param generateStaySeatedTransfer true if stay-seated transfers should be exported.
+   */
+  public DefaultGtfsExporterFactory(
+    StopAreaRepositoryFactory stopAreaRepositoryFactory,
+    boolean generateStaySeatedTransfer
+  ) {
+    this(
+      stopAreaRepositoryFactory::getStopAreaRepository,
+      generateStaySeatedTransfer
+    );
+  }
+
+  private DefaultGtfsExporterFactory(
+    Supplier<StopAreaRepository> stopAreaRepositorySupplier,
+    boolean generateStaySeatedTransfer
+  ) {
+    this.stopAreaRepositorySupplier = stopAreaRepositorySupplier;
+    this.generateStaySeatedTransfer = generateStaySeatedTransfer;
+    this.netexDatasetLoader = new SharedNetexDatasetLoader();
+    this.gtfsDatasetRepositorySupplier = DefaultGtfsRepository::new;
+  }
+
+  @Override
+  public GtfsExporter createGtfsExporter(String codespace) {
+    return createExporter(Objects.requireNonNull(codespace));
+  }
+
+  @Override
+  public GtfsExporter createStopExporter() {
+    return createExporter(null);
+  }
+
+  private DefaultGtfsExporter createExporter(String codespace) {
+    DefaultGtfsExporter gtfsExporter = newGtfsExporter(
+      codespace,
+      stopAreaRepositorySupplier.get(),
+      gtfsDatasetRepositorySupplier.get(),
+      generateStaySeatedTransfer
+    );
+    gtfsExporter.setNetexDatasetLoader(netexDatasetLoader);
+    return gtfsExporter;
+  }
+
+  /**
+   * Create the exporter for a single conversion.
+   * Subclasses can override this method for returning a subclass of {@link DefaultGtfsExporter} with custom producers
+   * or conversion options. The NeTEx dataset loader of the returned exporter is replaced by the shared loader.
+   *
+   * @param codespace the codespace of the exported dataset, or null for a stop-only export.
+   * @param stopAreaRepository the stop area repository.
+   * @param gtfsDatasetRepository a new GTFS dataset repository.
+   * @param generateStaySeatedTransfer true if stay-seated transfers should be exported.
+   * @return a new GTFS exporter.
+   */
+  protected DefaultGtfsExporter newGtfsExporter(
+    String codespace,
+    StopAreaRepository stopAreaRepository,
+    GtfsDatasetRepository gtfsDatasetRepository,
+    boolean generateStaySeatedTransfer
+  ) {
+    return new DefaultGtfsExporter(
+      codespace,
+      stopAreaRepository,
+      gtfsDatasetRepository,
+      generateStaySeatedTransfer
+    );
+  }
+
+  /**
+   * Share a single NeTEx dataset loader between all exporters.
+   * The loader must be thread-safe if exporters created by this factory run concurrently.
+   * @param netexDatasetLoader the shared loader. Default: {@link SharedNetexDatasetLoader}.
+   */
+  protected final void setNetexDatasetLoader(
+    NetexDatasetLoader netexDatasetLoader
+  ) {
+    this.netexDatasetLoader = Objects.requireNonNull(netexDatasetLoader);
+  }
+
+  /**
+   * Set the supplier of the GTFS dataset repository given to each new exporter.
+   * @param gtfsDatasetRepositorySupplier the supplier, for example {@code StreamingGtfsRepository::new}. It must return
+   *                                      a new repository on each call. Default: {@link DefaultGtfsRepository}.
+   */
+  protected final void setGtfsDatasetRepositorySupplier(
+    Supplier<GtfsDatasetRepository> gtfsDatasetRepositorySupplier
+  ) {
+    this.gtfsDatasetRepositorySupplier =
+      Objects.requireNonNull(gtfsDatasetRepositorySupplier);
+  }
+}
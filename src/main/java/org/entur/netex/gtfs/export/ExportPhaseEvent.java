@@ -0,0 +1,55 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.entur.netex.gtfs.export.monitoring.GtfsExportPhase;
+
+/**
+ * Flight recorder event emitted at the end of each phase of a GTFS export.
+ */
+@Name("org.entur.netex.gtfs.ExportPhase")
+@Label("GTFS Export Phase")
+@Category("NeTEx to GTFS")
+@Description(
+  "A phase of the conversion of a NeTEx dataset into a GTFS dataset"
+)
+@StackTrace(false)
+class ExportPhaseEvent extends Event {
+
+  @Label("Codespace")
+  String codespace;
+
+  @Label("Phase")
+  String phase;
+
+  void complete(String codespace, GtfsExportPhase phase) {
+    end();
+    if (shouldCommit()) {
+      this.codespace = codespace;
+      this.phase = phase.name();
+      commit();
+    }
+  }
+}
@@ -18,7 +18,13 @@
 
 package org.entur.netex.gtfs.export;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.entur.netex.gtfs.export.exception.GtfsSerializationException;
 
 /**
  * Entry point class for generating a GTFS dataset from a NeTEx dataset
@@ -36,4 +42,65 @@ public interface GtfsExporter {
    * @return a GTFS ZIP archive containing all stops.
    */
   InputStream convertStopsToGtfs();
+
+  /**
+   * Convert a Netex timetable dataset into a GTFS dataset and write the GTFS archive to an output stream.
+   * The output stream is not closed.
+   * @param netexTimetableDataset a ZIP archive containing a NeTEx timetable dataset.
+   * @param gtfsArchive the stream to which the GTFS ZIP archive is written.
+   */
+  default void convertTimetablesToGtfs(
+    InputStream netexTimetableDataset,
+    OutputStream gtfsArchive
+  ) {
+    try (InputStream gtfs = convertTimetablesToGtfs(netexTimetableDataset)) {
+      gtfs.transferTo(gtfsArchive);
+    } catch (IOException e) {
+      throw new GtfsSerializationException(
+        "Error while writing the GTFS dataset",
+        e
+      );
+    }
+  }
+
+  /**
+   * Convert a Netex timetable dataset stored on the file system into a GTFS dataset written to the file system.
+   * @param netexTimetableDataset the path to a ZIP archive containing a NeTEx timetable dataset.
+   * @param gtfsArchive the path to the GTFS ZIP archive. The file is created or overwritten.
+   */
+  default void convertTimetablesToGtfs(
+    Path netexTimetableDataset,
+    Path gtfsArchive
+  ) {
+    try (
+      InputStream netex = Files.newInputStream(netexTimetableDataset);
+      OutputStream gtfs = new BufferedOutputStream(
+        Files.newOutputStream(gtfsArchive)
+      )
+    ) {
+      convertTimetablesToGtfs(netex, gtfs);
+    } catch (IOException e) {
+      throw new GtfsSerializationException(
+        "Error while writing the GTFS dataset " + gtfsArchive,
+        e
+      );
+    }
+  }
+
+  /**
+   * Export the stop area repository to GTFS and write the GTFS archive to an output stream. No timetable data is
+   * exported.
+   * The output stream is not closed.
+   * @param gtfsArchive the stream to which the GTFS ZIP archive is written.
+   */
+  default void convertStopsToGtfs(OutputStream gtfsArchive) {
+    try (InputStream gtfs = convertStopsToGtfs()) {
+      gtfs.transferTo(gtfsArchive);
+    } catch (IOException e) {
+      throw new GtfsSerializationException(
+        "Error while writing the GTFS dataset",
+        e
+      );
+    }
+  }
 }
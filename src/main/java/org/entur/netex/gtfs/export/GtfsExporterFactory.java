@@ -0,0 +1,41 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export;
+
+/**
+ * Factory for creating GTFS exporters.
+ * A GTFS exporter holds the NeTEx and GTFS datasets of a single conversion and cannot be reused. A factory creates a
+ * new exporter for each conversion while sharing the setup that does not depend on the converted dataset.
+ */
+public interface GtfsExporterFactory {
+  /**
+   * Create a GTFS exporter for a single conversion of the timetable dataset of a codespace.
+   *
+   * @param codespace the codespace of the exported dataset.
+   * @return a new GTFS exporter.
+   */
+  GtfsExporter createGtfsExporter(String codespace);
+
+  /**
+   * Create a GTFS exporter for a single export of the stop area repository, without timetable data.
+   *
+   * @return a new GTFS exporter.
+   */
+  GtfsExporter createStopExporter();
+}
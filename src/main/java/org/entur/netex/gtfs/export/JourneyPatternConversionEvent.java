@@ -0,0 +1,68 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event emitted when the production of the shape or of the trips and stop times of a journey pattern
+ * takes longer than the event threshold.
+ */
+@Name("org.entur.netex.gtfs.JourneyPatternConversion")
+@Label("Slow Journey Pattern Conversion")
+@Category("NeTEx to GTFS")
+@Description(
+  "Production of the shape or of the trips and stop times of a journey pattern exceeding the threshold"
+)
+@StackTrace(false)
+@Threshold("10 ms")
+class JourneyPatternConversionEvent extends Event {
+
+  static final String STEP_SHAPE = "shape";
+  static final String STEP_STOP_TIMES = "trips and stop times";
+
+  @Label("Journey Pattern")
+  String journeyPatternId;
+
+  @Label("Step")
+  String step;
+
+  @Label("Service Journeys")
+  int serviceJourneyCount;
+
+  void complete(
+    String journeyPatternId,
+    String step,
+    int serviceJourneyCount
+  ) {
+    end();
+    if (shouldCommit()) {
+      this.journeyPatternId = journeyPatternId;
+      this.step = step;
+      this.serviceJourneyCount = serviceJourneyCount;
+      commit();
+    }
+  }
+}
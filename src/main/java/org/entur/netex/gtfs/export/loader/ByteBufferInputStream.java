@@ -0,0 +1,68 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.loader;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream reading the remaining content of a byte buffer.
+ * It is used to read a memory-mapped NeTEx archive without copying it into the Java heap.
+ */
+final class ByteBufferInputStream extends InputStream {
+
+  private final ByteBuffer byteBuffer;
+
+  ByteBufferInputStream(ByteBuffer byteBuffer) {
+    this.byteBuffer = byteBuffer;
+  }
+
+  @Override
+  public int read() {
+    if (!byteBuffer.hasRemaining()) {
+      return -1;
+    }
+    return byteBuffer.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if (len == 0) {
+      return 0;
+    }
+    if (!byteBuffer.hasRemaining()) {
+      return -1;
+    }
+    int count = Math.min(len, byteBuffer.remaining());
+    byteBuffer.get(b, off, count);
+    return count;
+  }
+
+  @Override
+  public long skip(long n) {
+    int count = (int) Math.max(0, Math.min(n, byteBuffer.remaining()));
+    byteBuffer.position(byteBuffer.position() + count);
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return byteBuffer.remaining();
+  }
+}
@@ -21,18 +21,56 @@ package org.entur.netex.gtfs.export.loader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.Objects;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import org.entur.netex.NetexParser;
 import org.entur.netex.gtfs.export.exception.NetexParsingException;
 import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
 
+/**
+ * NeTEx dataset loader parsing the entries of the archive one after the other.
+ * By default each entry is copied into a byte array before being parsed. The entries can instead be streamed to the
+ * parser, see {@link NetexArchiveReadMode}, which avoids holding a whole uncompressed document in memory next to its
+ * parsed content.
+ */
 public class DefaultNetexDatasetLoader implements NetexDatasetLoader {
 
   protected final NetexParser netexParser;
+  private final NetexArchiveReadMode readMode;
 
   public DefaultNetexDatasetLoader() {
-    this.netexParser = new NetexParser();
+    this(new NetexParser());
+  }
+
+  /**
+   * Create a loader that parses the NeTEx documents with the given parser.
+   * This makes it possible to share a parser, and its JAXB setup, between loaders. The loader has no other state: it
+   * can be used for several datasets, and concurrently if the parser is thread-safe.
+   *
+   * @param netexParser the NeTEx parser.
+   */
+  public DefaultNetexDatasetLoader(NetexParser netexParser) {
+    this(netexParser, NetexArchiveReadMode.BUFFERED);
+  }
+
+  /**
+   * Create a loader that parses the NeTEx documents with the given parser and reads the archive in the given mode.
+   *
+   * @param netexParser the NeTEx parser.
+   * @param readMode how the entries of the archive are read.
+   */
+  public DefaultNetexDatasetLoader(
+    NetexParser netexParser,
+    NetexArchiveReadMode readMode
+  ) {
+    this.netexParser = netexParser;
+    this.readMode = Objects.requireNonNull(readMode);
   }
 
   @Override
@@ -42,6 +80,67 @@ public class DefaultNetexDatasetLoader implements NetexDatasetLoader {
   ) {
     try (ZipInputStream zipInputStream = new ZipInputStream(timetableDataset)) {
       parseDataset(zipInputStream, netexDatasetRepository);
+      netexDatasetRepository.invalidate();
+    } catch (IOException e) {
+      throw new NetexParsingException(
+        "Error while parsing the NeTEx timetable dataset",
+        e
+      );
+    }
+  }
+
+  @Override
+  public void load(
+    Path timetableDataset,
+    NetexDatasetRepository netexDatasetRepository
+  ) {
+    if (readMode == NetexArchiveReadMode.BUFFERED) {
+      NetexDatasetLoader.super.load(timetableDataset, netexDatasetRepository);
+    } else if (readMode == NetexArchiveReadMode.MEMORY_MAPPED) {
+      loadMappedFile(timetableDataset, netexDatasetRepository);
+    } else {
+      loadZipFile(timetableDataset, netexDatasetRepository);
+    }
+  }
+
+  private void loadMappedFile(
+    Path timetableDataset,
+    NetexDatasetRepository netexDatasetRepository
+  ) {
+    try (FileChannel fileChannel = FileChannel.open(timetableDataset)) {
+      if (fileChannel.size() > Integer.MAX_VALUE) {
+        // a single mapping is limited to 2 GB
+        loadZipFile(timetableDataset, netexDatasetRepository);
+        return;
+      }
+      MappedByteBuffer mappedArchive = fileChannel.map(
+        FileChannel.MapMode.READ_ONLY,
+        0,
+        fileChannel.size()
+      );
+      try (
+        ZipInputStream zipInputStream = new ZipInputStream(
+          new ByteBufferInputStream(mappedArchive)
+        )
+      ) {
+        parseDataset(zipInputStream, netexDatasetRepository);
+      }
+      netexDatasetRepository.invalidate();
+    } catch (IOException e) {
+      throw new NetexParsingException(
+        "Error while parsing the NeTEx timetable dataset",
+        e
+      );
+    }
+  }
+
+  private void loadZipFile(
+    Path timetableDataset,
+    NetexDatasetRepository netexDatasetRepository
+  ) {
+    try (ZipFile zipFile = new ZipFile(timetableDataset.toFile())) {
+      parseDataset(zipFile, netexDatasetRepository);
+      netexDatasetRepository.invalidate();
     } catch (IOException e) {
       throw new NetexParsingException(
         "Error while parsing the NeTEx timetable dataset",
@@ -52,6 +151,8 @@ public class DefaultNetexDatasetLoader implements NetexDatasetLoader {
 
   /**
    * Parse a zip file containing a NeTEx archive.
+   * In {@link NetexArchiveReadMode#BUFFERED} mode each entry is copied into a byte array first, otherwise it is streamed
+   * to the parser.
    *
    * @param zipInputStream a stream on a NeTEx zip archive.
    * @param netexDatasetRepository the NeTEx dataset repository to be updated with the content of the NeTEx archive.
@@ -63,12 +164,43 @@ public class DefaultNetexDatasetLoader implements NetexDatasetLoader {
   ) throws IOException {
     ZipEntry zipEntry = zipInputStream.getNextEntry();
     while (zipEntry != null) {
-      byte[] allBytes = zipInputStream.readAllBytes();
-      netexParser.parse(
-        new ByteArrayInputStream(allBytes),
-        netexDatasetRepository.getIndex()
-      );
+      if (!zipEntry.isDirectory()) {
+        NetexEntryLoadEvent event = new NetexEntryLoadEvent();
+        event.begin();
+        InputStream entry = readMode == NetexArchiveReadMode.BUFFERED
+          ? new ByteArrayInputStream(zipInputStream.readAllBytes())
+          : new NonClosingInputStream(zipInputStream);
+        netexParser.parse(entry, netexDatasetRepository.getIndex());
+        // the size of a streamed entry is known once the entry has been read
+        event.complete(zipEntry.getName(), zipEntry.getSize());
+      }
       zipEntry = zipInputStream.getNextEntry();
     }
   }
+
+  /**
+   * Parse a NeTEx archive opened as a zip file.
+   * The entries are streamed from the file to the parser, in the order of the archive central directory.
+   *
+   * @param zipFile a NeTEx zip archive.
+   * @param netexDatasetRepository the NeTEx dataset repository to be updated with the content of the NeTEx archive.
+   * @throws IOException if the zip file cannot be read.
+   */
+  protected void parseDataset(
+    ZipFile zipFile,
+    NetexDatasetRepository netexDatasetRepository
+  ) throws IOException {
+    Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+    while (zipEntries.hasMoreElements()) {
+      ZipEntry zipEntry = zipEntries.nextElement();
+      if (!zipEntry.isDirectory()) {
+        NetexEntryLoadEvent event = new NetexEntryLoadEvent();
+        event.begin();
+        try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+          netexParser.parse(inputStream, netexDatasetRepository.getIndex());
+        }
+        event.complete(zipEntry.getName(), zipEntry.getSize());
+      }
+    }
+  }
 }
@@ -0,0 +1,41 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.loader;
+
+/**
+ * How {@link DefaultNetexDatasetLoader} reads the entries of a NeTEx archive.
+ */
+public enum NetexArchiveReadMode {
+  /**
+   * Copy each entry into a byte array before parsing it.
+   * An archive stored on the file system is read as a stream.
+   */
+  BUFFERED,
+  /**
+   * Stream each entry to the parser without copying it.
+   * An archive stored on the file system is opened as a {@link java.util.zip.ZipFile}.
+   */
+  STREAMED,
+  /**
+   * Stream each entry to the parser without copying it.
+   * An archive stored on the file system is memory-mapped, so that its compressed content is kept out of the Java heap.
+   * Archives larger than 2 GB cannot be mapped in one piece and are opened as a {@link java.util.zip.ZipFile}.
+   */
+  MEMORY_MAPPED
+}
@@ -18,7 +18,11 @@
 
 package org.entur.netex.gtfs.export.loader;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.entur.netex.gtfs.export.exception.NetexParsingException;
 import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
 
 /**
@@ -27,6 +31,7 @@ import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
 public interface NetexDatasetLoader {
   /**
    * Load a NeTEX dataset archive into an in-memory repository
+   * The repository is invalidated once the dataset is loaded, see {@link NetexDatasetRepository#invalidate()}.
    * @param timetableDataset a ZIP file containing the NeTEx dataset
    * @param netexDatasetRepository an in-memory repository containing the NeTEx entities.
    */
@@ -34,4 +39,25 @@ public interface NetexDatasetLoader {
     InputStream timetableDataset,
     NetexDatasetRepository netexDatasetRepository
   );
+
+  /**
+   * Load a NeTEX dataset archive stored on the file system into an in-memory repository.
+   * The default implementation reads the file as a stream. Implementations can override this method to take advantage
+   * of random access to the archive.
+   * @param timetableDataset the path to a ZIP file containing the NeTEx dataset
+   * @param netexDatasetRepository an in-memory repository containing the NeTEx entities.
+   */
+  default void load(
+    Path timetableDataset,
+    NetexDatasetRepository netexDatasetRepository
+  ) {
+    try (InputStream inputStream = Files.newInputStream(timetableDataset)) {
+      load(inputStream, netexDatasetRepository);
+    } catch (IOException e) {
+      throw new NetexParsingException(
+        "Error while reading the NeTEx timetable dataset " + timetableDataset,
+        e
+      );
+    }
+  }
 }
@@ -0,0 +1,54 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.loader;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import java.io.InputStream;
+import javax.xml.transform.stream.StreamSource;
+import org.rutebanken.netex.model.PublicationDeliveryStructure;
+
+/**
+ * Unmarshal NeTEx documents with a JAXB context shared by all the loaders.
+ * The JAXB context is costly to create and thread-safe, whereas an unmarshaller is cheap to create but cannot be used
+ * concurrently: a new unmarshaller is created for each document.
+ */
+final class NetexDocumentUnmarshaller {
+
+  private static final JAXBContext PUBLICATION_DELIVERY_CONTEXT =
+    createJaxbContext();
+
+  private NetexDocumentUnmarshaller() {}
+
+  static PublicationDeliveryStructure unmarshal(InputStream document)
+    throws JAXBException {
+    return PUBLICATION_DELIVERY_CONTEXT
+      .createUnmarshaller()
+      .unmarshal(new StreamSource(document), PublicationDeliveryStructure.class)
+      .getValue();
+  }
+
+  private static JAXBContext createJaxbContext() {
+    try {
+      return JAXBContext.newInstance(PublicationDeliveryStructure.class);
+    } catch (JAXBException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+}
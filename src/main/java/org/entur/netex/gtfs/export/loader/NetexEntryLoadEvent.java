@@ -0,0 +1,55 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.loader;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted each time an entry of a NeTEx archive has been parsed.
+ */
+@Name("org.entur.netex.gtfs.NetexEntryLoad")
+@Label("NeTEx Entry Load")
+@Category("NeTEx to GTFS")
+@Description("Parsing of an XML document of a NeTEx archive")
+@StackTrace(false)
+class NetexEntryLoadEvent extends Event {
+
+  @Label("Entry Name")
+  String entryName;
+
+  @Label("Size")
+  @Description("Uncompressed size of the entry, -1 if unknown")
+  @DataAmount
+  long size;
+
+  void complete(String entryName, long size) {
+    end();
+    if (shouldCommit()) {
+      this.entryName = entryName;
+      this.size = size;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.loader;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * Input stream that ignores calls to {@link #close()}.
+ * The XML parser closes the stream it reads from, this wrapper lets it read the current entry of a
+ * {@link java.util.zip.ZipInputStream} without closing the whole archive. The zip input stream itself signals the end of
+ * the stream at the end of the current entry.
+ */
+final class NonClosingInputStream extends FilterInputStream {
+
+  NonClosingInputStream(InputStream in) {
+    super(in);
+  }
+
+  @Override
+  public void close() {
+    // the underlying stream is closed by its owner
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.loader;
+
+import jakarta.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import org.entur.netex.gtfs.export.exception.NetexParsingException;
+import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.entur.netex.gtfs.export.util.ExecutorUtil;
+import org.entur.netex.index.api.NetexEntitiesIndex;
+import org.entur.netex.loader.parser.NetexDocumentParser;
+import org.rutebanken.netex.model.PublicationDeliveryStructure;
+
+/**
+ * NeTEx dataset loader that unmarshals the XML documents of the archive concurrently.
+ * Unmarshalling dominates the loading time and the documents are independent of each other, so each zip entry is
+ * unmarshalled in its own task on the provided executor.
+ * The NeTEx entities index is not thread-safe: the unmarshalled documents are added to the index one at a time on the
+ * calling thread, in archive order, as with the sequential loader.
+ * At most a fixed number of entries are in flight, that is read or unmarshalled but not yet added to the index. When
+ * the limit is reached, the oldest entry is added to the index before the next one is read. This bounds the memory used
+ * by the buffered entries and by the unmarshalled documents waiting to be indexed.
+ * When reading from a stream, each entry is buffered before being handed over to the executor. When the archive is
+ * loaded from a file, the tasks read their entry directly from the zip file.
+ * The loader unmarshals the documents with the JAXB context shared with {@link SharedNetexDatasetLoader} and does not
+ * use a {@link org.entur.netex.NetexParser}, which parses and indexes a document in a single step.
+ * The executor is owned by the caller and is not shut down by the loader.
+ */
+public class ParallelNetexDatasetLoader implements NetexDatasetLoader {
+
+  private final ExecutorService executorService;
+  private final int maxEntriesInFlight;
+
+  /**
+   * Create a loader that keeps twice as many entries in flight as the executor runs concurrently, so that the
+   * executor stays busy while the calling thread adds documents to the index.
+   * The parallelism of the executor is determined by {@link ExecutorUtil#getParallelism(java.util.concurrent.Executor)}.
+   *
+   * @param executorService the executor on which the zip entries are unmarshalled, for example a bounded thread pool
+   *                        or a virtual thread per task executor.
+   */
+  public ParallelNetexDatasetLoader(ExecutorService executorService) {
+    this(executorService, 2 * ExecutorUtil.getParallelism(executorService));
+  }
+
+  /**
+   * @param executorService    the executor on which the zip entries are unmarshalled, for example a bounded thread pool
+   *                           or a virtual thread per task executor.
+   * @param maxEntriesInFlight the maximum number of entries read or unmarshalled but not yet added to the index.
+   */
+  public ParallelNetexDatasetLoader(
+    ExecutorService executorService,
+    int maxEntriesInFlight
+  ) {
+    if (maxEntriesInFlight < 1) {
+      throw new IllegalArgumentException(
+        "The maximum number of entries in flight must be positive"
+      );
+    }
+    this.executorService = Objects.requireNonNull(executorService);
+    this.maxEntriesInFlight = maxEntriesInFlight;
+  }
+
+  @Override
+  public void load(
+    InputStream timetableDataset,
+    NetexDatasetRepository netexDatasetRepository
+  ) {
+    try (ZipInputStream zipInputStream = new ZipInputStream(timetableDataset)) {
+      parseDataset(zipInputStream, netexDatasetRepository);
+      netexDatasetRepository.invalidate();
+    } catch (IOException e) {
+      throw new NetexParsingException(
+        "Error while parsing the NeTEx timetable dataset",
+        e
+      );
+    }
+  }
+
+  @Override
+  public void load(
+    Path timetableDataset,
+    NetexDatasetRepository netexDatasetRepository
+  ) {
+    try (ZipFile zipFile = new ZipFile(timetableDataset.toFile())) {
+      parseDataset(zipFile, netexDatasetRepository);
+      netexDatasetRepository.invalidate();
+    } catch (IOException e) {
+      throw new NetexParsingException(
+        "Error while parsing the NeTEx timetable dataset",
+        e
+      );
+    }
+  }
+
+  private void parseDataset(
+    ZipInputStream zipInputStream,
+    NetexDatasetRepository netexDatasetRepository
+  ) throws IOException {
+    NetexEntitiesIndex index = netexDatasetRepository.getIndex();
+    Deque<Future<PublicationDeliveryStructure>> documents =
+      new ArrayDeque<>();
+    try {
+      ZipEntry zipEntry = zipInputStream.getNextEntry();
+      while (zipEntry != null) {
+        if (!zipEntry.isDirectory()) {
+          if (documents.size() == maxEntriesInFlight) {
+            populateIndex(index, documents.removeFirst());
+          }
+          String entryName = zipEntry.getName();
+          byte[] allBytes = zipInputStream.readAllBytes();
+          documents.addLast(
+            executorService.submit(() ->
+              unmarshal(
+                entryName,
+                allBytes.length,
+                new ByteArrayInputStream(allBytes)
+              )
+            )
+          );
+        }
+        zipEntry = zipInputStream.getNextEntry();
+      }
+      while (!documents.isEmpty()) {
+        populateIndex(index, documents.removeFirst());
+      }
+    } finally {
+      cancel(documents);
+    }
+  }
+
+  private void parseDataset(
+    ZipFile zipFile,
+    NetexDatasetRepository netexDatasetRepository
+  ) {
+    NetexEntitiesIndex index = netexDatasetRepository.getIndex();
+    Deque<Future<PublicationDeliveryStructure>> documents =
+      new ArrayDeque<>();
+    try {
+      Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+      while (zipEntries.hasMoreElements()) {
+        ZipEntry zipEntry = zipEntries.nextElement();
+        if (!zipEntry.isDirectory()) {
+          if (documents.size() == maxEntriesInFlight) {
+            populateIndex(index, documents.removeFirst());
+          }
+          documents.addLast(
+            executorService.submit(() -> {
+              try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+                return unmarshal(
+                  zipEntry.getName(),
+                  zipEntry.getSize(),
+                  inputStream
+                );
+              }
+            })
+          );
+        }
+      }
+      while (!documents.isEmpty()) {
+        populateIndex(index, documents.removeFirst());
+      }
+    } finally {
+      cancel(documents);
+    }
+  }
+
+  private static void populateIndex(
+    NetexEntitiesIndex index,
+    Future<PublicationDeliveryStructure> document
+  ) {
+    try {
+      NetexDocumentParser.parseAndPopulateIndex(index, document.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new NetexParsingException(
+        "Interrupted while parsing the NeTEx timetable dataset",
+        e
+      );
+    } catch (ExecutionException e) {
+      throw new NetexParsingException(
+        "Error while parsing the NeTEx timetable dataset",
+        e.getCause()
+      );
+    }
+  }
+
+  private static void cancel(
+    Collection<Future<PublicationDeliveryStructure>> documents
+  ) {
+    documents.forEach(document -> document.cancel(true));
+  }
+
+  /**
+   * Unmarshal a document of the archive.
+   * The entry load event emitted here covers the unmarshalling on the executor. Adding the document to the index
+   * happens later on the calling thread and is not included.
+   */
+  private static PublicationDeliveryStructure unmarshal(
+    String entryName,
+    long size,
+    InputStream document
+  ) throws JAXBException {
+    NetexEntryLoadEvent event = new NetexEntryLoadEvent();
+    event.begin();
+    PublicationDeliveryStructure publicationDelivery =
+      NetexDocumentUnmarshaller.unmarshal(document);
+    event.complete(entryName, size);
+    return publicationDelivery;
+  }
+}
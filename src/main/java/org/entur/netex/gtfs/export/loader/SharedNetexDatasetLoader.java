@@ -0,0 +1,116 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.loader;
+
+import jakarta.xml.bind.JAXBException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import org.entur.netex.gtfs.export.exception.NetexParsingException;
+import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.entur.netex.index.api.NetexEntitiesIndex;
+import org.entur.netex.loader.parser.NetexDocumentParser;
+
+/**
+ * NeTEx dataset loader that can be shared by concurrent conversions.
+ * A {@link org.entur.netex.NetexParser} holds a single unmarshaller and cannot parse several documents at the same
+ * time. This loader unmarshals each document with a new unmarshaller created from a JAXB context shared by all the
+ * loaders, then adds it to the index of the dataset repository. It has no other state.
+ * The entries are streamed to the unmarshaller without being copied in memory, as in the
+ * {@link NetexArchiveReadMode#STREAMED} mode of {@link DefaultNetexDatasetLoader}.
+ */
+public class SharedNetexDatasetLoader implements NetexDatasetLoader {
+
+  @Override
+  public void load(
+    InputStream timetableDataset,
+    NetexDatasetRepository netexDatasetRepository
+  ) {
+    try (ZipInputStream zipInputStream = new ZipInputStream(timetableDataset)) {
+      ZipEntry zipEntry = zipInputStream.getNextEntry();
+      while (zipEntry != null) {
+        if (!zipEntry.isDirectory()) {
+          NetexEntryLoadEvent event = new NetexEntryLoadEvent();
+          event.begin();
+          parseDocument(
+            new NonClosingInputStream(zipInputStream),
+            netexDatasetRepository.getIndex()
+          );
+          // the size of a streamed entry is known once the entry has been read
+          event.complete(zipEntry.getName(), zipEntry.getSize());
+        }
+        zipEntry = zipInputStream.getNextEntry();
+      }
+      netexDatasetRepository.invalidate();
+    } catch (IOException e) {
+      throw new NetexParsingException(
+        "Error while parsing the NeTEx timetable dataset",
+        e
+      );
+    }
+  }
+
+  @Override
+  public void load(
+    Path timetableDataset,
+    NetexDatasetRepository netexDatasetRepository
+  ) {
+    try (ZipFile zipFile = new ZipFile(timetableDataset.toFile())) {
+      Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+      while (zipEntries.hasMoreElements()) {
+        ZipEntry zipEntry = zipEntries.nextElement();
+        if (!zipEntry.isDirectory()) {
+          NetexEntryLoadEvent event = new NetexEntryLoadEvent();
+          event.begin();
+          try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+            parseDocument(inputStream, netexDatasetRepository.getIndex());
+          }
+          event.complete(zipEntry.getName(), zipEntry.getSize());
+        }
+      }
+      netexDatasetRepository.invalidate();
+    } catch (IOException e) {
+      throw new NetexParsingException(
+        "Error while parsing the NeTEx timetable dataset",
+        e
+      );
+    }
+  }
+
+  private static void parseDocument(
+    InputStream document,
+    NetexEntitiesIndex index
+  ) {
+    try {
+      NetexDocumentParser.parseAndPopulateIndex(
+        index,
+        NetexDocumentUnmarshaller.unmarshal(document)
+      );
+    } catch (JAXBException e) {
+      throw new NetexParsingException(
+        "Error while parsing the NeTEx timetable dataset",
+        e
+      );
+    }
+  }
+}
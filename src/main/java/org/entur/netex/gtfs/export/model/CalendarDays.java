@@ -0,0 +1,274 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A compact set of calendar days.
+ * Days are stored as bits in an array of 64-day words, the first word being identified by its offset in words since the
+ * epoch day 0 (1970-01-01).
+ * Words are aligned on the epoch, so that adding, removing and intersecting two sets of days are done word by word.
+ * Instances are not thread-safe.
+ */
+public final class CalendarDays {
+
+  private static final int BITS_PER_WORD = 64;
+  private static final long[] NO_WORDS = new long[0];
+
+  /**
+   * The epoch day 0 (1970-01-01) is a Thursday.
+   */
+  private static final int EPOCH_DAY_OF_WEEK_INDEX =
+    DayOfWeek.THURSDAY.getValue() - 1;
+
+  /**
+   * Bit masks of the active days in a word, indexed by set of days of week (bit i set for DayOfWeek.of(i + 1)) and by
+   * day of week of the first day of the word (0 for Monday).
+   */
+  private static final long[][] WEEK_PATTERNS = createWeekPatterns();
+
+  private long firstWord;
+  private long[] words;
+
+  public CalendarDays() {
+    this.words = NO_WORDS;
+  }
+
+  public CalendarDays(CalendarDays calendarDays) {
+    this.firstWord = calendarDays.firstWord;
+    this.words = calendarDays.words.clone();
+  }
+
+  public void add(LocalDate date) {
+    long epochDay = date.toEpochDay();
+    long word = wordOf(epochDay);
+    ensureCapacity(word, word);
+    words[(int) (word - firstWord)] |= bitOf(epochDay);
+  }
+
+  public void remove(LocalDate date) {
+    long epochDay = date.toEpochDay();
+    long word = wordOf(epochDay);
+    if (containsWord(word)) {
+      words[(int) (word - firstWord)] &= ~bitOf(epochDay);
+    }
+  }
+
+  public boolean contains(LocalDate date) {
+    long epochDay = date.toEpochDay();
+    long word = wordOf(epochDay);
+    return (
+      containsWord(word) &&
+      (words[(int) (word - firstWord)] & bitOf(epochDay)) != 0
+    );
+  }
+
+  /**
+   * Add the days between two dates (inclusive) that fall on the given days of week.
+   */
+  public void addPeriod(
+    LocalDate startDate,
+    LocalDate endDate,
+    Set<DayOfWeek> daysOfWeek
+  ) {
+    long startDay = startDate.toEpochDay();
+    long endDay = endDate.toEpochDay();
+    if (endDay < startDay || daysOfWeek.isEmpty()) {
+      return;
+    }
+    long[] weekPatterns = WEEK_PATTERNS[toDaysOfWeekIndex(daysOfWeek)];
+    long startWord = wordOf(startDay);
+    long endWord = wordOf(endDay);
+    ensureCapacity(startWord, endWord);
+    for (long word = startWord; word <= endWord; word++) {
+      long mask = weekPatterns[Math.floorMod(
+          word * BITS_PER_WORD + EPOCH_DAY_OF_WEEK_INDEX,
+          7
+        )];
+      if (word == startWord) {
+        mask &= -1L << Math.floorMod(startDay, BITS_PER_WORD);
+      }
+      if (word == endWord) {
+        mask &=
+          -1L >>> (BITS_PER_WORD - 1 - Math.floorMod(endDay, BITS_PER_WORD));
+      }
+      words[(int) (word - firstWord)] |= mask;
+    }
+  }
+
+  /**
+   * Add all the days of another set (union).
+   */
+  public void addAll(CalendarDays other) {
+    if (other.words.length == 0) {
+      return;
+    }
+    ensureCapacity(other.firstWord, other.lastWord());
+    int offset = (int) (other.firstWord - firstWord);
+    for (int i = 0; i < other.words.length; i++) {
+      words[offset + i] |= other.words[i];
+    }
+  }
+
+  /**
+   * Remove all the days of another set (difference).
+   */
+  public void removeAll(CalendarDays other) {
+    long fromWord = Math.max(firstWord, other.firstWord);
+    long toWord = Math.min(lastWord(), other.lastWord());
+    for (long word = fromWord; word <= toWord; word++) {
+      words[(int) (word - firstWord)] &=
+        ~other.words[(int) (word - other.firstWord)];
+    }
+  }
+
+  /**
+   * Keep only the days that are also in another set (intersection).
+   */
+  public void retainAll(CalendarDays other) {
+    for (int i = 0; i < words.length; i++) {
+      long word = firstWord + i;
+      if (other.containsWord(word)) {
+        words[i] &= other.words[(int) (word - other.firstWord)];
+      } else {
+        words[i] = 0;
+      }
+    }
+  }
+
+  public void clear() {
+    words = NO_WORDS;
+    firstWord = 0;
+  }
+
+  public boolean isEmpty() {
+    for (long word : words) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public int size() {
+    int size = 0;
+    for (long word : words) {
+      size += Long.bitCount(word);
+    }
+    return size;
+  }
+
+  /**
+   * Apply an action to each day of the set, in ascending order.
+   */
+  public void forEach(Consumer<LocalDate> action) {
+    for (int i = 0; i < words.length; i++) {
+      long word = words[i];
+      while (word != 0) {
+        int bit = Long.numberOfTrailingZeros(word);
+        action.accept(
+          LocalDate.ofEpochDay((firstWord + i) * BITS_PER_WORD + bit)
+        );
+        word &= word - 1;
+      }
+    }
+  }
+
+  /**
+   * Return the days of the set in ascending order.
+   */
+  public List<LocalDate> toLocalDates() {
+    List<LocalDate> dates = new ArrayList<>(size());
+    forEach(dates::add);
+    return dates;
+  }
+
+  private long lastWord() {
+    return firstWord + words.length - 1;
+  }
+
+  private boolean containsWord(long word) {
+    return word >= firstWord && word <= lastWord();
+  }
+
+  /**
+   * Grow the word array so that it covers the given range of words.
+   */
+  private void ensureCapacity(long fromWord, long toWord) {
+    if (words.length == 0) {
+      firstWord = fromWord;
+      words = new long[Math.toIntExact(toWord - fromWord + 1)];
+      return;
+    }
+    long newFirstWord = Math.min(firstWord, fromWord);
+    long newLastWord = Math.max(lastWord(), toWord);
+    if (newFirstWord != firstWord || newLastWord != lastWord()) {
+      long[] newWords = new long[Math.toIntExact(
+          newLastWord - newFirstWord + 1
+        )];
+      System.arraycopy(
+        words,
+        0,
+        newWords,
+        (int) (firstWord - newFirstWord),
+        words.length
+      );
+      firstWord = newFirstWord;
+      words = newWords;
+    }
+  }
+
+  private static long wordOf(long epochDay) {
+    return Math.floorDiv(epochDay, BITS_PER_WORD);
+  }
+
+  private static long bitOf(long epochDay) {
+    return 1L << Math.floorMod(epochDay, BITS_PER_WORD);
+  }
+
+  private static int toDaysOfWeekIndex(Set<DayOfWeek> daysOfWeek) {
+    int index = 0;
+    for (DayOfWeek dayOfWeek : daysOfWeek) {
+      index |= 1 << (dayOfWeek.getValue() - 1);
+    }
+    return index;
+  }
+
+  private static long[][] createWeekPatterns() {
+    long[][] weekPatterns = new long[1 << 7][7];
+    for (int daysOfWeekIndex = 0; daysOfWeekIndex < 1 << 7; daysOfWeekIndex++) {
+      for (int firstDayOfWeek = 0; firstDayOfWeek < 7; firstDayOfWeek++) {
+        long mask = 0;
+        for (int bit = 0; bit < BITS_PER_WORD; bit++) {
+          if ((daysOfWeekIndex & (1 << ((firstDayOfWeek + bit) % 7))) != 0) {
+            mask |= 1L << bit;
+          }
+        }
+        weekPatterns[daysOfWeekIndex][firstDayOfWeek] = mask;
+      }
+    }
+    return weekPatterns;
+  }
+}
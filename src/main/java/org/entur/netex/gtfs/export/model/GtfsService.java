@@ -18,20 +18,23 @@
 
 package org.entur.netex.gtfs.export.model;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
- * A GTFS service representing an operating period and/or a set of explicitly included/excluded dates
+ * A GTFS service representing an operating period and/or a set of explicitly included/excluded dates.
+ * Included and excluded dates are stored as {@link CalendarDays}, with a granularity of one day.
  */
 public class GtfsService {
 
   private final String id;
 
   private ServiceCalendarPeriod serviceCalendarPeriod;
-  private final Set<LocalDateTime> includedDates = new HashSet<>();
-  private final Set<LocalDateTime> excludedDates = new HashSet<>();
+  private final CalendarDays includedDays = new CalendarDays();
+  private final CalendarDays excludedDays = new CalendarDays();
 
   public GtfsService(String id) {
     this.id = id;
@@ -42,19 +45,52 @@ public class GtfsService {
   }
 
   public void addExcludedDate(LocalDateTime date) {
-    excludedDates.add(date);
+    excludedDays.add(date.toLocalDate());
   }
 
   public void addIncludedDate(LocalDateTime date) {
-    includedDates.add(date);
+    includedDays.add(date.toLocalDate());
   }
 
+  /**
+   * Include the days between two dates (inclusive) that fall on the given days of week.
+   */
+  public void addIncludedPeriod(
+    LocalDate startDate,
+    LocalDate endDate,
+    Set<DayOfWeek> daysOfWeek
+  ) {
+    includedDays.addPeriod(startDate, endDate, daysOfWeek);
+  }
+
+  public void addIncludedDays(CalendarDays days) {
+    includedDays.addAll(days);
+  }
+
+  public void addExcludedDays(CalendarDays days) {
+    excludedDays.addAll(days);
+  }
+
+  /**
+   * Return the included dates, in ascending order, at the start of the day.
+   */
   public Set<LocalDateTime> getIncludedDates() {
-    return new HashSet<>(includedDates);
+    return toLocalDateTimes(includedDays);
   }
 
+  /**
+   * Return the excluded dates, in ascending order, at the start of the day.
+   */
   public Set<LocalDateTime> getExcludedDates() {
-    return new HashSet<>(excludedDates);
+    return toLocalDateTimes(excludedDays);
+  }
+
+  public CalendarDays getIncludedDays() {
+    return new CalendarDays(includedDays);
+  }
+
+  public CalendarDays getExcludedDays() {
+    return new CalendarDays(excludedDays);
   }
 
   public ServiceCalendarPeriod getServiceCalendarPeriod() {
@@ -68,10 +104,26 @@ public class GtfsService {
   }
 
   public void removeIncludedDates(Set<LocalDateTime> removedIncludedDates) {
-    includedDates.removeAll(removedIncludedDates);
+    removedIncludedDates.forEach(date ->
+      includedDays.remove(date.toLocalDate())
+    );
+  }
+
+  /**
+   * Remove the excluded dates from the included dates.
+   * Date exclusion has precedence over date inclusion.
+   */
+  public void removeExcludedDatesFromIncludedDates() {
+    includedDays.removeAll(excludedDays);
   }
 
   public void removeAllExcludedDates() {
-    excludedDates.clear();
+    excludedDays.clear();
+  }
+
+  private static Set<LocalDateTime> toLocalDateTimes(CalendarDays days) {
+    Set<LocalDateTime> dates = new LinkedHashSet<>();
+    days.forEach(date -> dates.add(date.atStartOfDay()));
+    return dates;
   }
 }
@@ -18,39 +18,152 @@
 
 package org.entur.netex.gtfs.export.model;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import org.entur.netex.gtfs.export.exception.GtfsExportException;
+import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.ShapePoint;
 
 /**
- * A GTFS shape made of a list of shape points.
- *
+ * A GTFS shape made of a sequence of shape points.
+ * The shape points are stored in primitive arrays and are expanded into {@link ShapePoint} entities only when
+ * requested, typically when the GTFS archive is written.
+ * The arrays may be shared by several shapes and must not be modified.
  */
 public class GtfsShape {
 
+  private final String agencyId;
   private final String id;
-  private final List<ShapePoint> shapePoints;
-  private final Map<Integer, Double> distanceTravelledByStopOrder;
+  private final double[] lats;
+  private final double[] lons;
+  private final double[] distancesTravelled;
+  private final int[] sortedStopOrders;
+  private final double[] distancesTravelledToStops;
+
+  /**
+   * @param agencyId                  the agency id of the shape id.
+   * @param id                        the shape id.
+   * @param lats                      the latitudes of the shape points, in sequence order.
+   * @param lons                      the longitudes of the shape points, in sequence order.
+   * @param distancesTravelled        the distance travelled from the start of the shape to each shape point, in meters.
+   * @param sortedStopOrders          the NeTEx orders of the stops in the JourneyPattern, in ascending order.
+   * @param distancesTravelledToStops the distance travelled to each stop, in the same order as the stop orders.
+   */
+  public GtfsShape(
+    String agencyId,
+    String id,
+    double[] lats,
+    double[] lons,
+    double[] distancesTravelled,
+    int[] sortedStopOrders,
+    double[] distancesTravelledToStops
+  ) {
+    this.agencyId = agencyId;
+    this.id = id;
+    this.lats = lats;
+    this.lons = lons;
+    this.distancesTravelled = distancesTravelled;
+    this.sortedStopOrders = sortedStopOrders;
+    this.distancesTravelledToStops = distancesTravelledToStops;
+  }
 
+  /**
+   * Create a shape from a list of shape points.
+   * The shape points are expected to be sorted by sequence. They are renumbered from 0 when expanded.
+   */
   public GtfsShape(
     String id,
     List<ShapePoint> shapePoints,
     Map<Integer, Double> distanceTravelledByStopOrder
   ) {
     this.id = id;
-    this.shapePoints = shapePoints;
-    this.distanceTravelledByStopOrder = distanceTravelledByStopOrder;
+    this.agencyId = shapePoints.isEmpty()
+      ? null
+      : shapePoints.get(0).getShapeId().getAgencyId();
+    int nbShapePoints = shapePoints.size();
+    this.lats = new double[nbShapePoints];
+    this.lons = new double[nbShapePoints];
+    this.distancesTravelled = new double[nbShapePoints];
+    for (int i = 0; i < nbShapePoints; i++) {
+      ShapePoint shapePoint = shapePoints.get(i);
+      lats[i] = shapePoint.getLat();
+      lons[i] = shapePoint.getLon();
+      distancesTravelled[i] = shapePoint.getDistTraveled();
+    }
+    this.sortedStopOrders =
+      distanceTravelledByStopOrder
+        .keySet()
+        .stream()
+        .mapToInt(Integer::intValue)
+        .sorted()
+        .toArray();
+    this.distancesTravelledToStops = new double[sortedStopOrders.length];
+    for (int i = 0; i < sortedStopOrders.length; i++) {
+      distancesTravelledToStops[i] =
+        distanceTravelledByStopOrder.get(sortedStopOrders[i]);
+    }
   }
 
   public String getId() {
     return id;
   }
 
+  public String getAgencyId() {
+    return agencyId;
+  }
+
+  public int getShapePointCount() {
+    return lats.length;
+  }
+
+  public double getLat(int index) {
+    return lats[index];
+  }
+
+  public double getLon(int index) {
+    return lons[index];
+  }
+
+  public double getDistanceTravelled(int index) {
+    return distancesTravelled[index];
+  }
+
+  /**
+   * Expand the shape into GTFS shape points.
+   * A new list is created on each call.
+   * @return the GTFS shape points, in sequence order.
+   */
   public List<ShapePoint> getShapePoints() {
+    AgencyAndId shapeId = new AgencyAndId(agencyId, id);
+    List<ShapePoint> shapePoints = new ArrayList<>(lats.length);
+    for (int i = 0; i < lats.length; i++) {
+      ShapePoint shapePoint = new ShapePoint();
+      fillShapePoint(i, shapeId, shapePoint);
+      shapePoints.add(shapePoint);
+    }
     return shapePoints;
   }
 
+  /**
+   * Copy a shape point into an existing GTFS shape point, so that the latter can be reused.
+   * @param index the index of the shape point in the shape.
+   * @param shapeId the GTFS id of the shape.
+   * @param shapePoint the GTFS shape point to fill.
+   */
+  public void fillShapePoint(
+    int index,
+    AgencyAndId shapeId,
+    ShapePoint shapePoint
+  ) {
+    shapePoint.setShapeId(shapeId);
+    shapePoint.setSequence(index);
+    shapePoint.setLat(lats[index]);
+    shapePoint.setLon(lons[index]);
+    shapePoint.setDistTraveled(distancesTravelled[index]);
+  }
+
   /**
    * Return the distance travelled on the shape from the start to the stop with the given order.
    * The distance travelled to the first stop in the JourneyPattern is 0 meters.
@@ -60,12 +173,12 @@ public class GtfsShape {
    * @return the distance travelled on the shape from the start to this stop, in meters.
    */
   public double getDistanceTravelledToStop(int order) {
-    Double distance = distanceTravelledByStopOrder.get(order);
-    if (distance == null) {
+    int index = Arrays.binarySearch(sortedStopOrders, order);
+    if (index < 0) {
       throw new GtfsExportException(
         "No travelled distance for stop order " + order + " in shape " + id
       );
     }
-    return distance;
+    return distancesTravelledToStops[index];
   }
 }
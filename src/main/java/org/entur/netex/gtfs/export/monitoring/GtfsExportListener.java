@@ -0,0 +1,67 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.monitoring;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Listener notified of the progress of a GTFS export, for example to publish metrics.
+ * The methods are called from the thread running the export. They should return quickly, since they run as part of
+ * the export.
+ */
+public interface GtfsExportListener {
+  /**
+   * A listener that ignores all notifications.
+   */
+  GtfsExportListener NONE = new GtfsExportListener() {};
+
+  /**
+   * Called at the end of each phase of the export.
+   * @param phase the completed phase.
+   * @param duration the wall-clock duration of the phase.
+   * @param peakHeapUsage the highest heap usage in bytes sampled during the phase, summed over all heap memory pools.
+   *                      The heap is sampled at the start and at the end of the phase and periodically while entities
+   *                      are converted and files are written, so short-lived peaks between two samples are missed.
+   *                      This is measured JVM-wide and includes the memory used by other activities running
+   *                      concurrently in the same JVM.
+   */
+  default void phaseCompleted(
+    GtfsExportPhase phase,
+    Duration duration,
+    long peakHeapUsage
+  ) {}
+
+  /**
+   * Called once the conversion is complete, before the GTFS archive is generated.
+   * Only the entities saved by the exporter itself are counted: entities saved directly in the GTFS dataset
+   * repository by a subclass are not.
+   * @param entityCounts the number of converted entities by type. Types with no converted entity are reported with a
+   *                     count of 0.
+   */
+  default void entitiesConverted(Map<GtfsEntityType, Long> entityCounts) {}
+
+  /**
+   * Called each time a file is added to the GTFS archive.
+   * This is not called if the GTFS dataset repository does not support reporting archive entries.
+   * @param fileName the name of the file in the GTFS archive.
+   * @param size the uncompressed size of the file, in bytes.
+   */
+  default void gtfsFileWritten(String fileName, long size) {}
+}
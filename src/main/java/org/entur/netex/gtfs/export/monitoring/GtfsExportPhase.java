@@ -0,0 +1,54 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.monitoring;
+
+/**
+ * The phases of a GTFS export, in execution order.
+ * A stop-only export goes through the STOPS and SERIALIZATION phases only.
+ */
+public enum GtfsExportPhase {
+  /**
+   * Loading of the NeTEx timetable dataset into memory.
+   */
+  LOADING,
+  /**
+   * Conversion of the authorities referenced by the NeTEx lines into GTFS agencies.
+   */
+  AGENCIES,
+  /**
+   * Conversion of the quays and stop places into GTFS stops.
+   */
+  STOPS,
+  /**
+   * Conversion of the NeTEx lines into GTFS routes, shapes, trips and stop times.
+   */
+  ROUTES,
+  /**
+   * Conversion of the service calendars into GTFS calendars and calendar dates.
+   */
+  SERVICES,
+  /**
+   * Conversion of the service journey interchanges into GTFS transfers.
+   */
+  TRANSFERS,
+  /**
+   * Generation of the GTFS archive.
+   */
+  SERIALIZATION
+}
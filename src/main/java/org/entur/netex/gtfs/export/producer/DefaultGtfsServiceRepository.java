@@ -18,21 +18,25 @@
 
 package org.entur.netex.gtfs.export.producer;
 
-import java.time.DayOfWeek;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.EnumSet;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 import org.apache.commons.lang3.StringUtils;
 import org.entur.netex.gtfs.export.exception.GtfsExportException;
 import org.entur.netex.gtfs.export.model.GtfsService;
 import org.entur.netex.gtfs.export.model.ServiceCalendarPeriod;
 import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.entur.netex.gtfs.export.util.DayTypeCache;
+import org.entur.netex.gtfs.export.util.DayTypeCache.Period;
+import org.entur.netex.gtfs.export.util.DayTypeCache.ResolvedDayType;
 import org.rutebanken.netex.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +45,9 @@ import org.slf4j.LoggerFactory;
  * Create and store the GTFS services for the current dataset.
  * GTFS services are created while iterating through ServiceJourneys and DatedServiceJourneys.
  * The GTFS services are de-duplicated by creating a unique ID per set of DayTypes (trips based on ServiceJourneys) or set of OperatingDays (trips based on DatedServiceJourneys)
+ * The repository is thread-safe: exactly one GTFS service is created per service id, and services with different ids
+ * are created concurrently, without holding a lock while their dates are computed.
+ * The services are returned ordered by id, so that the export does not depend on the order in which they were created.
  */
 public class DefaultGtfsServiceRepository implements GtfsServiceRepository {
 
@@ -50,91 +57,164 @@ public class DefaultGtfsServiceRepository implements GtfsServiceRepository {
 
   // No restrictions in GTFS spec, but restricted to suit clients
   private static final int MAX_SERVICE_ID_CHARS = 256;
-  private static final Set<DayOfWeek> ALL_DAYS_OF_WEEKS = EnumSet.of(
-    DayOfWeek.MONDAY,
-    DayOfWeek.TUESDAY,
-    DayOfWeek.WEDNESDAY,
-    DayOfWeek.THURSDAY,
-    DayOfWeek.FRIDAY,
-    DayOfWeek.SATURDAY,
-    DayOfWeek.SUNDAY
-  );
-  private static final Set<DayOfWeek> WEEKDAYS = EnumSet.of(
-    DayOfWeek.MONDAY,
-    DayOfWeek.TUESDAY,
-    DayOfWeek.WEDNESDAY,
-    DayOfWeek.THURSDAY,
-    DayOfWeek.FRIDAY
-  );
-  private static final Set<DayOfWeek> WEEKEND = EnumSet.of(
-    DayOfWeek.SATURDAY,
-    DayOfWeek.SUNDAY
-  );
-
+  private static final String DAY_TYPE_SERVICE_ID_INFIX = ":DayType:";
+  private static final String OPERATING_DAY_SERVICE_ID_INFIX =
+    ":OperatingDay:";
   private final String codespace;
-  private final NetexDatasetRepository netexDatasetRepository;
-  private final Map<String, GtfsService> gtfsServices;
+  private final DayTypeCache dayTypeCache;
+  private final ConcurrentMap<
+    String,
+    CompletableFuture<GtfsService>
+  > gtfsServices;
+  private final ConcurrentMap<ServiceKey, GtfsService> gtfsServicesByKey;
+  private final ConcurrentMap<String, String> shortIds;
 
   public DefaultGtfsServiceRepository(
     String codespace,
     NetexDatasetRepository netexDatasetRepository
   ) {
-    this.netexDatasetRepository = netexDatasetRepository;
-    this.gtfsServices = new HashMap<>();
+    this(codespace, new DayTypeCache(netexDatasetRepository));
+  }
+
+  /**
+   * @param dayTypeCache a cache of resolved day types, typically shared with the trip producer.
+   */
+  public DefaultGtfsServiceRepository(
+    String codespace,
+    DayTypeCache dayTypeCache
+  ) {
+    this.dayTypeCache = dayTypeCache;
+    this.gtfsServices = new ConcurrentHashMap<>();
+    this.gtfsServicesByKey = new ConcurrentHashMap<>();
+    this.shortIds = new ConcurrentHashMap<>();
     this.codespace = codespace;
   }
 
   @Override
   public Collection<GtfsService> getAllServices() {
-    return gtfsServices.values();
+    return gtfsServices
+      .values()
+      .stream()
+      .filter(gtfsService ->
+        gtfsService.isDone() && !gtfsService.isCompletedExceptionally()
+      )
+      .map(CompletableFuture::join)
+      .sorted(Comparator.comparing(GtfsService::getId))
+      .toList();
   }
 
   @Override
   public GtfsService getServiceForDayTypes(Set<DayType> dayTypes) {
-    String serviceId = getServiceIdForDayTypes(dayTypes);
-    return gtfsServices.computeIfAbsent(
-      serviceId,
-      s -> createGtfsServiceForDayTypes(dayTypes, serviceId)
-    );
+    ServiceKey serviceKey = getServiceKey(DAY_TYPE_SERVICE_ID_INFIX, dayTypes);
+    GtfsService gtfsService = gtfsServicesByKey.get(serviceKey);
+    if (gtfsService == null) {
+      String serviceId = getServiceId(serviceKey);
+      gtfsService =
+        getOrCreateService(
+          serviceId,
+          () -> createGtfsServiceForDayTypes(dayTypes, serviceId)
+        );
+      gtfsServicesByKey.putIfAbsent(serviceKey, gtfsService);
+    }
+    return gtfsService;
   }
 
   @Override
   public GtfsService getServiceForOperatingDays(
     Set<OperatingDay> operatingDays
   ) {
-    String serviceId = getServiceIdForOperatingDays(operatingDays);
-    return gtfsServices.computeIfAbsent(
-      serviceId,
-      s -> createGtfsServiceForOperatingDays(operatingDays, serviceId)
+    ServiceKey serviceKey = getServiceKey(
+      OPERATING_DAY_SERVICE_ID_INFIX,
+      operatingDays
     );
+    GtfsService gtfsService = gtfsServicesByKey.get(serviceKey);
+    if (gtfsService == null) {
+      String serviceId = getServiceId(serviceKey);
+      gtfsService =
+        getOrCreateService(
+          serviceId,
+          () -> createGtfsServiceForOperatingDays(operatingDays, serviceId)
+        );
+      gtfsServicesByKey.putIfAbsent(serviceKey, gtfsService);
+    }
+    return gtfsService;
   }
 
-  private String getServiceIdForDayTypes(Set<DayType> dayTypes) {
-    String serviceId =
-      codespace +
-      ":DayType:" +
-      dayTypes
-        .stream()
-        .map(EntityStructure::getId)
-        .map(DefaultGtfsServiceRepository::splitId)
-        .sorted()
-        .collect(Collectors.joining("-"));
-    if (serviceId.length() > MAX_SERVICE_ID_CHARS) {
-      serviceId = truncateServiceId(serviceId);
+  /**
+   * Return the service with the given id, creating it if needed.
+   * The first thread that registers the service id creates the service outside any lock, while the other threads
+   * requesting the same service id wait for the result.
+   * If the creation fails, the service id is unregistered so that a later call can retry.
+   */
+  private GtfsService getOrCreateService(
+    String serviceId,
+    Supplier<GtfsService> serviceFactory
+  ) {
+    CompletableFuture<GtfsService> gtfsService = gtfsServices.get(serviceId);
+    if (gtfsService == null) {
+      CompletableFuture<GtfsService> newGtfsService = new CompletableFuture<>();
+      gtfsService = gtfsServices.putIfAbsent(serviceId, newGtfsService);
+      if (gtfsService == null) {
+        try {
+          GtfsService createdGtfsService = serviceFactory.get();
+          newGtfsService.complete(createdGtfsService);
+          return createdGtfsService;
+        } catch (RuntimeException | Error e) {
+          gtfsServices.remove(serviceId, newGtfsService);
+          newGtfsService.completeExceptionally(e);
+          throw e;
+        }
+      }
     }
-    return serviceId;
+    try {
+      return gtfsService.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new GtfsExportException(
+        "Error while creating GTFS service " + serviceId,
+        e.getCause()
+      );
+    }
+  }
+
+  /**
+   * Return the key identifying the service for a set of day types or operating days.
+   * The key is made of the sorted short ids of the entities, which are computed once per entity.
+   */
+  private ServiceKey getServiceKey(
+    String serviceIdInfix,
+    Set<? extends EntityStructure> entities
+  ) {
+    String[] shortIds = new String[entities.size()];
+    int i = 0;
+    for (EntityStructure entity : entities) {
+      shortIds[i++] = getShortId(entity.getId());
+    }
+    if (shortIds.length > 1) {
+      Arrays.sort(shortIds);
+    }
+    return new ServiceKey(serviceIdInfix, shortIds);
   }
 
-  private String getServiceIdForOperatingDays(Set<OperatingDay> operatingDays) {
+  private String getShortId(String id) {
+    String shortId = shortIds.get(id);
+    if (shortId == null) {
+      shortId =
+        shortIds.computeIfAbsent(id, DefaultGtfsServiceRepository::splitId);
+    }
+    return shortId;
+  }
+
+  /**
+   * Build the GTFS service id for a service key. This is done once per distinct service.
+   */
+  private String getServiceId(ServiceKey serviceKey) {
     String serviceId =
       codespace +
-      ":OperatingDay:" +
-      operatingDays
-        .stream()
-        .map(EntityStructure::getId)
-        .map(DefaultGtfsServiceRepository::splitId)
-        .sorted()
-        .collect(Collectors.joining("-"));
+      serviceKey.serviceIdInfix() +
+      String.join("-", serviceKey.shortIds());
     if (serviceId.length() > MAX_SERVICE_ID_CHARS) {
       serviceId = truncateServiceId(serviceId);
     }
@@ -164,17 +244,25 @@ public class DefaultGtfsServiceRepository implements GtfsServiceRepository {
     Set<DayType> dayTypes,
     String serviceId
   ) {
-    int nbPeriods = countPeriods(dayTypes);
+    List<ResolvedDayType> resolvedDayTypes = new ArrayList<>(dayTypes.size());
+    int nbPeriods = 0;
+    for (DayType dayType : dayTypes) {
+      ResolvedDayType resolvedDayType = dayTypeCache.getResolvedDayType(
+        dayType
+      );
+      resolvedDayTypes.add(resolvedDayType);
+      nbPeriods += resolvedDayType.getPeriods().size();
+    }
     if (nbPeriods == 0) {
-      return createGtfsServiceForIndividualDates(dayTypes, serviceId);
+      return createGtfsServiceForIndividualDates(resolvedDayTypes, serviceId);
     } else if (nbPeriods == 1) {
       return createGtfsServiceForOnePeriodAndIndividualDates(
-        dayTypes,
+        resolvedDayTypes,
         serviceId
       );
     } else {
       return createGtfsServiceForMultiplePeriodsAndIndividualDates(
-        dayTypes,
+        resolvedDayTypes,
         serviceId
       );
     }
@@ -195,8 +283,8 @@ public class DefaultGtfsServiceRepository implements GtfsServiceRepository {
     return gtfsService;
   }
 
-  private GtfsService createGtfsServiceForIndividualDates(
-    Set<DayType> dayTypes,
+  private static GtfsService createGtfsServiceForIndividualDates(
+    List<ResolvedDayType> resolvedDayTypes,
     String serviceId
   ) {
     LOGGER.debug(
@@ -204,25 +292,19 @@ public class DefaultGtfsServiceRepository implements GtfsServiceRepository {
       serviceId
     );
     GtfsService gtfsService = new GtfsService(serviceId);
-    dayTypes
-      .stream()
-      .map(netexDatasetRepository::getDayTypeAssignmentsByDayType)
-      .flatMap(Collection::stream)
-      .forEach(dayTypeAssignment ->
-        addIndividualDate(gtfsService, dayTypeAssignment)
-      );
+    addIndividualDates(gtfsService, resolvedDayTypes);
 
     // Remove the excluded dates from the included dates and remove all the excluded dates.
     // Since there is no period but only individual dates, it is sufficient to list the included dates.
     // Date exclusion has precedence over date inclusion.
-    gtfsService.removeIncludedDates(gtfsService.getExcludedDates());
+    gtfsService.removeExcludedDatesFromIncludedDates();
     gtfsService.removeAllExcludedDates();
 
     return gtfsService;
   }
 
-  private GtfsService createGtfsServiceForOnePeriodAndIndividualDates(
-    Set<DayType> dayTypes,
+  private static GtfsService createGtfsServiceForOnePeriodAndIndividualDates(
+    List<ResolvedDayType> resolvedDayTypes,
     String serviceId
   ) {
     LOGGER.debug(
@@ -230,53 +312,35 @@ public class DefaultGtfsServiceRepository implements GtfsServiceRepository {
       serviceId
     );
     GtfsService gtfsService = new GtfsService(serviceId);
-    DayTypeAssignment dayTypeAssignmentWithPeriod = dayTypes
+    ResolvedDayType dayTypeWithAPeriod = resolvedDayTypes
       .stream()
-      .map(netexDatasetRepository::getDayTypeAssignmentsByDayType)
-      .flatMap(Collection::stream)
-      .filter(dta -> dta.getOperatingPeriodRef() != null)
+      .filter(resolvedDayType -> !resolvedDayType.getPeriods().isEmpty())
       .findFirst()
       .orElseThrow(() ->
         new GtfsExportException(
-          "Could not find DayTypeAssignment without operating period for serviceId " +
+          "Could not find DayTypeAssignment with operating period for serviceId " +
           serviceId
         )
       );
-
-    DayType dayTypeWithAPeriod =
-      netexDatasetRepository.getDayTypeByDayTypeAssignment(
-        dayTypeAssignmentWithPeriod
-      );
-    OperatingPeriod operatingPeriod =
-      netexDatasetRepository.getOperatingPeriodByDayTypeAssignment(
-        dayTypeAssignmentWithPeriod
-      );
-    Set<DayOfWeek> daysOfWeek = getDaysOfWeek(dayTypeWithAPeriod);
+    Period period = dayTypeWithAPeriod.getPeriods().get(0);
     ServiceCalendarPeriod serviceCalendarPeriod = new ServiceCalendarPeriod(
-      getOperatingPeriodStartDate(operatingPeriod),
-      getOperatingPeriodEndDate(operatingPeriod),
-      daysOfWeek
+      period.startDate().atStartOfDay(),
+      period.endDate().atStartOfDay(),
+      dayTypeWithAPeriod.getDaysOfWeek()
     );
     gtfsService.setServiceCalendarPeriod(serviceCalendarPeriod);
 
-    dayTypes
-      .stream()
-      .map(netexDatasetRepository::getDayTypeAssignmentsByDayType)
-      .flatMap(Collection::stream)
-      .filter(dta -> dta.getOperatingPeriodRef() == null)
-      .forEach(dayTypeAssignment ->
-        addIndividualDate(gtfsService, dayTypeAssignment)
-      );
+    addIndividualDates(gtfsService, resolvedDayTypes);
 
     // Remove included dates that are also listed in the excluded dates
     // Date exclusion has precedence over date inclusion.
-    gtfsService.removeIncludedDates(gtfsService.getExcludedDates());
+    gtfsService.removeExcludedDatesFromIncludedDates();
 
     return gtfsService;
   }
 
-  private GtfsService createGtfsServiceForMultiplePeriodsAndIndividualDates(
-    Set<DayType> dayTypes,
+  private static GtfsService createGtfsServiceForMultiplePeriodsAndIndividualDates(
+    List<ResolvedDayType> resolvedDayTypes,
     String serviceId
   ) {
     LOGGER.debug(
@@ -284,208 +348,79 @@ public class DefaultGtfsServiceRepository implements GtfsServiceRepository {
       serviceId
     );
     GtfsService gtfsService = new GtfsService(serviceId);
-    for (DayType dayType : dayTypes) {
-      Set<DayOfWeek> daysOfWeek = getDaysOfWeek(dayType);
-      for (DayTypeAssignment dayTypeAssignment : netexDatasetRepository.getDayTypeAssignmentsByDayType(
-        dayType
-      )) {
-        if (dayTypeAssignment.getOperatingPeriodRef() != null) {
-          OperatingPeriod operatingPeriod =
-            netexDatasetRepository.getOperatingPeriodByDayTypeAssignment(
-              dayTypeAssignment
-            );
-          LocalDateTime operatingPeriodStartDate = getOperatingPeriodStartDate(
-            operatingPeriod
-          );
-          LocalDateTime operatingPeriodEndDate = getOperatingPeriodEndDate(
-            operatingPeriod
-          );
-          for (
-            LocalDateTime date = operatingPeriodStartDate;
-            date.isBefore(operatingPeriodEndDate) ||
-            date.equals(operatingPeriodEndDate);
-            date = date.plusDays(1)
-          ) {
-            if (isActiveDate(date, daysOfWeek)) {
-              gtfsService.addIncludedDate(date);
-            }
-          }
-        }
+    for (ResolvedDayType resolvedDayType : resolvedDayTypes) {
+      for (Period period : resolvedDayType.getPeriods()) {
+        gtfsService.addIncludedPeriod(
+          period.startDate(),
+          period.endDate(),
+          resolvedDayType.getDaysOfWeek()
+        );
       }
     }
 
-    dayTypes
-      .stream()
-      .map(netexDatasetRepository::getDayTypeAssignmentsByDayType)
-      .flatMap(Collection::stream)
-      .filter(dta -> dta.getOperatingPeriodRef() == null)
-      .forEach(dayTypeAssignment ->
-        addIndividualDate(gtfsService, dayTypeAssignment)
-      );
+    addIndividualDates(gtfsService, resolvedDayTypes);
 
     // remove the excluded dates from the included dates and remove all the excluded dates.
     // Since there is no period but only individual dates, it is sufficient to list the included dates.
     // Date exclusion has precedence over date inclusion.
-    gtfsService.removeIncludedDates(gtfsService.getExcludedDates());
+    gtfsService.removeExcludedDatesFromIncludedDates();
     gtfsService.removeAllExcludedDates();
 
     return gtfsService;
   }
 
-  private void addIndividualDate(
+  private static void addIndividualDates(
     GtfsService gtfsService,
-    DayTypeAssignment dayTypeAssignment
-  ) {
-    LocalDateTime date;
-    if (dayTypeAssignment.getOperatingDayRef() != null) {
-      OperatingDay operatingDay =
-        netexDatasetRepository.getOperatingDayByDayTypeAssignment(
-          dayTypeAssignment
-        );
-      date = operatingDay.getCalendarDate();
-    } else if (dayTypeAssignment.getDate() != null) {
-      date = dayTypeAssignment.getDate();
-    } else {
-      throw new GtfsExportException(
-        "Both Date and OperatingDay are undefined on DayTypeAssignment " +
-        dayTypeAssignment.getId()
-      );
-    }
-    if (
-      dayTypeAssignment.isIsAvailable() != null &&
-      !dayTypeAssignment.isIsAvailable()
-    ) {
-      gtfsService.addExcludedDate(date);
-    } else {
-      gtfsService.addIncludedDate(date);
-    }
-  }
-
-  /**
-   * Return the days of week explicitly specified for a day type. Returns an empty list if no day of week is explicitly set.
-   * @param dayType the day type.
-   * @return Return the days of week for a day type. Returns an empty list if no day of week is explicitly set.
-   */
-  private static List<DayOfWeekEnumeration> getNetexDaysOfWeek(
-    DayType dayType
+    List<ResolvedDayType> resolvedDayTypes
   ) {
-    if (
-      dayType.getProperties() != null &&
-      dayType.getProperties().getPropertyOfDay() != null
-    ) {
-      for (PropertyOfDay propertyOfDay : dayType
-        .getProperties()
-        .getPropertyOfDay()) {
-        if (
-          propertyOfDay.getDaysOfWeek() != null &&
-          !propertyOfDay.getDaysOfWeek().isEmpty()
-        ) {
-          return propertyOfDay.getDaysOfWeek();
-        }
-      }
+    for (ResolvedDayType resolvedDayType : resolvedDayTypes) {
+      gtfsService.addIncludedDays(resolvedDayType.getIncludedDays());
+      gtfsService.addExcludedDays(resolvedDayType.getExcludedDays());
     }
-    return Collections.emptyList();
   }
 
   /**
-   * Return the set of active days of week for a day type.
+   * The sorted short ids of a set of day types or operating days.
    */
-  private static Set<DayOfWeek> getDaysOfWeek(DayType dayType) {
-    List<DayOfWeekEnumeration> netexDaysOfWeek = getNetexDaysOfWeek(dayType);
-    // A DayType  with no days of week explicitly set is implicitly available on every day of week.
-    if (
-      netexDaysOfWeek.isEmpty() ||
-      netexDaysOfWeek.contains(DayOfWeekEnumeration.EVERYDAY)
-    ) {
-      return ALL_DAYS_OF_WEEKS;
-    }
-    return netexDaysOfWeek
-      .stream()
-      .map(dayOfWeekEnumeration -> {
-        if (DayOfWeekEnumeration.MONDAY == dayOfWeekEnumeration) {
-          return Set.of(DayOfWeek.MONDAY);
-        } else if (DayOfWeekEnumeration.TUESDAY == dayOfWeekEnumeration) {
-          return Set.of(DayOfWeek.TUESDAY);
-        } else if (DayOfWeekEnumeration.WEDNESDAY == dayOfWeekEnumeration) {
-          return Set.of(DayOfWeek.WEDNESDAY);
-        } else if (DayOfWeekEnumeration.THURSDAY == dayOfWeekEnumeration) {
-          return Set.of(DayOfWeek.THURSDAY);
-        } else if (DayOfWeekEnumeration.FRIDAY == dayOfWeekEnumeration) {
-          return Set.of(DayOfWeek.FRIDAY);
-        } else if (DayOfWeekEnumeration.SATURDAY == dayOfWeekEnumeration) {
-          return Set.of(DayOfWeek.SATURDAY);
-        } else if (DayOfWeekEnumeration.SUNDAY == dayOfWeekEnumeration) {
-          return Set.of(DayOfWeek.SUNDAY);
-        } else if (DayOfWeekEnumeration.WEEKDAYS == dayOfWeekEnumeration) {
-          return WEEKDAYS;
-        } else if (DayOfWeekEnumeration.WEEKEND == dayOfWeekEnumeration) {
-          return WEEKEND;
-        } else {
-          throw new GtfsExportException(
-            "Unsupported day of week: " + dayOfWeekEnumeration
-          );
-        }
-      })
-      .flatMap(Collection::stream)
-      .collect(Collectors.toSet());
-  }
+  private static final class ServiceKey {
 
-  private static boolean isActiveDate(
-    LocalDateTime date,
-    Set<DayOfWeek> daysOfWeek
-  ) {
-    return daysOfWeek.contains(date.getDayOfWeek());
-  }
-
-  private int countPeriods(Set<DayType> dayTypes) {
-    return dayTypes
-      .stream()
-      .map(dayType ->
-        netexDatasetRepository
-          .getDayTypeAssignmentsByDayType(dayType)
-          .stream()
-          .filter(dayTypeAssignment ->
-            dayTypeAssignment.getOperatingPeriodRef() != null
-          )
-          .count()
-      )
-      .mapToInt(Long::intValue)
-      .sum();
-  }
+    private final String serviceIdInfix;
+    private final String[] shortIds;
+    private final int hashCode;
 
-  private LocalDateTime getOperatingPeriodStartDate(
-    OperatingPeriod operatingPeriod
-  ) {
-    if (operatingPeriod.getFromDate() != null) {
-      return operatingPeriod.getFromDate();
+    ServiceKey(String serviceIdInfix, String[] shortIds) {
+      this.serviceIdInfix = serviceIdInfix;
+      this.shortIds = shortIds;
+      this.hashCode =
+        31 * serviceIdInfix.hashCode() + Arrays.hashCode(shortIds);
     }
-    if (operatingPeriod.getFromOperatingDayRef() != null) {
-      return lookupOperatingDay(operatingPeriod.getFromOperatingDayRef());
+
+    String serviceIdInfix() {
+      return serviceIdInfix;
     }
-    throw new IllegalArgumentException(
-      "Missing start date for operating period " + operatingPeriod.getId()
-    );
-  }
 
-  private LocalDateTime getOperatingPeriodEndDate(
-    OperatingPeriod operatingPeriod
-  ) {
-    if (operatingPeriod.getToDate() != null) {
-      return operatingPeriod.getToDate();
+    String[] shortIds() {
+      return shortIds;
     }
-    if (operatingPeriod.getToOperatingDayRef() != null) {
-      return lookupOperatingDay(operatingPeriod.getToOperatingDayRef());
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ServiceKey other)) {
+        return false;
+      }
+      return (
+        hashCode == other.hashCode &&
+        serviceIdInfix.equals(other.serviceIdInfix) &&
+        Arrays.equals(shortIds, other.shortIds)
+      );
     }
-    throw new IllegalArgumentException(
-      "Missing end date for operating period " + operatingPeriod.getId()
-    );
-  }
 
-  private LocalDateTime lookupOperatingDay(
-    OperatingDayRefStructure operatingDayRef
-  ) {
-    return netexDatasetRepository
-      .getOperatingDayById(operatingDayRef.getRef())
-      .getCalendarDate();
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
   }
 }
@@ -21,25 +21,30 @@ package org.entur.netex.gtfs.export.producer;
 import jakarta.xml.bind.JAXBElement;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.entur.netex.gtfs.export.exception.GtfsExportException;
 import org.entur.netex.gtfs.export.model.GtfsShape;
 import org.entur.netex.gtfs.export.repository.GtfsDatasetRepository;
 import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.entur.netex.gtfs.export.util.DistanceCalculator;
+import org.entur.netex.gtfs.export.util.GeodeticDistanceCalculator;
 import org.entur.netex.gtfs.export.util.GeometryUtil;
-import org.locationtech.jts.geom.Coordinate;
+import org.entur.netex.gtfs.export.util.HaversineDistanceCalculator;
+import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.LineString;
 import org.onebusaway.gtfs.model.Agency;
-import org.onebusaway.gtfs.model.AgencyAndId;
-import org.onebusaway.gtfs.model.ShapePoint;
 import org.rutebanken.netex.model.JourneyPattern;
+import org.rutebanken.netex.model.Line;
 import org.rutebanken.netex.model.LinkInLinkSequence_VersionedChildStructure;
 import org.rutebanken.netex.model.LinkSequenceProjection;
 import org.rutebanken.netex.model.PointInLinkSequence_VersionedChildStructure;
 import org.rutebanken.netex.model.Projections_RelStructure;
+import org.rutebanken.netex.model.Route;
 import org.rutebanken.netex.model.ServiceLink;
 import org.rutebanken.netex.model.ServiceLinkInJourneyPattern_VersionedChildStructure;
 import org.slf4j.Logger;
@@ -51,37 +56,79 @@ public class DefaultShapeProducer implements ShapeProducer {
     DefaultShapeProducer.class
   );
 
+  /**
+   * Marker for service links without projection.
+   */
+  private static final ServiceLinkGeometry MISSING_LINE_STRING =
+    new ServiceLinkGeometry(new double[0], new double[0], new double[0]);
+
+  /**
+   * Marker for service links with an invalid LineString.
+   */
+  private static final ServiceLinkGeometry INVALID_LINE_STRING =
+    new ServiceLinkGeometry(new double[0], new double[0], new double[0]);
+
   private final Agency agency;
   private final NetexDatasetRepository netexDatasetRepository;
   private final Comparator<? super LinkInLinkSequence_VersionedChildStructure> serviceLinksComparator;
+  private final DistanceCalculator distanceCalculator;
+  private final Map<List<String>, ShapeGeometry> shapeGeometriesByServiceLinks;
+  private final Map<String, ServiceLinkGeometry> serviceLinkGeometries;
+  private volatile Map<List<String>, String> shapeIdsByServiceLinks;
 
   public DefaultShapeProducer(
     NetexDatasetRepository netexDatasetRepository,
     GtfsDatasetRepository gtfsDatasetRepository
+  ) {
+    this(
+      netexDatasetRepository,
+      gtfsDatasetRepository,
+      new GeodeticDistanceCalculator()
+    );
+  }
+
+  /**
+   * @param distanceCalculator the strategy used for calculating the distance between consecutive shape points.
+   *                           {@link HaversineDistanceCalculator} is significantly faster than the default
+   *                           {@link GeodeticDistanceCalculator}, at the cost of a small loss of accuracy.
+   */
+  public DefaultShapeProducer(
+    NetexDatasetRepository netexDatasetRepository,
+    GtfsDatasetRepository gtfsDatasetRepository,
+    DistanceCalculator distanceCalculator
+  ) {
+    this(
+      netexDatasetRepository,
+      gtfsDatasetRepository,
+      distanceCalculator,
+      false
+    );
+  }
+
+  /**
+   * @param distanceCalculator the strategy used for calculating the distance between consecutive shape points.
+   * @param deduplicateShapes  true if journey patterns that go through the same ordered sequence of service links
+   *                           should share the same shape. The shape id is then the id of the first of these journey
+   *                           patterns in the order of the export.
+   */
+  public DefaultShapeProducer(
+    NetexDatasetRepository netexDatasetRepository,
+    GtfsDatasetRepository gtfsDatasetRepository,
+    DistanceCalculator distanceCalculator,
+    boolean deduplicateShapes
   ) {
     this.agency = gtfsDatasetRepository.getDefaultAgency();
     this.netexDatasetRepository = netexDatasetRepository;
     this.serviceLinksComparator = new ServiceLinksComparator();
+    this.distanceCalculator = distanceCalculator;
+    this.shapeGeometriesByServiceLinks =
+      deduplicateShapes ? new ConcurrentHashMap<>() : null;
+    this.serviceLinkGeometries = new ConcurrentHashMap<>();
   }
 
   @Override
   public GtfsShape produce(JourneyPattern journeyPattern) {
-    int nbStopPoints = journeyPattern
-      .getPointsInSequence()
-      .getPointInJourneyPatternOrStopPointInJourneyPatternOrTimingPointInJourneyPattern()
-      .size();
-    if (
-      journeyPattern.getLinksInSequence() == null ||
-      journeyPattern
-        .getLinksInSequence()
-        .getServiceLinkInJourneyPatternOrTimingLinkInJourneyPattern() ==
-      null ||
-      journeyPattern
-        .getLinksInSequence()
-        .getServiceLinkInJourneyPatternOrTimingLinkInJourneyPattern()
-        .size() !=
-      (nbStopPoints - 1)
-    ) {
+    if (!hasCompleteServiceLinks(journeyPattern)) {
       if (LOGGER.isDebugEnabled()) {
         LOGGER.debug(
           "Skipping GTFS shape export for JourneyPattern {} with incomplete list of service links",
@@ -91,98 +138,345 @@ public class DefaultShapeProducer implements ShapeProducer {
       return null;
     }
     List<LinkInLinkSequence_VersionedChildStructure> serviceLinks =
+      getSortedServiceLinks(journeyPattern);
+
+    ShapeGeometry shapeGeometry;
+    if (shapeGeometriesByServiceLinks == null) {
+      shapeGeometry =
+        produceShapeGeometry(
+          journeyPattern.getId(),
+          journeyPattern,
+          serviceLinks
+        );
+    } else {
+      List<String> serviceLinkIds = getServiceLinkIds(serviceLinks);
+      String shapeId = getSharedShapeId(serviceLinkIds, journeyPattern);
+      // a failed conversion is not cached: the computation returns null and the next journey pattern retries it.
+      shapeGeometry =
+        shapeGeometriesByServiceLinks.computeIfAbsent(
+          serviceLinkIds,
+          ids -> produceShapeGeometry(shapeId, journeyPattern, serviceLinks)
+        );
+    }
+    if (shapeGeometry == null) {
+      return null;
+    }
+
+    // The cumulative distances of the shape geometry are produced in ascending "order" of the service links, i.e. in
+    // the same order as the stops sorted ascending by their "order" property. Map each cumulative
+    // distance to the corresponding stop "order" value, which is not required to start at 1 or to be
+    // gap-free within a JourneyPattern.
+    int[] sortedStopOrders = journeyPattern
+      .getPointsInSequence()
+      .getPointInJourneyPatternOrStopPointInJourneyPatternOrTimingPointInJourneyPattern()
+      .stream()
+      .map(PointInLinkSequence_VersionedChildStructure::getOrder)
+      .mapToInt(BigInteger::intValueExact)
+      .sorted()
+      .toArray();
+
+    return new GtfsShape(
+      agency.getId(),
+      shapeGeometry.shapeId(),
+      shapeGeometry.lats(),
+      shapeGeometry.lons(),
+      shapeGeometry.distancesTravelled(),
+      sortedStopOrders,
+      shapeGeometry.distancesTravelledToStops()
+    );
+  }
+
+  /**
+   * Return true if the journey pattern has one service link between each pair of consecutive stops.
+   */
+  private static boolean hasCompleteServiceLinks(JourneyPattern journeyPattern) {
+    int nbStopPoints = journeyPattern
+      .getPointsInSequence()
+      .getPointInJourneyPatternOrStopPointInJourneyPatternOrTimingPointInJourneyPattern()
+      .size();
+    return (
+      journeyPattern.getLinksInSequence() != null &&
       journeyPattern
         .getLinksInSequence()
-        .getServiceLinkInJourneyPatternOrTimingLinkInJourneyPattern();
-    List<ShapePoint> shapePoints = new ArrayList<>();
-    List<Double> travelledDistanceToStop = new ArrayList<>(nbStopPoints);
-    // distance travelled to first stop is 0.
-    travelledDistanceToStop.add(0.0);
-    String shapeId = journeyPattern.getId();
-    int sequence = 0;
-    double distanceFromStart = 0;
-    Coordinate previousPoint = null;
-    // sort the service links by ascending "order" property
+        .getServiceLinkInJourneyPatternOrTimingLinkInJourneyPattern() !=
+      null &&
+      journeyPattern
+        .getLinksInSequence()
+        .getServiceLinkInJourneyPatternOrTimingLinkInJourneyPattern()
+        .size() ==
+      (nbStopPoints - 1)
+    );
+  }
+
+  /**
+   * Return the service links of a journey pattern sorted by ascending "order" property.
+   * The links are sorted in a copy: the NeTEx journey pattern may be read concurrently by other conversion threads
+   * and must not be modified.
+   */
+  private List<LinkInLinkSequence_VersionedChildStructure> getSortedServiceLinks(
+    JourneyPattern journeyPattern
+  ) {
+    List<LinkInLinkSequence_VersionedChildStructure> serviceLinks =
+      new ArrayList<>(
+        journeyPattern
+          .getLinksInSequence()
+          .getServiceLinkInJourneyPatternOrTimingLinkInJourneyPattern()
+      );
     serviceLinks.sort(serviceLinksComparator);
+    return serviceLinks;
+  }
+
+  private static List<String> getServiceLinkIds(
+    List<LinkInLinkSequence_VersionedChildStructure> serviceLinks
+  ) {
+    return serviceLinks
+      .stream()
+      .map(link ->
+        (
+          (ServiceLinkInJourneyPattern_VersionedChildStructure) link
+        ).getServiceLinkRef()
+          .getRef()
+      )
+      .toList();
+  }
+
+  /**
+   * Build the index of shared shape ids when shape deduplication is enabled, so that it is complete before the
+   * journey patterns are converted concurrently.
+   */
+  @Override
+  public void initialize() {
+    if (shapeGeometriesByServiceLinks != null) {
+      synchronized (this) {
+        shapeIdsByServiceLinks = indexShapeIdsByServiceLinks();
+      }
+    }
+  }
+
+  /**
+   * Return the id of the shape shared by the journey patterns that go through the given sequence of service links.
+   * This is the id of the first of these journey patterns, in the order in which the dataset is exported (lines,
+   * routes, journey patterns). Since it does not depend on the order in which shapes are produced, the shape ids are
+   * the same whether journey patterns are converted sequentially or concurrently.
+   */
+  private String getSharedShapeId(
+    List<String> serviceLinkIds,
+    JourneyPattern journeyPattern
+  ) {
+    Map<List<String>, String> shapeIds = shapeIdsByServiceLinks;
+    // the index is built on first use if the producer has not been initialized
+    if (shapeIds == null) {
+      synchronized (this) {
+        shapeIds = shapeIdsByServiceLinks;
+        if (shapeIds == null) {
+          shapeIds = indexShapeIdsByServiceLinks();
+          shapeIdsByServiceLinks = shapeIds;
+        }
+      }
+    }
+    return shapeIds.getOrDefault(serviceLinkIds, journeyPattern.getId());
+  }
+
+  private Map<List<String>, String> indexShapeIdsByServiceLinks() {
+    Map<List<String>, String> shapeIds = new HashMap<>();
+    for (Line line : netexDatasetRepository.getLines()) {
+      for (Route route : netexDatasetRepository.getRoutesByLine(line)) {
+        for (JourneyPattern journeyPattern : netexDatasetRepository.getJourneyPatternsByRoute(
+          route
+        )) {
+          if (hasCompleteServiceLinks(journeyPattern)) {
+            shapeIds.putIfAbsent(
+              getServiceLinkIds(getSortedServiceLinks(journeyPattern)),
+              journeyPattern.getId()
+            );
+          }
+        }
+      }
+    }
+    return shapeIds;
+  }
+
+  /**
+   * Build the shape points along the sorted service links of a journey pattern.
+   * The shape is assembled from the cached geometries of the service links.
+   * @return the shape geometry, or null if one of the service links does not have a valid LineString.
+   */
+  private ShapeGeometry produceShapeGeometry(
+    String shapeId,
+    JourneyPattern journeyPattern,
+    List<LinkInLinkSequence_VersionedChildStructure> serviceLinks
+  ) {
+    List<ServiceLinkGeometry> linkGeometries = new ArrayList<>(
+      serviceLinks.size()
+    );
+    int maxShapePoints = 0;
     for (LinkInLinkSequence_VersionedChildStructure link : serviceLinks) {
-      ServiceLinkInJourneyPattern_VersionedChildStructure serviceLinkInJourneyPattern =
-        (ServiceLinkInJourneyPattern_VersionedChildStructure) link;
-      ServiceLink serviceLink = netexDatasetRepository.getServiceLinkById(
-        serviceLinkInJourneyPattern.getServiceLinkRef().getRef()
-      );
-      Projections_RelStructure projections = serviceLink.getProjections();
-      if (projections == null) {
+      String serviceLinkId =
+        (
+          (ServiceLinkInJourneyPattern_VersionedChildStructure) link
+        ).getServiceLinkRef()
+          .getRef();
+      ServiceLinkGeometry serviceLinkGeometry =
+        serviceLinkGeometries.computeIfAbsent(
+          serviceLinkId,
+          this::convertServiceLinkGeometry
+        );
+      if (serviceLinkGeometry == MISSING_LINE_STRING) {
         if (LOGGER.isDebugEnabled()) {
           LOGGER.debug(
             "Skipping GTFS shape export for JourneyPattern {} with service link {} without LineString",
             journeyPattern.getId(),
-            serviceLink.getId()
+            serviceLinkId
           );
         }
         return null;
       }
-      for (JAXBElement<?> jaxbElement : projections.getProjectionRefOrProjection()) {
-        LinkSequenceProjection linkSequenceProjection =
-          (LinkSequenceProjection) jaxbElement.getValue();
-        LineString lineString = GeometryUtil.convertLineStringFromGmlToJts(
-          linkSequenceProjection.getLineString()
+      if (serviceLinkGeometry == INVALID_LINE_STRING) {
+        LOGGER.debug(
+          "Skipping GTFS shape export for JourneyPattern {} with service link {} with invalid LineString",
+          journeyPattern.getId(),
+          serviceLinkId
         );
-        if (lineString == null) {
-          LOGGER.debug(
-            "Skipping GTFS shape export for JourneyPattern {} with service link {} with invalid LineString",
-            journeyPattern.getId(),
-            serviceLink.getId()
-          );
-          return null;
-        }
-        for (Coordinate currentPoint : lineString.getCoordinates()) {
+        return null;
+      }
+      linkGeometries.add(serviceLinkGeometry);
+      maxShapePoints += serviceLinkGeometry.lons().length;
+    }
+
+    double[] lats = new double[maxShapePoints];
+    double[] lons = new double[maxShapePoints];
+    double[] distancesTravelled = new double[maxShapePoints];
+    double[] distancesTravelledToStops = new double[serviceLinks.size() + 1];
+    // distance travelled to first stop is 0.
+    distancesTravelledToStops[0] = 0;
+    int nbShapePoints = 0;
+    double distanceFromStart = 0;
+    for (int link = 0; link < linkGeometries.size(); link++) {
+      ServiceLinkGeometry serviceLinkGeometry = linkGeometries.get(link);
+      int nbPoints = serviceLinkGeometry.lons().length;
+      if (nbPoints > 0) {
+        int firstPoint = 0;
+        double distanceToLinkStart = distanceFromStart;
+        if (nbShapePoints > 0) {
+          double previousLon = lons[nbShapePoints - 1];
+          double previousLat = lats[nbShapePoints - 1];
+          double firstLon = serviceLinkGeometry.lons()[0];
+          double firstLat = serviceLinkGeometry.lats()[0];
           // the first point of the current link is the last point of the previous link, it can be skipped.
-          // as a side effect, duplicate points that follow one another are also filtered out
-          if (currentPoint.equals(previousPoint)) {
-            continue;
+          if (firstLon == previousLon && firstLat == previousLat) {
+            firstPoint = 1;
+          } else {
+            distanceToLinkStart +=
+              distanceCalculator.distance(
+                previousLon,
+                previousLat,
+                firstLon,
+                firstLat
+              );
           }
-          distanceFromStart +=
-            GeometryUtil.distance(previousPoint, currentPoint);
-          ShapePoint shapePoint = new ShapePoint();
-          AgencyAndId agencyAndId = new AgencyAndId();
-          agencyAndId.setId(shapeId);
-          agencyAndId.setAgencyId(agency.getId());
-          shapePoint.setShapeId(agencyAndId);
-          shapePoint.setSequence(sequence);
-          shapePoint.setLon(currentPoint.getX());
-          shapePoint.setLat(currentPoint.getY());
-          shapePoint.setDistTraveled(Math.round(distanceFromStart));
-          shapePoints.add(shapePoint);
-          sequence++;
-          previousPoint = currentPoint;
+        }
+        for (int i = firstPoint; i < nbPoints; i++) {
+          distanceFromStart =
+            distanceToLinkStart + serviceLinkGeometry.distances()[i];
+          lons[nbShapePoints] = serviceLinkGeometry.lons()[i];
+          lats[nbShapePoints] = serviceLinkGeometry.lats()[i];
+          distancesTravelled[nbShapePoints] = Math.round(distanceFromStart);
+          nbShapePoints++;
         }
       }
-      travelledDistanceToStop.add((double) Math.round(distanceFromStart));
+      distancesTravelledToStops[link + 1] = Math.round(distanceFromStart);
     }
+    return new ShapeGeometry(
+      shapeId,
+      Arrays.copyOf(lats, nbShapePoints),
+      Arrays.copyOf(lons, nbShapePoints),
+      Arrays.copyOf(distancesTravelled, nbShapePoints),
+      distancesTravelledToStops
+    );
+  }
 
-    // The cumulative distances above are produced in ascending "order" of the service links, i.e. in
-    // the same order as the stops sorted ascending by their "order" property. Map each cumulative
-    // distance to the corresponding stop "order" value, which is not required to start at 1 or to be
-    // gap-free within a JourneyPattern.
-    List<Integer> sortedStopOrders = journeyPattern
-      .getPointsInSequence()
-      .getPointInJourneyPatternOrStopPointInJourneyPatternOrTimingPointInJourneyPattern()
-      .stream()
-      .map(PointInLinkSequence_VersionedChildStructure::getOrder)
-      .sorted()
-      .map(BigInteger::intValueExact)
-      .toList();
-    Map<Integer, Double> distanceTravelledByStopOrder = new HashMap<>();
-    for (int i = 0; i < sortedStopOrders.size(); i++) {
-      distanceTravelledByStopOrder.put(
-        sortedStopOrders.get(i),
-        travelledDistanceToStop.get(i)
+  /**
+   * Convert the LineStrings of a service link into a sequence of coordinates, together with the distance travelled
+   * from the first coordinate to each coordinate.
+   * Duplicate points that follow one another are filtered out.
+   * @return the service link geometry, or one of the {@link #MISSING_LINE_STRING} and {@link #INVALID_LINE_STRING}
+   * markers if the service link has no valid LineString.
+   */
+  private ServiceLinkGeometry convertServiceLinkGeometry(String serviceLinkId) {
+    ServiceLink serviceLink = netexDatasetRepository.getServiceLinkById(
+      serviceLinkId
+    );
+    Projections_RelStructure projections = serviceLink.getProjections();
+    if (projections == null) {
+      return MISSING_LINE_STRING;
+    }
+    List<LineString> lineStrings = new ArrayList<>();
+    int nbCoordinates = 0;
+    for (JAXBElement<?> jaxbElement : projections.getProjectionRefOrProjection()) {
+      LinkSequenceProjection linkSequenceProjection =
+        (LinkSequenceProjection) jaxbElement.getValue();
+      LineString lineString = GeometryUtil.convertLineStringFromGmlToJts(
+        linkSequenceProjection.getLineString()
       );
+      if (lineString == null) {
+        return INVALID_LINE_STRING;
+      }
+      lineStrings.add(lineString);
+      nbCoordinates += lineString.getNumPoints();
     }
-
-    return new GtfsShape(shapeId, shapePoints, distanceTravelledByStopOrder);
+    double[] lons = new double[nbCoordinates];
+    double[] lats = new double[nbCoordinates];
+    double[] distances = new double[nbCoordinates];
+    int nbPoints = 0;
+    for (LineString lineString : lineStrings) {
+      CoordinateSequence coordinates = lineString.getCoordinateSequence();
+      for (int i = 0; i < coordinates.size(); i++) {
+        double lon = coordinates.getX(i);
+        double lat = coordinates.getY(i);
+        if (nbPoints > 0) {
+          double previousLon = lons[nbPoints - 1];
+          double previousLat = lats[nbPoints - 1];
+          if (lon == previousLon && lat == previousLat) {
+            continue;
+          }
+          distances[nbPoints] =
+            distances[nbPoints - 1] +
+            distanceCalculator.distance(previousLon, previousLat, lon, lat);
+        }
+        lons[nbPoints] = lon;
+        lats[nbPoints] = lat;
+        nbPoints++;
+      }
+    }
+    return new ServiceLinkGeometry(
+      Arrays.copyOf(lons, nbPoints),
+      Arrays.copyOf(lats, nbPoints),
+      Arrays.copyOf(distances, nbPoints)
+    );
   }
 
+  /**
+   * The coordinates of a service link and the distance travelled from its first coordinate to each coordinate.
+   */
+  private record ServiceLinkGeometry(
+    double[] lons,
+    double[] lats,
+    double[] distances
+  ) {}
+
+  /**
+   * The shape points built from an ordered sequence of service links, and the distance travelled to the end of each
+   * service link.
+   * The distance travelled to the first stop is 0.
+   */
+  private record ShapeGeometry(
+    String shapeId,
+    double[] lats,
+    double[] lons,
+    double[] distancesTravelled,
+    double[] distancesTravelledToStops
+  ) {}
+
   /**
    * Compare ServiceLinks by their "order" property.
    */
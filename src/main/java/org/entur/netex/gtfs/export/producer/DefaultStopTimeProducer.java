@@ -20,16 +20,18 @@ package org.entur.netex.gtfs.export.producer;
 
 import static org.entur.netex.gtfs.export.util.GtfsUtil.toGtfsTimeWithDayOffset;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.entur.netex.gtfs.export.exception.GtfsExportException;
 import org.entur.netex.gtfs.export.model.GtfsShape;
 import org.entur.netex.gtfs.export.repository.GtfsDatasetRepository;
 import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
-import org.entur.netex.gtfs.export.util.DestinationDisplayUtil;
-import org.entur.netex.gtfs.export.util.StopUtil;
+import org.entur.netex.gtfs.export.util.GtfsStopCache;
+import org.entur.netex.gtfs.export.util.HeadSignCache;
 import org.onebusaway.gtfs.model.Stop;
 import org.onebusaway.gtfs.model.StopTime;
 import org.onebusaway.gtfs.model.Trip;
-import org.rutebanken.netex.model.DestinationDisplay;
 import org.rutebanken.netex.model.JourneyPattern;
 import org.rutebanken.netex.model.StopPointInJourneyPattern;
 import org.rutebanken.netex.model.TimetabledPassingTime;
@@ -42,15 +44,47 @@ public class DefaultStopTimeProducer implements StopTimeProducer {
     DefaultStopTimeProducer.class
   );
 
-  private final NetexDatasetRepository netexDatasetRepository;
-  private final GtfsDatasetRepository gtfsDatasetRepository;
+  private final HeadSignCache headSignCache;
+  private final GtfsStopCache gtfsStopCache;
+  private final Map<JourneyPatternKey, JourneyPatternStops> journeyPatternStops;
 
   public DefaultStopTimeProducer(
     NetexDatasetRepository netexDatasetRepository,
     GtfsDatasetRepository gtfsDatasetRepository
   ) {
-    this.netexDatasetRepository = netexDatasetRepository;
-    this.gtfsDatasetRepository = gtfsDatasetRepository;
+    this(
+      netexDatasetRepository,
+      gtfsDatasetRepository,
+      new HeadSignCache(netexDatasetRepository)
+    );
+  }
+
+  /**
+   * @param headSignCache a head sign cache, typically shared with the trip producer.
+   */
+  public DefaultStopTimeProducer(
+    NetexDatasetRepository netexDatasetRepository,
+    GtfsDatasetRepository gtfsDatasetRepository,
+    HeadSignCache headSignCache
+  ) {
+    this(
+      headSignCache,
+      new GtfsStopCache(netexDatasetRepository, gtfsDatasetRepository)
+    );
+  }
+
+  /**
+   * Create a stop time producer that reads the NeTEx and GTFS datasets through the given caches only.
+   * @param headSignCache a head sign cache, typically shared with the trip producer.
+   * @param gtfsStopCache a GTFS stop cache, typically shared with the transfer producer.
+   */
+  public DefaultStopTimeProducer(
+    HeadSignCache headSignCache,
+    GtfsStopCache gtfsStopCache
+  ) {
+    this.headSignCache = headSignCache;
+    this.gtfsStopCache = gtfsStopCache;
+    this.journeyPatternStops = new ConcurrentHashMap<>();
   }
 
   @Override
@@ -71,33 +105,15 @@ public class DefaultStopTimeProducer implements StopTimeProducer {
       .getPointInJourneyPatternRef()
       .getValue()
       .getRef();
+    JourneyPatternStop journeyPatternStop = getJourneyPatternStops(
+      journeyPattern
+    )
+      .get(pointInJourneyPatternRef);
     StopPointInJourneyPattern stopPointInSequence =
-      (StopPointInJourneyPattern) journeyPattern
-        .getPointsInSequence()
-        .getPointInJourneyPatternOrStopPointInJourneyPatternOrTimingPointInJourneyPattern()
-        .stream()
-        .filter(stopPointInJourneyPattern ->
-          stopPointInJourneyPattern.getId().equals(pointInJourneyPatternRef)
-        )
-        .findFirst()
-        .orElseThrow(() ->
-          new GtfsExportException(
-            "Could not find StopPointInJourneyPattern with id " +
-            pointInJourneyPatternRef
-          )
-        );
+      journeyPatternStop.stopPoint();
     int stopSequence = stopPointInSequence.getOrder().intValueExact();
     stopTime.setStopSequence(stopSequence);
-    String scheduledStopPointId = stopPointInSequence
-      .getScheduledStopPointRef()
-      .getValue()
-      .getRef();
-    Stop stop = StopUtil.getGtfsStopFromScheduledStopPointId(
-      scheduledStopPointId,
-      netexDatasetRepository,
-      gtfsDatasetRepository
-    );
-    stopTime.setStop(stop);
+    stopTime.setStop(journeyPatternStop.stop());
 
     // arrival time
     if (timetabledPassingTime.getArrivalTime() != null) {
@@ -136,23 +152,12 @@ public class DefaultStopTimeProducer implements StopTimeProducer {
     // destination display = stop head sign
     // the head sign is by default the destination display set on the current stop
     // it can be ignored if it is the same as the trip head sign
-    String stopHeadSignOnCurrentStop = null;
-    if (stopPointInSequence.getDestinationDisplayRef() != null) {
-      DestinationDisplay destinationDisplay =
-        netexDatasetRepository.getDestinationDisplayById(
-          stopPointInSequence.getDestinationDisplayRef().getRef()
-        );
-      stopHeadSignOnCurrentStop =
-        DestinationDisplayUtil.getHeadSignFromDestinationDisplay(
-          destinationDisplay,
-          netexDatasetRepository
-        );
-      if (
-        stopHeadSignOnCurrentStop != null &&
-        stopHeadSignOnCurrentStop.equals(trip.getTripHeadsign())
-      ) {
-        stopHeadSignOnCurrentStop = null;
-      }
+    String stopHeadSignOnCurrentStop = journeyPatternStop.headSign();
+    if (
+      stopHeadSignOnCurrentStop != null &&
+      stopHeadSignOnCurrentStop.equals(trip.getTripHeadsign())
+    ) {
+      stopHeadSignOnCurrentStop = null;
     }
     // otherwise the head sign from the previous stop is used
     // in GTFS the head sign must be explicitly set from the first stop where the head sign has changed to the last stop the change applies.
@@ -196,4 +201,101 @@ public class DefaultStopTimeProducer implements StopTimeProducer {
 
     return stopTime;
   }
+
+  /**
+   * Return the stop points of a journey pattern, indexed by id.
+   * The index is shared by all the service journeys of the journey pattern. It is keyed on the journey pattern instance
+   * rather than on its id, so that a producer reused for another dataset, or shared by concurrent conversions, does not
+   * return the stops of another journey pattern with the same id.
+   */
+  private JourneyPatternStops getJourneyPatternStops(
+    JourneyPattern journeyPattern
+  ) {
+    return journeyPatternStops.computeIfAbsent(
+      new JourneyPatternKey(journeyPattern),
+      key -> new JourneyPatternStops(journeyPattern)
+    );
+  }
+
+  /**
+   * Identity-based key of a journey pattern.
+   */
+  private record JourneyPatternKey(JourneyPattern journeyPattern) {
+    @Override
+    public boolean equals(Object o) {
+      return (
+        o instanceof JourneyPatternKey other &&
+        journeyPattern == other.journeyPattern
+      );
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(journeyPattern);
+    }
+  }
+
+  /**
+   * A stop point in a journey pattern, with its GTFS stop and the head sign derived from its destination display.
+   * The head sign is null if the stop point does not refer to a destination display.
+   */
+  private record JourneyPatternStop(
+    StopPointInJourneyPattern stopPoint,
+    Stop stop,
+    String headSign
+  ) {}
+
+  /**
+   * The stop points of a journey pattern, indexed by id.
+   * The GTFS stop and the head sign of a stop point are resolved on first access.
+   */
+  private final class JourneyPatternStops {
+
+    private final Map<String, StopPointInJourneyPattern> stopPointsById;
+    private final Map<String, JourneyPatternStop> resolvedStopPointsById;
+
+    JourneyPatternStops(JourneyPattern journeyPattern) {
+      this.stopPointsById = new HashMap<>();
+      for (Object pointInJourneyPattern : journeyPattern
+        .getPointsInSequence()
+        .getPointInJourneyPatternOrStopPointInJourneyPatternOrTimingPointInJourneyPattern()) {
+        if (pointInJourneyPattern instanceof StopPointInJourneyPattern stopPoint) {
+          stopPointsById.put(stopPoint.getId(), stopPoint);
+        }
+      }
+      this.resolvedStopPointsById = new ConcurrentHashMap<>();
+    }
+
+    JourneyPatternStop get(String pointInJourneyPatternRef) {
+      return resolvedStopPointsById.computeIfAbsent(
+        pointInJourneyPatternRef,
+        this::resolve
+      );
+    }
+
+    private JourneyPatternStop resolve(String pointInJourneyPatternRef) {
+      StopPointInJourneyPattern stopPoint = stopPointsById.get(
+        pointInJourneyPatternRef
+      );
+      if (stopPoint == null) {
+        throw new GtfsExportException(
+          "Could not find StopPointInJourneyPattern with id " +
+          pointInJourneyPatternRef
+        );
+      }
+      String scheduledStopPointId = stopPoint
+        .getScheduledStopPointRef()
+        .getValue()
+        .getRef();
+      Stop stop = gtfsStopCache.getStop(scheduledStopPointId);
+      String headSign = null;
+      if (stopPoint.getDestinationDisplayRef() != null) {
+        headSign =
+          headSignCache.getHeadSign(
+            stopPoint.getDestinationDisplayRef().getRef()
+          );
+      }
+      return new JourneyPatternStop(stopPoint, stop, headSign);
+    }
+  }
 }
@@ -21,7 +21,7 @@ package org.entur.netex.gtfs.export.producer;
 import java.util.Optional;
 import org.entur.netex.gtfs.export.repository.GtfsDatasetRepository;
 import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
-import org.entur.netex.gtfs.export.util.StopUtil;
+import org.entur.netex.gtfs.export.util.GtfsStopCache;
 import org.onebusaway.gtfs.model.Stop;
 import org.onebusaway.gtfs.model.Transfer;
 import org.onebusaway.gtfs.model.Trip;
@@ -35,9 +35,9 @@ public class DefaultTransferProducer implements TransferProducer {
     DefaultTransferProducer.class
   );
 
-  private final NetexDatasetRepository netexDatasetRepository;
   private final GtfsDatasetRepository gtfsDatasetRepository;
   private final boolean generateStaySeatedTransfer;
+  private final GtfsStopCache gtfsStopCache;
 
   public DefaultTransferProducer(
     NetexDatasetRepository netexDatasetRepository,
@@ -51,9 +51,26 @@ public class DefaultTransferProducer implements TransferProducer {
     GtfsDatasetRepository gtfsDatasetRepository,
     boolean generateStaySeatedTransfer
   ) {
-    this.netexDatasetRepository = netexDatasetRepository;
+    this(
+      netexDatasetRepository,
+      gtfsDatasetRepository,
+      generateStaySeatedTransfer,
+      new GtfsStopCache(netexDatasetRepository, gtfsDatasetRepository)
+    );
+  }
+
+  /**
+   * @param gtfsStopCache a GTFS stop cache, typically shared with the stop time producer.
+   */
+  public DefaultTransferProducer(
+    NetexDatasetRepository netexDatasetRepository,
+    GtfsDatasetRepository gtfsDatasetRepository,
+    boolean generateStaySeatedTransfer,
+    GtfsStopCache gtfsStopCache
+  ) {
     this.gtfsDatasetRepository = gtfsDatasetRepository;
     this.generateStaySeatedTransfer = generateStaySeatedTransfer;
+    this.gtfsStopCache = gtfsStopCache;
   }
 
   @Override
@@ -90,21 +107,13 @@ public class DefaultTransferProducer implements TransferProducer {
     String fromScheduledStopPointId = serviceJourneyInterchange
       .getFromPointRef()
       .getRef();
-    Stop fromStop = StopUtil.getGtfsStopFromScheduledStopPointId(
-      fromScheduledStopPointId,
-      netexDatasetRepository,
-      gtfsDatasetRepository
-    );
+    Stop fromStop = gtfsStopCache.getStop(fromScheduledStopPointId);
     transfer.setFromStop(fromStop);
 
     String toScheduledStopPointId = serviceJourneyInterchange
       .getToPointRef()
       .getRef();
-    Stop toStop = StopUtil.getGtfsStopFromScheduledStopPointId(
-      toScheduledStopPointId,
-      netexDatasetRepository,
-      gtfsDatasetRepository
-    );
+    Stop toStop = gtfsStopCache.getStop(toScheduledStopPointId);
     transfer.setToStop(toStop);
 
     if (
@@ -23,7 +23,9 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.entur.netex.gtfs.export.repository.GtfsDatasetRepository;
 import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
-import org.entur.netex.gtfs.export.util.DestinationDisplayUtil;
+import org.entur.netex.gtfs.export.util.DayTypeCache;
+import org.entur.netex.gtfs.export.util.DayTypeCache.ResolvedDayType;
+import org.entur.netex.gtfs.export.util.HeadSignCache;
 import org.entur.netex.gtfs.export.util.ServiceAlterationChecker;
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
@@ -51,17 +53,58 @@ public class DefaultTripProducer implements TripProducer {
   private final GtfsServiceRepository gtfsServiceRepository;
   private final NetexDatasetRepository netexDatasetRepository;
   private final ServiceAlterationChecker serviceAlterationChecker;
+  private final HeadSignCache headSignCache;
+  private final DayTypeCache dayTypeCache;
 
   public DefaultTripProducer(
     NetexDatasetRepository netexDatasetRepository,
     GtfsDatasetRepository gtfsDatasetRepository,
     GtfsServiceRepository gtfsServiceRepository
+  ) {
+    this(
+      netexDatasetRepository,
+      gtfsDatasetRepository,
+      gtfsServiceRepository,
+      new HeadSignCache(netexDatasetRepository)
+    );
+  }
+
+  /**
+   * @param headSignCache a head sign cache, typically shared with the stop time producer.
+   */
+  public DefaultTripProducer(
+    NetexDatasetRepository netexDatasetRepository,
+    GtfsDatasetRepository gtfsDatasetRepository,
+    GtfsServiceRepository gtfsServiceRepository,
+    HeadSignCache headSignCache
+  ) {
+    this(
+      netexDatasetRepository,
+      gtfsDatasetRepository,
+      gtfsServiceRepository,
+      headSignCache,
+      new DayTypeCache(netexDatasetRepository)
+    );
+  }
+
+  /**
+   * @param headSignCache a head sign cache, typically shared with the stop time producer.
+   * @param dayTypeCache a cache of resolved day types, typically shared with the GTFS service repository.
+   */
+  public DefaultTripProducer(
+    NetexDatasetRepository netexDatasetRepository,
+    GtfsDatasetRepository gtfsDatasetRepository,
+    GtfsServiceRepository gtfsServiceRepository,
+    HeadSignCache headSignCache,
+    DayTypeCache dayTypeCache
   ) {
     this.agency = gtfsDatasetRepository.getDefaultAgency();
     this.gtfsServiceRepository = gtfsServiceRepository;
     this.netexDatasetRepository = netexDatasetRepository;
     this.serviceAlterationChecker =
       new ServiceAlterationChecker(netexDatasetRepository);
+    this.headSignCache = headSignCache;
+    this.dayTypeCache = dayTypeCache;
   }
 
   @Override
@@ -105,12 +148,9 @@ public class DefaultTripProducer implements TripProducer {
         .getDayTypeRef()
         .stream()
         .map(jaxbElement -> jaxbElement.getValue().getRef())
-        .map(netexDatasetRepository::getDayTypeById)
-        .filter(dayType ->
-          !netexDatasetRepository
-            .getDayTypeAssignmentsByDayType(dayType)
-            .isEmpty()
-        )
+        .map(dayTypeCache::getResolvedDayType)
+        .filter(ResolvedDayType::hasDayTypeAssignments)
+        .map(ResolvedDayType::getDayType)
         .collect(Collectors.toSet());
       if (dayTypes.isEmpty()) {
         LOGGER.info(
@@ -153,12 +193,7 @@ public class DefaultTripProducer implements TripProducer {
     trip.setServiceId(serviceAgencyAndId);
 
     // destination display = head sign
-    trip.setTripHeadsign(
-      DestinationDisplayUtil.getHeadSignFromDestinationDisplay(
-        initialDestinationDisplay,
-        netexDatasetRepository
-      )
-    );
+    trip.setTripHeadsign(headSignCache.getHeadSign(initialDestinationDisplay));
 
     // shape
     trip.setShapeId(shapeId);
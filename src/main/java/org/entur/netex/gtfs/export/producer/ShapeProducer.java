@@ -31,4 +31,11 @@ public interface ShapeProducer {
    * @return a GTFS shape.
    */
   GtfsShape produce(JourneyPattern journeyPattern);
+
+  /**
+   * Prepare the production of shapes once the NeTEx dataset is loaded.
+   * This is called before the journey patterns are converted, from a single thread. The default implementation does
+   * nothing.
+   */
+  default void initialize() {}
 }
@@ -19,8 +19,16 @@
 package org.entur.netex.gtfs.export.repository;
 
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import org.entur.netex.gtfs.export.model.GtfsShape;
 import org.entur.netex.gtfs.export.serializer.DefaultGtfsSerializer;
+import org.entur.netex.gtfs.export.serializer.GtfsArchiveWriter;
 import org.entur.netex.gtfs.export.serializer.GtfsSerializer;
 import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
 import org.onebusaway.gtfs.model.Agency;
@@ -29,6 +37,11 @@ import org.onebusaway.gtfs.model.Stop;
 import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs.services.GtfsMutableDao;
 
+/**
+ * GTFS repository backed by the OneBusAway in-memory data model.
+ * The repository is thread-safe: entities can be saved and looked up from concurrent threads.
+ * Stops and trips are additionally indexed by id, so that looking them up does not go through the DAO.
+ */
 public class DefaultGtfsRepository implements GtfsDatasetRepository {
 
   private static final String DEFAULT_AGENCY_ID = "DEFAULT";
@@ -36,15 +49,59 @@ public class DefaultGtfsRepository implements GtfsDatasetRepository {
   private final GtfsMutableDao gtfsDao;
   private final GtfsSerializer gtfsSerializer;
   private final Agency defaultAgency;
+  private final List<GtfsShape> shapes;
+  private final Map<String, Stop> stopsById;
+  private final Map<String, Trip> tripsById;
 
   public DefaultGtfsRepository() {
+    this(
+      GtfsArchiveWriter.DEFAULT_STORED_ENTRY_MAX_SIZE,
+      Deflater.DEFAULT_COMPRESSION
+    );
+  }
+
+  /**
+   * Create a repository that writes the GTFS archive with the given compression settings.
+   * @param storedEntryMaxSize files up to this size in bytes are stored uncompressed in the GTFS archive.
+   * @param compressionLevel the deflater compression level used for larger files, from 0 to 9.
+   */
+  public DefaultGtfsRepository(int storedEntryMaxSize, int compressionLevel) {
+    this(new ArrayList<>(), storedEntryMaxSize, compressionLevel);
+  }
+
+  private DefaultGtfsRepository(
+    List<GtfsShape> shapes,
+    int storedEntryMaxSize,
+    int compressionLevel
+  ) {
+    this(
+      new DefaultGtfsSerializer(shapes, storedEntryMaxSize, compressionLevel),
+      shapes
+    );
+  }
+
+  /**
+   * Create a repository that serializes the GTFS data model with the given serializer.
+   * Shapes are expanded into shape points as soon as they are saved.
+   */
+  protected DefaultGtfsRepository(GtfsSerializer gtfsSerializer) {
+    this(gtfsSerializer, null);
+  }
+
+  private DefaultGtfsRepository(
+    GtfsSerializer gtfsSerializer,
+    List<GtfsShape> shapes
+  ) {
     this.gtfsDao = new GtfsRelationalDaoImpl();
-    this.gtfsSerializer = new DefaultGtfsSerializer();
+    this.gtfsSerializer = gtfsSerializer;
     this.defaultAgency = createDefaultAgency();
+    this.shapes = shapes;
+    this.stopsById = new ConcurrentHashMap<>();
+    this.tripsById = new ConcurrentHashMap<>();
   }
 
   @Override
-  public Agency getAgencyById(String agencyId) {
+  public synchronized Agency getAgencyById(String agencyId) {
     Agency agency = gtfsDao.getAgencyForId(agencyId);
     if (agency == null) {
       throw new GtfsDatasetRepositoryException("Agency not found: " + agencyId);
@@ -62,16 +119,12 @@ public class DefaultGtfsRepository implements GtfsDatasetRepository {
 
   @Override
   public Optional<Trip> findTripById(String tripId) {
-    AgencyAndId agencyAndId = new AgencyAndId(defaultAgency.getId(), tripId);
-    return Optional.ofNullable(gtfsDao.getTripForId(agencyAndId));
+    return Optional.ofNullable(tripsById.get(tripId));
   }
 
   @Override
   public Stop getStopById(String stopId) {
-    AgencyAndId agencyAndId = new AgencyAndId();
-    agencyAndId.setId(stopId);
-    agencyAndId.setAgencyId(defaultAgency.getId());
-    Stop stop = gtfsDao.getStopForId(agencyAndId);
+    Stop stop = stopsById.get(stopId);
     if (stop == null) {
       throw new GtfsDatasetRepositoryException("Stop not found: " + stopId);
     }
@@ -79,15 +132,68 @@ public class DefaultGtfsRepository implements GtfsDatasetRepository {
   }
 
   @Override
-  public void saveEntity(Object entity) {
+  public synchronized void saveEntity(Object entity) {
+    indexEntity(entity);
     gtfsDao.saveEntity(entity);
   }
 
+  /**
+   * Index the stops and trips of the default agency by id.
+   * Subclasses that do not save some of these entities in the DAO must still index them.
+   */
+  protected final void indexEntity(Object entity) {
+    if (entity instanceof Stop stop) {
+      if (isDefaultAgencyEntity(stop.getId())) {
+        stopsById.put(stop.getId().getId(), stop);
+      }
+    } else if (entity instanceof Trip trip) {
+      if (isDefaultAgencyEntity(trip.getId())) {
+        tripsById.put(trip.getId().getId(), trip);
+      }
+    }
+  }
+
+  private boolean isDefaultAgencyEntity(AgencyAndId id) {
+    return id != null && defaultAgency.getId().equals(id.getAgencyId());
+  }
+
+  /**
+   * Keep the shape in its packed form until the GTFS archive is written, if the serializer supports it.
+   */
   @Override
-  public InputStream writeGtfs() {
+  public synchronized void saveShape(GtfsShape shape) {
+    if (shapes == null) {
+      shape.getShapePoints().forEach(this::saveEntity);
+    } else {
+      shapes.add(shape);
+    }
+  }
+
+  @Override
+  public synchronized InputStream writeGtfs() {
     return gtfsSerializer.writeGtfs(gtfsDao);
   }
 
+  @Override
+  public synchronized void writeGtfs(OutputStream outputStream) {
+    gtfsSerializer.writeGtfs(gtfsDao, outputStream);
+  }
+
+  @Override
+  public synchronized InputStream writeGtfs(
+    GtfsArchiveWriter.EntryListener entryListener
+  ) {
+    return gtfsSerializer.writeGtfs(gtfsDao, entryListener);
+  }
+
+  @Override
+  public synchronized void writeGtfs(
+    OutputStream outputStream,
+    GtfsArchiveWriter.EntryListener entryListener
+  ) {
+    gtfsSerializer.writeGtfs(gtfsDao, outputStream, entryListener);
+  }
+
   @Override
   public Agency getDefaultAgency() {
     return defaultAgency;
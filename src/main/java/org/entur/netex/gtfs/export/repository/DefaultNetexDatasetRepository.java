@@ -19,6 +19,8 @@
 package org.entur.netex.gtfs.export.repository;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -38,6 +40,7 @@ import org.rutebanken.netex.model.LocaleStructure;
 import org.rutebanken.netex.model.Network;
 import org.rutebanken.netex.model.OperatingDay;
 import org.rutebanken.netex.model.OperatingPeriod;
+import org.rutebanken.netex.model.Route;
 import org.rutebanken.netex.model.ServiceJourney;
 import org.rutebanken.netex.model.ServiceJourneyInterchange;
 import org.rutebanken.netex.model.ServiceLink;
@@ -49,6 +52,12 @@ public class DefaultNetexDatasetRepository implements NetexDatasetRepository {
   private final NetexEntitiesIndex netexEntitiesIndex;
   private volatile String timezone;
 
+  /**
+   * Reverse indexes from a parent entity id to its children.
+   * They are built on first access and discarded when the repository is invalidated.
+   */
+  private volatile ReverseIndexes reverseIndexes;
+
   public DefaultNetexDatasetRepository() {
     this.netexEntitiesIndex = new NetexEntitiesIndexImpl();
   }
@@ -58,6 +67,14 @@ public class DefaultNetexDatasetRepository implements NetexDatasetRepository {
     return netexEntitiesIndex;
   }
 
+  /**
+   * Discard the reverse indexes, which are rebuilt on the next lookup.
+   */
+  @Override
+  public synchronized void invalidate() {
+    reverseIndexes = null;
+  }
+
   @Override
   public OperatingDay getOperatingDayByDayTypeAssignment(
     DayTypeAssignment dayTypeAssignment
@@ -254,44 +271,37 @@ public class DefaultNetexDatasetRepository implements NetexDatasetRepository {
   public Collection<ServiceJourney> getServiceJourneysByJourneyPattern(
     JourneyPattern journeyPattern
   ) {
-    return getServiceJourneys()
-      .stream()
-      .filter(serviceJourney ->
-        serviceJourney
-          .getJourneyPatternRef()
-          .getValue()
-          .getRef()
-          .equals(journeyPattern.getId())
-      )
-      .collect(Collectors.toSet());
+    return getReverseIndexes()
+      .serviceJourneysByJourneyPatternId()
+      .getOrDefault(journeyPattern.getId(), List.of());
   }
 
   @Override
-  public Collection<org.rutebanken.netex.model.Route> getRoutesByLine(
-    Line line
-  ) {
-    return netexEntitiesIndex
-      .getRouteIndex()
-      .getAll()
-      .stream()
-      .filter(route ->
-        route.getLineRef().getValue().getRef().equals(line.getId())
-      )
-      .collect(Collectors.toSet());
+  public Collection<Route> getRoutesByLine(Line line) {
+    return getReverseIndexes()
+      .routesByLineId()
+      .getOrDefault(line.getId(), List.of());
   }
 
   @Override
-  public Collection<JourneyPattern> getJourneyPatternsByRoute(
-    org.rutebanken.netex.model.Route route
-  ) {
-    return netexEntitiesIndex
-      .getJourneyPatternIndex()
-      .getAll()
-      .stream()
-      .filter(journeyPattern ->
-        journeyPattern.getRouteRef().getRef().equals(route.getId())
-      )
-      .collect(Collectors.toSet());
+  public Collection<JourneyPattern> getJourneyPatternsByRoute(Route route) {
+    return getReverseIndexes()
+      .journeyPatternsByRouteId()
+      .getOrDefault(route.getId(), List.of());
+  }
+
+  private ReverseIndexes getReverseIndexes() {
+    ReverseIndexes indexes = reverseIndexes;
+    if (indexes == null) {
+      synchronized (this) {
+        indexes = reverseIndexes;
+        if (indexes == null) {
+          indexes = ReverseIndexes.build(netexEntitiesIndex);
+          reverseIndexes = indexes;
+        }
+      }
+    }
+    return indexes;
   }
 
   @Override
@@ -340,4 +350,42 @@ public class DefaultNetexDatasetRepository implements NetexDatasetRepository {
     }
     return operatingDay;
   }
+
+  private record ReverseIndexes(
+    Map<String, List<Route>> routesByLineId,
+    Map<String, List<JourneyPattern>> journeyPatternsByRouteId,
+    Map<String, List<ServiceJourney>> serviceJourneysByJourneyPatternId
+  ) {
+    static ReverseIndexes build(NetexEntitiesIndex netexEntitiesIndex) {
+      return new ReverseIndexes(
+        netexEntitiesIndex
+          .getRouteIndex()
+          .getAll()
+          .stream()
+          .collect(
+            Collectors.groupingBy(route ->
+              route.getLineRef().getValue().getRef()
+            )
+          ),
+        netexEntitiesIndex
+          .getJourneyPatternIndex()
+          .getAll()
+          .stream()
+          .collect(
+            Collectors.groupingBy(journeyPattern ->
+              journeyPattern.getRouteRef().getRef()
+            )
+          ),
+        netexEntitiesIndex
+          .getServiceJourneyIndex()
+          .getAll()
+          .stream()
+          .collect(
+            Collectors.groupingBy(serviceJourney ->
+              serviceJourney.getJourneyPatternRef().getValue().getRef()
+            )
+          )
+      );
+    }
+  }
 }
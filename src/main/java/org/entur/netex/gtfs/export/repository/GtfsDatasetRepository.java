@@ -18,8 +18,13 @@
 
 package org.entur.netex.gtfs.export.repository;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Optional;
+import org.entur.netex.gtfs.export.exception.GtfsSerializationException;
+import org.entur.netex.gtfs.export.model.GtfsShape;
+import org.entur.netex.gtfs.export.serializer.GtfsArchiveWriter;
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.Stop;
 import org.onebusaway.gtfs.model.Trip;
@@ -63,11 +68,60 @@ public interface GtfsDatasetRepository {
    */
   void saveEntity(Object entity);
 
+  /**
+   * Add a shape to the in-memory GTFS object model.
+   * By default the shape is expanded into GTFS shape points, each saved as an entity.
+   * @param shape the shape to be saved.
+   */
+  default void saveShape(GtfsShape shape) {
+    shape.getShapePoints().forEach(this::saveEntity);
+  }
+
   /**
    * Generate a GTFS archive from the GTFS object model and return an input stream pointing to it.
    * @return the GTFS archive
    */
   InputStream writeGtfs();
 
+  /**
+   * Generate a GTFS archive from the GTFS object model and write it to an output stream.
+   * The output stream is not closed.
+   * @param outputStream the stream to which the GTFS archive is written.
+   */
+  default void writeGtfs(OutputStream outputStream) {
+    try (InputStream gtfsArchive = writeGtfs()) {
+      gtfsArchive.transferTo(outputStream);
+    } catch (IOException e) {
+      throw new GtfsSerializationException(
+        "Error while writing the GTFS dataset",
+        e
+      );
+    }
+  }
+
+  /**
+   * Generate a GTFS archive from the GTFS object model and return an input stream pointing to it.
+   * The listener is notified of each file added to the archive, if the underlying serializer supports it.
+   * @param entryListener the listener notified of each file added to the archive.
+   * @return the GTFS archive
+   */
+  default InputStream writeGtfs(GtfsArchiveWriter.EntryListener entryListener) {
+    return writeGtfs();
+  }
+
+  /**
+   * Generate a GTFS archive from the GTFS object model and write it to an output stream.
+   * The listener is notified of each file added to the archive, if the underlying serializer supports it.
+   * The output stream is not closed.
+   * @param outputStream the stream to which the GTFS archive is written.
+   * @param entryListener the listener notified of each file added to the archive.
+   */
+  default void writeGtfs(
+    OutputStream outputStream,
+    GtfsArchiveWriter.EntryListener entryListener
+  ) {
+    writeGtfs(outputStream);
+  }
+
   Agency getDefaultAgency();
 }
@@ -40,6 +40,13 @@ import org.rutebanken.netex.model.ServiceLink;
 public interface NetexDatasetRepository {
   NetexEntitiesIndex getIndex();
 
+  /**
+   * Notify the repository that entities were added to the NeTEx entities index.
+   * Data derived from the index is rebuilt on the next lookup. The NeTEx dataset loaders call this method once the
+   * dataset is loaded.
+   */
+  default void invalidate() {}
+
   Collection<ServiceJourneyInterchange> getServiceJourneyInterchanges();
 
   Collection<DayTypeAssignment> getDayTypeAssignmentsByDayType(DayType dayType);
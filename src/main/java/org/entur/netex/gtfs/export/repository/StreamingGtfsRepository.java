@@ -0,0 +1,126 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.zip.Deflater;
+import org.entur.netex.gtfs.export.serializer.GtfsArchiveWriter;
+import org.entur.netex.gtfs.export.serializer.SpooledGtfsFileWriter;
+import org.entur.netex.gtfs.export.serializer.StreamingGtfsSerializer;
+import org.onebusaway.gtfs.model.ServiceCalendarDate;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+/**
+ * GTFS repository that does not keep the high-volume GTFS entities in memory.
+ * Trips, stop times, shape points and calendar dates are written to spool files as soon as they are saved, and
+ * assembled into the GTFS archive by {@link StreamingGtfsSerializer}. Only the trips are kept in a lookup table, since
+ * they are needed to produce transfers.
+ * As a consequence, entities in trips.txt, stop_times.txt, shapes.txt and calendar_dates.txt are written in the order
+ * in which they are produced instead of being sorted.
+ * The spool files are deleted once the GTFS archive is written. If the conversion fails before that, the repository
+ * must be closed to delete them.
+ */
+public class StreamingGtfsRepository
+  extends DefaultGtfsRepository
+  implements Closeable {
+
+  private final Map<Class<?>, SpooledGtfsFileWriter> spooledFiles;
+
+  public StreamingGtfsRepository() {
+    this(
+      GtfsArchiveWriter.DEFAULT_STORED_ENTRY_MAX_SIZE,
+      Deflater.DEFAULT_COMPRESSION
+    );
+  }
+
+  /**
+   * Create a repository that writes the GTFS archive with the given compression settings.
+   * @param storedEntryMaxSize files up to this size in bytes are stored uncompressed in the GTFS archive.
+   * @param compressionLevel the deflater compression level used for larger files, from 0 to 9.
+   */
+  public StreamingGtfsRepository(int storedEntryMaxSize, int compressionLevel) {
+    this(createSpooledFiles(), storedEntryMaxSize, compressionLevel);
+  }
+
+  private StreamingGtfsRepository(
+    Map<Class<?>, SpooledGtfsFileWriter> spooledFiles,
+    int storedEntryMaxSize,
+    int compressionLevel
+  ) {
+    super(
+      new StreamingGtfsSerializer(
+        spooledFiles,
+        storedEntryMaxSize,
+        compressionLevel
+      )
+    );
+    this.spooledFiles = spooledFiles;
+  }
+
+  @Override
+  public synchronized void saveEntity(Object entity) {
+    SpooledGtfsFileWriter spooledFile = spooledFiles.get(entity.getClass());
+    if (spooledFile == null) {
+      super.saveEntity(entity);
+      return;
+    }
+    indexEntity(entity);
+    spooledFile.write(entity);
+  }
+
+  /**
+   * Delete the spool files. Entities saved so far are discarded.
+   * @throws IOException if a spool file cannot be deleted. The other spool files are deleted nevertheless.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    IOException closeException = null;
+    for (SpooledGtfsFileWriter spooledFile : spooledFiles.values()) {
+      try {
+        spooledFile.close();
+      } catch (IOException e) {
+        if (closeException == null) {
+          closeException = e;
+        } else {
+          closeException.addSuppressed(e);
+        }
+      }
+    }
+    if (closeException != null) {
+      throw closeException;
+    }
+  }
+
+  private static Map<Class<?>, SpooledGtfsFileWriter> createSpooledFiles() {
+    return Map.of(
+      Trip.class,
+      new SpooledGtfsFileWriter(Trip.class),
+      StopTime.class,
+      new SpooledGtfsFileWriter(StopTime.class),
+      ShapePoint.class,
+      new SpooledGtfsFileWriter(ShapePoint.class),
+      ServiceCalendarDate.class,
+      new SpooledGtfsFileWriter(ServiceCalendarDate.class)
+    );
+  }
+}
@@ -18,21 +18,34 @@
 
 package org.entur.netex.gtfs.export.serializer;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.Deflater;
 import org.entur.netex.gtfs.export.exception.GtfsExportException;
 import org.entur.netex.gtfs.export.exception.GtfsSerializationException;
+import org.entur.netex.gtfs.export.model.GtfsShape;
 import org.onebusaway.csv_entities.exceptions.CsvException;
+import org.onebusaway.csv_entities.schema.BeanWrapper;
+import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
+import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.ShapePoint;
 import org.onebusaway.gtfs.model.StopTime;
 import org.onebusaway.gtfs.model.Trip;
-import org.onebusaway.gtfs.serialization.GtfsWriter;
+import org.onebusaway.gtfs.serialization.GtfsEntitySchemaFactory;
 import org.onebusaway.gtfs.services.GtfsDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,7 +56,7 @@ public class DefaultGtfsSerializer implements GtfsSerializer {
     DefaultGtfsSerializer.class
   );
 
-  private static final Map<Class<?>, Collection<String>> FILTERED_FIELDS =
+  static final Map<Class<?>, Collection<String>> FILTERED_FIELDS =
     Map.of(
       Route.class,
       List.of("eligibility_restricted"),
@@ -59,16 +72,96 @@ public class DefaultGtfsSerializer implements GtfsSerializer {
       List.of("drt_advance_book_min", "peak_offpeak")
     );
 
+  private final Collection<GtfsShape> shapes;
+  private final int storedEntryMaxSize;
+  private final int compressionLevel;
+
+  public DefaultGtfsSerializer() {
+    this(List.of());
+  }
+
+  /**
+   * @param shapes the shapes written to shapes.txt in addition to the shape points of the GTFS data model. The shape
+   *               points of these shapes are expanded only while the archive is being written.
+   */
+  public DefaultGtfsSerializer(Collection<GtfsShape> shapes) {
+    this(
+      shapes,
+      GtfsArchiveWriter.DEFAULT_STORED_ENTRY_MAX_SIZE,
+      Deflater.DEFAULT_COMPRESSION
+    );
+  }
+
+  /**
+   * @param shapes the shapes written to shapes.txt in addition to the shape points of the GTFS data model.
+   * @param storedEntryMaxSize files up to this size in bytes are stored uncompressed in the GTFS archive.
+   * @param compressionLevel the deflater compression level used for larger files, from 0 to 9.
+   * @see GtfsArchiveWriter
+   */
+  public DefaultGtfsSerializer(
+    Collection<GtfsShape> shapes,
+    int storedEntryMaxSize,
+    int compressionLevel
+  ) {
+    this.shapes = shapes;
+    this.storedEntryMaxSize = storedEntryMaxSize;
+    this.compressionLevel = compressionLevel;
+  }
+
   @Override
   public InputStream writeGtfs(GtfsDao gtfsDao) {
-    LOGGER.info("Exporting GTFS archive");
-    GtfsWriter writer = null;
+    return writeGtfs(gtfsDao, GtfsArchiveWriter.EntryListener.NONE);
+  }
+
+  @Override
+  public InputStream writeGtfs(
+    GtfsDao gtfsDao,
+    GtfsArchiveWriter.EntryListener entryListener
+  ) {
     try {
       File outputFile = createSecureTemporaryFile("gtfs-export-", ".zip");
-      writer = new FilteredFieldsGtfsWriter(FILTERED_FIELDS);
-      writer.setOutputLocation(outputFile);
-      writer.run(gtfsDao);
+      try (
+        OutputStream outputStream = new BufferedOutputStream(
+          Files.newOutputStream(outputFile.toPath())
+        )
+      ) {
+        writeGtfs(gtfsDao, outputStream, entryListener);
+      } catch (IOException | RuntimeException e) {
+        Files.deleteIfExists(outputFile.toPath());
+        throw e;
+      }
       return createDeleteOnCloseInputStream(outputFile);
+    } catch (IOException e) {
+      throw new GtfsSerializationException(
+        "Error while saving the GTFS dataset",
+        e
+      );
+    }
+  }
+
+  @Override
+  public void writeGtfs(GtfsDao gtfsDao, OutputStream outputStream) {
+    writeGtfs(gtfsDao, outputStream, GtfsArchiveWriter.EntryListener.NONE);
+  }
+
+  @Override
+  public void writeGtfs(
+    GtfsDao gtfsDao,
+    OutputStream outputStream,
+    GtfsArchiveWriter.EntryListener entryListener
+  ) {
+    LOGGER.info("Exporting GTFS archive");
+    try (
+      GtfsArchiveWriter gtfsArchiveWriter = new GtfsArchiveWriter(
+        outputStream,
+        storedEntryMaxSize,
+        compressionLevel,
+        entryListener
+      )
+    ) {
+      for (Class<?> entityType : GtfsEntitySchemaFactory.getEntityClasses()) {
+        writeEntry(gtfsDao, entityType, gtfsArchiveWriter);
+      }
     } catch (CsvException csve) {
       throw new GtfsExportException(
         "Cannot produce a valid GTFS dataset",
@@ -79,15 +172,128 @@ public class DefaultGtfsSerializer implements GtfsSerializer {
         "Error while saving the GTFS dataset",
         e
       );
-    } finally {
-      if (writer != null) {
-        try {
-          writer.close();
-        } catch (IOException e) {
-          LOGGER.warn("Error while closing the GTFS writer", e);
+    }
+  }
+
+  /**
+   * Write the GTFS file containing the entities of a given type.
+   * The file is written only if the GTFS data model contains entities of this type.
+   *
+   * @param gtfsDao the in-memory GTFS data model.
+   * @param entityType the type of entities to write.
+   * @param gtfsArchiveWriter the GTFS archive.
+   * @throws IOException if the archive cannot be written.
+   */
+  protected void writeEntry(
+    GtfsDao gtfsDao,
+    Class<?> entityType,
+    GtfsArchiveWriter gtfsArchiveWriter
+  ) throws IOException {
+    Collection<?> entities = gtfsDao.getAllEntitiesForType(entityType);
+    if (entityType == ShapePoint.class && !shapes.isEmpty()) {
+      if (entities.isEmpty()) {
+        writeShapes(gtfsArchiveWriter);
+        return;
+      }
+      // shape points saved as individual entities are merged with the expanded shapes and sorted together.
+      List<Object> shapePoints = new ArrayList<>(entities);
+      shapes.forEach(shape -> shapePoints.addAll(shape.getShapePoints()));
+      entities = shapePoints;
+    }
+    if (entities.isEmpty()) {
+      return;
+    }
+    List<Object> sortedEntities = sortEntities(entityType, entities);
+    GtfsCsvFile csvFile = new GtfsCsvFile(entityType);
+    for (Object entity : sortedEntities) {
+      csvFile.includeFieldsSetOn(BeanWrapperFactory.wrap(entity));
+    }
+    gtfsArchiveWriter.writeEntry(
+      csvFile.getFileName(),
+      outputStream -> {
+        PrintWriter writer = new PrintWriter(
+          new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)
+        );
+        csvFile.writeHeader(writer);
+        List<String> values = new ArrayList<>();
+        for (Object entity : sortedEntities) {
+          values.clear();
+          csvFile.appendCsvValues(BeanWrapperFactory.wrap(entity), values);
+          csvFile.writeRow(writer, values);
+        }
+        writer.flush();
+      }
+    );
+  }
+
+  /**
+   * Write shapes.txt from the packed shapes, sorted by shape id and sequence as with the OneBusAway comparator.
+   * A single GTFS shape point is filled in turn with each point of each shape, instead of allocating one entity per
+   * row.
+   */
+  private void writeShapes(GtfsArchiveWriter gtfsArchiveWriter)
+    throws IOException {
+    List<ShapeWithId> sortedShapes = new ArrayList<>(shapes.size());
+    for (GtfsShape shape : shapes) {
+      sortedShapes.add(
+        new ShapeWithId(
+          shape,
+          new AgencyAndId(shape.getAgencyId(), shape.getId())
+        )
+      );
+    }
+    sortedShapes.sort(Comparator.comparing(ShapeWithId::shapeId));
+
+    ShapePoint shapePoint = new ShapePoint();
+    BeanWrapper shapePointWrapper = BeanWrapperFactory.wrap(shapePoint);
+    GtfsCsvFile csvFile = new GtfsCsvFile(ShapePoint.class);
+    for (ShapeWithId shapeWithId : sortedShapes) {
+      GtfsShape shape = shapeWithId.shape();
+      for (int i = 0; i < shape.getShapePointCount(); i++) {
+        shape.fillShapePoint(i, shapeWithId.shapeId(), shapePoint);
+        csvFile.includeFieldsSetOn(shapePointWrapper);
+      }
+    }
+    gtfsArchiveWriter.writeEntry(
+      csvFile.getFileName(),
+      outputStream -> {
+        PrintWriter writer = new PrintWriter(
+          new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)
+        );
+        csvFile.writeHeader(writer);
+        List<String> values = new ArrayList<>();
+        for (ShapeWithId shapeWithId : sortedShapes) {
+          GtfsShape shape = shapeWithId.shape();
+          for (int i = 0; i < shape.getShapePointCount(); i++) {
+            shape.fillShapePoint(i, shapeWithId.shapeId(), shapePoint);
+            values.clear();
+            csvFile.appendCsvValues(shapePointWrapper, values);
+            csvFile.writeRow(writer, values);
+          }
         }
+        writer.flush();
       }
+    );
+  }
+
+  private record ShapeWithId(GtfsShape shape, AgencyAndId shapeId) {}
+
+  /**
+   * Sort the entities with the OneBusAway entity comparator, if any.
+   */
+  @SuppressWarnings("unchecked")
+  private static List<Object> sortEntities(
+    Class<?> entityType,
+    Collection<?> entities
+  ) {
+    List<Object> sortedEntities = new ArrayList<>(entities);
+    Comparator<Object> comparator = (Comparator<Object>) GtfsEntitySchemaFactory
+      .getEntityComparators()
+      .get(entityType);
+    if (comparator != null) {
+      sortedEntities.sort(comparator);
     }
+    return sortedEntities;
   }
 
   /**
@@ -98,7 +304,7 @@ public class DefaultGtfsSerializer implements GtfsSerializer {
    * @return a temporary file accessible only by the user running the process.
    * @throws IOException if the file cannot be created.
    */
-  private static File createSecureTemporaryFile(String prefix, String suffix)
+  static File createSecureTemporaryFile(String prefix, String suffix)
     throws IOException {
     File outputFile = Files.createTempFile(prefix, suffix).toFile();
     boolean setReadableSucceeded = outputFile.setReadable(true, true);
@@ -121,7 +327,7 @@ public class DefaultGtfsSerializer implements GtfsSerializer {
    * @param tmpFile a temporary file.
    * @return an Input stream pointing to the temporary file.
    */
-  private static InputStream createDeleteOnCloseInputStream(File tmpFile) {
+  static InputStream createDeleteOnCloseInputStream(File tmpFile) {
     try {
       return Files.newInputStream(
         tmpFile.toPath(),
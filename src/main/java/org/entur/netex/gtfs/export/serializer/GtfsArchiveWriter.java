@@ -0,0 +1,217 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Write GTFS files into a zip archive.
+ * Small files are stored uncompressed, since compression brings little for them and costs a deflater pass. Files
+ * larger than a threshold (typically stop_times.txt, shapes.txt and trips.txt) are deflated. The content of an entry is
+ * buffered only up to the threshold, larger entries are streamed to the archive.
+ * Closing the archive writer finishes the zip archive but does not close the underlying output stream.
+ */
+public class GtfsArchiveWriter implements Closeable {
+
+  /**
+   * Files up to this size are stored uncompressed.
+   */
+  public static final int DEFAULT_STORED_ENTRY_MAX_SIZE = 16 * 1024;
+
+  /**
+   * Content of a zip entry.
+   */
+  @FunctionalInterface
+  public interface EntryContent {
+    void writeTo(OutputStream outputStream) throws IOException;
+  }
+
+  /**
+   * Listener notified each time a file has been added to the archive.
+   */
+  @FunctionalInterface
+  public interface EntryListener {
+    EntryListener NONE = (fileName, size) -> {};
+
+    /**
+     * @param fileName the name of the file in the archive.
+     * @param size the uncompressed size of the file in bytes.
+     */
+    void entryWritten(String fileName, long size);
+  }
+
+  private final ZipOutputStream zipOutputStream;
+  private final int storedEntryMaxSize;
+  private final EntryListener entryListener;
+
+  /**
+   * Create an archive writer with the default compression settings.
+   * @param outputStream the stream to which the zip archive is written.
+   */
+  public GtfsArchiveWriter(OutputStream outputStream) {
+    this(outputStream, EntryListener.NONE);
+  }
+
+  /**
+   * Create an archive writer with the default compression settings.
+   * @param outputStream the stream to which the zip archive is written.
+   * @param entryListener the listener notified of each file added to the archive.
+   */
+  public GtfsArchiveWriter(
+    OutputStream outputStream,
+    EntryListener entryListener
+  ) {
+    this(
+      outputStream,
+      DEFAULT_STORED_ENTRY_MAX_SIZE,
+      Deflater.DEFAULT_COMPRESSION,
+      entryListener
+    );
+  }
+
+  /**
+   * @param outputStream the stream to which the zip archive is written.
+   * @param storedEntryMaxSize files up to this size in bytes are stored uncompressed.
+   * @param compressionLevel the deflater compression level used for larger files, from 0 to 9.
+   */
+  public GtfsArchiveWriter(
+    OutputStream outputStream,
+    int storedEntryMaxSize,
+    int compressionLevel
+  ) {
+    this(
+      outputStream,
+      storedEntryMaxSize,
+      compressionLevel,
+      EntryListener.NONE
+    );
+  }
+
+  /**
+   * @param outputStream the stream to which the zip archive is written.
+   * @param storedEntryMaxSize files up to this size in bytes are stored uncompressed.
+   * @param compressionLevel the deflater compression level used for larger files, from 0 to 9.
+   * @param entryListener the listener notified of each file added to the archive.
+   */
+  public GtfsArchiveWriter(
+    OutputStream outputStream,
+    int storedEntryMaxSize,
+    int compressionLevel,
+    EntryListener entryListener
+  ) {
+    this.zipOutputStream = new ZipOutputStream(outputStream);
+    this.zipOutputStream.setLevel(compressionLevel);
+    this.storedEntryMaxSize = storedEntryMaxSize;
+    this.entryListener = entryListener;
+  }
+
+  /**
+   * Add a file to the archive.
+   * @param fileName the name of the file in the archive.
+   * @param entryContent the content of the file.
+   * @throws IOException if the archive cannot be written.
+   */
+  public void writeEntry(String fileName, EntryContent entryContent)
+    throws IOException {
+    GtfsFileWriteEvent event = new GtfsFileWriteEvent();
+    event.begin();
+    EntryOutputStream entryOutputStream = new EntryOutputStream(fileName);
+    entryContent.writeTo(entryOutputStream);
+    entryOutputStream.closeEntry();
+    event.complete(
+      fileName,
+      entryOutputStream.size,
+      entryOutputStream.deflated
+    );
+    entryListener.entryWritten(fileName, entryOutputStream.size);
+  }
+
+  @Override
+  public void close() throws IOException {
+    zipOutputStream.finish();
+    zipOutputStream.flush();
+  }
+
+  /**
+   * Buffer the entry content until it exceeds the stored entry threshold, then switch to a deflated entry.
+   */
+  private class EntryOutputStream extends OutputStream {
+
+    private final String fileName;
+    private final ByteArrayOutputStream buffer;
+    private boolean deflated;
+    private long size;
+
+    EntryOutputStream(String fileName) {
+      this.fileName = fileName;
+      this.buffer = new ByteArrayOutputStream();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (!deflated && buffer.size() + len > storedEntryMaxSize) {
+        ZipEntry zipEntry = new ZipEntry(fileName);
+        zipEntry.setMethod(ZipEntry.DEFLATED);
+        zipOutputStream.putNextEntry(zipEntry);
+        buffer.writeTo(zipOutputStream);
+        buffer.reset();
+        deflated = true;
+      }
+      if (deflated) {
+        zipOutputStream.write(b, off, len);
+      } else {
+        buffer.write(b, off, len);
+      }
+      size += len;
+    }
+
+    @Override
+    public void close() {
+      // the entry is closed by the archive writer
+    }
+
+    void closeEntry() throws IOException {
+      if (!deflated) {
+        byte[] content = buffer.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ZipEntry zipEntry = new ZipEntry(fileName);
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(content.length);
+        zipEntry.setCompressedSize(content.length);
+        zipEntry.setCrc(crc.getValue());
+        zipOutputStream.putNextEntry(zipEntry);
+        zipOutputStream.write(content);
+      }
+      zipOutputStream.closeEntry();
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.serializer;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.onebusaway.csv_entities.CsvEntityContext;
+import org.onebusaway.csv_entities.CsvEntityContextImpl;
+import org.onebusaway.csv_entities.CsvTokenizerStrategy;
+import org.onebusaway.csv_entities.schema.BeanWrapper;
+import org.onebusaway.csv_entities.schema.EntitySchema;
+import org.onebusaway.csv_entities.schema.FieldMapping;
+import org.onebusaway.gtfs.serialization.GtfsEntitySchemaFactory;
+
+/**
+ * CSV layout of a GTFS file, based on the OneBusAway entity schema.
+ * The fields listed in {@link DefaultGtfsSerializer#FILTERED_FIELDS} are never exported. Optional fields are exported
+ * only if they are set on at least one entity, as done by the OneBusAway GtfsWriter.
+ * Rows are handled as the list of the CSV values of all the fields in the schema, the fields that are not exported
+ * are removed when the row is written.
+ */
+class GtfsCsvFile {
+
+  private final String fileName;
+  private final List<FieldMapping> fields;
+  private final List<List<String>> csvFieldNames;
+  private final boolean[] includedFields;
+  private final CsvEntityContext csvEntityContext;
+  private final CsvTokenizerStrategy tokenizerStrategy;
+  private final Map<String, Object> csvValues;
+  private final List<String> includedValues;
+
+  GtfsCsvFile(Class<?> entityType) {
+    EntitySchema entitySchema = GtfsEntitySchemaFactory
+      .createEntitySchemaFactory()
+      .getSchema(entityType);
+    Collection<String> filteredFields =
+      DefaultGtfsSerializer.FILTERED_FIELDS.getOrDefault(entityType, List.of());
+    this.fileName = entitySchema.getFilename();
+    this.fields = new ArrayList<>();
+    this.csvFieldNames = new ArrayList<>();
+    for (FieldMapping field : entitySchema.getFields()) {
+      List<String> fieldNames = new ArrayList<>();
+      field.getCSVFieldNames(fieldNames);
+      String fieldName = fieldNames.stream().findFirst().orElse("");
+      if (!filteredFields.contains(fieldName)) {
+        fields.add(field);
+        csvFieldNames.add(fieldNames);
+      }
+    }
+    this.includedFields = new boolean[fields.size()];
+    this.csvEntityContext = new CsvEntityContextImpl();
+    this.tokenizerStrategy = new CsvTokenizerStrategy();
+    this.csvValues = new HashMap<>();
+    this.includedValues = new ArrayList<>();
+  }
+
+  String getFileName() {
+    return fileName;
+  }
+
+  /**
+   * Mark the optional fields that are set on this entity as exported.
+   */
+  void includeFieldsSetOn(BeanWrapper entity) {
+    for (int i = 0; i < fields.size(); i++) {
+      if (!includedFields[i]) {
+        FieldMapping field = fields.get(i);
+        includedFields[i] =
+          field.isAlwaysIncludeInOutput() || !field.isMissingAndOptional(entity);
+      }
+    }
+  }
+
+  /**
+   * Append the CSV values of all the fields of this entity to the list of values.
+   */
+  void appendCsvValues(BeanWrapper entity, List<String> values) {
+    csvValues.clear();
+    for (FieldMapping field : fields) {
+      field.translateFromObjectToCSV(csvEntityContext, entity, csvValues);
+    }
+    for (List<String> fieldNames : csvFieldNames) {
+      for (String fieldName : fieldNames) {
+        Object value = csvValues.get(fieldName);
+        values.add(value == null ? "" : value.toString());
+      }
+    }
+  }
+
+  /**
+   * @return the number of CSV values in a row, including the fields that are not exported.
+   */
+  int getColumnCount() {
+    return csvFieldNames.stream().mapToInt(List::size).sum();
+  }
+
+  void writeHeader(PrintWriter writer) {
+    includedValues.clear();
+    for (int i = 0; i < fields.size(); i++) {
+      if (includedFields[i]) {
+        includedValues.addAll(csvFieldNames.get(i));
+      }
+    }
+    writer.println(tokenizerStrategy.format(includedValues));
+  }
+
+  /**
+   * Write a row, keeping only the values of the exported fields.
+   * @param values the CSV values of all the fields in the schema.
+   */
+  void writeRow(PrintWriter writer, List<String> values) {
+    includedValues.clear();
+    int column = 0;
+    for (int i = 0; i < fields.size(); i++) {
+      int fieldColumnCount = csvFieldNames.get(i).size();
+      if (includedFields[i]) {
+        includedValues.addAll(values.subList(column, column + fieldColumnCount));
+      }
+      column += fieldColumnCount;
+    }
+    writer.println(tokenizerStrategy.format(includedValues));
+  }
+}
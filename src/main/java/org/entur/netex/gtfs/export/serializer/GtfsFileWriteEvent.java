@@ -0,0 +1,59 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.serializer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted each time a file has been added to a GTFS archive.
+ */
+@Name("org.entur.netex.gtfs.GtfsFileWrite")
+@Label("GTFS File Write")
+@Category("NeTEx to GTFS")
+@Description("Serialization of a GTFS file into the GTFS archive")
+@StackTrace(false)
+class GtfsFileWriteEvent extends Event {
+
+  @Label("File Name")
+  String fileName;
+
+  @Label("Size")
+  @Description("Uncompressed size of the file")
+  @DataAmount
+  long size;
+
+  @Label("Deflated")
+  boolean deflated;
+
+  void complete(String fileName, long size, boolean deflated) {
+    end();
+    if (shouldCommit()) {
+      this.fileName = fileName;
+      this.size = size;
+      this.deflated = deflated;
+      commit();
+    }
+  }
+}
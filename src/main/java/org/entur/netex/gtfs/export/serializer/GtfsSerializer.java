@@ -18,7 +18,10 @@
 
 package org.entur.netex.gtfs.export.serializer;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import org.entur.netex.gtfs.export.exception.GtfsSerializationException;
 import org.onebusaway.gtfs.services.GtfsDao;
 
 /**
@@ -32,4 +35,54 @@ public interface GtfsSerializer {
    * @return an input stream pointing to a GTFS archive.
    */
   InputStream writeGtfs(GtfsDao gtfsDao);
+
+  /**
+   * Generate a GTFS archive from an in-memory GTFS data model and notify a listener of each file added to the archive.
+   * The listener is ignored by serializers that do not support it.
+   *
+   * @param gtfsDao the in-memory GTFS data model.
+   * @param entryListener the listener notified of each file added to the archive.
+   * @return an input stream pointing to a GTFS archive.
+   */
+  default InputStream writeGtfs(
+    GtfsDao gtfsDao,
+    GtfsArchiveWriter.EntryListener entryListener
+  ) {
+    return writeGtfs(gtfsDao);
+  }
+
+  /**
+   * Generate a GTFS archive from an in-memory GTFS data model and write it to an output stream.
+   * The output stream is not closed.
+   *
+   * @param gtfsDao the in-memory GTFS data model.
+   * @param outputStream the stream to which the GTFS archive is written.
+   */
+  default void writeGtfs(GtfsDao gtfsDao, OutputStream outputStream) {
+    try (InputStream gtfsArchive = writeGtfs(gtfsDao)) {
+      gtfsArchive.transferTo(outputStream);
+    } catch (IOException e) {
+      throw new GtfsSerializationException(
+        "Error while writing the GTFS dataset",
+        e
+      );
+    }
+  }
+
+  /**
+   * Generate a GTFS archive from an in-memory GTFS data model, write it to an output stream and notify a listener of
+   * each file added to the archive.
+   * The listener is ignored by serializers that do not support it. The output stream is not closed.
+   *
+   * @param gtfsDao the in-memory GTFS data model.
+   * @param outputStream the stream to which the GTFS archive is written.
+   * @param entryListener the listener notified of each file added to the archive.
+   */
+  default void writeGtfs(
+    GtfsDao gtfsDao,
+    OutputStream outputStream,
+    GtfsArchiveWriter.EntryListener entryListener
+  ) {
+    writeGtfs(gtfsDao, outputStream);
+  }
 }
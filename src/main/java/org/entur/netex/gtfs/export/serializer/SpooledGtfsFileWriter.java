@@ -0,0 +1,175 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.serializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.entur.netex.gtfs.export.exception.GtfsExportException;
+import org.entur.netex.gtfs.export.exception.GtfsSerializationException;
+import org.onebusaway.csv_entities.exceptions.CsvException;
+import org.onebusaway.csv_entities.schema.BeanWrapper;
+import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
+
+/**
+ * Write the GTFS entities of a given type to a temporary spool file as they are produced, so that they do not need to
+ * be kept in memory until the GTFS archive is generated.
+ * The spool file contains the CSV values of all the fields of the GTFS schema. Optional fields that are not set on any
+ * entity are dropped when the final CSV file is written, in the same way as the OneBusAway GtfsWriter does.
+ * Entities are written in the order in which they are produced.
+ * This class is not thread-safe.
+ */
+public class SpooledGtfsFileWriter implements Closeable {
+
+  private final GtfsCsvFile csvFile;
+  private final List<String> values;
+
+  private File spoolFile;
+  private DataOutputStream spool;
+  private long entityCount;
+
+  /**
+   * @param entityType the type of GTFS entities written to this file.
+   */
+  public SpooledGtfsFileWriter(Class<?> entityType) {
+    this.csvFile = new GtfsCsvFile(entityType);
+    this.values = new ArrayList<>();
+  }
+
+  /**
+   * Append an entity to the spool file.
+   * @param entity the GTFS entity.
+   */
+  public void write(Object entity) {
+    try {
+      if (spool == null) {
+        openSpool();
+      }
+      BeanWrapper wrapper = BeanWrapperFactory.wrap(entity);
+      csvFile.includeFieldsSetOn(wrapper);
+      values.clear();
+      csvFile.appendCsvValues(wrapper, values);
+      for (String value : values) {
+        writeValue(value);
+      }
+      entityCount++;
+    } catch (CsvException e) {
+      throw new GtfsExportException("Cannot produce a valid GTFS dataset", e);
+    } catch (IOException e) {
+      throw new GtfsSerializationException(
+        "Error while spooling the GTFS file " + csvFile.getFileName(),
+        e
+      );
+    }
+  }
+
+  /**
+   * Write the content of the GTFS file as CSV, header included.
+   * The output stream is flushed but not closed.
+   * @param outputStream the stream to which the CSV content is written.
+   * @throws IOException if the spool file cannot be read or the output stream cannot be written.
+   */
+  public void writeTo(OutputStream outputStream) throws IOException {
+    PrintWriter writer = new PrintWriter(
+      new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)
+    );
+    csvFile.writeHeader(writer);
+    if (spool != null) {
+      spool.flush();
+      int columnCount = csvFile.getColumnCount();
+      try (
+        DataInputStream spoolInput = new DataInputStream(
+          new BufferedInputStream(Files.newInputStream(spoolFile.toPath()))
+        )
+      ) {
+        for (long row = 0; row < entityCount; row++) {
+          values.clear();
+          for (int column = 0; column < columnCount; column++) {
+            values.add(readValue(spoolInput));
+          }
+          csvFile.writeRow(writer, values);
+        }
+      }
+    }
+    writer.flush();
+  }
+
+  /**
+   * @return the name of the GTFS file, for example stop_times.txt.
+   */
+  public String getFileName() {
+    return csvFile.getFileName();
+  }
+
+  /**
+   * @return the number of entities written so far.
+   */
+  public long getEntityCount() {
+    return entityCount;
+  }
+
+  /**
+   * Close and delete the spool file.
+   */
+  @Override
+  public void close() throws IOException {
+    if (spool != null) {
+      spool.close();
+      spool = null;
+      Files.deleteIfExists(spoolFile.toPath());
+    }
+  }
+
+  /**
+   * Write a value as a length-prefixed UTF-8 byte array.
+   * {@link DataOutputStream#writeUTF(String)} is not used since it is limited to 64 KB per value.
+   */
+  private void writeValue(String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    spool.writeInt(bytes.length);
+    spool.write(bytes);
+  }
+
+  private static String readValue(DataInputStream spoolInput)
+    throws IOException {
+    byte[] bytes = new byte[spoolInput.readInt()];
+    spoolInput.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private void openSpool() throws IOException {
+    spoolFile =
+      DefaultGtfsSerializer.createSecureTemporaryFile("gtfs-spool-", ".bin");
+    spool =
+      new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(spoolFile.toPath()))
+      );
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import org.onebusaway.gtfs.services.GtfsDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * GTFS serializer that combines entities spooled to disk during the conversion with the entities kept in the in-memory
+ * GTFS data model.
+ * Files are added to the archive in the same order as the OneBusAway GtfsWriter. In-memory entities are sorted with
+ * the OneBusAway entity comparators, spooled entities are written in the order in which they were produced.
+ * The spool files are deleted once the archive is written: the serializer can write a single GTFS archive.
+ */
+public class StreamingGtfsSerializer extends DefaultGtfsSerializer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(
+    StreamingGtfsSerializer.class
+  );
+
+  private final Map<Class<?>, SpooledGtfsFileWriter> spooledFiles;
+
+  private boolean written;
+
+  /**
+   * @param spooledFiles the spooled GTFS files, by entity type. Entities of these types are ignored in the in-memory
+   *                     GTFS data model.
+   */
+  public StreamingGtfsSerializer(
+    Map<Class<?>, SpooledGtfsFileWriter> spooledFiles
+  ) {
+    this(
+      spooledFiles,
+      GtfsArchiveWriter.DEFAULT_STORED_ENTRY_MAX_SIZE,
+      Deflater.DEFAULT_COMPRESSION
+    );
+  }
+
+  /**
+   * @param spooledFiles the spooled GTFS files, by entity type.
+   * @param storedEntryMaxSize files up to this size in bytes are stored uncompressed in the GTFS archive.
+   * @param compressionLevel the deflater compression level used for larger files, from 0 to 9.
+   */
+  public StreamingGtfsSerializer(
+    Map<Class<?>, SpooledGtfsFileWriter> spooledFiles,
+    int storedEntryMaxSize,
+    int compressionLevel
+  ) {
+    super(List.of(), storedEntryMaxSize, compressionLevel);
+    this.spooledFiles = spooledFiles;
+  }
+
+  /**
+   * @throws IllegalStateException if the GTFS archive has already been written.
+   */
+  @Override
+  public void writeGtfs(
+    GtfsDao gtfsDao,
+    OutputStream outputStream,
+    GtfsArchiveWriter.EntryListener entryListener
+  ) {
+    if (written) {
+      throw new IllegalStateException(
+        "The GTFS archive has already been written and the spool files deleted"
+      );
+    }
+    written = true;
+    try {
+      super.writeGtfs(gtfsDao, outputStream, entryListener);
+    } finally {
+      closeSpooledFiles();
+    }
+  }
+
+  @Override
+  protected void writeEntry(
+    GtfsDao gtfsDao,
+    Class<?> entityType,
+    GtfsArchiveWriter gtfsArchiveWriter
+  ) throws IOException {
+    SpooledGtfsFileWriter spooledFile = spooledFiles.get(entityType);
+    if (spooledFile == null) {
+      super.writeEntry(gtfsDao, entityType, gtfsArchiveWriter);
+    } else if (spooledFile.getEntityCount() > 0) {
+      LOGGER.debug(
+        "Writing {} spooled entities to {}",
+        spooledFile.getEntityCount(),
+        spooledFile.getFileName()
+      );
+      gtfsArchiveWriter.writeEntry(
+        spooledFile.getFileName(),
+        spooledFile::writeTo
+      );
+    }
+  }
+
+  private void closeSpooledFiles() {
+    for (SpooledGtfsFileWriter spooledFile : spooledFiles.values()) {
+      try {
+        spooledFile.close();
+      } catch (IOException e) {
+        LOGGER.warn(
+          "Error while deleting the spool file for {}",
+          spooledFile.getFileName(),
+          e
+        );
+      }
+    }
+  }
+}
@@ -36,6 +36,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * A Stop area repository that loads data from a NeTEx dataset archive.
+ * Once the stop dataset is loaded, the repository can be used from several threads. The quay and stop place fetchers
+ * are never called concurrently.
  */
 public class DefaultStopAreaRepository implements StopAreaRepository {
 
@@ -56,7 +58,16 @@ public class DefaultStopAreaRepository implements StopAreaRepository {
    * If a quay/stop place is missing in the repository, an exception is thrown.
    */
   public DefaultStopAreaRepository() {
+    this(new DefaultNetexDatasetLoader());
+  }
+
+  /**
+   * Create a default stop area repository that loads the stop dataset with the given NeTEx dataset loader.
+   * If a quay/stop place is missing in the repository, an exception is thrown.
+   */
+  public DefaultStopAreaRepository(NetexDatasetLoader netexDatasetLoader) {
     this(
+      netexDatasetLoader,
       quayId -> {
         throw new QuayNotFoundException("Could not find Quay for id " + quayId);
       },
@@ -77,7 +88,21 @@ public class DefaultStopAreaRepository implements StopAreaRepository {
     NetexEntityFetcher<Quay, String> quayFetcher,
     NetexEntityFetcher<StopPlace, String> stopPlaceFetcher
   ) {
-    this.netexDatasetLoader = new DefaultNetexDatasetLoader();
+    this(new DefaultNetexDatasetLoader(), quayFetcher, stopPlaceFetcher);
+  }
+
+  /**
+   * Create a default stop area repository that loads the stop dataset with the given NeTEx dataset loader.
+   * This makes it possible to reuse a loader, and its NeTEx parser, across repositories.
+   * If a quay/stop place is missing in the repository, a quayFetcher/stopPlaceFetcher attempts to retrieve it from an
+   * external resource.
+   */
+  public DefaultStopAreaRepository(
+    NetexDatasetLoader netexDatasetLoader,
+    NetexEntityFetcher<Quay, String> quayFetcher,
+    NetexEntityFetcher<StopPlace, String> stopPlaceFetcher
+  ) {
+    this.netexDatasetLoader = netexDatasetLoader;
     this.quayFetcher = quayFetcher;
     this.stopPlaceFetcher = stopPlaceFetcher;
   }
@@ -127,7 +152,7 @@ public class DefaultStopAreaRepository implements StopAreaRepository {
   public StopPlace getStopPlaceByQuayId(String quayId) {
     StopPlace stopPlace = stopPlaceByQuayId.get(quayId);
     if (stopPlace == null) {
-      return stopPlaceFetcher.tryFetch(quayId);
+      return fetch(stopPlaceFetcher, quayId);
     }
     return stopPlace;
   }
@@ -141,8 +166,20 @@ public class DefaultStopAreaRepository implements StopAreaRepository {
   public Quay getQuayById(String quayId) {
     Quay quay = quayById.get(quayId);
     if (quay == null) {
-      return quayFetcher.tryFetch(quayId);
+      return fetch(quayFetcher, quayId);
     }
     return quay;
   }
+
+  /**
+   * Retrieve a quay or stop place missing in the stop dataset.
+   * The exporter may look up stops from several threads, whereas the fetchers are not required to be thread-safe: the
+   * calls to the fetchers are serialized. Lookups of stops present in the dataset are not affected.
+   */
+  private synchronized <R> R fetch(
+    NetexEntityFetcher<R, String> fetcher,
+    String quayId
+  ) {
+    return fetcher.tryFetch(quayId);
+  }
 }
@@ -19,16 +19,33 @@
 package org.entur.netex.gtfs.export.stop;
 
 import java.io.InputStream;
+import org.entur.netex.gtfs.export.loader.DefaultNetexDatasetLoader;
+import org.entur.netex.gtfs.export.loader.NetexDatasetLoader;
 
 /**
  * A stop area repository factory that builds stop area repositories from a NeTEx dataset archive.
  * The dataset can be refreshed at runtime by calling {@link #refreshStopAreaRepository(InputStream)}
+ * All refreshes are loaded with the same NeTEx dataset loader.
  */
 public class DefaultStopAreaRepositoryFactory
   implements StopAreaRepositoryFactory {
 
+  private final NetexDatasetLoader netexDatasetLoader;
   private StopAreaRepository stopAreaRepository;
 
+  public DefaultStopAreaRepositoryFactory() {
+    this(new DefaultNetexDatasetLoader());
+  }
+
+  /**
+   * @param netexDatasetLoader the loader used for loading the stop dataset on each refresh.
+   */
+  public DefaultStopAreaRepositoryFactory(
+    NetexDatasetLoader netexDatasetLoader
+  ) {
+    this.netexDatasetLoader = netexDatasetLoader;
+  }
+
   @Override
   public synchronized StopAreaRepository getStopAreaRepository() {
     if (stopAreaRepository == null) {
@@ -50,7 +67,7 @@ public class DefaultStopAreaRepositoryFactory
    */
   public synchronized void refreshStopAreaRepository(InputStream stopDataset) {
     DefaultStopAreaRepository defaultStopAreaRepository =
-      new DefaultStopAreaRepository();
+      new DefaultStopAreaRepository(netexDatasetLoader);
     defaultStopAreaRepository.loadStopAreas(stopDataset);
     this.stopAreaRepository = defaultStopAreaRepository;
   }
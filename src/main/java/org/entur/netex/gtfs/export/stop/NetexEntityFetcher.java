@@ -3,6 +3,9 @@ package org.entur.netex.gtfs.export.stop;
 /**
  * Retrieve a NeTEx entity from an external source.
  * This can be used as a fallback method when the stop dataset loaded in memory is outdated and misses some quays/stops.
+ * A fetcher does not need to be thread-safe when used by {@link DefaultStopAreaRepository}, which serializes the calls
+ * to its fetchers. Other {@link StopAreaRepository} implementations used with parallel route or stop conversion must
+ * either serialize the calls or be given thread-safe fetchers.
  */
 public interface NetexEntityFetcher<R, S> {
   R tryFetch(S s);
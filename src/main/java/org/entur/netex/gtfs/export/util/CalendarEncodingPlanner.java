@@ -0,0 +1,184 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+import org.entur.netex.gtfs.export.model.CalendarDays;
+import org.entur.netex.gtfs.export.model.GtfsService;
+import org.entur.netex.gtfs.export.model.ServiceCalendarPeriod;
+
+/**
+ * Choose the most compact GTFS encoding for the active dates of a service: either a list of dates in calendar_dates.txt,
+ * or a weekly pattern over a date range in calendar.txt plus the dates added to or removed from this pattern in
+ * calendar_dates.txt.
+ * The date range and the weekly pattern are chosen so as to minimise the number of calendar_dates.txt exceptions.
+ * For each of the 127 weekly patterns, the best date range is found in a single pass over the active dates, so the
+ * planning time is linear in the number of active dates.
+ */
+public final class CalendarEncodingPlanner {
+
+  private static final int DAYS_PER_WEEK = 7;
+
+  /**
+   * The epoch day 0 (1970-01-01) is a Thursday.
+   */
+  private static final int EPOCH_DAY_OF_WEEK_INDEX =
+    DayOfWeek.THURSDAY.getValue() - 1;
+
+  private CalendarEncodingPlanner() {}
+
+  /**
+   * Return a GTFS service equivalent to the given service, encoded with the fewest calendar.txt and calendar_dates.txt
+   * rows.
+   * Only services defined by a list of included dates are re-encoded: services that already have a calendar period or
+   * excluded dates are returned unchanged, as well as services for which listing the dates is at least as compact.
+   * @param gtfsService the GTFS service.
+   * @return a GTFS service with the same id and the same active dates.
+   */
+  public static GtfsService encode(GtfsService gtfsService) {
+    if (
+      gtfsService.getServiceCalendarPeriod() != null ||
+      !gtfsService.getExcludedDays().isEmpty()
+    ) {
+      return gtfsService;
+    }
+    CalendarDays activeDays = gtfsService.getIncludedDays();
+    long[] activeEpochDays = activeDays
+      .toLocalDates()
+      .stream()
+      .mapToLong(LocalDate::toEpochDay)
+      .toArray();
+    int nbActiveDays = activeEpochDays.length;
+
+    // the number of exceptions for a given range and weekly pattern is nbActiveDays - score, where the score is the
+    // number of active dates minus the number of inactive dates that match the pattern in the range.
+    // For a given pattern, the range with the highest score starts and ends on active dates that match the pattern and
+    // is found with a maximum subarray scan over these dates.
+    // The calendar.txt row is worth using only if it saves at least one row overall.
+    int activeDaysOfWeekMask = 0;
+    for (long activeEpochDay : activeEpochDays) {
+      activeDaysOfWeekMask |= 1 << dayOfWeekIndex(activeEpochDay);
+    }
+    long bestScore = 1;
+    int bestStart = -1;
+    int bestEnd = -1;
+    for (int mask = 1; mask < 1 << DAYS_PER_WEEK; mask++) {
+      // a day of week on which the service never runs only adds exceptions
+      if ((mask & ~activeDaysOfWeekMask) != 0) {
+        continue;
+      }
+      long score = 0;
+      int start = -1;
+      long previousDay = 0;
+      for (int end = 0; end < nbActiveDays; end++) {
+        long endDay = activeEpochDays[end];
+        if ((mask & (1 << dayOfWeekIndex(endDay))) == 0) {
+          continue;
+        }
+        if (start >= 0) {
+          score -= countDaysOfWeek(mask, previousDay + 1, endDay - 1);
+        }
+        if (score <= 0) {
+          score = 0;
+          start = end;
+        }
+        score++;
+        previousDay = endDay;
+        if (score > bestScore) {
+          bestScore = score;
+          bestStart = start;
+          bestEnd = end;
+        }
+      }
+    }
+    if (bestStart < 0) {
+      return gtfsService;
+    }
+
+    LocalDate startDate = LocalDate.ofEpochDay(activeEpochDays[bestStart]);
+    LocalDate endDate = LocalDate.ofEpochDay(activeEpochDays[bestEnd]);
+    Set<DayOfWeek> daysOfWeek = EnumSet.noneOf(DayOfWeek.class);
+    int[] balances = new int[DAYS_PER_WEEK];
+    for (int i = bestStart; i <= bestEnd; i++) {
+      balances[dayOfWeekIndex(activeEpochDays[i])] += 2;
+    }
+    startDate
+      .datesUntil(endDate.plusDays(1))
+      .forEach(date -> balances[date.getDayOfWeek().getValue() - 1]--);
+    for (int dayOfWeek = 0; dayOfWeek < DAYS_PER_WEEK; dayOfWeek++) {
+      if (balances[dayOfWeek] > 0) {
+        daysOfWeek.add(DayOfWeek.of(dayOfWeek + 1));
+      }
+    }
+
+    CalendarDays patternDays = new CalendarDays();
+    patternDays.addPeriod(startDate, endDate, daysOfWeek);
+    CalendarDays addedDays = new CalendarDays(activeDays);
+    addedDays.removeAll(patternDays);
+    CalendarDays removedDays = new CalendarDays(patternDays);
+    removedDays.removeAll(activeDays);
+
+    GtfsService encodedGtfsService = new GtfsService(gtfsService.getId());
+    encodedGtfsService.setServiceCalendarPeriod(
+      new ServiceCalendarPeriod(
+        startDate.atStartOfDay(),
+        endDate.atStartOfDay(),
+        daysOfWeek
+      )
+    );
+    encodedGtfsService.addIncludedDays(addedDays);
+    encodedGtfsService.addExcludedDays(removedDays);
+    return encodedGtfsService;
+  }
+
+  /**
+   * Return the number of days between two epoch days, both included, whose day of week belongs to the given mask.
+   */
+  private static long countDaysOfWeek(
+    int daysOfWeekMask,
+    long fromDay,
+    long toDay
+  ) {
+    long nbDays = toDay - fromDay + 1;
+    if (nbDays <= 0) {
+      return 0;
+    }
+    long count = nbDays / DAYS_PER_WEEK * Integer.bitCount(daysOfWeekMask);
+    int fromDayOfWeek = dayOfWeekIndex(fromDay);
+    for (int i = 0; i < nbDays % DAYS_PER_WEEK; i++) {
+      if ((daysOfWeekMask & (1 << (fromDayOfWeek + i) % DAYS_PER_WEEK)) != 0) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Return the day of week of an epoch day, 0 for Monday.
+   */
+  private static int dayOfWeekIndex(long epochDay) {
+    return (int) Math.floorMod(
+      epochDay + EPOCH_DAY_OF_WEEK_INDEX,
+      (long) DAYS_PER_WEEK
+    );
+  }
+}
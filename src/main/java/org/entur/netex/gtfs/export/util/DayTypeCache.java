@@ -0,0 +1,333 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.entur.netex.gtfs.export.exception.GtfsExportException;
+import org.entur.netex.gtfs.export.model.CalendarDays;
+import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.rutebanken.netex.model.DayOfWeekEnumeration;
+import org.rutebanken.netex.model.DayType;
+import org.rutebanken.netex.model.DayTypeAssignment;
+import org.rutebanken.netex.model.OperatingDay;
+import org.rutebanken.netex.model.OperatingDayRefStructure;
+import org.rutebanken.netex.model.OperatingPeriod;
+import org.rutebanken.netex.model.PropertyOfDay;
+
+/**
+ * Cache of the day types resolved against their day type assignments, indexed by day type id.
+ * The day type assignments of a day type are looked up once, and its days of week, operating periods and individual
+ * dates are computed once, the first time they are requested.
+ * The cache is thread-safe and is meant to be used for a single export.
+ */
+public class DayTypeCache {
+
+  private static final Set<DayOfWeek> ALL_DAYS_OF_WEEKS =
+    Collections.unmodifiableSet(EnumSet.allOf(DayOfWeek.class));
+  private static final Set<DayOfWeek> WEEKDAYS = Collections.unmodifiableSet(
+    EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY)
+  );
+  private static final Set<DayOfWeek> WEEKEND = Collections.unmodifiableSet(
+    EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY)
+  );
+
+  private final NetexDatasetRepository netexDatasetRepository;
+  private final Map<String, ResolvedDayType> resolvedDayTypesById;
+
+  public DayTypeCache(NetexDatasetRepository netexDatasetRepository) {
+    this.netexDatasetRepository = netexDatasetRepository;
+    this.resolvedDayTypesById = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Return the resolved day type with the given id.
+   * @param dayTypeId the NeTEx day type id.
+   * @return the resolved day type.
+   * @throws GtfsExportException if the day type does not exist.
+   */
+  public ResolvedDayType getResolvedDayType(String dayTypeId) {
+    ResolvedDayType resolvedDayType = resolvedDayTypesById.get(dayTypeId);
+    if (resolvedDayType != null) {
+      return resolvedDayType;
+    }
+    DayType dayType = netexDatasetRepository.getDayTypeById(dayTypeId);
+    if (dayType == null) {
+      throw new GtfsExportException(
+        "Could not find DayType with id " + dayTypeId
+      );
+    }
+    return getResolvedDayType(dayType);
+  }
+
+  /**
+   * Return the resolved day type for a NeTEx day type.
+   * @param dayType the NeTEx day type.
+   * @return the resolved day type.
+   */
+  public ResolvedDayType getResolvedDayType(DayType dayType) {
+    return resolvedDayTypesById.computeIfAbsent(
+      dayType.getId(),
+      dayTypeId -> new ResolvedDayType(dayType)
+    );
+  }
+
+  /**
+   * A day type with its day type assignments.
+   * The calendar of the day type (days of week, operating periods and individual dates) is resolved on first access.
+   */
+  public final class ResolvedDayType {
+
+    private final DayType dayType;
+    private final Collection<DayTypeAssignment> dayTypeAssignments;
+    private volatile DayTypeCalendar calendar;
+
+    private ResolvedDayType(DayType dayType) {
+      this.dayType = dayType;
+      this.dayTypeAssignments =
+        netexDatasetRepository.getDayTypeAssignmentsByDayType(dayType);
+    }
+
+    public DayType getDayType() {
+      return dayType;
+    }
+
+    public boolean hasDayTypeAssignments() {
+      return !dayTypeAssignments.isEmpty();
+    }
+
+    /**
+     * Return the set of active days of week. A day type with no days of week explicitly set is active on every day of
+     * week.
+     */
+    public Set<DayOfWeek> getDaysOfWeek() {
+      return getCalendar().daysOfWeek();
+    }
+
+    /**
+     * Return the operating periods referred to by the day type assignments, in the order of the assignments.
+     */
+    public List<Period> getPeriods() {
+      return getCalendar().periods();
+    }
+
+    /**
+     * Return the individual dates on which the day type is available.
+     */
+    public CalendarDays getIncludedDays() {
+      return new CalendarDays(getCalendar().includedDays());
+    }
+
+    /**
+     * Return the individual dates on which the day type is explicitly not available.
+     */
+    public CalendarDays getExcludedDays() {
+      return new CalendarDays(getCalendar().excludedDays());
+    }
+
+    private DayTypeCalendar getCalendar() {
+      DayTypeCalendar dayTypeCalendar = calendar;
+      if (dayTypeCalendar == null) {
+        synchronized (this) {
+          dayTypeCalendar = calendar;
+          if (dayTypeCalendar == null) {
+            dayTypeCalendar = resolveCalendar();
+            calendar = dayTypeCalendar;
+          }
+        }
+      }
+      return dayTypeCalendar;
+    }
+
+    private DayTypeCalendar resolveCalendar() {
+      List<Period> periods = new ArrayList<>();
+      CalendarDays includedDays = new CalendarDays();
+      CalendarDays excludedDays = new CalendarDays();
+      for (DayTypeAssignment dayTypeAssignment : dayTypeAssignments) {
+        if (dayTypeAssignment.getOperatingPeriodRef() != null) {
+          OperatingPeriod operatingPeriod =
+            netexDatasetRepository.getOperatingPeriodByDayTypeAssignment(
+              dayTypeAssignment
+            );
+          periods.add(
+            new Period(
+              getOperatingPeriodStartDate(operatingPeriod).toLocalDate(),
+              getOperatingPeriodEndDate(operatingPeriod).toLocalDate()
+            )
+          );
+        } else {
+          LocalDate date = getIndividualDate(dayTypeAssignment).toLocalDate();
+          if (
+            dayTypeAssignment.isIsAvailable() != null &&
+            !dayTypeAssignment.isIsAvailable()
+          ) {
+            excludedDays.add(date);
+          } else {
+            includedDays.add(date);
+          }
+        }
+      }
+      return new DayTypeCalendar(
+        resolveDaysOfWeek(dayType),
+        List.copyOf(periods),
+        includedDays,
+        excludedDays
+      );
+    }
+  }
+
+  /**
+   * An operating period, from its start date to its end date inclusive.
+   */
+  public record Period(LocalDate startDate, LocalDate endDate) {}
+
+  private record DayTypeCalendar(
+    Set<DayOfWeek> daysOfWeek,
+    List<Period> periods,
+    CalendarDays includedDays,
+    CalendarDays excludedDays
+  ) {}
+
+  private LocalDateTime getIndividualDate(DayTypeAssignment dayTypeAssignment) {
+    if (dayTypeAssignment.getOperatingDayRef() != null) {
+      OperatingDay operatingDay =
+        netexDatasetRepository.getOperatingDayByDayTypeAssignment(
+          dayTypeAssignment
+        );
+      return operatingDay.getCalendarDate();
+    }
+    if (dayTypeAssignment.getDate() != null) {
+      return dayTypeAssignment.getDate();
+    }
+    throw new GtfsExportException(
+      "Both Date and OperatingDay are undefined on DayTypeAssignment " +
+      dayTypeAssignment.getId()
+    );
+  }
+
+  private LocalDateTime getOperatingPeriodStartDate(
+    OperatingPeriod operatingPeriod
+  ) {
+    if (operatingPeriod.getFromDate() != null) {
+      return operatingPeriod.getFromDate();
+    }
+    if (operatingPeriod.getFromOperatingDayRef() != null) {
+      return lookupOperatingDay(operatingPeriod.getFromOperatingDayRef());
+    }
+    throw new IllegalArgumentException(
+      "Missing start date for operating period " + operatingPeriod.getId()
+    );
+  }
+
+  private LocalDateTime getOperatingPeriodEndDate(
+    OperatingPeriod operatingPeriod
+  ) {
+    if (operatingPeriod.getToDate() != null) {
+      return operatingPeriod.getToDate();
+    }
+    if (operatingPeriod.getToOperatingDayRef() != null) {
+      return lookupOperatingDay(operatingPeriod.getToOperatingDayRef());
+    }
+    throw new IllegalArgumentException(
+      "Missing end date for operating period " + operatingPeriod.getId()
+    );
+  }
+
+  private LocalDateTime lookupOperatingDay(
+    OperatingDayRefStructure operatingDayRef
+  ) {
+    return netexDatasetRepository
+      .getOperatingDayById(operatingDayRef.getRef())
+      .getCalendarDate();
+  }
+
+  /**
+   * Return the days of week explicitly specified for a day type. Returns an empty list if no day of week is explicitly set.
+   */
+  private static List<DayOfWeekEnumeration> getNetexDaysOfWeek(
+    DayType dayType
+  ) {
+    if (
+      dayType.getProperties() != null &&
+      dayType.getProperties().getPropertyOfDay() != null
+    ) {
+      for (PropertyOfDay propertyOfDay : dayType
+        .getProperties()
+        .getPropertyOfDay()) {
+        if (
+          propertyOfDay.getDaysOfWeek() != null &&
+          !propertyOfDay.getDaysOfWeek().isEmpty()
+        ) {
+          return propertyOfDay.getDaysOfWeek();
+        }
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * Return the set of active days of week for a day type.
+   */
+  private static Set<DayOfWeek> resolveDaysOfWeek(DayType dayType) {
+    List<DayOfWeekEnumeration> netexDaysOfWeek = getNetexDaysOfWeek(dayType);
+    // A DayType  with no days of week explicitly set is implicitly available on every day of week.
+    if (
+      netexDaysOfWeek.isEmpty() ||
+      netexDaysOfWeek.contains(DayOfWeekEnumeration.EVERYDAY)
+    ) {
+      return ALL_DAYS_OF_WEEKS;
+    }
+    Set<DayOfWeek> daysOfWeek = EnumSet.noneOf(DayOfWeek.class);
+    for (DayOfWeekEnumeration dayOfWeekEnumeration : netexDaysOfWeek) {
+      if (DayOfWeekEnumeration.MONDAY == dayOfWeekEnumeration) {
+        daysOfWeek.add(DayOfWeek.MONDAY);
+      } else if (DayOfWeekEnumeration.TUESDAY == dayOfWeekEnumeration) {
+        daysOfWeek.add(DayOfWeek.TUESDAY);
+      } else if (DayOfWeekEnumeration.WEDNESDAY == dayOfWeekEnumeration) {
+        daysOfWeek.add(DayOfWeek.WEDNESDAY);
+      } else if (DayOfWeekEnumeration.THURSDAY == dayOfWeekEnumeration) {
+        daysOfWeek.add(DayOfWeek.THURSDAY);
+      } else if (DayOfWeekEnumeration.FRIDAY == dayOfWeekEnumeration) {
+        daysOfWeek.add(DayOfWeek.FRIDAY);
+      } else if (DayOfWeekEnumeration.SATURDAY == dayOfWeekEnumeration) {
+        daysOfWeek.add(DayOfWeek.SATURDAY);
+      } else if (DayOfWeekEnumeration.SUNDAY == dayOfWeekEnumeration) {
+        daysOfWeek.add(DayOfWeek.SUNDAY);
+      } else if (DayOfWeekEnumeration.WEEKDAYS == dayOfWeekEnumeration) {
+        daysOfWeek.addAll(WEEKDAYS);
+      } else if (DayOfWeekEnumeration.WEEKEND == dayOfWeekEnumeration) {
+        daysOfWeek.addAll(WEEKEND);
+      } else {
+        throw new GtfsExportException(
+          "Unsupported day of week: " + dayOfWeekEnumeration
+        );
+      }
+    }
+    return Collections.unmodifiableSet(daysOfWeek);
+  }
+}
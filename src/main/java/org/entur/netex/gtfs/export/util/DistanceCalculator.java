@@ -0,0 +1,53 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.util;
+
+import org.locationtech.jts.geom.Coordinate;
+
+/**
+ * Strategy for calculating the distance between two WGS84 coordinates.
+ * Implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface DistanceCalculator {
+  /**
+   * Calculate the distance between 2 WGS84 positions, in meters.
+   *
+   * @param fromLon longitude of the first position, in degrees.
+   * @param fromLat latitude of the first position, in degrees.
+   * @param toLon   longitude of the second position, in degrees.
+   * @param toLat   latitude of the second position, in degrees.
+   * @return the distance between the 2 positions, in meters.
+   */
+  double distance(double fromLon, double fromLat, double toLon, double toLat);
+
+  /**
+   * Calculate the distance between 2 JTS coordinates (x = longitude, y = latitude), in meters.
+   *
+   * @param from from coordinate
+   * @param to   to coordinate
+   * @return the distance between the 2 coordinates, in meters, or 0 if the from coordinate is null.
+   */
+  default double distance(Coordinate from, Coordinate to) {
+    if (from == null) {
+      return 0;
+    }
+    return distance(from.getX(), from.getY(), to.getX(), to.getY());
+  }
+}
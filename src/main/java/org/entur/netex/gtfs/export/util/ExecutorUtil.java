@@ -0,0 +1,53 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Utility class for executors.
+ */
+public final class ExecutorUtil {
+
+  private ExecutorUtil() {}
+
+  /**
+   * Return the number of tasks that the executor runs concurrently.
+   * The parallelism of a {@link ThreadPoolExecutor} or {@link ForkJoinPool} is read from the executor, other executors
+   * are assumed to run as many tasks as there are available processors.
+   *
+   * @param executor the executor.
+   * @return the number of tasks that the executor runs concurrently.
+   */
+  public static int getParallelism(Executor executor) {
+    if (
+      executor instanceof ThreadPoolExecutor threadPoolExecutor &&
+      // the maximum pool size of a cached thread pool is unbounded
+      threadPoolExecutor.getMaximumPoolSize() != Integer.MAX_VALUE
+    ) {
+      return threadPoolExecutor.getMaximumPoolSize();
+    }
+    if (executor instanceof ForkJoinPool forkJoinPool) {
+      return forkJoinPool.getParallelism();
+    }
+    return Runtime.getRuntime().availableProcessors();
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.util;
+
+import org.locationtech.jts.geom.Coordinate;
+
+/**
+ * Calculate the orthodromic distance on the WGS84 ellipsoid with GeoTools.
+ * This is the most accurate strategy, but also the most expensive one.
+ * @see GeometryUtil#distance(Coordinate, Coordinate)
+ */
+public class GeodeticDistanceCalculator implements DistanceCalculator {
+
+  @Override
+  public double distance(
+    double fromLon,
+    double fromLat,
+    double toLon,
+    double toLat
+  ) {
+    return GeometryUtil.distance(
+      new Coordinate(fromLon, fromLat),
+      new Coordinate(toLon, toLat)
+    );
+  }
+
+  @Override
+  public double distance(Coordinate from, Coordinate to) {
+    return GeometryUtil.distance(from, to);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.entur.netex.gtfs.export.repository.GtfsDatasetRepository;
+import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.onebusaway.gtfs.model.Stop;
+
+/**
+ * Cache of the GTFS stops corresponding to scheduled stop points, indexed by scheduled stop point id.
+ * A scheduled stop point is resolved on first access, which requires the GTFS stops to be already converted.
+ * Unresolved scheduled stop points are not cached.
+ * The cache is thread-safe and is meant to be used for a single export.
+ */
+public class GtfsStopCache {
+
+  private final NetexDatasetRepository netexDatasetRepository;
+  private final GtfsDatasetRepository gtfsDatasetRepository;
+  private final Map<String, Stop> stopsByScheduledStopPointId;
+
+  public GtfsStopCache(
+    NetexDatasetRepository netexDatasetRepository,
+    GtfsDatasetRepository gtfsDatasetRepository
+  ) {
+    this.netexDatasetRepository = netexDatasetRepository;
+    this.gtfsDatasetRepository = gtfsDatasetRepository;
+    this.stopsByScheduledStopPointId = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Return the GTFS stop corresponding to a given Scheduled Stop Point.
+   * @see StopUtil#getGtfsStopFromScheduledStopPointId(String, NetexDatasetRepository, GtfsDatasetRepository)
+   * @param scheduledStopPointId the Scheduled Stop Point.
+   * @return the GTFS stop corresponding to the Scheduled Stop Point.
+   */
+  public Stop getStop(String scheduledStopPointId) {
+    Stop stop = stopsByScheduledStopPointId.get(scheduledStopPointId);
+    if (stop != null) {
+      return stop;
+    }
+    return stopsByScheduledStopPointId.computeIfAbsent(
+      scheduledStopPointId,
+      id ->
+        StopUtil.getGtfsStopFromScheduledStopPointId(
+          id,
+          netexDatasetRepository,
+          gtfsDatasetRepository
+        )
+    );
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.util;
+
+/**
+ * Calculate distances with the haversine formula, on primitive values and without allocating objects.
+ * The earth is approximated by a sphere whose radius is the Gaussian radius of curvature of the WGS84 ellipsoid at the
+ * mean latitude of the 2 positions. For the short segments that make up a shape, the result differs from the
+ * ellipsoidal distance calculated by {@link GeodeticDistanceCalculator} by less than {@link #RELATIVE_TOLERANCE}.
+ */
+public class HaversineDistanceCalculator implements DistanceCalculator {
+
+  /**
+   * Upper bound of the relative difference with the ellipsoidal distance, for segments shorter than 100 km.
+   * It corresponds to half the difference between the meridional and the prime vertical radii of curvature at the
+   * equator, where the two differ the most.
+   */
+  public static final double RELATIVE_TOLERANCE = 0.0035;
+
+  /**
+   * WGS84 semi-major axis, in meters.
+   */
+  private static final double SEMI_MAJOR_AXIS = 6378137.0;
+
+  /**
+   * WGS84 flattening.
+   */
+  private static final double FLATTENING = 1 / 298.257223563;
+
+  /**
+   * WGS84 first eccentricity squared.
+   */
+  private static final double ECCENTRICITY_SQUARED =
+    FLATTENING * (2 - FLATTENING);
+
+  /**
+   * Numerator of the Gaussian radius of curvature: a * sqrt(1 - e²).
+   */
+  private static final double GAUSSIAN_RADIUS_NUMERATOR =
+    SEMI_MAJOR_AXIS * Math.sqrt(1 - ECCENTRICITY_SQUARED);
+
+  @Override
+  public double distance(
+    double fromLon,
+    double fromLat,
+    double toLon,
+    double toLat
+  ) {
+    double fromLatRadians = Math.toRadians(fromLat);
+    double toLatRadians = Math.toRadians(toLat);
+    double sinHalfDeltaLat = Math.sin((toLatRadians - fromLatRadians) / 2);
+    double sinHalfDeltaLon = Math.sin(Math.toRadians(toLon - fromLon) / 2);
+    double h =
+      sinHalfDeltaLat *
+      sinHalfDeltaLat +
+      Math.cos(fromLatRadians) *
+      Math.cos(toLatRadians) *
+      sinHalfDeltaLon *
+      sinHalfDeltaLon;
+    double centralAngle = 2 * Math.asin(Math.sqrt(Math.min(1, h)));
+
+    double sinMeanLat = Math.sin((fromLatRadians + toLatRadians) / 2);
+    double radius =
+      GAUSSIAN_RADIUS_NUMERATOR /
+      (1 - ECCENTRICITY_SQUARED * sinMeanLat * sinMeanLat);
+    return radius * centralAngle;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.rutebanken.netex.model.DestinationDisplay;
+
+/**
+ * Cache of the GTFS head signs built from destination displays, indexed by destination display id.
+ * Head signs with the same text share the same String instance, so that the stop times and trips referring to them do
+ * not retain duplicate strings.
+ * The cache is thread-safe and is meant to be used for a single export.
+ */
+public class HeadSignCache {
+
+  private final NetexDatasetRepository netexDatasetRepository;
+  private final Map<String, String> headSignsByDestinationDisplayId;
+  private final Map<String, String> canonicalHeadSigns;
+
+  public HeadSignCache(NetexDatasetRepository netexDatasetRepository) {
+    this.netexDatasetRepository = netexDatasetRepository;
+    this.headSignsByDestinationDisplayId = new ConcurrentHashMap<>();
+    this.canonicalHeadSigns = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Return the head sign built from a destination display.
+   * @see DestinationDisplayUtil#getHeadSignFromDestinationDisplay(DestinationDisplay, NetexDatasetRepository)
+   * @param destinationDisplay the NeTEx destination display
+   * @return the head sign, or null if the destination display is null.
+   */
+  public String getHeadSign(DestinationDisplay destinationDisplay) {
+    if (destinationDisplay == null) {
+      return null;
+    }
+    if (destinationDisplay.getId() == null) {
+      return buildHeadSign(destinationDisplay);
+    }
+    return headSignsByDestinationDisplayId.computeIfAbsent(
+      destinationDisplay.getId(),
+      destinationDisplayId -> buildHeadSign(destinationDisplay)
+    );
+  }
+
+  /**
+   * Return the head sign built from the destination display with the given id.
+   * @param destinationDisplayId the NeTEx destination display id
+   * @return the head sign, or null if the destination display does not exist.
+   */
+  public String getHeadSign(String destinationDisplayId) {
+    if (destinationDisplayId == null) {
+      return null;
+    }
+    String headSign = headSignsByDestinationDisplayId.get(destinationDisplayId);
+    if (headSign != null) {
+      return headSign;
+    }
+    return getHeadSign(
+      netexDatasetRepository.getDestinationDisplayById(destinationDisplayId)
+    );
+  }
+
+  private String buildHeadSign(DestinationDisplay destinationDisplay) {
+    String headSign = DestinationDisplayUtil.getHeadSignFromDestinationDisplay(
+      destinationDisplay,
+      netexDatasetRepository
+    );
+    if (headSign == null) {
+      return null;
+    }
+    return canonicalHeadSigns.computeIfAbsent(headSign, h -> h);
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.entur.netex.gtfs.export.generator.SyntheticNetexDatasetGenerator;
+import org.entur.netex.gtfs.export.stop.DefaultStopAreaRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verify on synthetic datasets that the conversion time grows roughly linearly with the size of the NeTEx dataset.
+ * The timing test depends on the load of the machine and is excluded from the default test run. It is run with the
+ * performance Maven profile.
+ */
+class ConversionScalingTest {
+
+  private static final int SMALL_SCALE = 1;
+  private static final int LARGE_SCALE = 10;
+
+  /**
+   * Tolerated factor between the growth of the conversion time and the growth of the dataset. It absorbs the
+   * measurement noise, while an algorithm quadratic in the size of the dataset exceeds it by far.
+   */
+  private static final double MAX_GROWTH_FACTOR = 3;
+
+  @Test
+  @Tag("performance")
+  void testConversionTimeGrowsLinearly() throws IOException {
+    // warm up
+    convert(new SyntheticNetexDatasetGenerator(SMALL_SCALE));
+
+    long smallDuration = Long.MAX_VALUE;
+    for (int i = 0; i < 3; i++) {
+      smallDuration =
+        Math.min(
+          smallDuration,
+          convert(new SyntheticNetexDatasetGenerator(SMALL_SCALE))
+        );
+    }
+    long largeDuration = convert(
+      new SyntheticNetexDatasetGenerator(LARGE_SCALE)
+    );
+
+    double maxDuration =
+      smallDuration * ((double) LARGE_SCALE / SMALL_SCALE) * MAX_GROWTH_FACTOR;
+    Assertions.assertTrue(
+      largeDuration < maxDuration,
+      "Converting a dataset " +
+      LARGE_SCALE / SMALL_SCALE +
+      " times larger took " +
+      largeDuration / 1_000_000 +
+      " ms, compared with " +
+      smallDuration / 1_000_000 +
+      " ms for the small dataset"
+    );
+  }
+
+  @Test
+  void testSyntheticDatasetConversion() throws IOException {
+    SyntheticNetexDatasetGenerator generator =
+      new SyntheticNetexDatasetGenerator(SMALL_SCALE);
+    Map<String, Integer> rowCounts = countRows(export(generator));
+
+    Assertions.assertEquals(
+      generator.getLineCount(),
+      rowCounts.get("routes.txt")
+    );
+    Assertions.assertEquals(
+      generator.getServiceJourneyCount(),
+      rowCounts.get("trips.txt")
+    );
+    Assertions.assertEquals(
+      generator.getTimetabledPassingTimeCount(),
+      rowCounts.get("stop_times.txt")
+    );
+    Assertions.assertEquals(
+      generator.getInterchangeCount(),
+      rowCounts.get("transfers.txt")
+    );
+    // one stop per quay and one station per stop place
+    Assertions.assertEquals(
+      2 * generator.getStopCount(),
+      rowCounts.get("stops.txt")
+    );
+    Assertions.assertTrue(rowCounts.containsKey("shapes.txt"));
+  }
+
+  /**
+   * Convert a synthetic dataset and return the conversion time in nanoseconds, excluding the loading of the stop
+   * dataset.
+   */
+  private static long convert(SyntheticNetexDatasetGenerator generator) {
+    DefaultStopAreaRepository stopAreaRepository = loadStopAreas(generator);
+    byte[] netexArchive = generator.generateTimetableDataset();
+    long start = System.nanoTime();
+    new DefaultGtfsExporter(
+      SyntheticNetexDatasetGenerator.CODESPACE,
+      stopAreaRepository
+    )
+      .convertTimetablesToGtfs(
+        new ByteArrayInputStream(netexArchive),
+        OutputStream.nullOutputStream()
+      );
+    return System.nanoTime() - start;
+  }
+
+  private static byte[] export(SyntheticNetexDatasetGenerator generator) {
+    ByteArrayOutputStream gtfsArchive = new ByteArrayOutputStream();
+    new DefaultGtfsExporter(
+      SyntheticNetexDatasetGenerator.CODESPACE,
+      loadStopAreas(generator)
+    )
+      .convertTimetablesToGtfs(
+        new ByteArrayInputStream(generator.generateTimetableDataset()),
+        gtfsArchive
+      );
+    return gtfsArchive.toByteArray();
+  }
+
+  private static DefaultStopAreaRepository loadStopAreas(
+    SyntheticNetexDatasetGenerator generator
+  ) {
+    DefaultStopAreaRepository stopAreaRepository =
+      new DefaultStopAreaRepository();
+    stopAreaRepository.loadStopAreas(
+      new ByteArrayInputStream(generator.generateStopDataset())
+    );
+    return stopAreaRepository;
+  }
+
+  /**
+   * Return the number of rows in each file of a GTFS archive, excluding the header.
+   */
+  private static Map<String, Integer> countRows(byte[] gtfsArchive)
+    throws IOException {
+    Map<String, Integer> rowCounts = new HashMap<>();
+    try (
+      ZipInputStream zipInputStream = new ZipInputStream(
+        new ByteArrayInputStream(gtfsArchive)
+      )
+    ) {
+      ZipEntry zipEntry;
+      while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+        long lines = new String(
+          zipInputStream.readAllBytes(),
+          StandardCharsets.UTF_8
+        )
+          .lines()
+          .count();
+        rowCounts.put(zipEntry.getName(), (int) lines - 1);
+      }
+    }
+    return rowCounts;
+  }
+}
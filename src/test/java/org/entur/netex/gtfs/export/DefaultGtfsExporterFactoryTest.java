@@ -0,0 +1,230 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.entur.netex.gtfs.export.loader.DefaultNetexDatasetLoader;
+import org.entur.netex.gtfs.export.loader.NetexDatasetLoader;
+import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.entur.netex.gtfs.export.stop.DefaultStopAreaRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class DefaultGtfsExporterFactoryTest {
+
+  private static DefaultStopAreaRepository stopAreaRepository;
+
+  @BeforeAll
+  static void setUp() {
+    stopAreaRepository = new DefaultStopAreaRepository();
+    stopAreaRepository.loadStopAreas(
+      DefaultGtfsExporterFactoryTest.class.getResourceAsStream(
+          "/RailStations_latest.zip"
+        )
+    );
+  }
+
+  @Test
+  void testSuccessiveConversionsAreIndependent() throws IOException {
+    GtfsExporterFactory factory = new DefaultGtfsExporterFactory(
+      stopAreaRepository,
+      false
+    );
+
+    Map<String, String> flbExport = exportTimetable(
+      factory.createGtfsExporter("FLB"),
+      "/rb_flb-aggregated-netex.zip"
+    );
+    Map<String, String> vygExport = exportTimetable(
+      factory.createGtfsExporter("VYG"),
+      "/rb_vyg-aggregated-netex.zip"
+    );
+    Map<String, String> secondFlbExport = exportTimetable(
+      factory.createGtfsExporter("FLB"),
+      "/rb_flb-aggregated-netex.zip"
+    );
+
+    Assertions.assertEquals(
+      exportTimetable(
+        new DefaultGtfsExporter("FLB", stopAreaRepository),
+        "/rb_flb-aggregated-netex.zip"
+      ),
+      flbExport
+    );
+    Assertions.assertEquals(
+      exportTimetable(
+        new DefaultGtfsExporter("VYG", stopAreaRepository),
+        "/rb_vyg-aggregated-netex.zip"
+      ),
+      vygExport
+    );
+    Assertions.assertEquals(flbExport, secondFlbExport);
+  }
+
+  @Test
+  void testSharedLoaderIsUsedByAllExporters() throws IOException {
+    CountingNetexDatasetLoader netexDatasetLoader =
+      new CountingNetexDatasetLoader();
+    DefaultGtfsExporterFactory factory = new DefaultGtfsExporterFactory(
+      stopAreaRepository,
+      false
+    );
+    factory.setNetexDatasetLoader(netexDatasetLoader);
+
+    exportTimetable(
+      factory.createGtfsExporter("FLB"),
+      "/rb_flb-aggregated-netex.zip"
+    );
+    exportTimetable(
+      factory.createGtfsExporter("SJV"),
+      "/rb_sjv-aggregated-netex.zip"
+    );
+
+    Assertions.assertEquals(2, netexDatasetLoader.loadCount.get());
+  }
+
+  @Test
+  void testConcurrentConversionsShareTheDefaultLoader() throws Exception {
+    GtfsExporterFactory factory = new DefaultGtfsExporterFactory(
+      stopAreaRepository,
+      false
+    );
+    Map<String, String> flbExport = exportTimetable(
+      factory.createGtfsExporter("FLB"),
+      "/rb_flb-aggregated-netex.zip"
+    );
+    Map<String, String> vygExport = exportTimetable(
+      factory.createGtfsExporter("VYG"),
+      "/rb_vyg-aggregated-netex.zip"
+    );
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Map<String, String>>> flbExports = new ArrayList<>();
+      List<Future<Map<String, String>>> vygExports = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        GtfsExporter flbExporter = factory.createGtfsExporter("FLB");
+        GtfsExporter vygExporter = factory.createGtfsExporter("VYG");
+        flbExports.add(
+          executorService.submit(() ->
+            exportTimetable(flbExporter, "/rb_flb-aggregated-netex.zip")
+          )
+        );
+        vygExports.add(
+          executorService.submit(() ->
+            exportTimetable(vygExporter, "/rb_vyg-aggregated-netex.zip")
+          )
+        );
+      }
+      for (Future<Map<String, String>> export : flbExports) {
+        Assertions.assertEquals(flbExport, export.get());
+      }
+      for (Future<Map<String, String>> export : vygExports) {
+        Assertions.assertEquals(vygExport, export.get());
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  void testStopExport() throws IOException {
+    GtfsExporterFactory factory = new DefaultGtfsExporterFactory(
+      stopAreaRepository,
+      false
+    );
+
+    Map<String, String> stopExport = readEntries(
+      factory.createStopExporter().convertStopsToGtfs()
+    );
+
+    Assertions.assertTrue(stopExport.containsKey("stops.txt"));
+    Assertions.assertFalse(stopExport.containsKey("trips.txt"));
+  }
+
+  private Map<String, String> exportTimetable(
+    GtfsExporter gtfsExporter,
+    String timetableDataset
+  ) throws IOException {
+    ByteArrayOutputStream gtfsArchive = new ByteArrayOutputStream();
+    try (
+      InputStream netexTimetableDataset = getClass()
+        .getResourceAsStream(timetableDataset)
+    ) {
+      gtfsExporter.convertTimetablesToGtfs(netexTimetableDataset, gtfsArchive);
+    }
+    return readEntries(new ByteArrayInputStream(gtfsArchive.toByteArray()));
+  }
+
+  private static Map<String, String> readEntries(InputStream gtfsArchive)
+    throws IOException {
+    Map<String, String> entries = new TreeMap<>();
+    try (ZipInputStream zipInputStream = new ZipInputStream(gtfsArchive)) {
+      ZipEntry zipEntry;
+      while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+        entries.put(
+          zipEntry.getName(),
+          new String(zipInputStream.readAllBytes(), StandardCharsets.UTF_8)
+        );
+      }
+    }
+    return entries;
+  }
+
+  private static class CountingNetexDatasetLoader
+    implements NetexDatasetLoader {
+
+    private final NetexDatasetLoader delegate = new DefaultNetexDatasetLoader();
+    private final AtomicInteger loadCount = new AtomicInteger();
+
+    @Override
+    public void load(
+      InputStream timetableDataset,
+      NetexDatasetRepository netexDatasetRepository
+    ) {
+      loadCount.incrementAndGet();
+      delegate.load(timetableDataset, netexDatasetRepository);
+    }
+
+    @Override
+    public void load(
+      Path timetableDataset,
+      NetexDatasetRepository netexDatasetRepository
+    ) {
+      loadCount.incrementAndGet();
+      delegate.load(timetableDataset, netexDatasetRepository);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.entur.netex.gtfs.export.loader.ParallelNetexDatasetLoader;
+import org.entur.netex.gtfs.export.monitoring.GtfsExportPhase;
+import org.entur.netex.gtfs.export.repository.DefaultNetexDatasetRepository;
+import org.entur.netex.gtfs.export.stop.DefaultStopAreaRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FlightRecorderEventsTest {
+
+  private static final String EXPORT_PHASE_EVENT =
+    "org.entur.netex.gtfs.ExportPhase";
+  private static final String NETEX_ENTRY_LOAD_EVENT =
+    "org.entur.netex.gtfs.NetexEntryLoad";
+  private static final String GTFS_FILE_WRITE_EVENT =
+    "org.entur.netex.gtfs.GtfsFileWrite";
+  private static final String JOURNEY_PATTERN_CONVERSION_EVENT =
+    "org.entur.netex.gtfs.JourneyPatternConversion";
+
+  @Test
+  void testTimetableExportEmitsEvents(@TempDir Path tempDir)
+    throws IOException {
+    DefaultStopAreaRepository stopAreaRepository =
+      new DefaultStopAreaRepository();
+    stopAreaRepository.loadStopAreas(
+      getClass().getResourceAsStream("/RailStations_latest.zip")
+    );
+    DefaultGtfsExporter gtfsExporter = new DefaultGtfsExporter(
+      "FLB",
+      stopAreaRepository
+    );
+
+    Path recordingFile = tempDir.resolve("export.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(EXPORT_PHASE_EVENT);
+      recording.enable(NETEX_ENTRY_LOAD_EVENT);
+      recording.enable(GTFS_FILE_WRITE_EVENT);
+      // record every journey pattern, regardless of its conversion time
+      recording
+        .enable(JOURNEY_PATTERN_CONVERSION_EVENT)
+        .withThreshold(Duration.ZERO);
+      recording.start();
+      try (
+        InputStream netexTimetableDataset = getClass()
+          .getResourceAsStream("/rb_flb-aggregated-netex.zip")
+      ) {
+        gtfsExporter.convertTimetablesToGtfs(
+          netexTimetableDataset,
+          new ByteArrayOutputStream()
+        );
+      }
+      recording.stop();
+      recording.dump(recordingFile);
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+
+    Assertions.assertEquals(
+      Arrays
+        .stream(GtfsExportPhase.values())
+        .map(GtfsExportPhase::name)
+        .collect(Collectors.toSet()),
+      getValues(events, EXPORT_PHASE_EVENT, "phase")
+    );
+    Assertions.assertTrue(
+      getValues(events, NETEX_ENTRY_LOAD_EVENT, "entryName")
+        .contains("_FLB_shared_data.xml")
+    );
+    Assertions.assertTrue(
+      getValues(events, GTFS_FILE_WRITE_EVENT, "fileName")
+        .containsAll(Set.of("agency.txt", "stops.txt", "stop_times.txt"))
+    );
+    Assertions.assertEquals(
+      Set.of(
+        JourneyPatternConversionEvent.STEP_SHAPE,
+        JourneyPatternConversionEvent.STEP_STOP_TIMES
+      ),
+      getValues(events, JOURNEY_PATTERN_CONVERSION_EVENT, "step")
+    );
+  }
+
+  @Test
+  void testParallelLoaderEmitsEntryLoadEvents(@TempDir Path tempDir)
+    throws IOException {
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    Path recordingFile = tempDir.resolve("load.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(NETEX_ENTRY_LOAD_EVENT);
+      recording.start();
+      try (
+        InputStream netexTimetableDataset = getClass()
+          .getResourceAsStream("/rb_flb-aggregated-netex.zip")
+      ) {
+        new ParallelNetexDatasetLoader(executorService)
+          .load(netexTimetableDataset, new DefaultNetexDatasetRepository());
+      }
+      recording.stop();
+      recording.dump(recordingFile);
+    } finally {
+      executorService.shutdownNow();
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+
+    Assertions.assertTrue(
+      getValues(events, NETEX_ENTRY_LOAD_EVENT, "entryName")
+        .contains("_FLB_shared_data.xml")
+    );
+  }
+
+  private static Set<String> getValues(
+    List<RecordedEvent> events,
+    String eventName,
+    String fieldName
+  ) {
+    return events
+      .stream()
+      .filter(event -> event.getEventType().getName().equals(eventName))
+      .map(event -> event.getString(fieldName))
+      .collect(Collectors.toSet());
+  }
+}
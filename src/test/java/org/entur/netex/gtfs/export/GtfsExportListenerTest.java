@@ -0,0 +1,198 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.entur.netex.gtfs.export.monitoring.GtfsEntityType;
+import org.entur.netex.gtfs.export.monitoring.GtfsExportListener;
+import org.entur.netex.gtfs.export.monitoring.GtfsExportPhase;
+import org.entur.netex.gtfs.export.stop.DefaultStopAreaRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class GtfsExportListenerTest {
+
+  private static DefaultStopAreaRepository stopAreaRepository;
+
+  @BeforeAll
+  static void setUp() {
+    stopAreaRepository = new DefaultStopAreaRepository();
+    stopAreaRepository.loadStopAreas(
+      GtfsExportListenerTest.class.getResourceAsStream(
+          "/RailStations_latest.zip"
+        )
+    );
+  }
+
+  @Test
+  void testTimetableExportIsReported() throws IOException {
+    RecordingExportListener exportListener = new RecordingExportListener();
+    DefaultGtfsExporter gtfsExporter = new DefaultGtfsExporter(
+      "FLB",
+      stopAreaRepository
+    );
+    gtfsExporter.setExportListener(exportListener);
+
+    InputStream netexTimetableDataset = getClass()
+      .getResourceAsStream("/rb_flb-aggregated-netex.zip");
+    InputStream exportedGtfs = gtfsExporter.convertTimetablesToGtfs(
+      netexTimetableDataset
+    );
+    Map<String, String> entries = readEntries(exportedGtfs);
+
+    Assertions.assertEquals(
+      List.of(
+        GtfsExportPhase.LOADING,
+        GtfsExportPhase.AGENCIES,
+        GtfsExportPhase.STOPS,
+        GtfsExportPhase.ROUTES,
+        GtfsExportPhase.SERVICES,
+        GtfsExportPhase.TRANSFERS,
+        GtfsExportPhase.SERIALIZATION
+      ),
+      exportListener.phases
+    );
+    Assertions.assertTrue(
+      exportListener.peakHeapUsages.stream().allMatch(usage -> usage > 0)
+    );
+
+    Map<GtfsEntityType, Long> entityCounts = exportListener.entityCounts;
+    Assertions.assertEquals(
+      countRows(entries.get("agency.txt")),
+      entityCounts.get(GtfsEntityType.AGENCY)
+    );
+    Assertions.assertEquals(
+      countRows(entries.get("stops.txt")),
+      entityCounts.get(GtfsEntityType.STOP)
+    );
+    Assertions.assertEquals(
+      countRows(entries.get("routes.txt")),
+      entityCounts.get(GtfsEntityType.ROUTE)
+    );
+    Assertions.assertEquals(
+      countRows(entries.get("trips.txt")),
+      entityCounts.get(GtfsEntityType.TRIP)
+    );
+    Assertions.assertEquals(
+      countRows(entries.get("stop_times.txt")),
+      entityCounts.get(GtfsEntityType.STOP_TIME)
+    );
+    Assertions.assertEquals(
+      countRows(entries.get("shapes.txt")),
+      entityCounts.get(GtfsEntityType.SHAPE_POINT)
+    );
+    Assertions.assertEquals(
+      countRows(entries.get("calendar_dates.txt")),
+      entityCounts.get(GtfsEntityType.CALENDAR_DATE)
+    );
+    Assertions.assertTrue(entityCounts.get(GtfsEntityType.SERVICE) > 0);
+
+    Map<String, Long> entrySizes = new HashMap<>();
+    entries.forEach((fileName, content) ->
+      entrySizes.put(
+        fileName,
+        (long) content.getBytes(StandardCharsets.UTF_8).length
+      )
+    );
+    Assertions.assertEquals(entrySizes, exportListener.fileSizes);
+  }
+
+  @Test
+  void testStopExportIsReported() {
+    RecordingExportListener exportListener = new RecordingExportListener();
+    DefaultGtfsExporter gtfsExporter = new DefaultGtfsExporter(
+      stopAreaRepository
+    );
+    gtfsExporter.setExportListener(exportListener);
+
+    gtfsExporter.convertStopsToGtfs(new ByteArrayOutputStream());
+
+    Assertions.assertEquals(
+      List.of(GtfsExportPhase.STOPS, GtfsExportPhase.SERIALIZATION),
+      exportListener.phases
+    );
+    Assertions.assertTrue(
+      exportListener.entityCounts.get(GtfsEntityType.STOP) > 0
+    );
+    Assertions.assertEquals(
+      0L,
+      exportListener.entityCounts.get(GtfsEntityType.TRIP)
+    );
+    Assertions.assertTrue(exportListener.fileSizes.containsKey("stops.txt"));
+  }
+
+  private static long countRows(String gtfsFile) {
+    // the first line is the header
+    return gtfsFile.lines().count() - 1;
+  }
+
+  private static Map<String, String> readEntries(InputStream gtfsArchive)
+    throws IOException {
+    Map<String, String> entries = new HashMap<>();
+    try (ZipInputStream zipInputStream = new ZipInputStream(gtfsArchive)) {
+      ZipEntry zipEntry;
+      while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+        entries.put(
+          zipEntry.getName(),
+          new String(zipInputStream.readAllBytes(), StandardCharsets.UTF_8)
+        );
+      }
+    }
+    return entries;
+  }
+
+  private static class RecordingExportListener implements GtfsExportListener {
+
+    private final List<GtfsExportPhase> phases = new ArrayList<>();
+    private final List<Long> peakHeapUsages = new ArrayList<>();
+    private final Map<String, Long> fileSizes = new HashMap<>();
+    private Map<GtfsEntityType, Long> entityCounts;
+
+    @Override
+    public void phaseCompleted(
+      GtfsExportPhase phase,
+      Duration duration,
+      long peakHeapUsage
+    ) {
+      phases.add(phase);
+      peakHeapUsages.add(peakHeapUsage);
+    }
+
+    @Override
+    public void entitiesConverted(Map<GtfsEntityType, Long> entityCounts) {
+      this.entityCounts = entityCounts;
+    }
+
+    @Override
+    public void gtfsFileWritten(String fileName, long size) {
+      fileSizes.put(fileName, size);
+    }
+  }
+}
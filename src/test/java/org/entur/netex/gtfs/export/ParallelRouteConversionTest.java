@@ -0,0 +1,278 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.stream.Collectors;
+import java.util.zip.ZipInputStream;
+import org.entur.netex.gtfs.export.producer.DefaultShapeProducer;
+import org.entur.netex.gtfs.export.repository.DefaultGtfsRepository;
+import org.entur.netex.gtfs.export.repository.GtfsDatasetRepository;
+import org.entur.netex.gtfs.export.repository.StreamingGtfsRepository;
+import org.entur.netex.gtfs.export.stop.DefaultStopAreaRepository;
+import org.entur.netex.gtfs.export.util.GeodeticDistanceCalculator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Verify that converting the lines concurrently produces exactly the same GTFS archive as the sequential conversion.
+ */
+class ParallelRouteConversionTest {
+
+  private static DefaultStopAreaRepository stopAreaRepository;
+  private static ExecutorService executor;
+
+  @BeforeAll
+  static void setUp() {
+    stopAreaRepository = new DefaultStopAreaRepository();
+    stopAreaRepository.loadStopAreas(
+      ParallelRouteConversionTest.class.getResourceAsStream(
+          "/RailStations_latest.zip"
+        )
+    );
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterAll
+  static void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @ParameterizedTest
+  @CsvSource(
+    {
+      "FLB, /rb_flb-aggregated-netex.zip, false",
+      "VYG, /rb_vyg-aggregated-netex.zip, false",
+      "SJV, /rb_sjv-aggregated-netex.zip, false",
+      "VYG, /rb_vyg-aggregated-netex.zip, true",
+    }
+  )
+  void testParallelConversionProducesSameArchive(
+    String codespace,
+    String timetableDataset,
+    boolean streaming
+  ) throws IOException {
+    Map<String, String> sequentialExport = export(
+      codespace,
+      timetableDataset,
+      streaming,
+      false
+    );
+    Map<String, String> parallelExport = export(
+      codespace,
+      timetableDataset,
+      streaming,
+      true
+    );
+
+    Assertions.assertTrue(sequentialExport.containsKey("stop_times.txt"));
+    Assertions.assertEquals(sequentialExport.keySet(), parallelExport.keySet());
+    for (Map.Entry<String, String> entry : sequentialExport.entrySet()) {
+      Assertions.assertEquals(
+        entry.getValue(),
+        parallelExport.get(entry.getKey()),
+        "Difference in " + entry.getKey()
+      );
+    }
+  }
+
+  /**
+   * Several journey patterns of the VYG dataset go through the same sequence of service links. With shape
+   * deduplication, the shape ids depend on the index of shared shapes, which is read by all the conversion threads.
+   * The conversion is repeated to give concurrent accesses to the journey patterns a chance to interfere.
+   */
+  @Test
+  void testParallelConversionWithSharedShapesProducesSameShapeIds()
+    throws IOException {
+    Map<String, String> sequentialExport = export(
+      "VYG",
+      "/rb_vyg-aggregated-netex.zip",
+      false,
+      false,
+      true
+    );
+    Set<String> sharedShapeIds = getShapeIds(sequentialExport);
+    Set<String> shapeIds = getShapeIds(
+      export("VYG", "/rb_vyg-aggregated-netex.zip", false, false, false)
+    );
+    Assertions.assertTrue(sharedShapeIds.size() < shapeIds.size());
+
+    for (int i = 0; i < 10; i++) {
+      Map<String, String> parallelExport = export(
+        "VYG",
+        "/rb_vyg-aggregated-netex.zip",
+        false,
+        true,
+        true
+      );
+      Assertions.assertEquals(
+        sequentialExport.get("shapes.txt"),
+        parallelExport.get("shapes.txt")
+      );
+      Assertions.assertEquals(
+        sequentialExport.get("trips.txt"),
+        parallelExport.get("trips.txt")
+      );
+      Assertions.assertEquals(
+        sequentialExport.get("stop_times.txt"),
+        parallelExport.get("stop_times.txt")
+      );
+    }
+  }
+
+  /**
+   * With a single line in flight, each line is saved before the conversion of the next one starts.
+   */
+  @Test
+  void testParallelConversionWithOneLineInFlightProducesSameArchive()
+    throws IOException {
+    Map<String, String> sequentialExport = export(
+      "VYG",
+      "/rb_vyg-aggregated-netex.zip",
+      false,
+      false
+    );
+    Map<String, String> parallelExport = export(
+      "VYG",
+      "/rb_vyg-aggregated-netex.zip",
+      false,
+      false,
+      gtfsExporter -> gtfsExporter.setRouteConversionExecutor(executor, 1)
+    );
+    Assertions.assertEquals(sequentialExport, parallelExport);
+  }
+
+  @Test
+  void testInvalidMaxLinesInFlight() {
+    DefaultGtfsExporter gtfsExporter = new DefaultGtfsExporter(
+      "VYG",
+      stopAreaRepository
+    );
+    Assertions.assertThrows(
+      IllegalArgumentException.class,
+      () -> gtfsExporter.setRouteConversionExecutor(executor, 0)
+    );
+  }
+
+  private static Set<String> getShapeIds(Map<String, String> export) {
+    List<String> lines = export.get("shapes.txt").lines().toList();
+    int shapeIdColumn = List.of(lines.get(0).split(",")).indexOf("shape_id");
+    return lines
+      .stream()
+      .skip(1)
+      .map(line -> line.split(",")[shapeIdColumn])
+      .collect(Collectors.toSet());
+  }
+
+  private Map<String, String> export(
+    String codespace,
+    String timetableDataset,
+    boolean streaming,
+    boolean parallel
+  ) throws IOException {
+    return export(codespace, timetableDataset, streaming, parallel, false);
+  }
+
+  private Map<String, String> export(
+    String codespace,
+    String timetableDataset,
+    boolean streaming,
+    boolean parallel,
+    boolean deduplicateShapes
+  ) throws IOException {
+    return export(
+      codespace,
+      timetableDataset,
+      streaming,
+      deduplicateShapes,
+      gtfsExporter -> {
+        if (parallel) {
+          gtfsExporter.setRouteConversionExecutor(executor);
+        }
+      }
+    );
+  }
+
+  private Map<String, String> export(
+    String codespace,
+    String timetableDataset,
+    boolean streaming,
+    boolean deduplicateShapes,
+    Consumer<DefaultGtfsExporter> routeConversionSetup
+  ) throws IOException {
+    GtfsDatasetRepository gtfsDatasetRepository = streaming
+      ? new StreamingGtfsRepository()
+      : new DefaultGtfsRepository();
+    DefaultGtfsExporter gtfsExporter = new DefaultGtfsExporter(
+      codespace,
+      stopAreaRepository,
+      gtfsDatasetRepository,
+      false
+    );
+    routeConversionSetup.accept(gtfsExporter);
+    if (deduplicateShapes) {
+      gtfsExporter.setShapeProducer(
+        new DefaultShapeProducer(
+          gtfsExporter.getNetexDatasetRepository(),
+          gtfsDatasetRepository,
+          new GeodeticDistanceCalculator(),
+          true
+        )
+      );
+    }
+    ByteArrayOutputStream gtfsArchive = new ByteArrayOutputStream();
+    try (
+      InputStream netexTimetableDataset = getClass()
+        .getResourceAsStream(timetableDataset)
+    ) {
+      gtfsExporter.convertTimetablesToGtfs(netexTimetableDataset, gtfsArchive);
+    }
+    Map<String, String> entries = new TreeMap<>();
+    try (
+      ZipInputStream zipInputStream = new ZipInputStream(
+        new ByteArrayInputStream(gtfsArchive.toByteArray())
+      )
+    ) {
+      ZipEntry zipEntry;
+      while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+        entries.put(
+          zipEntry.getName(),
+          new String(zipInputStream.readAllBytes(), StandardCharsets.UTF_8)
+        );
+      }
+    }
+    return entries;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.entur.netex.gtfs.export.repository.DefaultGtfsRepository;
+import org.entur.netex.gtfs.export.stop.DefaultStopAreaRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Verify that converting the stops concurrently produces exactly the same GTFS archive as the sequential conversion.
+ */
+class ParallelStopConversionTest {
+
+  private static DefaultStopAreaRepository stopAreaRepository;
+  private static ExecutorService executor;
+
+  @BeforeAll
+  static void setUp() {
+    stopAreaRepository = new DefaultStopAreaRepository();
+    stopAreaRepository.loadStopAreas(
+      ParallelStopConversionTest.class.getResourceAsStream(
+          "/RailStations_latest.zip"
+        )
+    );
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterAll
+  static void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void testParallelStopExportProducesSameArchive() throws IOException {
+    Map<String, String> sequentialExport = readEntries(
+      createExporter("ENT", false).convertStopsToGtfs()
+    );
+    Map<String, String> parallelExport = readEntries(
+      createExporter("ENT", true).convertStopsToGtfs()
+    );
+
+    Assertions.assertTrue(sequentialExport.containsKey("stops.txt"));
+    Assertions.assertEquals(sequentialExport, parallelExport);
+  }
+
+  @ParameterizedTest
+  @CsvSource(
+    {
+      "FLB, /rb_flb-aggregated-netex.zip",
+      "VYG, /rb_vyg-aggregated-netex.zip",
+      "SJV, /rb_sjv-aggregated-netex.zip",
+    }
+  )
+  void testParallelTimetableExportProducesSameStops(
+    String codespace,
+    String timetableDataset
+  ) throws IOException {
+    Map<String, String> sequentialExport = exportTimetable(
+      codespace,
+      timetableDataset,
+      false
+    );
+    Map<String, String> parallelExport = exportTimetable(
+      codespace,
+      timetableDataset,
+      true
+    );
+
+    Assertions.assertTrue(sequentialExport.containsKey("stops.txt"));
+    Assertions.assertEquals(
+      sequentialExport.get("stops.txt"),
+      parallelExport.get("stops.txt")
+    );
+    Assertions.assertEquals(
+      sequentialExport.get("stop_times.txt"),
+      parallelExport.get("stop_times.txt")
+    );
+  }
+
+  private Map<String, String> exportTimetable(
+    String codespace,
+    String timetableDataset,
+    boolean parallel
+  ) throws IOException {
+    DefaultGtfsExporter gtfsExporter = createExporter(codespace, parallel);
+    ByteArrayOutputStream gtfsArchive = new ByteArrayOutputStream();
+    try (
+      InputStream netexTimetableDataset = getClass()
+        .getResourceAsStream(timetableDataset)
+    ) {
+      gtfsExporter.convertTimetablesToGtfs(netexTimetableDataset, gtfsArchive);
+    }
+    return readEntries(new ByteArrayInputStream(gtfsArchive.toByteArray()));
+  }
+
+  private static DefaultGtfsExporter createExporter(
+    String codespace,
+    boolean parallel
+  ) {
+    DefaultGtfsExporter gtfsExporter = new DefaultGtfsExporter(
+      codespace,
+      stopAreaRepository,
+      new DefaultGtfsRepository(),
+      false
+    );
+    if (parallel) {
+      gtfsExporter.setStopConversionExecutor(executor);
+    }
+    return gtfsExporter;
+  }
+
+  private static Map<String, String> readEntries(InputStream gtfsArchive)
+    throws IOException {
+    Map<String, String> entries = new TreeMap<>();
+    try (ZipInputStream zipInputStream = new ZipInputStream(gtfsArchive)) {
+      ZipEntry zipEntry;
+      while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+        entries.put(
+          zipEntry.getName(),
+          new String(zipInputStream.readAllBytes(), StandardCharsets.UTF_8)
+        );
+      }
+    }
+    return entries;
+  }
+}
@@ -0,0 +1,814 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generate synthetic NeTEx datasets following the Nordic NeTEx Profile, for scale testing.
+ * The timetable dataset contains, for each scale unit, 10 lines with 2 routes and 2 journey patterns each (one per
+ * direction). A journey pattern goes through 12 stops connected by service links and is served by 20 service journeys
+ * operating on weekdays, on weekends or on a list of dates. Consecutive lines share 4 stops and are connected by 5
+ * guaranteed interchanges.
+ * The stop dataset contains one stop place with a single quay for each scheduled stop point of the timetable dataset.
+ * The number of entities in both datasets grows linearly with the scale factor, and the generated datasets are
+ * identical for a given scale factor.
+ */
+public class SyntheticNetexDatasetGenerator {
+
+  public static final String CODESPACE = "SYN";
+
+  static final int LINES_PER_SCALE_UNIT = 10;
+  static final int STOPS_PER_JOURNEY_PATTERN = 12;
+  static final int JOURNEYS_PER_JOURNEY_PATTERN = 20;
+  static final int INTERCHANGES_PER_LINE = 5;
+
+  /**
+   * Offset between the first stops of two consecutive lines. Consecutive lines share the stops that are not
+   * covered by the offset.
+   */
+  private static final int STOP_OFFSET_BETWEEN_LINES = 8;
+  private static final int DIRECTIONS = 2;
+  private static final int MINUTES_BETWEEN_STOPS = 4;
+  private static final int MINUTES_BETWEEN_JOURNEYS = 55;
+  private static final int FIRST_DEPARTURE = 6 * 60;
+  private static final int MINUTES_PER_DAY = 24 * 60;
+
+  private static final LocalDate START_DATE = LocalDate.of(2024, 1, 1);
+  private static final LocalDate END_DATE = LocalDate.of(2024, 6, 30);
+  private static final String[] DAY_TYPES = {
+    "Weekdays",
+    "Weekends",
+    "Holidays",
+  };
+  private static final LocalDate[] HOLIDAYS = {
+    LocalDate.of(2024, 1, 1),
+    LocalDate.of(2024, 3, 28),
+    LocalDate.of(2024, 3, 29),
+    LocalDate.of(2024, 4, 1),
+    LocalDate.of(2024, 5, 1),
+    LocalDate.of(2024, 5, 9),
+    LocalDate.of(2024, 5, 17),
+    LocalDate.of(2024, 5, 20),
+  };
+
+  private static final String PUBLICATION_DELIVERY_START =
+    "<?xml version='1.0' encoding='UTF-8'?>\n" +
+    "<PublicationDelivery xmlns=\"http://www.netex.org.uk/netex\" " +
+    "xmlns:gis=\"http://www.opengis.net/gml/3.2\" " +
+    "xmlns:siri=\"http://www.siri.org.uk/siri\" " +
+    "version=\"1.13:NO-NeTEx-networktimetable:1.3\">\n" +
+    "<PublicationTimestamp>2024-01-01T00:00:00</PublicationTimestamp>\n" +
+    "<ParticipantRef>RB</ParticipantRef>\n";
+
+  private final int scaleFactor;
+
+  /**
+   * @param scaleFactor the number of scale units in the generated datasets.
+   */
+  public SyntheticNetexDatasetGenerator(int scaleFactor) {
+    if (scaleFactor < 1) {
+      throw new IllegalArgumentException(
+        "The scale factor must be positive: " + scaleFactor
+      );
+    }
+    this.scaleFactor = scaleFactor;
+  }
+
+  public int getLineCount() {
+    return scaleFactor * LINES_PER_SCALE_UNIT;
+  }
+
+  public int getStopCount() {
+    return (
+      getLineCount() *
+      STOP_OFFSET_BETWEEN_LINES +
+      STOPS_PER_JOURNEY_PATTERN -
+      STOP_OFFSET_BETWEEN_LINES
+    );
+  }
+
+  public int getServiceJourneyCount() {
+    return getLineCount() * DIRECTIONS * JOURNEYS_PER_JOURNEY_PATTERN;
+  }
+
+  public int getTimetabledPassingTimeCount() {
+    return getServiceJourneyCount() * STOPS_PER_JOURNEY_PATTERN;
+  }
+
+  public int getInterchangeCount() {
+    return (getLineCount() - 1) * INTERCHANGES_PER_LINE;
+  }
+
+  /**
+   * Return the timetable dataset as a zip archive.
+   */
+  public byte[] generateTimetableDataset() {
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    writeTimetableDataset(archive);
+    return archive.toByteArray();
+  }
+
+  /**
+   * Return the stop dataset as a zip archive.
+   */
+  public byte[] generateStopDataset() {
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    writeStopDataset(archive);
+    return archive.toByteArray();
+  }
+
+  /**
+   * Write the timetable dataset as a zip archive containing a shared data file and one file per line.
+   * The output stream is not closed.
+   */
+  public void writeTimetableDataset(OutputStream outputStream) {
+    try {
+      ZipOutputStream zipOutputStream = createZipOutputStream(outputStream);
+      Writer writer = new OutputStreamWriter(
+        zipOutputStream,
+        StandardCharsets.UTF_8
+      );
+      zipOutputStream.putNextEntry(
+        new ZipEntry("_" + CODESPACE + "_shared_data.xml")
+      );
+      writeSharedData(writer);
+      writer.flush();
+      zipOutputStream.closeEntry();
+      for (int line = 0; line < getLineCount(); line++) {
+        zipOutputStream.putNextEntry(
+          new ZipEntry(
+            CODESPACE +
+            "_" +
+            CODESPACE +
+            "-Line-" +
+            line +
+            "_" +
+            line +
+            "_Synthetic.xml"
+          )
+        );
+        writeLine(writer, line);
+        writer.flush();
+        zipOutputStream.closeEntry();
+      }
+      zipOutputStream.finish();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Write the stop dataset as a zip archive containing a single site frame.
+   * The output stream is not closed.
+   */
+  public void writeStopDataset(OutputStream outputStream) {
+    try {
+      ZipOutputStream zipOutputStream = createZipOutputStream(outputStream);
+      Writer writer = new OutputStreamWriter(
+        zipOutputStream,
+        StandardCharsets.UTF_8
+      );
+      zipOutputStream.putNextEntry(new ZipEntry("stops.xml"));
+      writer.write(PUBLICATION_DELIVERY_START);
+      writer.write("<dataObjects>\n");
+      writer.write("<SiteFrame version=\"1\" id=\"NSR:SiteFrame:1\">\n");
+      writer.write("<stopPlaces>\n");
+      for (int stop = 0; stop < getStopCount(); stop++) {
+        writer.write(
+          "<StopPlace version=\"1\" id=\"NSR:StopPlace:" + stop + "\">\n"
+        );
+        writer.write("<Name>" + getStopName(stop) + "</Name>\n");
+        writeCentroid(writer, stop);
+        writer.write("<TransportMode>bus</TransportMode>\n");
+        writer.write("<StopPlaceType>onstreetBus</StopPlaceType>\n");
+        writer.write("<quays>\n");
+        writer.write("<Quay version=\"1\" id=\"" + getQuayId(stop) + "\">\n");
+        writeCentroid(writer, stop);
+        writer.write("</Quay>\n</quays>\n</StopPlace>\n");
+      }
+      writer.write("</stopPlaces>\n</SiteFrame>\n</dataObjects>\n");
+      writer.write("</PublicationDelivery>\n");
+      writer.flush();
+      zipOutputStream.closeEntry();
+      zipOutputStream.finish();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * The archives are compressed with the fastest compression level: generating large datasets is otherwise
+   * dominated by compression.
+   */
+  private static ZipOutputStream createZipOutputStream(
+    OutputStream outputStream
+  ) {
+    ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+    zipOutputStream.setLevel(Deflater.BEST_SPEED);
+    return zipOutputStream;
+  }
+
+  private void writeSharedData(Writer writer) throws IOException {
+    writeCompositeFrameStart(writer, "shared");
+
+    writer.write(
+      "<ResourceFrame version=\"1\" id=\"SYN:ResourceFrame:1\">\n<organisations>\n"
+    );
+    writer.write("<Authority version=\"1\" id=\"SYN:Authority:1\">\n");
+    writer.write("<Name>Synthetic Authority</Name>\n");
+    writer.write(
+      "<ContactDetails>\n<Phone>+47 00 00 00 00</Phone>\n" +
+      "<Url>https://www.example.com</Url>\n</ContactDetails>\n"
+    );
+    writer.write("<OrganisationType>authority</OrganisationType>\n");
+    writer.write("</Authority>\n");
+    writer.write("<Operator version=\"1\" id=\"SYN:Operator:1\">\n");
+    writer.write("<Name>Synthetic Operator</Name>\n");
+    writer.write("<OrganisationType>operator</OrganisationType>\n");
+    writer.write("</Operator>\n</organisations>\n</ResourceFrame>\n");
+
+    writer.write("<ServiceFrame version=\"1\" id=\"SYN:ServiceFrame:1\">\n");
+    writer.write("<Network version=\"1\" id=\"SYN:Network:1\">\n");
+    writer.write("<Name>Synthetic Network</Name>\n");
+    writer.write("<AuthorityRef ref=\"SYN:Authority:1\" version=\"1\"/>\n");
+    writer.write("</Network>\n");
+
+    writer.write("<routePoints>\n");
+    for (int stop = 0; stop < getStopCount(); stop++) {
+      writer.write(
+        "<RoutePoint version=\"1\" id=\"SYN:RoutePoint:" +
+        stop +
+        "\">\n<projections>\n" +
+        "<PointProjection version=\"1\" id=\"SYN:PointProjection:" +
+        stop +
+        "\">\n<ProjectedPointRef ref=\"" +
+        getScheduledStopPointId(stop) +
+        "\" version=\"1\"/>\n</PointProjection>\n</projections>\n</RoutePoint>\n"
+      );
+    }
+    writer.write("</routePoints>\n");
+
+    writer.write("<destinationDisplays>\n");
+    for (int line = 0; line < getLineCount(); line++) {
+      for (int direction = 0; direction < DIRECTIONS; direction++) {
+        writer.write(
+          "<DestinationDisplay version=\"1\" id=\"" +
+          getDestinationDisplayId(line, direction) +
+          "\">\n<FrontText>" +
+          getStopName(getStop(line, direction, STOPS_PER_JOURNEY_PATTERN - 1)) +
+          "</FrontText>\n</DestinationDisplay>\n"
+        );
+      }
+    }
+    writer.write("</destinationDisplays>\n");
+
+    writer.write("<scheduledStopPoints>\n");
+    for (int stop = 0; stop < getStopCount(); stop++) {
+      writer.write(
+        "<ScheduledStopPoint version=\"1\" id=\"" +
+        getScheduledStopPointId(stop) +
+        "\">\n<Name>" +
+        getStopName(stop) +
+        "</Name>\n</ScheduledStopPoint>\n"
+      );
+    }
+    writer.write("</scheduledStopPoints>\n");
+
+    // every pair of consecutive stops is served by at least one line, in both directions
+    writer.write("<serviceLinks>\n");
+    for (int stop = 0; stop < getStopCount() - 1; stop++) {
+      writeServiceLink(writer, stop, stop + 1);
+      writeServiceLink(writer, stop + 1, stop);
+    }
+    writer.write("</serviceLinks>\n");
+
+    writer.write("<stopAssignments>\n");
+    for (int stop = 0; stop < getStopCount(); stop++) {
+      writer.write(
+        "<PassengerStopAssignment order=\"" +
+        (stop + 1) +
+        "\" version=\"1\" id=\"SYN:PassengerStopAssignment:" +
+        stop +
+        "\">\n<ScheduledStopPointRef ref=\"" +
+        getScheduledStopPointId(stop) +
+        "\" version=\"1\"/>\n<QuayRef ref=\"" +
+        getQuayId(stop) +
+        "\"/>\n</PassengerStopAssignment>\n"
+      );
+    }
+    writer.write("</stopAssignments>\n</ServiceFrame>\n");
+
+    writeServiceCalendarFrame(writer);
+    writeCompositeFrameEnd(writer);
+  }
+
+  private void writeServiceCalendarFrame(Writer writer) throws IOException {
+    writer.write(
+      "<ServiceCalendarFrame version=\"1\" id=\"SYN:ServiceCalendarFrame:1\">\n"
+    );
+    writer.write("<dayTypes>\n");
+    writeDayType(writer, 0, "Monday Tuesday Wednesday Thursday Friday");
+    writeDayType(writer, 1, "Saturday Sunday");
+    writeDayType(writer, 2, null);
+    writer.write("</dayTypes>\n");
+    writer.write("<operatingPeriods>\n");
+    writer.write(
+      "<OperatingPeriod version=\"1\" id=\"SYN:OperatingPeriod:1\">\n<FromDate>" +
+      START_DATE.atStartOfDay() +
+      ":00</FromDate>\n<ToDate>" +
+      END_DATE.atStartOfDay() +
+      ":00</ToDate>\n</OperatingPeriod>\n"
+    );
+    writer.write("</operatingPeriods>\n");
+    writer.write("<dayTypeAssignments>\n");
+    int order = 1;
+    for (int dayType = 0; dayType < 2; dayType++) {
+      writer.write(
+        "<DayTypeAssignment order=\"" +
+        order +
+        "\" version=\"1\" id=\"SYN:DayTypeAssignment:" +
+        order +
+        "\">\n<OperatingPeriodRef ref=\"SYN:OperatingPeriod:1\" version=\"1\"/>\n" +
+        "<DayTypeRef ref=\"" +
+        getDayTypeId(dayType) +
+        "\" version=\"1\"/>\n</DayTypeAssignment>\n"
+      );
+      order++;
+    }
+    for (LocalDate holiday : HOLIDAYS) {
+      writer.write(
+        "<DayTypeAssignment order=\"" +
+        order +
+        "\" version=\"1\" id=\"SYN:DayTypeAssignment:" +
+        order +
+        "\">\n<Date>" +
+        holiday +
+        "</Date>\n<DayTypeRef ref=\"" +
+        getDayTypeId(2) +
+        "\" version=\"1\"/>\n</DayTypeAssignment>\n"
+      );
+      order++;
+    }
+    writer.write("</dayTypeAssignments>\n</ServiceCalendarFrame>\n");
+  }
+
+  private void writeDayType(Writer writer, int dayType, String daysOfWeek)
+    throws IOException {
+    writer.write(
+      "<DayType version=\"1\" id=\"" + getDayTypeId(dayType) + "\">\n"
+    );
+    if (daysOfWeek != null) {
+      writer.write(
+        "<properties>\n<PropertyOfDay>\n<DaysOfWeek>" +
+        daysOfWeek +
+        "</DaysOfWeek>\n</PropertyOfDay>\n</properties>\n"
+      );
+    }
+    writer.write("</DayType>\n");
+  }
+
+  private void writeServiceLink(Writer writer, int fromStop, int toStop)
+    throws IOException {
+    double fromLatitude = getLatitude(fromStop);
+    double fromLongitude = getLongitude(fromStop);
+    double toLatitude = getLatitude(toStop);
+    double toLongitude = getLongitude(toStop);
+    StringBuilder posList = new StringBuilder();
+    int points = 5;
+    for (int i = 0; i < points; i++) {
+      double ratio = (double) i / (points - 1);
+      if (i > 0) {
+        posList.append(' ');
+      }
+      posList
+        .append(formatCoordinate(fromLatitude + (toLatitude - fromLatitude) * ratio))
+        .append(' ')
+        .append(
+          formatCoordinate(fromLongitude + (toLongitude - fromLongitude) * ratio)
+        );
+    }
+    String id = fromStop + "-" + toStop;
+    writer.write(
+      "<ServiceLink version=\"1\" id=\"" +
+      getServiceLinkId(fromStop, toStop) +
+      "\">\n<Distance>" +
+      String.format(
+        Locale.ROOT,
+        "%.1f",
+        getDistance(fromLatitude, fromLongitude, toLatitude, toLongitude)
+      ) +
+      "</Distance>\n<projections>\n" +
+      "<LinkSequenceProjection version=\"1\" id=\"SYN:LinkSequenceProjection:" +
+      id +
+      "\">\n<gis:LineString srsName=\"4326\" srsDimension=\"2\" gis:id=\"LS_" +
+      id +
+      "\">\n<gis:posList count=\"" +
+      points +
+      "\" srsDimension=\"2\">" +
+      posList +
+      "</gis:posList>\n</gis:LineString>\n</LinkSequenceProjection>\n" +
+      "</projections>\n<FromPointRef ref=\"" +
+      getScheduledStopPointId(fromStop) +
+      "\" version=\"1\"/>\n<ToPointRef ref=\"" +
+      getScheduledStopPointId(toStop) +
+      "\" version=\"1\"/>\n</ServiceLink>\n"
+    );
+  }
+
+  private void writeLine(Writer writer, int line) throws IOException {
+    writeCompositeFrameStart(writer, "line-" + line);
+    writer.write(
+      "<ServiceFrame version=\"1\" id=\"SYN:ServiceFrame:line-" + line + "\">\n"
+    );
+
+    writer.write("<routes>\n");
+    for (int direction = 0; direction < DIRECTIONS; direction++) {
+      writer.write(
+        "<Route version=\"1\" id=\"" +
+        getRouteId(line, direction) +
+        "\">\n<Name>" +
+        getJourneyPatternName(line, direction) +
+        "</Name>\n<LineRef ref=\"" +
+        getLineId(line) +
+        "\" version=\"1\"/>\n<DirectionType>" +
+        (direction == 0 ? "outbound" : "inbound") +
+        "</DirectionType>\n<pointsInSequence>\n"
+      );
+      for (int order = 1; order <= STOPS_PER_JOURNEY_PATTERN; order++) {
+        writer.write(
+          "<PointOnRoute order=\"" +
+          order +
+          "\" version=\"1\" id=\"SYN:PointOnRoute:" +
+          line +
+          "-" +
+          direction +
+          "-" +
+          order +
+          "\">\n<RoutePointRef ref=\"SYN:RoutePoint:" +
+          getStop(line, direction, order - 1) +
+          "\"/>\n</PointOnRoute>\n"
+        );
+      }
+      writer.write("</pointsInSequence>\n</Route>\n");
+    }
+    writer.write("</routes>\n");
+
+    writer.write(
+      "<lines>\n<Line version=\"1\" id=\"" +
+      getLineId(line) +
+      "\">\n<Name>Synthetic line " +
+      line +
+      "</Name>\n<TransportMode>bus</TransportMode>\n" +
+      "<TransportSubmode>\n<BusSubmode>localBus</BusSubmode>\n</TransportSubmode>\n" +
+      "<PublicCode>" +
+      line +
+      "</PublicCode>\n<OperatorRef ref=\"SYN:Operator:1\"/>\n" +
+      "<RepresentedByGroupRef ref=\"SYN:Network:1\"/>\n</Line>\n</lines>\n"
+    );
+
+    writer.write("<journeyPatterns>\n");
+    for (int direction = 0; direction < DIRECTIONS; direction++) {
+      writer.write(
+        "<JourneyPattern version=\"1\" id=\"" +
+        getJourneyPatternId(line, direction) +
+        "\">\n<Name>" +
+        getJourneyPatternName(line, direction) +
+        "</Name>\n<RouteRef ref=\"" +
+        getRouteId(line, direction) +
+        "\" version=\"1\"/>\n<pointsInSequence>\n"
+      );
+      for (int order = 1; order <= STOPS_PER_JOURNEY_PATTERN; order++) {
+        writer.write(
+          "<StopPointInJourneyPattern order=\"" +
+          order +
+          "\" version=\"1\" id=\"" +
+          getStopPointInJourneyPatternId(line, direction, order) +
+          "\">\n<ScheduledStopPointRef ref=\"" +
+          getScheduledStopPointId(getStop(line, direction, order - 1)) +
+          "\"/>\n"
+        );
+        if (order == 1) {
+          writer.write("<ForAlighting>false</ForAlighting>\n");
+          writer.write(
+            "<DestinationDisplayRef ref=\"" +
+            getDestinationDisplayId(line, direction) +
+            "\"/>\n"
+          );
+        } else if (order == STOPS_PER_JOURNEY_PATTERN) {
+          writer.write("<ForBoarding>false</ForBoarding>\n");
+        }
+        writer.write("</StopPointInJourneyPattern>\n");
+      }
+      writer.write("</pointsInSequence>\n<linksInSequence>\n");
+      for (int order = 1; order < STOPS_PER_JOURNEY_PATTERN; order++) {
+        writer.write(
+          "<ServiceLinkInJourneyPattern order=\"" +
+          order +
+          "\" version=\"1\" id=\"SYN:ServiceLinkInJourneyPattern:" +
+          line +
+          "-" +
+          direction +
+          "-" +
+          order +
+          "\">\n<ServiceLinkRef ref=\"" +
+          getServiceLinkId(
+            getStop(line, direction, order - 1),
+            getStop(line, direction, order)
+          ) +
+          "\"/>\n</ServiceLinkInJourneyPattern>\n"
+        );
+      }
+      writer.write("</linksInSequence>\n</JourneyPattern>\n");
+    }
+    writer.write("</journeyPatterns>\n</ServiceFrame>\n");
+
+    writer.write(
+      "<TimetableFrame version=\"1\" id=\"SYN:TimetableFrame:line-" +
+      line +
+      "\">\n<vehicleJourneys>\n"
+    );
+    for (int direction = 0; direction < DIRECTIONS; direction++) {
+      for (int journey = 0; journey < JOURNEYS_PER_JOURNEY_PATTERN; journey++) {
+        writeServiceJourney(writer, line, direction, journey);
+      }
+    }
+    writer.write("</vehicleJourneys>\n");
+
+    // interchanges from this line to the next one, at their first shared stop after the offset
+    if (line < getLineCount() - 1) {
+      int sharedStop = getStop(line, 0, STOP_OFFSET_BETWEEN_LINES + 1);
+      writer.write("<journeyInterchanges>\n");
+      for (int journey = 0; journey < INTERCHANGES_PER_LINE; journey++) {
+        writer.write(
+          "<ServiceJourneyInterchange version=\"1\" id=\"SYN:ServiceJourneyInterchange:" +
+          line +
+          "-" +
+          journey +
+          "\">\n<Guaranteed>true</Guaranteed>\n<FromPointRef ref=\"" +
+          getScheduledStopPointId(sharedStop) +
+          "\"/>\n<ToPointRef ref=\"" +
+          getScheduledStopPointId(sharedStop) +
+          "\"/>\n<FromJourneyRef ref=\"" +
+          getServiceJourneyId(line, 0, journey) +
+          "\"/>\n<ToJourneyRef ref=\"" +
+          getServiceJourneyId(line + 1, 0, journey) +
+          "\"/>\n</ServiceJourneyInterchange>\n"
+        );
+      }
+      writer.write("</journeyInterchanges>\n");
+    }
+    writer.write("</TimetableFrame>\n");
+    writeCompositeFrameEnd(writer);
+  }
+
+  private void writeServiceJourney(
+    Writer writer,
+    int line,
+    int direction,
+    int journey
+  ) throws IOException {
+    writer.write(
+      "<ServiceJourney version=\"1\" id=\"" +
+      getServiceJourneyId(line, direction, journey) +
+      "\">\n<dayTypes>\n<DayTypeRef ref=\"" +
+      getDayTypeId(journey % DAY_TYPES.length) +
+      "\"/>\n</dayTypes>\n<JourneyPatternRef ref=\"" +
+      getJourneyPatternId(line, direction) +
+      "\" version=\"1\"/>\n<OperatorRef ref=\"SYN:Operator:1\"/>\n" +
+      "<LineRef ref=\"" +
+      getLineId(line) +
+      "\" version=\"1\"/>\n<passingTimes>\n"
+    );
+    int departure =
+      FIRST_DEPARTURE +
+      journey *
+      MINUTES_BETWEEN_JOURNEYS +
+      direction *
+      MINUTES_BETWEEN_STOPS *
+      5;
+    for (int order = 1; order <= STOPS_PER_JOURNEY_PATTERN; order++) {
+      int time = departure + (order - 1) * MINUTES_BETWEEN_STOPS;
+      writer.write(
+        "<TimetabledPassingTime version=\"1\" id=\"SYN:TimetabledPassingTime:" +
+        line +
+        "-" +
+        direction +
+        "-" +
+        journey +
+        "-" +
+        order +
+        "\">\n<StopPointInJourneyPatternRef ref=\"" +
+        getStopPointInJourneyPatternId(line, direction, order) +
+        "\" version=\"1\"/>\n"
+      );
+      if (order > 1) {
+        writePassingTime(writer, "Arrival", time);
+      }
+      if (order < STOPS_PER_JOURNEY_PATTERN) {
+        writePassingTime(writer, "Departure", time);
+      }
+      writer.write("</TimetabledPassingTime>\n");
+    }
+    writer.write("</passingTimes>\n</ServiceJourney>\n");
+  }
+
+  private static void writePassingTime(Writer writer, String type, int time)
+    throws IOException {
+    writer.write(
+      "<" +
+      type +
+      "Time>" +
+      LocalTime.ofSecondOfDay((time % MINUTES_PER_DAY) * 60L) +
+      ":00</" +
+      type +
+      "Time>\n"
+    );
+    if (time >= MINUTES_PER_DAY) {
+      writer.write(
+        "<" +
+        type +
+        "DayOffset>" +
+        (time / MINUTES_PER_DAY) +
+        "</" +
+        type +
+        "DayOffset>\n"
+      );
+    }
+  }
+
+  private static void writeCompositeFrameStart(Writer writer, String id)
+    throws IOException {
+    writer.write(PUBLICATION_DELIVERY_START);
+    writer.write("<dataObjects>\n");
+    writer.write(
+      "<CompositeFrame created=\"2024-01-01T00:00:00\" version=\"1\" id=\"SYN:CompositeFrame:" +
+      id +
+      "\">\n"
+    );
+    writer.write(
+      "<validityConditions>\n<AvailabilityCondition version=\"1\" id=\"SYN:AvailabilityCondition:" +
+      id +
+      "\">\n<FromDate>" +
+      START_DATE.atStartOfDay() +
+      ":00</FromDate>\n<ToDate>" +
+      END_DATE.atStartOfDay() +
+      ":00</ToDate>\n</AvailabilityCondition>\n</validityConditions>\n"
+    );
+    writer.write(
+      "<codespaces>\n<Codespace id=\"nsr\">\n<Xmlns>NSR</Xmlns>\n" +
+      "<XmlnsUrl>http://www.rutebanken.org/ns/nsr</XmlnsUrl>\n</Codespace>\n</codespaces>\n"
+    );
+    writer.write(
+      "<FrameDefaults>\n<DefaultLocale>\n<TimeZone>Europe/Oslo</TimeZone>\n" +
+      "<DefaultLanguage>no</DefaultLanguage>\n</DefaultLocale>\n</FrameDefaults>\n"
+    );
+    writer.write("<frames>\n");
+  }
+
+  private static void writeCompositeFrameEnd(Writer writer)
+    throws IOException {
+    writer.write("</frames>\n</CompositeFrame>\n</dataObjects>\n");
+    writer.write("</PublicationDelivery>\n");
+  }
+
+  private static void writeCentroid(Writer writer, int stop)
+    throws IOException {
+    writer.write(
+      "<Centroid>\n<Location>\n<Longitude>" +
+      formatCoordinate(getLongitude(stop)) +
+      "</Longitude>\n<Latitude>" +
+      formatCoordinate(getLatitude(stop)) +
+      "</Latitude>\n</Location>\n</Centroid>\n"
+    );
+  }
+
+  /**
+   * Return the index of the stop at a given position in a journey pattern.
+   */
+  private static int getStop(int line, int direction, int position) {
+    int firstStop = line * STOP_OFFSET_BETWEEN_LINES;
+    if (direction == 0) {
+      return firstStop + position;
+    }
+    return firstStop + STOPS_PER_JOURNEY_PATTERN - 1 - position;
+  }
+
+  /**
+   * The stops are laid out on a grid of 50 columns, about 1 km apart.
+   */
+  private static double getLatitude(int stop) {
+    return 58.5 + (stop / 50) * 0.01 + (stop % 7) * 0.0005;
+  }
+
+  private static double getLongitude(int stop) {
+    return 5.5 + (stop % 50) * 0.02 + (stop % 5) * 0.0005;
+  }
+
+  private static double getDistance(
+    double fromLatitude,
+    double fromLongitude,
+    double toLatitude,
+    double toLongitude
+  ) {
+    double x =
+      Math.toRadians(toLongitude - fromLongitude) *
+      Math.cos(Math.toRadians((fromLatitude + toLatitude) / 2));
+    double y = Math.toRadians(toLatitude - fromLatitude);
+    return Math.sqrt(x * x + y * y) * 6_371_000;
+  }
+
+  private static String formatCoordinate(double coordinate) {
+    return String.format(Locale.ROOT, "%.6f", coordinate);
+  }
+
+  private static String getStopName(int stop) {
+    return "Synthetic stop " + stop;
+  }
+
+  private static String getQuayId(int stop) {
+    return "NSR:Quay:" + stop;
+  }
+
+  private static String getScheduledStopPointId(int stop) {
+    return "SYN:ScheduledStopPoint:" + stop;
+  }
+
+  private static String getServiceLinkId(int fromStop, int toStop) {
+    return "SYN:ServiceLink:" + fromStop + "-" + toStop;
+  }
+
+  private static String getDayTypeId(int dayType) {
+    return "SYN:DayType:" + DAY_TYPES[dayType];
+  }
+
+  private static String getLineId(int line) {
+    return "SYN:Line:" + line;
+  }
+
+  private static String getRouteId(int line, int direction) {
+    return "SYN:Route:" + line + "-" + direction;
+  }
+
+  private static String getJourneyPatternId(int line, int direction) {
+    return "SYN:JourneyPattern:" + line + "-" + direction;
+  }
+
+  private static String getJourneyPatternName(int line, int direction) {
+    return (
+      getStopName(getStop(line, direction, 0)) +
+      " - " +
+      getStopName(getStop(line, direction, STOPS_PER_JOURNEY_PATTERN - 1))
+    );
+  }
+
+  private static String getStopPointInJourneyPatternId(
+    int line,
+    int direction,
+    int order
+  ) {
+    return (
+      "SYN:StopPointInJourneyPattern:" + line + "-" + direction + "-" + order
+    );
+  }
+
+  private static String getDestinationDisplayId(int line, int direction) {
+    return "SYN:DestinationDisplay:" + line + "-" + direction;
+  }
+
+  private static String getServiceJourneyId(
+    int line,
+    int direction,
+    int journey
+  ) {
+    return "SYN:ServiceJourney:" + line + "-" + direction + "-" + journey;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import org.entur.netex.NetexParser;
+import org.entur.netex.gtfs.export.repository.DefaultNetexDatasetRepository;
+import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.entur.netex.index.api.NetexEntitiesIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class DefaultNetexDatasetLoaderTest {
+
+  @ParameterizedTest
+  @ValueSource(
+    strings = {
+      "/rb_flb-aggregated-netex.zip",
+      "/rb_sjv-aggregated-netex.zip",
+      "/rb_vyg-aggregated-netex.zip",
+    }
+  )
+  void testLoadFromPathMatchesLoadFromStream(String timetableDataset)
+    throws IOException, URISyntaxException {
+    NetexDatasetLoader netexDatasetLoader = new DefaultNetexDatasetLoader();
+
+    NetexDatasetRepository streamRepository =
+      new DefaultNetexDatasetRepository();
+    try (InputStream dataset = getClass().getResourceAsStream(timetableDataset)) {
+      netexDatasetLoader.load(dataset, streamRepository);
+    }
+    NetexDatasetRepository pathRepository = new DefaultNetexDatasetRepository();
+    netexDatasetLoader.load(
+      Path.of(getClass().getResource(timetableDataset).toURI()),
+      pathRepository
+    );
+
+    assertSameEntities(streamRepository, pathRepository);
+  }
+
+  @ParameterizedTest
+  @EnumSource(NetexArchiveReadMode.class)
+  void testReadModesLoadTheSameEntities(NetexArchiveReadMode readMode)
+    throws IOException, URISyntaxException {
+    String timetableDataset = "/rb_vyg-aggregated-netex.zip";
+    NetexDatasetRepository expectedRepository =
+      new DefaultNetexDatasetRepository();
+    try (InputStream dataset = getClass().getResourceAsStream(timetableDataset)) {
+      new DefaultNetexDatasetLoader().load(dataset, expectedRepository);
+    }
+
+    NetexDatasetLoader netexDatasetLoader = new DefaultNetexDatasetLoader(
+      new NetexParser(),
+      readMode
+    );
+    NetexDatasetRepository streamRepository =
+      new DefaultNetexDatasetRepository();
+    try (InputStream dataset = getClass().getResourceAsStream(timetableDataset)) {
+      netexDatasetLoader.load(dataset, streamRepository);
+    }
+    NetexDatasetRepository pathRepository = new DefaultNetexDatasetRepository();
+    netexDatasetLoader.load(
+      Path.of(getClass().getResource(timetableDataset).toURI()),
+      pathRepository
+    );
+
+    assertSameEntities(expectedRepository, streamRepository);
+    assertSameEntities(expectedRepository, pathRepository);
+  }
+
+  private static void assertSameEntities(
+    NetexDatasetRepository expectedRepository,
+    NetexDatasetRepository actualRepository
+  ) {
+    NetexEntitiesIndex expectedIndex = expectedRepository.getIndex();
+    NetexEntitiesIndex actualIndex = actualRepository.getIndex();
+    Assertions.assertFalse(expectedIndex.getLineIndex().getAll().isEmpty());
+    Assertions.assertEquals(
+      expectedIndex.getLineIndex().getAll().size(),
+      actualIndex.getLineIndex().getAll().size()
+    );
+    Assertions.assertEquals(
+      expectedIndex.getServiceJourneyIndex().getAll().size(),
+      actualIndex.getServiceJourneyIndex().getAll().size()
+    );
+    Assertions.assertEquals(
+      expectedIndex.getServiceLinkIndex().getAll().size(),
+      actualIndex.getServiceLinkIndex().getAll().size()
+    );
+    Assertions.assertEquals(
+      expectedRepository.getTimeZone(),
+      actualRepository.getTimeZone()
+    );
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.entur.netex.gtfs.export.repository.DefaultNetexDatasetRepository;
+import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.entur.netex.index.api.NetexEntitiesIndex;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ParallelNetexDatasetLoaderTest {
+
+  private static ExecutorService executorService;
+
+  @BeforeAll
+  static void setUp() {
+    executorService = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterAll
+  static void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+    strings = {
+      "/rb_flb-aggregated-netex.zip",
+      "/rb_sjv-aggregated-netex.zip",
+      "/rb_vyg-aggregated-netex.zip",
+    }
+  )
+  void testParallelLoadingMatchesSequentialLoading(String timetableDataset)
+    throws IOException {
+    NetexEntitiesIndex sequentialIndex = load(
+      new DefaultNetexDatasetLoader(),
+      timetableDataset
+    );
+    NetexEntitiesIndex parallelIndex = load(
+      new ParallelNetexDatasetLoader(executorService),
+      timetableDataset
+    );
+
+    Assertions.assertFalse(parallelIndex.getLineIndex().getAll().isEmpty());
+    Assertions.assertEquals(
+      sequentialIndex.getLineIndex().getAll().size(),
+      parallelIndex.getLineIndex().getAll().size()
+    );
+    Assertions.assertEquals(
+      sequentialIndex.getRouteIndex().getAll().size(),
+      parallelIndex.getRouteIndex().getAll().size()
+    );
+    Assertions.assertEquals(
+      sequentialIndex.getJourneyPatternIndex().getAll().size(),
+      parallelIndex.getJourneyPatternIndex().getAll().size()
+    );
+    Assertions.assertEquals(
+      sequentialIndex.getServiceJourneyIndex().getAll().size(),
+      parallelIndex.getServiceJourneyIndex().getAll().size()
+    );
+    Assertions.assertEquals(
+      sequentialIndex.getDayTypeIndex().getAll().size(),
+      parallelIndex.getDayTypeIndex().getAll().size()
+    );
+    Assertions.assertEquals(
+      sequentialIndex.getCompositeFrames().size(),
+      parallelIndex.getCompositeFrames().size()
+    );
+  }
+
+  @Test
+  void testParallelLoadingWithOneEntryInFlight() throws IOException {
+    NetexEntitiesIndex sequentialIndex = load(
+      new DefaultNetexDatasetLoader(),
+      "/rb_vyg-aggregated-netex.zip"
+    );
+    NetexEntitiesIndex parallelIndex = load(
+      new ParallelNetexDatasetLoader(executorService, 1),
+      "/rb_vyg-aggregated-netex.zip"
+    );
+
+    Assertions.assertEquals(
+      sequentialIndex.getServiceJourneyIndex().getAll().size(),
+      parallelIndex.getServiceJourneyIndex().getAll().size()
+    );
+    Assertions.assertEquals(
+      sequentialIndex.getCompositeFrames().size(),
+      parallelIndex.getCompositeFrames().size()
+    );
+  }
+
+  @Test
+  void testInvalidMaxEntriesInFlight() {
+    Assertions.assertThrows(
+      IllegalArgumentException.class,
+      () -> new ParallelNetexDatasetLoader(executorService, 0)
+    );
+  }
+
+  private NetexEntitiesIndex load(
+    NetexDatasetLoader netexDatasetLoader,
+    String timetableDataset
+  ) throws IOException {
+    NetexDatasetRepository netexDatasetRepository =
+      new DefaultNetexDatasetRepository();
+    try (InputStream dataset = getClass().getResourceAsStream(timetableDataset)) {
+      netexDatasetLoader.load(dataset, netexDatasetRepository);
+    }
+    return netexDatasetRepository.getIndex();
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+    strings = {
+      "/rb_flb-aggregated-netex.zip",
+      "/rb_sjv-aggregated-netex.zip",
+      "/rb_vyg-aggregated-netex.zip",
+    }
+  )
+  void testParallelLoadingFromPath(String timetableDataset)
+    throws IOException, URISyntaxException {
+    NetexEntitiesIndex sequentialIndex = load(
+      new DefaultNetexDatasetLoader(),
+      timetableDataset
+    );
+    NetexDatasetRepository netexDatasetRepository =
+      new DefaultNetexDatasetRepository();
+    new ParallelNetexDatasetLoader(executorService)
+      .load(
+        Path.of(getClass().getResource(timetableDataset).toURI()),
+        netexDatasetRepository
+      );
+    NetexEntitiesIndex parallelIndex = netexDatasetRepository.getIndex();
+
+    Assertions.assertEquals(
+      sequentialIndex.getLineIndex().getAll().size(),
+      parallelIndex.getLineIndex().getAll().size()
+    );
+    Assertions.assertEquals(
+      sequentialIndex.getServiceJourneyIndex().getAll().size(),
+      parallelIndex.getServiceJourneyIndex().getAll().size()
+    );
+  }
+}
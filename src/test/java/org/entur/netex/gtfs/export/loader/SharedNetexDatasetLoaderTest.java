@@ -0,0 +1,125 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.entur.netex.gtfs.export.repository.DefaultNetexDatasetRepository;
+import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.entur.netex.index.api.NetexEntitiesIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class SharedNetexDatasetLoaderTest {
+
+  @ParameterizedTest
+  @ValueSource(
+    strings = {
+      "/rb_flb-aggregated-netex.zip",
+      "/rb_sjv-aggregated-netex.zip",
+      "/rb_vyg-aggregated-netex.zip",
+    }
+  )
+  void testSharedLoaderMatchesDefaultLoader(String timetableDataset)
+    throws IOException, URISyntaxException {
+    NetexEntitiesIndex defaultIndex = load(
+      new DefaultNetexDatasetLoader(),
+      timetableDataset
+    );
+    NetexEntitiesIndex sharedIndex = load(
+      new SharedNetexDatasetLoader(),
+      timetableDataset
+    );
+    NetexDatasetRepository netexDatasetRepository =
+      new DefaultNetexDatasetRepository();
+    new SharedNetexDatasetLoader()
+      .load(
+        Path.of(getClass().getResource(timetableDataset).toURI()),
+        netexDatasetRepository
+      );
+    NetexEntitiesIndex sharedPathIndex = netexDatasetRepository.getIndex();
+
+    Assertions.assertFalse(sharedIndex.getLineIndex().getAll().isEmpty());
+    for (NetexEntitiesIndex index : List.of(sharedIndex, sharedPathIndex)) {
+      Assertions.assertEquals(
+        defaultIndex.getLineIndex().getAll().size(),
+        index.getLineIndex().getAll().size()
+      );
+      Assertions.assertEquals(
+        defaultIndex.getServiceJourneyIndex().getAll().size(),
+        index.getServiceJourneyIndex().getAll().size()
+      );
+      Assertions.assertEquals(
+        defaultIndex.getCompositeFrames().size(),
+        index.getCompositeFrames().size()
+      );
+    }
+  }
+
+  @Test
+  void testConcurrentLoading() throws Exception {
+    NetexEntitiesIndex defaultIndex = load(
+      new DefaultNetexDatasetLoader(),
+      "/rb_vyg-aggregated-netex.zip"
+    );
+    SharedNetexDatasetLoader netexDatasetLoader =
+      new SharedNetexDatasetLoader();
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<NetexEntitiesIndex>> indexes = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        indexes.add(
+          executorService.submit(() ->
+            load(netexDatasetLoader, "/rb_vyg-aggregated-netex.zip")
+          )
+        );
+      }
+      for (Future<NetexEntitiesIndex> index : indexes) {
+        Assertions.assertEquals(
+          defaultIndex.getServiceJourneyIndex().getAll().size(),
+          index.get().getServiceJourneyIndex().getAll().size()
+        );
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  private NetexEntitiesIndex load(
+    NetexDatasetLoader netexDatasetLoader,
+    String timetableDataset
+  ) throws IOException {
+    NetexDatasetRepository netexDatasetRepository =
+      new DefaultNetexDatasetRepository();
+    try (InputStream dataset = getClass().getResourceAsStream(timetableDataset)) {
+      netexDatasetLoader.load(dataset, netexDatasetRepository);
+    }
+    return netexDatasetRepository.getIndex();
+  }
+}
@@ -0,0 +1,135 @@
+package org.entur.netex.gtfs.export.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CalendarDaysTest {
+
+  private static final LocalDate TEST_START_DATE = LocalDate.of(2021, 9, 15);
+  private static final LocalDate TEST_END_DATE = LocalDate.of(2022, 11, 5);
+
+  @Test
+  void testAddAndRemoveDates() {
+    CalendarDays calendarDays = new CalendarDays();
+    Assertions.assertTrue(calendarDays.isEmpty());
+
+    calendarDays.add(TEST_END_DATE);
+    calendarDays.add(TEST_START_DATE);
+    calendarDays.add(TEST_START_DATE);
+    Assertions.assertEquals(2, calendarDays.size());
+    Assertions.assertTrue(calendarDays.contains(TEST_START_DATE));
+    Assertions.assertFalse(calendarDays.contains(TEST_START_DATE.plusDays(1)));
+    Assertions.assertEquals(
+      List.of(TEST_START_DATE, TEST_END_DATE),
+      calendarDays.toLocalDates()
+    );
+
+    calendarDays.remove(TEST_END_DATE);
+    calendarDays.remove(TEST_END_DATE.plusYears(1));
+    Assertions.assertEquals(
+      List.of(TEST_START_DATE),
+      calendarDays.toLocalDates()
+    );
+
+    calendarDays.clear();
+    Assertions.assertTrue(calendarDays.isEmpty());
+  }
+
+  @Test
+  void testAddPeriod() {
+    Set<DayOfWeek> daysOfWeek = EnumSet.of(
+      DayOfWeek.MONDAY,
+      DayOfWeek.WEDNESDAY,
+      DayOfWeek.SUNDAY
+    );
+    CalendarDays calendarDays = new CalendarDays();
+    calendarDays.addPeriod(TEST_START_DATE, TEST_END_DATE, daysOfWeek);
+
+    Assertions.assertEquals(
+      TEST_START_DATE
+        .datesUntil(TEST_END_DATE.plusDays(1))
+        .filter(date -> daysOfWeek.contains(date.getDayOfWeek()))
+        .collect(Collectors.toList()),
+      calendarDays.toLocalDates()
+    );
+  }
+
+  @Test
+  void testAddPeriodOnASingleDay() {
+    CalendarDays calendarDays = new CalendarDays();
+    calendarDays.addPeriod(
+      TEST_START_DATE,
+      TEST_START_DATE,
+      EnumSet.allOf(DayOfWeek.class)
+    );
+    calendarDays.addPeriod(
+      TEST_END_DATE,
+      TEST_START_DATE,
+      EnumSet.allOf(DayOfWeek.class)
+    );
+    Assertions.assertEquals(
+      List.of(TEST_START_DATE),
+      calendarDays.toLocalDates()
+    );
+  }
+
+  @Test
+  void testSetOperations() {
+    CalendarDays weekdays = new CalendarDays();
+    weekdays.addPeriod(
+      TEST_START_DATE,
+      TEST_START_DATE.plusDays(100),
+      EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY)
+    );
+    CalendarDays everyDay = new CalendarDays();
+    everyDay.addPeriod(
+      TEST_START_DATE.plusDays(50),
+      TEST_END_DATE,
+      EnumSet.allOf(DayOfWeek.class)
+    );
+
+    CalendarDays union = new CalendarDays(everyDay);
+    union.addAll(weekdays);
+    CalendarDays difference = new CalendarDays(everyDay);
+    difference.removeAll(weekdays);
+    CalendarDays intersection = new CalendarDays(everyDay);
+    intersection.retainAll(weekdays);
+
+    Set<LocalDate> weekdaySet = Set.copyOf(weekdays.toLocalDates());
+    Set<LocalDate> everyDaySet = Set.copyOf(everyDay.toLocalDates());
+    Assertions.assertEquals(
+      TEST_START_DATE
+        .datesUntil(TEST_END_DATE.plusDays(1))
+        .filter(date -> weekdaySet.contains(date) || everyDaySet.contains(date))
+        .collect(Collectors.toList()),
+      union.toLocalDates()
+    );
+    Assertions.assertEquals(
+      TEST_START_DATE
+        .datesUntil(TEST_END_DATE.plusDays(1))
+        .filter(date ->
+          !weekdaySet.contains(date) && everyDaySet.contains(date)
+        )
+        .collect(Collectors.toList()),
+      difference.toLocalDates()
+    );
+    Assertions.assertEquals(
+      TEST_START_DATE
+        .datesUntil(TEST_END_DATE.plusDays(1))
+        .filter(date -> weekdaySet.contains(date) && everyDaySet.contains(date))
+        .collect(Collectors.toList()),
+      intersection.toLocalDates()
+    );
+    Assertions.assertEquals(
+      everyDaySet.size(),
+      everyDay.size(),
+      "Set operations do not modify their argument"
+    );
+  }
+}
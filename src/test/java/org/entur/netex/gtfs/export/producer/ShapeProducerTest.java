@@ -55,24 +55,38 @@
 package org.entur.netex.gtfs.export.producer;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import jakarta.xml.bind.JAXBElement;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import net.opengis.gml._3.DirectPositionListType;
 import net.opengis.gml._3.LineStringType;
 import org.apache.commons.lang3.ArrayUtils;
+import org.entur.netex.gtfs.export.loader.DefaultNetexDatasetLoader;
 import org.entur.netex.gtfs.export.model.GtfsShape;
+import org.entur.netex.gtfs.export.repository.DefaultNetexDatasetRepository;
 import org.entur.netex.gtfs.export.repository.GtfsDatasetRepository;
 import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.entur.netex.gtfs.export.util.GeodeticDistanceCalculator;
 import org.entur.netex.gtfs.export.util.GeometryUtil;
+import org.entur.netex.gtfs.export.util.HaversineDistanceCalculator;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.locationtech.jts.geom.Coordinate;
 import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.ShapePoint;
 import org.rutebanken.netex.model.JourneyPattern;
+import org.rutebanken.netex.model.LinkInLinkSequence_VersionedChildStructure;
 import org.rutebanken.netex.model.LinkSequenceProjection;
 import org.rutebanken.netex.model.LinksInJourneyPattern_RelStructure;
 import org.rutebanken.netex.model.ObjectFactory;
@@ -89,6 +103,8 @@ class ShapeProducerTest {
   private static final ObjectFactory NETEX_FACTORY = new ObjectFactory();
   public static final String TEST_SERVICE_LINK_1 = "SERVICE_LINK_1";
   public static final String TEST_SERVICE_LINK_2 = "SERVICE_LINK_2";
+  private static final String TEST_JOURNEY_PATTERN_1 = "JOURNEY_PATTERN_1";
+  private static final String TEST_JOURNEY_PATTERN_2 = "JOURNEY_PATTERN_2";
 
   // JTS coordinates long/lat
   private static final Coordinate A1 = new Coordinate(10.512689, 59.72215);
@@ -215,6 +231,207 @@ class ShapeProducerTest {
     );
   }
 
+  /**
+   * Two journey patterns going through the same service links share the same shape when shape deduplication is
+   * enabled, while the distances travelled to their stops are still keyed by their own stop orders.
+   */
+  @Test
+  void testShapeDeduplication() {
+    ShapeProducer shapeProducer = createShapeProducer(true);
+    JourneyPattern journeyPattern1 = createTestJourneyPattern(1, 2, 3);
+    journeyPattern1.setId(TEST_JOURNEY_PATTERN_1);
+    JourneyPattern journeyPattern2 = createTestJourneyPattern(7, 8, 9);
+    journeyPattern2.setId(TEST_JOURNEY_PATTERN_2);
+
+    GtfsShape shape1 = shapeProducer.produce(journeyPattern1);
+    GtfsShape shape2 = shapeProducer.produce(journeyPattern2);
+
+    Assertions.assertEquals(TEST_JOURNEY_PATTERN_1, shape1.getId());
+    Assertions.assertEquals(TEST_JOURNEY_PATTERN_1, shape2.getId());
+    Assertions.assertEquals(
+      shape1.getShapePointCount(),
+      shape2.getShapePointCount()
+    );
+    Assertions.assertEquals(
+      TEST_JOURNEY_PATTERN_1,
+      shape2.getShapePoints().get(0).getShapeId().getId()
+    );
+    Assertions.assertEquals(
+      shape1.getDistanceTravelledToStop(3),
+      shape2.getDistanceTravelledToStop(9)
+    );
+  }
+
+  /**
+   * The service links are sorted in a copy: the NeTEx journey pattern can be read concurrently by other conversion
+   * threads and is left unchanged.
+   */
+  @Test
+  void testServiceLinksOfJourneyPatternAreNotModified() {
+    ShapeProducer shapeProducer = createShapeProducer(true);
+    JourneyPattern journeyPattern = createTestJourneyPattern(1, 2, 3);
+    journeyPattern.setId(TEST_JOURNEY_PATTERN_1);
+    List<LinkInLinkSequence_VersionedChildStructure> serviceLinks =
+      journeyPattern
+        .getLinksInSequence()
+        .getServiceLinkInJourneyPatternOrTimingLinkInJourneyPattern();
+    Collections.reverse(serviceLinks);
+    List<LinkInLinkSequence_VersionedChildStructure> reversedServiceLinks =
+      new ArrayList<>(serviceLinks);
+
+    shapeProducer.initialize();
+    GtfsShape shape = shapeProducer.produce(journeyPattern);
+
+    Assertions.assertEquals(reversedServiceLinks, serviceLinks);
+    Assertions.assertEquals(TEST_JOURNEY_PATTERN_1, shape.getId());
+    Assertions.assertEquals(4, shape.getShapePointCount());
+  }
+
+  @Test
+  void testNoShapeDeduplicationByDefault() {
+    ShapeProducer shapeProducer = createShapeProducer(false);
+    JourneyPattern journeyPattern1 = createTestJourneyPattern(1, 2, 3);
+    journeyPattern1.setId(TEST_JOURNEY_PATTERN_1);
+    JourneyPattern journeyPattern2 = createTestJourneyPattern(1, 2, 3);
+    journeyPattern2.setId(TEST_JOURNEY_PATTERN_2);
+
+    Assertions.assertEquals(
+      TEST_JOURNEY_PATTERN_1,
+      shapeProducer.produce(journeyPattern1).getId()
+    );
+    Assertions.assertEquals(
+      TEST_JOURNEY_PATTERN_2,
+      shapeProducer.produce(journeyPattern2).getId()
+    );
+  }
+
+  /**
+   * The geometry of a service link is converted once and reused by all the journey patterns that refer to it.
+   */
+  @Test
+  void testServiceLinkGeometryConvertedOnce() {
+    NetexDatasetRepository netexDatasetRepository = mock(
+      NetexDatasetRepository.class
+    );
+    when(netexDatasetRepository.getServiceLinkById(TEST_SERVICE_LINK_1))
+      .thenReturn(createServiceLink(A1.y, A1.x, A2.y, A2.x, A3.y, A3.x));
+    when(netexDatasetRepository.getServiceLinkById(TEST_SERVICE_LINK_2))
+      .thenReturn(createServiceLink(A3.y, A3.x, A4.y, A4.x));
+    GtfsDatasetRepository gtfsDatasetRepository = mock(
+      GtfsDatasetRepository.class
+    );
+    when(gtfsDatasetRepository.getDefaultAgency()).thenReturn(new Agency());
+    ShapeProducer shapeProducer = new DefaultShapeProducer(
+      netexDatasetRepository,
+      gtfsDatasetRepository
+    );
+
+    GtfsShape shape1 = shapeProducer.produce(createTestJourneyPattern(1, 2, 3));
+    GtfsShape shape2 = shapeProducer.produce(createTestJourneyPattern(1, 2, 3));
+
+    verify(netexDatasetRepository, times(1))
+      .getServiceLinkById(TEST_SERVICE_LINK_1);
+    verify(netexDatasetRepository, times(1))
+      .getServiceLinkById(TEST_SERVICE_LINK_2);
+    Assertions.assertEquals(4, shape2.getShapePoints().size());
+    for (int i = 0; i < 4; i++) {
+      Assertions.assertEquals(
+        shape1.getShapePoints().get(i).getDistTraveled(),
+        shape2.getShapePoints().get(i).getDistTraveled()
+      );
+    }
+    Assertions.assertEquals(
+      shape1.getDistanceTravelledToStop(3),
+      shape2.getDistanceTravelledToStop(3)
+    );
+  }
+
+  private static ShapeProducer createShapeProducer(boolean deduplicateShapes) {
+    NetexDatasetRepository netexDatasetRepository = mock(
+      NetexDatasetRepository.class
+    );
+    when(netexDatasetRepository.getServiceLinkById(TEST_SERVICE_LINK_1))
+      .thenReturn(createServiceLink(A1.y, A1.x, A2.y, A2.x, A3.y, A3.x));
+    when(netexDatasetRepository.getServiceLinkById(TEST_SERVICE_LINK_2))
+      .thenReturn(createServiceLink(A3.y, A3.x, A4.y, A4.x));
+    GtfsDatasetRepository gtfsDatasetRepository = mock(
+      GtfsDatasetRepository.class
+    );
+    when(gtfsDatasetRepository.getDefaultAgency()).thenReturn(new Agency());
+    return new DefaultShapeProducer(
+      netexDatasetRepository,
+      gtfsDatasetRepository,
+      new GeodeticDistanceCalculator(),
+      deduplicateShapes
+    );
+  }
+
+  /**
+   * Produce the shapes of the test datasets with both the default geodetic distance calculation and the haversine
+   * distance calculation, and verify that the distances travelled stay within the documented tolerance.
+   * An additional meter is allowed to account for rounding.
+   */
+  @ParameterizedTest
+  @ValueSource(
+    strings = {
+      "/rb_flb-aggregated-netex.zip", "/rb_vyg-aggregated-netex.zip",
+    }
+  )
+  void testHaversineDistanceWithinToleranceOfGeodeticDistance(
+    String timetableDataset
+  ) throws IOException {
+    NetexDatasetRepository netexDatasetRepository =
+      new DefaultNetexDatasetRepository();
+    try (InputStream dataset = getClass().getResourceAsStream(timetableDataset)) {
+      new DefaultNetexDatasetLoader().load(dataset, netexDatasetRepository);
+    }
+    GtfsDatasetRepository gtfsDatasetRepository = mock(
+      GtfsDatasetRepository.class
+    );
+    when(gtfsDatasetRepository.getDefaultAgency()).thenReturn(new Agency());
+
+    ShapeProducer geodeticShapeProducer = new DefaultShapeProducer(
+      netexDatasetRepository,
+      gtfsDatasetRepository
+    );
+    ShapeProducer haversineShapeProducer = new DefaultShapeProducer(
+      netexDatasetRepository,
+      gtfsDatasetRepository,
+      new HaversineDistanceCalculator()
+    );
+
+    int nbShapes = 0;
+    for (JourneyPattern journeyPattern : netexDatasetRepository
+      .getIndex()
+      .getJourneyPatternIndex()
+      .getAll()) {
+      GtfsShape geodeticShape = geodeticShapeProducer.produce(journeyPattern);
+      GtfsShape haversineShape = haversineShapeProducer.produce(journeyPattern);
+      if (geodeticShape == null) {
+        Assertions.assertNull(haversineShape);
+        continue;
+      }
+      nbShapes++;
+      List<ShapePoint> geodeticShapePoints = geodeticShape.getShapePoints();
+      List<ShapePoint> haversineShapePoints = haversineShape.getShapePoints();
+      Assertions.assertEquals(
+        geodeticShapePoints.size(),
+        haversineShapePoints.size()
+      );
+      for (int i = 0; i < geodeticShapePoints.size(); i++) {
+        double geodeticDistance = geodeticShapePoints.get(i).getDistTraveled();
+        Assertions.assertEquals(
+          geodeticDistance,
+          haversineShapePoints.get(i).getDistTraveled(),
+          geodeticDistance * HaversineDistanceCalculator.RELATIVE_TOLERANCE + 1,
+          "Distance travelled diverges for JourneyPattern " +
+          journeyPattern.getId()
+        );
+      }
+    }
+    Assertions.assertTrue(nbShapes > 0);
+  }
+
   private static GtfsShape produceShape(int... stopOrders) {
     NetexDatasetRepository netexDatasetRepository = mock(
       NetexDatasetRepository.class
@@ -55,6 +55,8 @@
 package org.entur.netex.gtfs.export.producer;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import jakarta.xml.bind.JAXBElement;
@@ -296,6 +298,131 @@ class StopTimeProducerTest {
     );
   }
 
+  @Test
+  void testStopPointResolvedOncePerJourneyPattern() {
+    NetexDatasetRepository netexDatasetRepository = mock(
+      NetexDatasetRepository.class
+    );
+    when(
+      netexDatasetRepository.getQuayIdByScheduledStopPointId(
+        TEST_SCHEDULED_STOP_POINT_ID_1
+      )
+    )
+      .thenReturn(TEST_QUAY_ID);
+
+    GtfsDatasetRepository gtfsDatasetRepository = mock(
+      GtfsDatasetRepository.class
+    );
+    Stop firstStop = new Stop();
+    firstStop.setId(new AgencyAndId("DEFAULT", TEST_QUAY_ID));
+    when(gtfsDatasetRepository.getStopById(TEST_QUAY_ID)).thenReturn(firstStop);
+
+    StopTimeProducer stopTimeProducer = new DefaultStopTimeProducer(
+      netexDatasetRepository,
+      gtfsDatasetRepository
+    );
+
+    JourneyPattern journeyPattern = createTestJourneyPattern(
+      TEST_SCHEDULED_STOP_POINT_ID_1,
+      TEST_STOP_POINT_IN_JOURNEY_PATTERN_ID_1
+    );
+    journeyPattern.setId("ENT:JourneyPattern:1");
+    GtfsShape gtfsShape = new GtfsShape("id", new ArrayList<>(), Map.of());
+
+    for (int i = 0; i < 3; i++) {
+      TimetabledPassingTime timetabledPassingTime =
+        createTestTimetabledPassingTime(
+          TEST_STOP_POINT_IN_JOURNEY_PATTERN_ID_1,
+          TEST_ARRIVAL_TIME.plusMinutes(i)
+        );
+      StopTime stopTime = stopTimeProducer.produce(
+        timetabledPassingTime,
+        journeyPattern,
+        new Trip(),
+        gtfsShape,
+        INITIAL_HEADSIGN
+      );
+      Assertions.assertEquals(firstStop, stopTime.getStop());
+      Assertions.assertEquals(1, stopTime.getStopSequence());
+    }
+
+    verify(netexDatasetRepository, times(1))
+      .getQuayIdByScheduledStopPointId(TEST_SCHEDULED_STOP_POINT_ID_1);
+    verify(gtfsDatasetRepository, times(1)).getStopById(TEST_QUAY_ID);
+  }
+
+  @Test
+  void testJourneyPatternsWithSameIdAreNotMixedUp() {
+    String otherScheduledStopPointId = "ENT:ScheduledStopPoint:2";
+    String otherQuayId = "ENT:QUAY:2";
+    NetexDatasetRepository netexDatasetRepository = mock(
+      NetexDatasetRepository.class
+    );
+    when(
+      netexDatasetRepository.getQuayIdByScheduledStopPointId(
+        TEST_SCHEDULED_STOP_POINT_ID_1
+      )
+    )
+      .thenReturn(TEST_QUAY_ID);
+    when(
+      netexDatasetRepository.getQuayIdByScheduledStopPointId(
+        otherScheduledStopPointId
+      )
+    )
+      .thenReturn(otherQuayId);
+
+    GtfsDatasetRepository gtfsDatasetRepository = mock(
+      GtfsDatasetRepository.class
+    );
+    Stop firstStop = new Stop();
+    firstStop.setId(new AgencyAndId("DEFAULT", TEST_QUAY_ID));
+    when(gtfsDatasetRepository.getStopById(TEST_QUAY_ID)).thenReturn(firstStop);
+    Stop otherStop = new Stop();
+    otherStop.setId(new AgencyAndId("DEFAULT", otherQuayId));
+    when(gtfsDatasetRepository.getStopById(otherQuayId)).thenReturn(otherStop);
+
+    StopTimeProducer stopTimeProducer = new DefaultStopTimeProducer(
+      netexDatasetRepository,
+      gtfsDatasetRepository
+    );
+
+    // a producer reused for another version of the same journey pattern
+    JourneyPattern journeyPattern = createTestJourneyPattern(
+      TEST_SCHEDULED_STOP_POINT_ID_1,
+      TEST_STOP_POINT_IN_JOURNEY_PATTERN_ID_1
+    );
+    journeyPattern.setId("ENT:JourneyPattern:1");
+    JourneyPattern otherJourneyPattern = createTestJourneyPattern(
+      otherScheduledStopPointId,
+      TEST_STOP_POINT_IN_JOURNEY_PATTERN_ID_1
+    );
+    otherJourneyPattern.setId("ENT:JourneyPattern:1");
+    GtfsShape gtfsShape = new GtfsShape("id", new ArrayList<>(), Map.of());
+    TimetabledPassingTime timetabledPassingTime =
+      createTestTimetabledPassingTime(
+        TEST_STOP_POINT_IN_JOURNEY_PATTERN_ID_1,
+        TEST_ARRIVAL_TIME
+      );
+
+    StopTime stopTime = stopTimeProducer.produce(
+      timetabledPassingTime,
+      journeyPattern,
+      new Trip(),
+      gtfsShape,
+      INITIAL_HEADSIGN
+    );
+    StopTime otherStopTime = stopTimeProducer.produce(
+      timetabledPassingTime,
+      otherJourneyPattern,
+      new Trip(),
+      gtfsShape,
+      INITIAL_HEADSIGN
+    );
+
+    Assertions.assertEquals(firstStop, stopTime.getStop());
+    Assertions.assertEquals(otherStop, otherStopTime.getStop());
+  }
+
   private JourneyPattern createTestJourneyPattern(
     String scheduledStopPointId,
     String stopPointId
@@ -0,0 +1,119 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.entur.netex.gtfs.export.model.GtfsShape;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.Trip;
+import org.zeroturnaround.zip.ZipUtil;
+
+class DefaultGtfsRepositoryTest {
+
+  /**
+   * Shapes saved in their packed form are written to shapes.txt exactly as if their shape points had been saved
+   * one by one.
+   */
+  @Test
+  void testPackedShapesProduceSameFileAsShapePoints() throws IOException {
+    List<GtfsShape> shapes = List.of(
+      createShape("FLB:JourneyPattern:2", 60.8628, 7.1136),
+      createShape("FLB:JourneyPattern:1", 60.7355, 7.1210)
+    );
+
+    GtfsDatasetRepository packedRepository = new DefaultGtfsRepository();
+    shapes.forEach(packedRepository::saveShape);
+    GtfsDatasetRepository expandedRepository = new DefaultGtfsRepository();
+    shapes.forEach(shape ->
+      shape.getShapePoints().forEach(expandedRepository::saveEntity)
+    );
+
+    String shapesFile = readEntry(packedRepository, "shapes.txt");
+    Assertions.assertEquals(
+      readEntry(expandedRepository, "shapes.txt"),
+      shapesFile
+    );
+    Assertions.assertTrue(
+      shapesFile.indexOf("FLB:JourneyPattern:1") <
+      shapesFile.indexOf("FLB:JourneyPattern:2")
+    );
+  }
+
+  @Test
+  void testStopsAndTripsFoundById() {
+    DefaultGtfsRepository gtfsDatasetRepository = new DefaultGtfsRepository();
+    Stop stop = new Stop();
+    stop.setId(new AgencyAndId("DEFAULT", "NSR:Quay:1"));
+    gtfsDatasetRepository.saveEntity(stop);
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("DEFAULT", "FLB:ServiceJourney:1"));
+    gtfsDatasetRepository.saveEntity(trip);
+
+    Assertions.assertSame(
+      stop,
+      gtfsDatasetRepository.getStopById("NSR:Quay:1")
+    );
+    Assertions.assertSame(
+      trip,
+      gtfsDatasetRepository.findTripById("FLB:ServiceJourney:1").orElseThrow()
+    );
+    Assertions.assertTrue(
+      gtfsDatasetRepository.findTripById("FLB:ServiceJourney:2").isEmpty()
+    );
+    Assertions.assertThrows(
+      GtfsDatasetRepositoryException.class,
+      () -> gtfsDatasetRepository.getStopById("NSR:Quay:2")
+    );
+  }
+
+  private static GtfsShape createShape(String id, double lat, double lon) {
+    return new GtfsShape(
+      "DEFAULT",
+      id,
+      new double[] { lat, lat + 0.001, lat + 0.002 },
+      new double[] { lon, lon + 0.001, lon + 0.002 },
+      new double[] { 0, 125, 250 },
+      new int[] { 1, 2 },
+      new double[] { 0, 250 }
+    );
+  }
+
+  private static String readEntry(
+    GtfsDatasetRepository gtfsDatasetRepository,
+    String fileName
+  ) throws IOException {
+    byte[] archive;
+    try (InputStream gtfs = gtfsDatasetRepository.writeGtfs()) {
+      archive = gtfs.readAllBytes();
+    }
+    byte[] entry = ZipUtil.unpackEntry(
+      new ByteArrayInputStream(archive),
+      fileName
+    );
+    Assertions.assertNotNull(entry, "Missing GTFS file " + fileName);
+    return new String(entry, StandardCharsets.UTF_8);
+  }
+}
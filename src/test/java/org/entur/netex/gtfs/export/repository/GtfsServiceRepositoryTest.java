@@ -55,15 +55,23 @@
 package org.entur.netex.gtfs.export.repository;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import jakarta.xml.bind.JAXBElement;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import org.entur.netex.gtfs.export.model.GtfsService;
 import org.entur.netex.gtfs.export.model.ServiceCalendarPeriod;
@@ -150,7 +158,7 @@ class GtfsServiceRepositoryTest {
       .stream()
       .findFirst()
       .orElseThrow();
-    Assertions.assertEquals(TEST_DATE, actual);
+    Assertions.assertEquals(TEST_DATE.toLocalDate().atStartOfDay(), actual);
   }
 
   @Test
@@ -324,7 +332,7 @@ class GtfsServiceRepositoryTest {
     Assertions.assertTrue(service.getIncludedDates().isEmpty());
     Assertions.assertFalse(service.getExcludedDates().isEmpty());
     Assertions.assertEquals(
-      TEST_DATE,
+      TEST_DATE.toLocalDate().atStartOfDay(),
       service.getExcludedDates().stream().findFirst().orElseThrow()
     );
     ServiceCalendarPeriod serviceCalendarPeriod =
@@ -874,7 +882,7 @@ class GtfsServiceRepositoryTest {
       .stream()
       .findFirst()
       .orElseThrow();
-    Assertions.assertEquals(TEST_DATE, actual);
+    Assertions.assertEquals(TEST_DATE.toLocalDate().atStartOfDay(), actual);
   }
 
   @Test
@@ -938,11 +946,141 @@ class GtfsServiceRepositoryTest {
       .stream()
       .findFirst()
       .orElseThrow();
-    Assertions.assertEquals(TEST_DATE, actual);
+    Assertions.assertEquals(TEST_DATE.toLocalDate().atStartOfDay(), actual);
 
     Assertions.assertNotNull(service.getServiceCalendarPeriod());
   }
 
+  @Test
+  void testServiceIdForMultipleDayTypes() {
+    DayType dayType1 = createTestDayType(TEST_DAY_TYPE_1_ID);
+    DayType dayType2 = createTestDayType(TEST_DAY_TYPE_2_ID);
+    NetexDatasetRepository netexDatasetRepository = mock(
+      NetexDatasetRepository.class
+    );
+    when(netexDatasetRepository.getDayTypeAssignmentsByDayType(dayType1))
+      .thenReturn(
+        Set.of(createTestDayTypeAssignment(TEST_DAY_TYPE_1_ID, TEST_DATE, null))
+      );
+    when(netexDatasetRepository.getDayTypeAssignmentsByDayType(dayType2))
+      .thenReturn(
+        Set.of(createTestDayTypeAssignment(TEST_DAY_TYPE_2_ID, TEST_DATE, null))
+      );
+    GtfsServiceRepository gtfsServiceRepository =
+      new DefaultGtfsServiceRepository(TEST_CODESPACE, netexDatasetRepository);
+
+    GtfsService service = gtfsServiceRepository.getServiceForDayTypes(
+      Set.of(dayType2, dayType1)
+    );
+    Assertions.assertEquals(TEST_CODESPACE + ":DayType:1-2", service.getId());
+    Set<DayType> sameDayTypes = new HashSet<>();
+    sameDayTypes.add(createTestDayType(TEST_DAY_TYPE_1_ID));
+    sameDayTypes.add(dayType2);
+    Assertions.assertSame(
+      service,
+      gtfsServiceRepository.getServiceForDayTypes(sameDayTypes)
+    );
+    Assertions.assertNotSame(
+      service,
+      gtfsServiceRepository.getServiceForDayTypes(Set.of(dayType1))
+    );
+  }
+
+  @Test
+  void testDayTypeResolvedOnceAcrossServices() {
+    DayType dayType1 = createTestDayType(TEST_DAY_TYPE_1_ID);
+    DayType dayType2 = createTestDayType(TEST_DAY_TYPE_2_ID);
+    NetexDatasetRepository netexDatasetRepository = mock(
+      NetexDatasetRepository.class
+    );
+    when(netexDatasetRepository.getDayTypeAssignmentsByDayType(dayType1))
+      .thenReturn(
+        Set.of(createTestDayTypeAssignment(TEST_DAY_TYPE_1_ID, TEST_DATE, null))
+      );
+    when(netexDatasetRepository.getDayTypeAssignmentsByDayType(dayType2))
+      .thenReturn(
+        Set.of(
+          createTestDayTypeAssignment(
+            TEST_DAY_TYPE_2_ID,
+            TEST_DATE.plusDays(1),
+            null
+          )
+        )
+      );
+    GtfsServiceRepository gtfsServiceRepository =
+      new DefaultGtfsServiceRepository(TEST_CODESPACE, netexDatasetRepository);
+
+    GtfsService service1 = gtfsServiceRepository.getServiceForDayTypes(
+      Set.of(dayType1)
+    );
+    GtfsService service12 = gtfsServiceRepository.getServiceForDayTypes(
+      Set.of(dayType1, dayType2)
+    );
+
+    Assertions.assertEquals(1, service1.getIncludedDates().size());
+    Assertions.assertEquals(2, service12.getIncludedDates().size());
+    verify(netexDatasetRepository, times(1))
+      .getDayTypeAssignmentsByDayType(dayType1);
+  }
+
+  @Test
+  void testConcurrentServiceCreation() throws Exception {
+    DayType dayType1 = createTestDayType(TEST_DAY_TYPE_1_ID);
+    DayType dayType2 = createTestDayType(TEST_DAY_TYPE_2_ID);
+    NetexDatasetRepository netexDatasetRepository = mock(
+      NetexDatasetRepository.class
+    );
+    when(netexDatasetRepository.getDayTypeAssignmentsByDayType(dayType1))
+      .thenReturn(
+        Set.of(createTestDayTypeAssignment(TEST_DAY_TYPE_1_ID, TEST_DATE, null))
+      );
+    when(netexDatasetRepository.getDayTypeAssignmentsByDayType(dayType2))
+      .thenReturn(
+        Set.of(createTestDayTypeAssignment(TEST_DAY_TYPE_2_ID, TEST_DATE, null))
+      );
+    GtfsServiceRepository gtfsServiceRepository =
+      new DefaultGtfsServiceRepository(TEST_CODESPACE, netexDatasetRepository);
+
+    int nbThreads = 8;
+    ExecutorService executorService = Executors.newFixedThreadPool(nbThreads);
+    try {
+      CountDownLatch startSignal = new CountDownLatch(1);
+      List<Future<GtfsService>> services = new ArrayList<>();
+      for (int i = 0; i < nbThreads * 10; i++) {
+        Set<DayType> dayTypes = i % 2 == 0
+          ? Set.of(dayType1)
+          : Set.of(dayType2);
+        services.add(
+          executorService.submit(() -> {
+            startSignal.await();
+            return gtfsServiceRepository.getServiceForDayTypes(dayTypes);
+          })
+        );
+      }
+      startSignal.countDown();
+
+      for (int i = 0; i < services.size(); i++) {
+        Assertions.assertSame(
+          services.get(i % 2).get(),
+          services.get(i).get()
+        );
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    Collection<GtfsService> allServices =
+      gtfsServiceRepository.getAllServices();
+    Assertions.assertEquals(
+      List.of(TEST_DAY_TYPE_1_ID, TEST_DAY_TYPE_2_ID),
+      allServices.stream().map(GtfsService::getId).toList()
+    );
+    verify(netexDatasetRepository, times(1))
+      .getDayTypeAssignmentsByDayType(dayType1);
+    verify(netexDatasetRepository, times(1))
+      .getDayTypeAssignmentsByDayType(dayType2);
+  }
+
   private DayType createTestDayType(String dayTypeId) {
     return createTestDayType(dayTypeId, null);
   }
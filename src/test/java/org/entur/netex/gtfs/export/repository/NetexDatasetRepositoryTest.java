@@ -0,0 +1,311 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.entur.netex.gtfs.export.loader.DefaultNetexDatasetLoader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.rutebanken.netex.model.JourneyPattern;
+import org.rutebanken.netex.model.Line;
+import org.rutebanken.netex.model.LineRefStructure;
+import org.rutebanken.netex.model.ObjectFactory;
+import org.rutebanken.netex.model.Route;
+import org.rutebanken.netex.model.ServiceJourney;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class NetexDatasetRepositoryTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(
+    NetexDatasetRepositoryTest.class
+  );
+
+  @ParameterizedTest
+  @ValueSource(
+    strings = {
+      "/rb_flb-aggregated-netex.zip",
+      "/rb_sjv-aggregated-netex.zip",
+      "/rb_vyg-aggregated-netex.zip",
+    }
+  )
+  void testIndexedLookupsMatchFullScan(String timetableDataset)
+    throws IOException {
+    NetexDatasetRepository netexDatasetRepository = loadDataset(
+      timetableDataset
+    );
+
+    int indexedCount = countServiceJourneys(netexDatasetRepository);
+
+    int fullScanCount = 0;
+    for (Line line : netexDatasetRepository.getLines()) {
+      for (Route route : findRoutesByLine(netexDatasetRepository, line)) {
+        Assertions.assertEquals(
+          findJourneyPatternsByRoute(netexDatasetRepository, route),
+          new HashSet<>(netexDatasetRepository.getJourneyPatternsByRoute(route))
+        );
+        for (JourneyPattern journeyPattern : findJourneyPatternsByRoute(
+          netexDatasetRepository,
+          route
+        )) {
+          Set<ServiceJourney> serviceJourneys = findServiceJourneysByJourneyPattern(
+            netexDatasetRepository,
+            journeyPattern
+          );
+          Assertions.assertEquals(
+            serviceJourneys,
+            new HashSet<>(
+              netexDatasetRepository.getServiceJourneysByJourneyPattern(
+                journeyPattern
+              )
+            )
+          );
+          fullScanCount += serviceJourneys.size();
+        }
+      }
+      Assertions.assertEquals(
+        findRoutesByLine(netexDatasetRepository, line),
+        new HashSet<>(netexDatasetRepository.getRoutesByLine(line))
+      );
+    }
+
+    Assertions.assertEquals(fullScanCount, indexedCount);
+    Assertions.assertTrue(indexedCount > 0);
+  }
+
+  @Test
+  void testLookupsAreServedFromIndex() throws IOException {
+    NetexDatasetRepository netexDatasetRepository = loadDataset(
+      "/rb_vyg-aggregated-netex.zip"
+    );
+
+    // an indexed lookup returns the same collection on each call, a full scan would create a new one
+    for (Line line : netexDatasetRepository.getLines()) {
+      Collection<Route> routes = netexDatasetRepository.getRoutesByLine(line);
+      Assertions.assertSame(
+        routes,
+        netexDatasetRepository.getRoutesByLine(line)
+      );
+      for (Route route : routes) {
+        Collection<JourneyPattern> journeyPatterns =
+          netexDatasetRepository.getJourneyPatternsByRoute(route);
+        Assertions.assertSame(
+          journeyPatterns,
+          netexDatasetRepository.getJourneyPatternsByRoute(route)
+        );
+        for (JourneyPattern journeyPattern : journeyPatterns) {
+          Assertions.assertSame(
+            netexDatasetRepository.getServiceJourneysByJourneyPattern(
+              journeyPattern
+            ),
+            netexDatasetRepository.getServiceJourneysByJourneyPattern(
+              journeyPattern
+            )
+          );
+        }
+      }
+    }
+  }
+
+  @Test
+  void testReverseIndexesAreKeptWhenReadingIndex() throws IOException {
+    NetexDatasetRepository netexDatasetRepository = loadDataset(
+      "/rb_flb-aggregated-netex.zip"
+    );
+    Line line = netexDatasetRepository.getLines().iterator().next();
+    Collection<Route> routes = netexDatasetRepository.getRoutesByLine(line);
+
+    netexDatasetRepository.getIndex();
+
+    Assertions.assertSame(routes, netexDatasetRepository.getRoutesByLine(line));
+  }
+
+  @Test
+  void testReverseIndexesAreRebuiltAfterUpdate() throws IOException {
+    NetexDatasetRepository netexDatasetRepository = loadDataset(
+      "/rb_flb-aggregated-netex.zip"
+    );
+    Line line = netexDatasetRepository.getLines().iterator().next();
+    int routeCount = netexDatasetRepository.getRoutesByLine(line).size();
+
+    Route route = new Route()
+      .withId("FLB:Route:new")
+      .withLineRef(
+        new ObjectFactory()
+          .createLineRef(new LineRefStructure().withRef(line.getId()))
+      );
+    netexDatasetRepository.getIndex().getRouteIndex().put(route.getId(), route);
+    netexDatasetRepository.invalidate();
+
+    Assertions.assertEquals(
+      routeCount + 1,
+      netexDatasetRepository.getRoutesByLine(line).size()
+    );
+    Assertions.assertTrue(
+      netexDatasetRepository.getRoutesByLine(line).contains(route)
+    );
+  }
+
+  @Test
+  @Tag("performance")
+  void testIndexedLookupsAreFasterThanFullScan() throws IOException {
+    NetexDatasetRepository netexDatasetRepository = loadDataset(
+      "/rb_vyg-aggregated-netex.zip"
+    );
+    // warm up
+    countServiceJourneys(netexDatasetRepository);
+    countServiceJourneysByFullScan(netexDatasetRepository);
+
+    long indexedDuration = Long.MAX_VALUE;
+    long fullScanDuration = Long.MAX_VALUE;
+    int indexedCount = 0;
+    for (int i = 0; i < 3; i++) {
+      // the time taken to build the reverse indexes is part of the measure
+      netexDatasetRepository.invalidate();
+      long start = System.nanoTime();
+      indexedCount = countServiceJourneys(netexDatasetRepository);
+      indexedDuration = Math.min(indexedDuration, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      countServiceJourneysByFullScan(netexDatasetRepository);
+      fullScanDuration = Math.min(fullScanDuration, System.nanoTime() - start);
+    }
+
+    LOGGER.info(
+      "Traversed {} service journeys: indexed lookup {} µs, full scan {} µs",
+      indexedCount,
+      indexedDuration / 1000,
+      fullScanDuration / 1000
+    );
+    Assertions.assertTrue(
+      indexedDuration < fullScanDuration,
+      "Indexed lookups took " +
+      indexedDuration / 1000 +
+      " µs, compared with " +
+      fullScanDuration / 1000 +
+      " µs for a full scan"
+    );
+  }
+
+  private NetexDatasetRepository loadDataset(String timetableDataset)
+    throws IOException {
+    NetexDatasetRepository netexDatasetRepository =
+      new DefaultNetexDatasetRepository();
+    try (InputStream dataset = getClass().getResourceAsStream(timetableDataset)) {
+      new DefaultNetexDatasetLoader().load(dataset, netexDatasetRepository);
+    }
+    return netexDatasetRepository;
+  }
+
+  private static int countServiceJourneys(
+    NetexDatasetRepository netexDatasetRepository
+  ) {
+    int count = 0;
+    for (Line line : netexDatasetRepository.getLines()) {
+      for (Route route : netexDatasetRepository.getRoutesByLine(line)) {
+        for (JourneyPattern journeyPattern : netexDatasetRepository.getJourneyPatternsByRoute(
+          route
+        )) {
+          count +=
+            netexDatasetRepository
+              .getServiceJourneysByJourneyPattern(journeyPattern)
+              .size();
+        }
+      }
+    }
+    return count;
+  }
+
+  private static int countServiceJourneysByFullScan(
+    NetexDatasetRepository netexDatasetRepository
+  ) {
+    int count = 0;
+    for (Line line : netexDatasetRepository.getLines()) {
+      for (Route route : findRoutesByLine(netexDatasetRepository, line)) {
+        for (JourneyPattern journeyPattern : findJourneyPatternsByRoute(
+          netexDatasetRepository,
+          route
+        )) {
+          count +=
+            findServiceJourneysByJourneyPattern(
+              netexDatasetRepository,
+              journeyPattern
+            )
+              .size();
+        }
+      }
+    }
+    return count;
+  }
+
+  private static Set<Route> findRoutesByLine(
+    NetexDatasetRepository netexDatasetRepository,
+    Line line
+  ) {
+    return netexDatasetRepository
+      .getIndex()
+      .getRouteIndex()
+      .getAll()
+      .stream()
+      .filter(route ->
+        route.getLineRef().getValue().getRef().equals(line.getId())
+      )
+      .collect(Collectors.toSet());
+  }
+
+  private static Set<JourneyPattern> findJourneyPatternsByRoute(
+    NetexDatasetRepository netexDatasetRepository,
+    Route route
+  ) {
+    return netexDatasetRepository
+      .getIndex()
+      .getJourneyPatternIndex()
+      .getAll()
+      .stream()
+      .filter(journeyPattern ->
+        journeyPattern.getRouteRef().getRef().equals(route.getId())
+      )
+      .collect(Collectors.toSet());
+  }
+
+  private static Set<ServiceJourney> findServiceJourneysByJourneyPattern(
+    NetexDatasetRepository netexDatasetRepository,
+    JourneyPattern journeyPattern
+  ) {
+    return netexDatasetRepository
+      .getServiceJourneys()
+      .stream()
+      .filter(serviceJourney ->
+        serviceJourney
+          .getJourneyPatternRef()
+          .getValue()
+          .getRef()
+          .equals(journeyPattern.getId())
+      )
+      .collect(Collectors.toSet());
+  }
+}
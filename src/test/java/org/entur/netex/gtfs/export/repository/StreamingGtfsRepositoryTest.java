@@ -0,0 +1,274 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.repository;
+
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.entur.netex.gtfs.export.DefaultGtfsExporter;
+import org.entur.netex.gtfs.export.stop.StopAreaRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.ServiceCalendarDate;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.model.calendar.ServiceDate;
+import org.zeroturnaround.zip.ZipUtil;
+
+class StreamingGtfsRepositoryTest {
+
+  private static final String AGENCY_ID = "FLB:Authority:1";
+  private static final String TRIP_ID = "FLB:ServiceJourney:1";
+  private static final String SHAPE_ID = "FLB:JourneyPattern:1";
+  private static final String SERVICE_ID = "FLB:DayType:1";
+
+  @ParameterizedTest
+  @ValueSource(
+    strings = {
+      "agency.txt",
+      "stops.txt",
+      "routes.txt",
+      "trips.txt",
+      "stop_times.txt",
+      "calendar_dates.txt",
+      "shapes.txt",
+    }
+  )
+  void testStreamingRepositoryProducesSameFilesAsDefaultRepository(
+    String fileName
+  ) throws IOException {
+    GtfsDatasetRepository defaultRepository = new DefaultGtfsRepository();
+    populate(defaultRepository);
+    GtfsDatasetRepository streamingRepository = new StreamingGtfsRepository();
+    populate(streamingRepository);
+
+    Assertions.assertEquals(
+      readEntry(defaultRepository, fileName),
+      readEntry(streamingRepository, fileName)
+    );
+  }
+
+  @Test
+  void testFindTripById() {
+    GtfsDatasetRepository streamingRepository = new StreamingGtfsRepository();
+    populate(streamingRepository);
+
+    Assertions.assertTrue(streamingRepository.findTripById(TRIP_ID).isPresent());
+    Assertions.assertTrue(
+      streamingRepository.findTripById("FLB:ServiceJourney:2").isEmpty()
+    );
+    Assertions.assertEquals(
+      TRIP_ID,
+      streamingRepository.getTripById(TRIP_ID).getId().getId()
+    );
+  }
+
+  @Test
+  void testGtfsArchiveCanBeWrittenOnlyOnce() throws IOException {
+    GtfsDatasetRepository streamingRepository = new StreamingGtfsRepository();
+    populate(streamingRepository);
+    try (InputStream gtfs = streamingRepository.writeGtfs()) {
+      Assertions.assertNotNull(gtfs);
+    }
+
+    Assertions.assertThrows(
+      IllegalStateException.class,
+      streamingRepository::writeGtfs
+    );
+  }
+
+  @Test
+  void testCloseDeletesSpoolFiles() throws IOException {
+    Set<Path> existingSpoolFiles = getSpoolFiles();
+    StreamingGtfsRepository streamingRepository = new StreamingGtfsRepository();
+    populate(streamingRepository);
+    Set<Path> spoolFiles = getSpoolFiles();
+    spoolFiles.removeAll(existingSpoolFiles);
+    Assertions.assertFalse(spoolFiles.isEmpty());
+
+    streamingRepository.close();
+
+    Assertions.assertTrue(spoolFiles.stream().noneMatch(Files::exists));
+  }
+
+  @Test
+  void testSpoolFilesAreDeletedWhenExportFails() throws IOException {
+    Set<Path> existingSpoolFiles = getSpoolFiles();
+    StreamingGtfsRepository streamingRepository = new StreamingGtfsRepository();
+    DefaultGtfsExporter gtfsExporter = new DefaultGtfsExporter(
+      null,
+      mock(StopAreaRepository.class),
+      streamingRepository,
+      false
+    ) {
+      @Override
+      protected void convertStops(boolean exportOnlyUsedStops) {
+        populate(streamingRepository);
+        throw new IllegalStateException("Conversion failure");
+      }
+    };
+
+    Assertions.assertThrows(
+      IllegalStateException.class,
+      gtfsExporter::convertStopsToGtfs
+    );
+    Set<Path> spoolFiles = getSpoolFiles();
+    spoolFiles.removeAll(existingSpoolFiles);
+    Assertions.assertTrue(spoolFiles.isEmpty());
+  }
+
+  private static Set<Path> getSpoolFiles() throws IOException {
+    try (
+      Stream<Path> files = Files.list(
+        Path.of(System.getProperty("java.io.tmpdir"))
+      )
+    ) {
+      return files
+        .filter(file -> file.getFileName().toString().startsWith("gtfs-spool-"))
+        .collect(Collectors.toCollection(HashSet::new));
+    }
+  }
+
+  private static String readEntry(
+    GtfsDatasetRepository gtfsDatasetRepository,
+    String fileName
+  ) throws IOException {
+    byte[] archive;
+    try (InputStream gtfs = gtfsDatasetRepository.writeGtfs()) {
+      archive = gtfs.readAllBytes();
+    }
+    byte[] entry = ZipUtil.unpackEntry(
+      new ByteArrayInputStream(archive),
+      fileName
+    );
+    Assertions.assertNotNull(entry, "Missing GTFS file " + fileName);
+    return new String(entry, StandardCharsets.UTF_8);
+  }
+
+  private static void populate(GtfsDatasetRepository gtfsDatasetRepository) {
+    String defaultAgencyId = gtfsDatasetRepository.getDefaultAgency().getId();
+
+    Agency agency = new Agency();
+    agency.setId(AGENCY_ID);
+    agency.setName("Flåmsbana");
+    agency.setUrl("https://www.flamsbana.no");
+    agency.setTimezone("Europe/Oslo");
+    gtfsDatasetRepository.saveEntity(agency);
+
+    Stop firstStop = createStop(defaultAgencyId, "NSR:Quay:1", "Flåm");
+    Stop lastStop = createStop(defaultAgencyId, "NSR:Quay:2", "Myrdal");
+    gtfsDatasetRepository.saveEntity(firstStop);
+    gtfsDatasetRepository.saveEntity(lastStop);
+
+    Route route = new Route();
+    route.setId(new AgencyAndId(defaultAgencyId, "FLB:Line:42"));
+    route.setAgency(agency);
+    route.setShortName("42");
+    route.setType(2);
+    gtfsDatasetRepository.saveEntity(route);
+
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId(defaultAgencyId, TRIP_ID));
+    trip.setRoute(route);
+    trip.setServiceId(new AgencyAndId(defaultAgencyId, SERVICE_ID));
+    trip.setShapeId(new AgencyAndId(defaultAgencyId, SHAPE_ID));
+    trip.setTripHeadsign("Myrdal");
+    gtfsDatasetRepository.saveEntity(trip);
+
+    gtfsDatasetRepository.saveEntity(
+      createStopTime(trip, firstStop, 1, 36000, 0)
+    );
+    gtfsDatasetRepository.saveEntity(
+      createStopTime(trip, lastStop, 2, 39600, 20000)
+    );
+
+    gtfsDatasetRepository.saveEntity(
+      createShapePoint(defaultAgencyId, 1, 60.8628, 7.1136, 0)
+    );
+    gtfsDatasetRepository.saveEntity(
+      createShapePoint(defaultAgencyId, 2, 60.7355, 7.1210, 20000)
+    );
+
+    ServiceCalendarDate serviceCalendarDate = new ServiceCalendarDate();
+    serviceCalendarDate.setServiceId(
+      new AgencyAndId(defaultAgencyId, SERVICE_ID)
+    );
+    serviceCalendarDate.setDate(new ServiceDate(2024, 6, 1));
+    serviceCalendarDate.setExceptionType(ServiceCalendarDate.EXCEPTION_TYPE_ADD);
+    gtfsDatasetRepository.saveEntity(serviceCalendarDate);
+  }
+
+  private static Stop createStop(String agencyId, String stopId, String name) {
+    Stop stop = new Stop();
+    stop.setId(new AgencyAndId(agencyId, stopId));
+    stop.setName(name);
+    stop.setLat(60.8);
+    stop.setLon(7.1);
+    return stop;
+  }
+
+  private static StopTime createStopTime(
+    Trip trip,
+    Stop stop,
+    int stopSequence,
+    int time,
+    double distance
+  ) {
+    StopTime stopTime = new StopTime();
+    stopTime.setTrip(trip);
+    stopTime.setStop(stop);
+    stopTime.setStopSequence(stopSequence);
+    stopTime.setArrivalTime(time);
+    stopTime.setDepartureTime(time);
+    stopTime.setShapeDistTraveled(distance);
+    return stopTime;
+  }
+
+  private static ShapePoint createShapePoint(
+    String agencyId,
+    int sequence,
+    double lat,
+    double lon,
+    double distance
+  ) {
+    ShapePoint shapePoint = new ShapePoint();
+    shapePoint.setShapeId(new AgencyAndId(agencyId, SHAPE_ID));
+    shapePoint.setSequence(sequence);
+    shapePoint.setLat(lat);
+    shapePoint.setLon(lon);
+    shapePoint.setDistTraveled(distance);
+    return shapePoint;
+  }
+}
@@ -0,0 +1,449 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.entur.netex.gtfs.export.DefaultGtfsExporter;
+import org.entur.netex.gtfs.export.repository.DefaultGtfsRepository;
+import org.entur.netex.gtfs.export.stop.DefaultStopAreaRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.FeedInfo;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.ServiceCalendar;
+import org.onebusaway.gtfs.model.ServiceCalendarDate;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Transfer;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.model.calendar.ServiceDate;
+import org.onebusaway.gtfs.serialization.GtfsEntitySchemaFactory;
+import org.onebusaway.gtfs.serialization.GtfsWriter;
+import org.onebusaway.gtfs.services.GtfsDao;
+
+/**
+ * Verify that the GTFS files written by {@link DefaultGtfsSerializer} are identical to the files written by the
+ * OneBusAway GtfsWriter, through {@link FilteredFieldsGtfsWriter}.
+ */
+class DefaultGtfsSerializerTest {
+
+  private static final Set<String> EXPORTED_FILES = Set.of(
+    "agency.txt",
+    "stops.txt",
+    "routes.txt",
+    "trips.txt",
+    "stop_times.txt",
+    "calendar.txt",
+    "calendar_dates.txt",
+    "shapes.txt",
+    "transfers.txt",
+    "feed_info.txt"
+  );
+
+  private static DefaultStopAreaRepository stopAreaRepository;
+
+  @BeforeAll
+  static void setUp() {
+    stopAreaRepository = new DefaultStopAreaRepository();
+    stopAreaRepository.loadStopAreas(
+      DefaultGtfsSerializerTest.class.getResourceAsStream(
+          "/RailStations_latest.zip"
+        )
+    );
+  }
+
+  @ParameterizedTest
+  @CsvSource(
+    {
+      "FLB, /rb_flb-aggregated-netex.zip",
+      "VYG, /rb_vyg-aggregated-netex.zip",
+      "SJV, /rb_sjv-aggregated-netex.zip",
+    }
+  )
+  void testSameOutputAsGtfsWriter(
+    String codespace,
+    String timetableDataset,
+    @TempDir Path tempDir
+  ) throws IOException {
+    CapturingGtfsSerializer gtfsSerializer = new CapturingGtfsSerializer();
+    DefaultGtfsExporter gtfsExporter = new DefaultGtfsExporter(
+      codespace,
+      stopAreaRepository,
+      new DefaultGtfsRepository(gtfsSerializer) {},
+      false
+    );
+    Map<String, String> serializedFiles;
+    try (
+      InputStream netexTimetableDataset = getClass()
+        .getResourceAsStream(timetableDataset);
+      InputStream gtfsArchive = gtfsExporter.convertTimetablesToGtfs(
+        netexTimetableDataset
+      )
+    ) {
+      serializedFiles = readEntries(gtfsArchive);
+    }
+
+    Map<String, String> gtfsWriterFiles = writeWithGtfsWriter(
+      gtfsSerializer.gtfsDao,
+      tempDir
+    );
+
+    Assertions.assertTrue(serializedFiles.containsKey("stop_times.txt"));
+    Assertions.assertEquals(gtfsWriterFiles.keySet(), serializedFiles.keySet());
+    for (Map.Entry<String, String> entry : gtfsWriterFiles.entrySet()) {
+      Assertions.assertEquals(
+        entry.getValue(),
+        serializedFiles.get(entry.getKey()),
+        "Difference in " + entry.getKey()
+      );
+    }
+  }
+
+  /**
+   * Values that must be quoted and escaped, and optional fields set on only some of the entities, in every GTFS file
+   * produced by the exporter.
+   */
+  @Test
+  void testSpecialValuesAndOptionalFields(@TempDir Path tempDir)
+    throws IOException {
+    GtfsRelationalDaoImpl gtfsDao = createGtfsDaoWithSpecialValues();
+
+    Map<String, String> serializedFiles = writeWithSerializer(
+      new DefaultGtfsSerializer(),
+      gtfsDao
+    );
+
+    Assertions.assertEquals(EXPORTED_FILES, serializedFiles.keySet());
+    Assertions.assertEquals(
+      writeWithGtfsWriter(gtfsDao, tempDir),
+      serializedFiles
+    );
+    List<String> agencies = serializedFiles.get("agency.txt").lines().toList();
+    Assertions.assertEquals(
+      "agency_id,agency_name,agency_url,agency_timezone,agency_phone",
+      agencies.get(0)
+    );
+    Assertions.assertEquals(
+      "FLB:Authority:1,\"Flåm, \"\"Bana\"\"\",https://www.vy.no,Europe/Oslo,+47 61 27 90 00",
+      agencies.get(1)
+    );
+    Assertions.assertEquals(
+      "VYG:Authority:1,Vy,https://www.vy.no,Europe/Oslo,",
+      agencies.get(2)
+    );
+  }
+
+  /**
+   * The spooled files of the streaming serializer are written with the same quoting and optional fields.
+   */
+  @Test
+  void testSpooledFilesWithSpecialValuesAndOptionalFields(@TempDir Path tempDir)
+    throws IOException {
+    GtfsRelationalDaoImpl gtfsDao = createGtfsDaoWithSpecialValues();
+    Map<Class<?>, SpooledGtfsFileWriter> spooledFiles = new HashMap<>();
+    for (Class<?> entityType : List.of(
+      Trip.class,
+      StopTime.class,
+      ShapePoint.class,
+      ServiceCalendarDate.class
+    )) {
+      // the entities are spooled in the order of the GtfsWriter output
+      SpooledGtfsFileWriter spooledFile = new SpooledGtfsFileWriter(entityType);
+      List<Object> entities = new ArrayList<>(
+        gtfsDao.getAllEntitiesForType(entityType)
+      );
+      entities.sort(getEntityComparator(entityType));
+      entities.forEach(spooledFile::write);
+      spooledFiles.put(entityType, spooledFile);
+    }
+
+    Map<String, String> serializedFiles = writeWithSerializer(
+      new StreamingGtfsSerializer(spooledFiles),
+      gtfsDao
+    );
+
+    Assertions.assertEquals(EXPORTED_FILES, serializedFiles.keySet());
+    Assertions.assertEquals(
+      writeWithGtfsWriter(gtfsDao, tempDir),
+      serializedFiles
+    );
+  }
+
+  @Test
+  void testCompressionSettings() throws IOException {
+    GtfsRelationalDaoImpl gtfsDao = new GtfsRelationalDaoImpl();
+    Agency agency = new Agency();
+    agency.setId("FLB:Authority:1");
+    agency.setName("Flåmsbana");
+    agency.setUrl("https://www.vy.no");
+    agency.setTimezone("Europe/Oslo");
+    gtfsDao.saveEntity(agency);
+
+    Assertions.assertEquals(
+      ZipEntry.STORED,
+      getAgencyEntryMethod(
+        new DefaultGtfsSerializer(
+          List.of(),
+          GtfsArchiveWriter.DEFAULT_STORED_ENTRY_MAX_SIZE,
+          Deflater.DEFAULT_COMPRESSION
+        ),
+        gtfsDao
+      )
+    );
+    Assertions.assertEquals(
+      ZipEntry.DEFLATED,
+      getAgencyEntryMethod(
+        new DefaultGtfsSerializer(List.of(), 0, Deflater.BEST_COMPRESSION),
+        gtfsDao
+      )
+    );
+  }
+
+  private static int getAgencyEntryMethod(
+    GtfsSerializer gtfsSerializer,
+    GtfsDao gtfsDao
+  ) throws IOException {
+    ByteArrayOutputStream gtfsArchive = new ByteArrayOutputStream();
+    gtfsSerializer.writeGtfs(gtfsDao, gtfsArchive);
+    try (
+      ZipInputStream zipInputStream = new ZipInputStream(
+        new ByteArrayInputStream(gtfsArchive.toByteArray())
+      )
+    ) {
+      ZipEntry zipEntry = zipInputStream.getNextEntry();
+      Assertions.assertEquals("agency.txt", zipEntry.getName());
+      return zipEntry.getMethod();
+    }
+  }
+
+  /**
+   * Create a GTFS data model with an entity in every file produced by the exporter, with values containing separators
+   * and quotes, and optional fields that are set on only some of the entities.
+   */
+  private static GtfsRelationalDaoImpl createGtfsDaoWithSpecialValues() {
+    GtfsRelationalDaoImpl gtfsDao = new GtfsRelationalDaoImpl();
+
+    Agency agency = new Agency();
+    agency.setId("FLB:Authority:1");
+    agency.setName("Flåm, \"Bana\"");
+    agency.setUrl("https://www.vy.no");
+    agency.setTimezone("Europe/Oslo");
+    agency.setPhone("+47 61 27 90 00");
+    gtfsDao.saveEntity(agency);
+    Agency otherAgency = new Agency();
+    otherAgency.setId("VYG:Authority:1");
+    otherAgency.setName("Vy");
+    otherAgency.setUrl("https://www.vy.no");
+    otherAgency.setTimezone("Europe/Oslo");
+    gtfsDao.saveEntity(otherAgency);
+
+    Stop quay = new Stop();
+    quay.setId(new AgencyAndId(agency.getId(), "NSR:Quay:1"));
+    quay.setName("Myrdal, \"spor 1\"");
+    quay.setLat(60.7352);
+    quay.setLon(7.1228);
+    quay.setPlatformCode("1");
+    gtfsDao.saveEntity(quay);
+    Stop otherQuay = new Stop();
+    otherQuay.setId(new AgencyAndId(agency.getId(), "NSR:Quay:2"));
+    otherQuay.setName("Flåm");
+    otherQuay.setLat(60.8633);
+    otherQuay.setLon(7.1137);
+    gtfsDao.saveEntity(otherQuay);
+
+    Route route = new Route();
+    route.setId(new AgencyAndId(agency.getId(), "FLB:Line:1"));
+    route.setAgency(agency);
+    route.setShortName("FLB");
+    route.setLongName("Myrdal - Flåm, \"Flåmsbana\"");
+    route.setType(2);
+    route.setColor("E0E0E0");
+    gtfsDao.saveEntity(route);
+
+    AgencyAndId serviceId = new AgencyAndId(
+      agency.getId(),
+      "FLB:DayType:1"
+    );
+    ServiceCalendar serviceCalendar = new ServiceCalendar();
+    serviceCalendar.setServiceId(serviceId);
+    serviceCalendar.setMonday(1);
+    serviceCalendar.setSaturday(1);
+    serviceCalendar.setStartDate(new ServiceDate(2026, 6, 1));
+    serviceCalendar.setEndDate(new ServiceDate(2026, 8, 31));
+    gtfsDao.saveEntity(serviceCalendar);
+    ServiceCalendarDate serviceCalendarDate = new ServiceCalendarDate();
+    serviceCalendarDate.setServiceId(serviceId);
+    serviceCalendarDate.setDate(new ServiceDate(2026, 6, 20));
+    serviceCalendarDate.setExceptionType(
+      ServiceCalendarDate.EXCEPTION_TYPE_REMOVE
+    );
+    gtfsDao.saveEntity(serviceCalendarDate);
+
+    AgencyAndId shapeId = new AgencyAndId(
+      agency.getId(),
+      "FLB:JourneyPattern:1"
+    );
+    for (int i = 0; i < 2; i++) {
+      ShapePoint shapePoint = new ShapePoint();
+      shapePoint.setShapeId(shapeId);
+      shapePoint.setSequence(i);
+      shapePoint.setLat(i == 0 ? quay.getLat() : otherQuay.getLat());
+      shapePoint.setLon(i == 0 ? quay.getLon() : otherQuay.getLon());
+      shapePoint.setDistTraveled(i * 20187.5);
+      gtfsDao.saveEntity(shapePoint);
+    }
+
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId(agency.getId(), "FLB:ServiceJourney:1"));
+    trip.setRoute(route);
+    trip.setServiceId(serviceId);
+    trip.setTripHeadsign("Flåm, via \"Vatnahalsen\"");
+    trip.setShapeId(shapeId);
+    gtfsDao.saveEntity(trip);
+    Trip otherTrip = new Trip();
+    otherTrip.setId(new AgencyAndId(agency.getId(), "FLB:ServiceJourney:2"));
+    otherTrip.setRoute(route);
+    otherTrip.setServiceId(serviceId);
+    otherTrip.setTripHeadsign("Myrdal");
+    gtfsDao.saveEntity(otherTrip);
+
+    for (int i = 0; i < 2; i++) {
+      StopTime stopTime = new StopTime();
+      stopTime.setTrip(trip);
+      stopTime.setStop(i == 0 ? quay : otherQuay);
+      stopTime.setStopSequence(i);
+      stopTime.setArrivalTime(36000 + i * 3600);
+      stopTime.setDepartureTime(36000 + i * 3600);
+      if (i == 0) {
+        stopTime.setStopHeadsign("Flåm, \"Vatnahalsen\"");
+      }
+      gtfsDao.saveEntity(stopTime);
+    }
+
+    Transfer transfer = new Transfer();
+    transfer.setFromStop(otherQuay);
+    transfer.setToStop(otherQuay);
+    transfer.setFromTrip(trip);
+    transfer.setToTrip(otherTrip);
+    transfer.setTransferType(1);
+    gtfsDao.saveEntity(transfer);
+
+    FeedInfo feedInfo = new FeedInfo();
+    feedInfo.setPublisherName("Entur, \"Norway\"");
+    feedInfo.setPublisherUrl("https://www.entur.org");
+    feedInfo.setLang("no");
+    gtfsDao.saveEntity(feedInfo);
+    return gtfsDao;
+  }
+
+  private static Map<String, String> writeWithSerializer(
+    GtfsSerializer gtfsSerializer,
+    GtfsDao gtfsDao
+  ) throws IOException {
+    ByteArrayOutputStream gtfsArchive = new ByteArrayOutputStream();
+    gtfsSerializer.writeGtfs(gtfsDao, gtfsArchive);
+    return readEntries(new ByteArrayInputStream(gtfsArchive.toByteArray()));
+  }
+
+  private static Map<String, String> writeWithGtfsWriter(
+    GtfsDao gtfsDao,
+    Path outputDirectory
+  ) throws IOException {
+    GtfsWriter gtfsWriter = new FilteredFieldsGtfsWriter(
+      DefaultGtfsSerializer.FILTERED_FIELDS
+    );
+    gtfsWriter.setOutputLocation(outputDirectory.toFile());
+    gtfsWriter.run(gtfsDao);
+    gtfsWriter.close();
+    Map<String, String> gtfsWriterFiles = new TreeMap<>();
+    for (File file : outputDirectory.toFile().listFiles()) {
+      gtfsWriterFiles.put(
+        file.getName(),
+        Files.readString(file.toPath(), StandardCharsets.UTF_8)
+      );
+    }
+    return gtfsWriterFiles;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Comparator<Object> getEntityComparator(Class<?> entityType) {
+    return (Comparator<Object>) GtfsEntitySchemaFactory
+      .getEntityComparators()
+      .get(entityType);
+  }
+
+  private static Map<String, String> readEntries(InputStream gtfsArchive)
+    throws IOException {
+    Map<String, String> entries = new TreeMap<>();
+    try (ZipInputStream zipInputStream = new ZipInputStream(gtfsArchive)) {
+      ZipEntry zipEntry;
+      while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+        entries.put(
+          zipEntry.getName(),
+          new String(zipInputStream.readAllBytes(), StandardCharsets.UTF_8)
+        );
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Serializer that keeps a reference to the serialized GTFS data model.
+   */
+  private static class CapturingGtfsSerializer extends DefaultGtfsSerializer {
+
+    private GtfsDao gtfsDao;
+
+    @Override
+    public void writeGtfs(
+      GtfsDao gtfsDao,
+      OutputStream outputStream,
+      GtfsArchiveWriter.EntryListener entryListener
+    ) {
+      this.gtfsDao = gtfsDao;
+      super.writeGtfs(gtfsDao, outputStream, entryListener);
+    }
+  }
+}
@@ -28,14 +28,13 @@ import org.onebusaway.gtfs.serialization.GtfsWriter;
 
 /**
  * GTFSWriter that ignores specific GTFS fields.
+ * Reference implementation against which the output of {@link DefaultGtfsSerializer} is tested.
  */
-public class FilteredFieldsGtfsWriter extends GtfsWriter {
+class FilteredFieldsGtfsWriter extends GtfsWriter {
 
   private final Map<Class<?>, Collection<String>> filteredFields;
 
-  public FilteredFieldsGtfsWriter(
-    Map<Class<?>, Collection<String>> filteredFields
-  ) {
+  FilteredFieldsGtfsWriter(Map<Class<?>, Collection<String>> filteredFields) {
     this.filteredFields = filteredFields;
   }
 
@@ -0,0 +1,145 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class GtfsArchiveWriterTest {
+
+  private static final String SMALL_FILE_CONTENT =
+    "agency_id,agency_name\nFLB:Authority:1,Flåmsbana\n";
+
+  @Test
+  void testSmallFilesAreStoredAndLargeFilesAreDeflated() throws IOException {
+    String largeFileContent = "trip_id,stop_id\n" + "T1,S1\n".repeat(1000);
+
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    try (
+      GtfsArchiveWriter gtfsArchiveWriter = new GtfsArchiveWriter(
+        archive,
+        1024,
+        Deflater.BEST_SPEED
+      )
+    ) {
+      gtfsArchiveWriter.writeEntry(
+        "agency.txt",
+        outputStream ->
+          outputStream.write(SMALL_FILE_CONTENT.getBytes(StandardCharsets.UTF_8))
+      );
+      gtfsArchiveWriter.writeEntry(
+        "stop_times.txt",
+        outputStream -> {
+          // write in small chunks to cross the threshold in the middle of the entry
+          for (String line : largeFileContent.split("(?<=\n)")) {
+            outputStream.write(line.getBytes(StandardCharsets.UTF_8));
+          }
+        }
+      );
+    }
+
+    Map<String, Integer> methods = new HashMap<>();
+    Map<String, String> contents = new HashMap<>();
+    try (
+      ZipInputStream zipInputStream = new ZipInputStream(
+        new ByteArrayInputStream(archive.toByteArray())
+      )
+    ) {
+      ZipEntry zipEntry = zipInputStream.getNextEntry();
+      while (zipEntry != null) {
+        methods.put(zipEntry.getName(), zipEntry.getMethod());
+        contents.put(
+          zipEntry.getName(),
+          new String(zipInputStream.readAllBytes(), StandardCharsets.UTF_8)
+        );
+        zipEntry = zipInputStream.getNextEntry();
+      }
+    }
+
+    Assertions.assertEquals(ZipEntry.STORED, methods.get("agency.txt"));
+    Assertions.assertEquals(ZipEntry.DEFLATED, methods.get("stop_times.txt"));
+    Assertions.assertEquals(SMALL_FILE_CONTENT, contents.get("agency.txt"));
+    Assertions.assertEquals(largeFileContent, contents.get("stop_times.txt"));
+  }
+
+  @Test
+  void testEntryListenerReceivesUncompressedSizes() throws IOException {
+    String largeFileContent = "trip_id,stop_id\n" + "T1,S1\n".repeat(1000);
+
+    Map<String, Long> entrySizes = new LinkedHashMap<>();
+    try (
+      GtfsArchiveWriter gtfsArchiveWriter = new GtfsArchiveWriter(
+        new ByteArrayOutputStream(),
+        1024,
+        Deflater.BEST_SPEED,
+        entrySizes::put
+      )
+    ) {
+      gtfsArchiveWriter.writeEntry(
+        "agency.txt",
+        outputStream ->
+          outputStream.write(SMALL_FILE_CONTENT.getBytes(StandardCharsets.UTF_8))
+      );
+      gtfsArchiveWriter.writeEntry(
+        "stop_times.txt",
+        outputStream ->
+          outputStream.write(largeFileContent.getBytes(StandardCharsets.UTF_8))
+      );
+    }
+
+    Assertions.assertEquals(
+      Map.of(
+        "agency.txt",
+        (long) SMALL_FILE_CONTENT.getBytes(StandardCharsets.UTF_8).length,
+        "stop_times.txt",
+        (long) largeFileContent.length()
+      ),
+      entrySizes
+    );
+    Assertions.assertEquals("agency.txt", entrySizes.keySet().iterator().next());
+  }
+
+  @Test
+  void testUnderlyingStreamIsNotClosed() throws IOException {
+    ByteArrayOutputStream archive = new ByteArrayOutputStream() {
+      @Override
+      public void close() {
+        Assertions.fail("The output stream should not be closed");
+      }
+    };
+    try (GtfsArchiveWriter gtfsArchiveWriter = new GtfsArchiveWriter(archive)) {
+      gtfsArchiveWriter.writeEntry(
+        "agency.txt",
+        outputStream ->
+          outputStream.write(SMALL_FILE_CONTENT.getBytes(StandardCharsets.UTF_8))
+      );
+    }
+    Assertions.assertTrue(archive.size() > 0);
+  }
+}
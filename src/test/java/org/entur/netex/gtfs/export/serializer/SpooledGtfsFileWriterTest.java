@@ -0,0 +1,56 @@
+/*
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *  *
+ *
+ */
+
+package org.entur.netex.gtfs.export.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Trip;
+
+class SpooledGtfsFileWriterTest {
+
+  @Test
+  void testValuesLargerThan64KB() throws IOException {
+    // larger than the 64 KB limit of DataOutputStream.writeUTF, with multibyte characters
+    String tripHeadsign = "Flåm ".repeat(20_000);
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("FLB", "ServiceJourney:1"));
+    Route route = new Route();
+    route.setId(new AgencyAndId("FLB", "Line:1"));
+    trip.setRoute(route);
+    trip.setServiceId(new AgencyAndId("FLB", "DayType:1"));
+    trip.setTripHeadsign(tripHeadsign);
+
+    ByteArrayOutputStream csv = new ByteArrayOutputStream();
+    try (
+      SpooledGtfsFileWriter spooledFile = new SpooledGtfsFileWriter(Trip.class)
+    ) {
+      spooledFile.write(trip);
+      spooledFile.writeTo(csv);
+    }
+
+    Assertions.assertTrue(
+      csv.toString(StandardCharsets.UTF_8).contains(tripHeadsign)
+    );
+  }
+}
@@ -0,0 +1,59 @@
+package org.entur.netex.gtfs.export.stop;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.rutebanken.netex.model.Quay;
+
+class DefaultStopAreaRepositoryTest {
+
+  @Test
+  void testFetcherIsNotCalledConcurrently() throws Exception {
+    AtomicInteger activeCalls = new AtomicInteger();
+    AtomicInteger maxActiveCalls = new AtomicInteger();
+    DefaultStopAreaRepository stopAreaRepository =
+      new DefaultStopAreaRepository(
+        quayId -> {
+          maxActiveCalls.accumulateAndGet(
+            activeCalls.incrementAndGet(),
+            Math::max
+          );
+          try {
+            Thread.sleep(1);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            activeCalls.decrementAndGet();
+          }
+          return new Quay().withId(quayId);
+        },
+        quayId -> null
+      );
+    stopAreaRepository.loadStopAreas(
+      getClass().getResourceAsStream("/RailStations_latest.zip")
+    );
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Quay>> quays = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        String quayId = "NSR:Quay:Missing" + i;
+        quays.add(
+          executorService.submit(() -> stopAreaRepository.getQuayById(quayId))
+        );
+      }
+      for (int i = 0; i < quays.size(); i++) {
+        assertEquals("NSR:Quay:Missing" + i, quays.get(i).get().getId());
+      }
+    } finally {
+      executorService.shutdown();
+    }
+    assertEquals(1, maxActiveCalls.get());
+  }
+}
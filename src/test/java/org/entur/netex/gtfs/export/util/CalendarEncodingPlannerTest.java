@@ -0,0 +1,128 @@
+package org.entur.netex.gtfs.export.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+import org.entur.netex.gtfs.export.model.GtfsService;
+import org.entur.netex.gtfs.export.model.ServiceCalendarPeriod;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.calendar.ServiceDate;
+
+class CalendarEncodingPlannerTest {
+
+  private static final String TEST_SERVICE_ID = "ENT:DayType:1";
+
+  // a Monday
+  private static final LocalDate TEST_START_DATE = LocalDate.of(2021, 10, 4);
+  // a Friday, 8 weeks later
+  private static final LocalDate TEST_END_DATE = LocalDate.of(2021, 11, 26);
+  private static final Set<DayOfWeek> WEEKDAYS = EnumSet.range(
+    DayOfWeek.MONDAY,
+    DayOfWeek.FRIDAY
+  );
+
+  @Test
+  void testWeeklyPatternWithExceptions() {
+    LocalDate holiday = TEST_START_DATE.plusDays(16);
+    LocalDate extraSaturday = TEST_START_DATE.plusDays(26);
+    GtfsService gtfsService = new GtfsService(TEST_SERVICE_ID);
+    TEST_START_DATE
+      .datesUntil(TEST_END_DATE.plusDays(1))
+      .filter(date -> WEEKDAYS.contains(date.getDayOfWeek()))
+      .filter(date -> !date.equals(holiday))
+      .forEach(date -> gtfsService.addIncludedDate(date.atStartOfDay()));
+    gtfsService.addIncludedDate(extraSaturday.atStartOfDay());
+
+    GtfsService encodedGtfsService = CalendarEncodingPlanner.encode(
+      gtfsService
+    );
+
+    Assertions.assertEquals(TEST_SERVICE_ID, encodedGtfsService.getId());
+    ServiceCalendarPeriod serviceCalendarPeriod =
+      encodedGtfsService.getServiceCalendarPeriod();
+    Assertions.assertNotNull(serviceCalendarPeriod);
+    Assertions.assertEquals(
+      toServiceDate(TEST_START_DATE),
+      serviceCalendarPeriod.getStartDate()
+    );
+    Assertions.assertEquals(
+      toServiceDate(TEST_END_DATE),
+      serviceCalendarPeriod.getEndDate()
+    );
+    Assertions.assertEquals(WEEKDAYS, serviceCalendarPeriod.getDaysOfWeek());
+    Assertions.assertEquals(
+      Set.of(extraSaturday.atStartOfDay()),
+      encodedGtfsService.getIncludedDates()
+    );
+    Assertions.assertEquals(
+      Set.of(holiday.atStartOfDay()),
+      encodedGtfsService.getExcludedDates()
+    );
+  }
+
+  @Test
+  void testMultiYearWeeklyPattern() {
+    LocalDate endDate = TEST_START_DATE.plusYears(10);
+    GtfsService gtfsService = new GtfsService(TEST_SERVICE_ID);
+    TEST_START_DATE
+      .datesUntil(endDate)
+      .filter(date -> WEEKDAYS.contains(date.getDayOfWeek()))
+      .forEach(date -> gtfsService.addIncludedDate(date.atStartOfDay()));
+
+    GtfsService encodedGtfsService = CalendarEncodingPlanner.encode(
+      gtfsService
+    );
+
+    ServiceCalendarPeriod serviceCalendarPeriod =
+      encodedGtfsService.getServiceCalendarPeriod();
+    Assertions.assertNotNull(serviceCalendarPeriod);
+    Assertions.assertEquals(
+      toServiceDate(TEST_START_DATE),
+      serviceCalendarPeriod.getStartDate()
+    );
+    Assertions.assertEquals(WEEKDAYS, serviceCalendarPeriod.getDaysOfWeek());
+    Assertions.assertTrue(encodedGtfsService.getIncludedDates().isEmpty());
+    Assertions.assertTrue(encodedGtfsService.getExcludedDates().isEmpty());
+  }
+
+  @Test
+  void testIndividualDatesKeptWhenMoreCompact() {
+    GtfsService gtfsService = new GtfsService(TEST_SERVICE_ID);
+    gtfsService.addIncludedDate(TEST_START_DATE.atStartOfDay());
+    gtfsService.addIncludedDate(TEST_START_DATE.plusDays(8).atStartOfDay());
+    gtfsService.addIncludedDate(TEST_END_DATE.atStartOfDay());
+
+    Assertions.assertSame(
+      gtfsService,
+      CalendarEncodingPlanner.encode(gtfsService)
+    );
+  }
+
+  @Test
+  void testServiceWithCalendarPeriodUnchanged() {
+    GtfsService gtfsService = new GtfsService(TEST_SERVICE_ID);
+    gtfsService.setServiceCalendarPeriod(
+      new ServiceCalendarPeriod(
+        TEST_START_DATE.atStartOfDay(),
+        TEST_END_DATE.atStartOfDay(),
+        WEEKDAYS
+      )
+    );
+    gtfsService.addExcludedDate(TEST_START_DATE.plusDays(1).atStartOfDay());
+
+    Assertions.assertSame(
+      gtfsService,
+      CalendarEncodingPlanner.encode(gtfsService)
+    );
+  }
+
+  private static ServiceDate toServiceDate(LocalDate date) {
+    return new ServiceDate(
+      date.getYear(),
+      date.getMonthValue(),
+      date.getDayOfMonth()
+    );
+  }
+}
@@ -0,0 +1,81 @@
+package org.entur.netex.gtfs.export.util;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.entur.netex.gtfs.export.repository.GtfsDatasetRepository;
+import org.entur.netex.gtfs.export.repository.GtfsDatasetRepositoryException;
+import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.Stop;
+
+class GtfsStopCacheTest {
+
+  private static final String SCHEDULED_STOP_POINT_ID =
+    "ENT:ScheduledStopPoint:1";
+  private static final String QUAY_ID = "NSR:Quay:1";
+
+  @Test
+  void testStopResolvedOncePerScheduledStopPoint() {
+    NetexDatasetRepository netexDatasetRepository = mock(
+      NetexDatasetRepository.class
+    );
+    when(
+      netexDatasetRepository.getQuayIdByScheduledStopPointId(
+        SCHEDULED_STOP_POINT_ID
+      )
+    )
+      .thenReturn(QUAY_ID);
+    GtfsDatasetRepository gtfsDatasetRepository = mock(
+      GtfsDatasetRepository.class
+    );
+    Stop stop = new Stop();
+    when(gtfsDatasetRepository.getStopById(QUAY_ID)).thenReturn(stop);
+
+    GtfsStopCache gtfsStopCache = new GtfsStopCache(
+      netexDatasetRepository,
+      gtfsDatasetRepository
+    );
+    Assertions.assertSame(stop, gtfsStopCache.getStop(SCHEDULED_STOP_POINT_ID));
+    Assertions.assertSame(stop, gtfsStopCache.getStop(SCHEDULED_STOP_POINT_ID));
+
+    verify(netexDatasetRepository, times(1))
+      .getQuayIdByScheduledStopPointId(SCHEDULED_STOP_POINT_ID);
+    verify(gtfsDatasetRepository, times(1)).getStopById(QUAY_ID);
+  }
+
+  @Test
+  void testMissingStopNotCached() {
+    NetexDatasetRepository netexDatasetRepository = mock(
+      NetexDatasetRepository.class
+    );
+    when(
+      netexDatasetRepository.getQuayIdByScheduledStopPointId(
+        SCHEDULED_STOP_POINT_ID
+      )
+    )
+      .thenReturn(QUAY_ID);
+    GtfsDatasetRepository gtfsDatasetRepository = mock(
+      GtfsDatasetRepository.class
+    );
+    Stop stop = new Stop();
+    when(gtfsDatasetRepository.getStopById(QUAY_ID))
+      .thenThrow(
+        new GtfsDatasetRepositoryException("Stop not found: " + QUAY_ID)
+      )
+      .thenReturn(stop);
+
+    GtfsStopCache gtfsStopCache = new GtfsStopCache(
+      netexDatasetRepository,
+      gtfsDatasetRepository
+    );
+    Assertions.assertThrows(
+      GtfsDatasetRepositoryException.class,
+      () -> gtfsStopCache.getStop(SCHEDULED_STOP_POINT_ID)
+    );
+    Assertions.assertSame(stop, gtfsStopCache.getStop(SCHEDULED_STOP_POINT_ID));
+  }
+}
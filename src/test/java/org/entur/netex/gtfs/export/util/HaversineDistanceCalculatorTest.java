@@ -0,0 +1,68 @@
+package org.entur.netex.gtfs.export.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.locationtech.jts.geom.Coordinate;
+
+class HaversineDistanceCalculatorTest {
+
+  private final DistanceCalculator haversineDistanceCalculator =
+    new HaversineDistanceCalculator();
+
+  @Test
+  void testDistance() {
+    Coordinate from = new Coordinate(10.784823, 59.963926);
+    Coordinate to = new Coordinate(10.784564, 59.963652);
+
+    Assertions.assertEquals(
+      34,
+      Math.round(haversineDistanceCalculator.distance(from, to))
+    );
+  }
+
+  @Test
+  void testDistanceFromNullCoordinate() {
+    Assertions.assertEquals(
+      0,
+      haversineDistanceCalculator.distance(
+        null,
+        new Coordinate(10.784564, 59.963652)
+      )
+    );
+  }
+
+  @ParameterizedTest
+  @CsvSource(
+    {
+      "10.784823, 59.963926, 10.784564, 59.963652",
+      "5.324383, 60.391263, 10.752245, 59.913868",
+      "18.955324, 69.649208, 19.002453, 69.681234",
+      "-0.127758, 0.5, 0.127758, -0.5",
+      "29.718, 70.073, 29.731, 70.071",
+    }
+  )
+  void testDistanceWithinToleranceOfGeodeticDistance(
+    double fromLon,
+    double fromLat,
+    double toLon,
+    double toLat
+  ) {
+    double geodeticDistance = GeometryUtil.distance(
+      new Coordinate(fromLon, fromLat),
+      new Coordinate(toLon, toLat)
+    );
+    double haversineDistance = haversineDistanceCalculator.distance(
+      fromLon,
+      fromLat,
+      toLon,
+      toLat
+    );
+    Assertions.assertEquals(
+      geodeticDistance,
+      haversineDistance,
+      geodeticDistance * HaversineDistanceCalculator.RELATIVE_TOLERANCE
+    );
+  }
+}
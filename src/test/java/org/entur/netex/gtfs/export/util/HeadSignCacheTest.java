@@ -0,0 +1,98 @@
+package org.entur.netex.gtfs.export.util;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.entur.netex.gtfs.export.repository.NetexDatasetRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.rutebanken.netex.model.DestinationDisplay;
+import org.rutebanken.netex.model.MultilingualString;
+
+class HeadSignCacheTest {
+
+  private static final String FRONT_TEXT = "Test-FrontText";
+
+  private static final String DESTINATION_DISPLAY_ID_1 =
+    "ENT:DestinationDisplay:1";
+  private static final String DESTINATION_DISPLAY_ID_2 =
+    "ENT:DestinationDisplay:2";
+
+  @Test
+  void testHeadSignResolvedOncePerDestinationDisplay() {
+    DestinationDisplay destinationDisplay = createTestDestinationDisplay(
+      DESTINATION_DISPLAY_ID_1,
+      FRONT_TEXT
+    );
+    NetexDatasetRepository netexDatasetRepository = mock(
+      NetexDatasetRepository.class
+    );
+    when(
+      netexDatasetRepository.getDestinationDisplayById(
+        DESTINATION_DISPLAY_ID_1
+      )
+    )
+      .thenReturn(destinationDisplay);
+
+    HeadSignCache headSignCache = new HeadSignCache(netexDatasetRepository);
+    Assertions.assertEquals(
+      FRONT_TEXT,
+      headSignCache.getHeadSign(DESTINATION_DISPLAY_ID_1)
+    );
+    Assertions.assertEquals(
+      FRONT_TEXT,
+      headSignCache.getHeadSign(DESTINATION_DISPLAY_ID_1)
+    );
+    Assertions.assertEquals(
+      FRONT_TEXT,
+      headSignCache.getHeadSign(destinationDisplay)
+    );
+
+    verify(netexDatasetRepository, times(1))
+      .getDestinationDisplayById(DESTINATION_DISPLAY_ID_1);
+  }
+
+  @Test
+  void testIdenticalHeadSignsShareTheSameInstance() {
+    DestinationDisplay destinationDisplay1 = createTestDestinationDisplay(
+      DESTINATION_DISPLAY_ID_1,
+      new String(FRONT_TEXT)
+    );
+    DestinationDisplay destinationDisplay2 = createTestDestinationDisplay(
+      DESTINATION_DISPLAY_ID_2,
+      new String(FRONT_TEXT)
+    );
+    HeadSignCache headSignCache = new HeadSignCache(
+      mock(NetexDatasetRepository.class)
+    );
+
+    String headSign1 = headSignCache.getHeadSign(destinationDisplay1);
+    String headSign2 = headSignCache.getHeadSign(destinationDisplay2);
+
+    Assertions.assertEquals(FRONT_TEXT, headSign1);
+    Assertions.assertSame(headSign1, headSign2);
+  }
+
+  @Test
+  void testMissingDestinationDisplay() {
+    HeadSignCache headSignCache = new HeadSignCache(
+      mock(NetexDatasetRepository.class)
+    );
+    Assertions.assertNull(headSignCache.getHeadSign(DESTINATION_DISPLAY_ID_1));
+    Assertions.assertNull(headSignCache.getHeadSign((DestinationDisplay) null));
+  }
+
+  private DestinationDisplay createTestDestinationDisplay(
+    String id,
+    String frontText
+  ) {
+    DestinationDisplay destinationDisplay = new DestinationDisplay();
+    destinationDisplay.setId(id);
+    MultilingualString frontTextMultilingualString = new MultilingualString();
+    frontTextMultilingualString.setValue(frontText);
+    destinationDisplay.setFrontText(frontTextMultilingualString);
+    return destinationDisplay;
+  }
+}